@@ -1686,8 +1686,8 @@ public interface Selenium {
    * codes, and timings. When this function is called, the traffic log is cleared, so the returned
    * content is only the traffic seen since the last call.
    * 
-   * @param type The type of data to return the network traffic as. Valid values are: json, xml, or
-   *        plain.
+   * @param type The type of data to return the network traffic as. Valid values are: json, xml,
+   *        har (an HTTP Archive document), or plain.
    * @return A string representation in the defined type of the network traffic seen by the browser.
    */
   String captureNetworkTraffic(String type);
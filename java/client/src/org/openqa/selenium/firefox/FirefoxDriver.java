@@ -133,6 +133,9 @@ private static FirefoxProfile extractProfile(Capabilities desiredCapabilities,
         } catch (IOException e) {
           throw new WebDriverException(e);
         }
+      } else if (raw instanceof File) {
+        // A profile that was streamed to the server and unzipped there.
+        profile = new FirefoxProfile((File) raw);
       }
     }
     profile = getProfile(profile);
@@ -27,10 +27,12 @@
 import org.openqa.selenium.firefox.internal.ClasspathExtension;
 import org.openqa.selenium.firefox.internal.Extension;
 import org.openqa.selenium.firefox.internal.FileExtension;
+import org.openqa.selenium.firefox.internal.ProfileTemplateCache;
 import org.openqa.selenium.io.FileHandler;
 import org.openqa.selenium.io.IOUtils;
 import org.openqa.selenium.io.TemporaryFilesystem;
 import org.openqa.selenium.io.Zip;
+import org.openqa.selenium.remote.UploadableDirectory;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -40,17 +42,24 @@
 import java.io.StringReader;
 import java.net.URL;
 import java.util.Map;
+import java.util.TreeMap;
 
 import static org.openqa.selenium.firefox.FirefoxDriver.ACCEPT_UNTRUSTED_CERTIFICATES;
 import static org.openqa.selenium.firefox.FirefoxDriver.ASSUME_UNTRUSTED_ISSUER;
 import static org.openqa.selenium.firefox.FirefoxDriver.DEFAULT_ENABLE_NATIVE_EVENTS;
 
 
-public class FirefoxProfile {
+public class FirefoxProfile implements UploadableDirectory {
   public static final String PORT_PREFERENCE = "webdriver_firefox_port";
 
   private static final String defaultPrefs = "/org/openqa/selenium/firefox/webdriver_prefs.json";
 
+  /**
+   * Set this system property to "false" to lay out every profile from scratch instead of copying
+   * a cached template.
+   */
+  public static final String PROFILE_TEMPLATES_PROPERTY = "webdriver.firefox.profile.templates";
+
   private Preferences additionalPrefs;
 
   private Map<String, Extension> extensions = Maps.newHashMap();
@@ -410,6 +419,14 @@ public String toJson() throws IOException {
     return new Zip().zip(generatedProfile);
   }
 
+  public File writeToDirectory() {
+    return layoutOnDisk();
+  }
+
+  public void cleanDirectory(File directory) {
+    clean(directory);
+  }
+
   public static FirefoxProfile fromJson(String json) throws IOException {
     File dir = TemporaryFilesystem.getDefaultTmpFS().createTempDir("webdriver", "duplicated");
 
@@ -429,6 +446,10 @@ protected void cleanTemporaryModel() {
    * 
    * This method should be called immediately before starting to use the profile and should only be
    * called once per instance of the {@link org.openqa.selenium.firefox.FirefoxDriver}.
+   * <p/>
+   * The model and extensions are laid out once into a template that later profiles with the same
+   * model and extensions are copied from (see {@link ProfileTemplateCache}), so only the
+   * preferences are written afresh each time.
    * 
    * @return The directory containing the profile.
    */
@@ -438,10 +459,12 @@ public File layoutOnDisk() {
           .createTempDir("anonymous", "webdriver-profile");
       File userPrefs = new File(profileDir, "user.js");
 
-      copyModel(model, profileDir);
-      installExtensions(profileDir);
-      deleteLockFiles(profileDir);
-      deleteExtensionsCacheIfItExists(profileDir);
+      File template = getProfileTemplate();
+      if (template != null && template.exists()) {
+        FileHandler.copy(template, profileDir);
+      } else {
+        layoutModelAndExtensions(profileDir);
+      }
       updateUserPrefs(userPrefs);
       return profileDir;
     } catch (IOException e) {
@@ -449,6 +472,27 @@ public File layoutOnDisk() {
     }
   }
 
+  private void layoutModelAndExtensions(File profileDir) throws IOException {
+    copyModel(model, profileDir);
+    installExtensions(profileDir);
+    deleteLockFiles(profileDir);
+    deleteExtensionsCacheIfItExists(profileDir);
+  }
+
+  private File getProfileTemplate() throws IOException {
+    // Subclasses may lay profiles out differently from what the template would contain.
+    if (getClass() != FirefoxProfile.class
+        || "false".equals(System.getProperty(PROFILE_TEMPLATES_PROPERTY))) {
+      return null;
+    }
+    return ProfileTemplateCache.getDefault().getTemplate(model,
+        new TreeMap<String, Extension>(extensions), new ProfileTemplateCache.Layout() {
+          public void writeTo(File profileDir) throws IOException {
+            layoutModelAndExtensions(profileDir);
+          }
+        });
+  }
+
   protected void copyModel(File sourceDir, File profileDir) throws IOException {
     if (sourceDir == null || !sourceDir.exists()) {
       return;
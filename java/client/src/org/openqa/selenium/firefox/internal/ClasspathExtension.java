@@ -16,6 +16,7 @@
 
 package org.openqa.selenium.firefox.internal;
 
+import com.google.common.hash.Hashing;
 import com.google.common.io.Closeables;
 import com.google.common.io.Resources;
 
@@ -27,8 +28,13 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ClasspathExtension implements Extension {
+  // Classpath resources don't change while the JVM runs, so each is only hashed once.
+  private static final Map<String, String> fingerprints = new ConcurrentHashMap<String, String>();
+
   private final Class<?> loadResourcesUsing;
   private final String loadFrom;
 
@@ -62,4 +68,17 @@ public void writeTo(File extensionsDir) throws IOException {
     }
     new FileExtension(extractedXpi).writeTo(extensionsDir);
   }
+
+  /**
+   * Returns a hash of the extension's contents.
+   */
+  String fingerprint() throws IOException {
+    URL resourceUrl = Resources.getResource(loadResourcesUsing, loadFrom);
+    String fingerprint = fingerprints.get(resourceUrl.toString());
+    if (fingerprint == null) {
+      fingerprint = Resources.asByteSource(resourceUrl).hash(Hashing.sha1()).toString();
+      fingerprints.put(resourceUrl.toString(), fingerprint);
+    }
+    return fingerprint;
+  }
 }
@@ -16,6 +16,10 @@
 
 package org.openqa.selenium.firefox.internal;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
 import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.io.FileHandler;
 import org.openqa.selenium.io.TemporaryFilesystem;
@@ -72,6 +76,18 @@ public void writeTo(File extensionsDir) throws IOException {
     TemporaryFilesystem.getDefaultTmpFS().deleteTempDir(root);
   }
 
+  /**
+   * Returns a hash of the extension's contents.
+   */
+  String fingerprint() throws IOException {
+    if (!toInstall.isDirectory()) {
+      return Files.hash(toInstall, Hashing.sha1()).toString();
+    }
+    Hasher hasher = Hashing.sha1().newHasher();
+    ProfileTemplateCache.hashDirectory(hasher, toInstall, "");
+    return hasher.hash().toString();
+  }
+
   private File obtainRootDirectory(File extensionToInstall) throws IOException {
     File root = extensionToInstall;
     if (!extensionToInstall.isDirectory()) {
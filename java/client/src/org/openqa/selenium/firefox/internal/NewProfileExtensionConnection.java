@@ -35,9 +35,7 @@
 
 import java.io.File;
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
-import java.net.Socket;
 import java.net.URL;
 
 import static org.openqa.selenium.firefox.FirefoxProfile.PORT_PREFERENCE;
@@ -53,6 +51,8 @@ public class NewProfileExtensionConnection implements ExtensionConnection, Needs
   public static final String FIREFOX_DRIVER_XPI_PROPERTY = "webdriver.firefox.driver";
 
   private final static int BUFFER_SIZE = 4096;
+  private final static long MIN_CONNECT_DELAY = 10;
+  private final static long MAX_CONNECT_DELAY = 500;
 
   private static final NetworkUtils networkUtils = new NetworkUtils();
   private final long connectTimeout;
@@ -60,6 +60,7 @@ public class NewProfileExtensionConnection implements ExtensionConnection, Needs
   private final FirefoxProfile profile;
   private final String host;
   private final Lock lock;
+  private final PortReservations reservations = PortReservations.getDefault();
   private File profileDir;
 
 
@@ -79,11 +80,17 @@ public NewProfileExtensionConnection(Lock lock, FirefoxBinary binary, FirefoxPro
   public void start() throws IOException {
     addWebDriverExtensionIfNeeded();
 
-    int port = 0;
-
+    // The machine-wide lock is only needed while a port is picked. Once it's reserved, other
+    // browsers are free to start while this one boots.
+    int port;
     lock.lock(connectTimeout);
     try {
-      port = determineNextFreePort(DEFAULT_PORT);
+      port = reservations.reserve(DEFAULT_PORT);
+    } finally {
+      lock.unlock();
+    }
+
+    try {
       profile.setPreference(PORT_PREFERENCE, port);
 
       profileDir = profile.layoutOnDisk();
@@ -105,25 +112,26 @@ public void start() throws IOException {
 
       process.startProfile(profile, profileDir, "-foreground");
 
-      // Just for the record; the critical section is all along while firefox is starting with the
-      // profile.
-
       // There is currently no mechanism for the profile to notify us when it has started
       // successfully and is ready for requests. Instead, we must loop until we're able to
       // open a connection with the server, at which point it should be safe to continue
       // (since the extension shouldn't accept connections until it is ready for requests).
+      // Poll quickly at first and back off, since most browsers are up well within a second.
       long waitUntil = System.currentTimeMillis() + connectTimeout;
+      long delay = MIN_CONNECT_DELAY;
       while (!isConnected()) {
-        if (waitUntil < System.currentTimeMillis()) {
+        long remaining = waitUntil - System.currentTimeMillis();
+        if (remaining < 0) {
           throw new NotConnectedException(
               delegate.getAddressOfRemoteServer(), connectTimeout, process.getConsoleOutput());
         }
 
         try {
-          Thread.sleep(100);
+          Thread.sleep(Math.min(delay, remaining + 1));
         } catch (InterruptedException ignored) {
           // Do nothing
         }
+        delay = Math.min(delay * 2, MAX_CONNECT_DELAY);
       }
     } catch (IOException e) {
       e.printStackTrace();
@@ -137,7 +145,8 @@ public void start() throws IOException {
     } catch (Exception e) {
       throw new WebDriverException(e);
     } finally {
-      lock.unlock();
+      // Either the browser is now listening on the port itself, or it never will be.
+      reservations.release(port);
     }
   }
 
@@ -165,34 +174,6 @@ public Response execute(Command command) throws IOException {
     return delegate.execute(command);
   }
 
-  protected int determineNextFreePort(int port) {
-    // Attempt to connect to the given port on the host
-    // If we can't connect, then we're good to use it
-    int newport;
-
-    for (newport = port; newport < port + 2000; newport++) {
-      Socket socket = new Socket();
-      InetSocketAddress address = new InetSocketAddress(networkUtils.obtainLoopbackIp4Address(),
-                                                        newport);
-
-      try {
-        socket.bind(address);
-        return newport;
-      } catch (IOException e) {
-        // Port is already bound. Skip it and continue
-      } finally {
-        try {
-          socket.close();
-        } catch (IOException ignored) {
-          // Nothing sane to do. Ignore this.
-        }
-      }
-    }
-
-    throw new WebDriverException(
-        String.format("Cannot find free port in the range %d to %d ", port, newport));
-  }
-
   public void quit() {
     // This should only be called after the QUIT command has been sent,
     // so go ahead and clean up our process and profile.
@@ -0,0 +1,122 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.firefox.internal;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.net.NetworkUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out the ports that Firefox extensions are told to listen on. A port stays reserved from
+ * the moment it is handed out until it is released, so that two browsers starting at the same
+ * time never get the same port, even though neither has bound it yet.
+ * <p/>
+ * A reservation holds a socket bound to a companion port, {@link #RESERVATION_OFFSET} above the
+ * reserved one, in the same way {@link org.openqa.selenium.internal.SocketLock} does. Binding is
+ * atomic, so reservations are honoured by every process on the machine, not only this one. Ports
+ * too near the top of the range to have a companion port are only reserved within this JVM.
+ */
+public class PortReservations {
+
+  static final int PORTS_TO_TRY = 2000;
+  static final int RESERVATION_OFFSET = PORTS_TO_TRY;
+  static final int MAX_PORT = 65535;
+
+  private static final PortReservations DEFAULT = new PortReservations();
+
+  private static final NetworkUtils networkUtils = new NetworkUtils();
+
+  private final Map<Integer, Socket> reserved = new HashMap<Integer, Socket>();
+
+  public static PortReservations getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Reserves the first port from the given one upwards that is neither reserved nor bound.
+   *
+   * @param from the first port to try.
+   * @return the reserved port.
+   */
+  public synchronized int reserve(int from) {
+    int port;
+    for (port = from; port < from + PORTS_TO_TRY && port <= MAX_PORT; port++) {
+      if (reserved.containsKey(port)) {
+        continue;
+      }
+
+      Socket reservation = new Socket();
+      int companion = port + RESERVATION_OFFSET;
+      if (companion <= MAX_PORT && !bind(reservation, companion)) {
+        // Reserved by another process.
+        continue;
+      }
+
+      Socket probe = new Socket();
+      if (bind(probe, port)) {
+        close(probe);
+        reserved.put(port, reservation);
+        return port;
+      }
+      close(reservation);
+    }
+
+    throw new WebDriverException(
+        String.format("Cannot find free port in the range %d to %d ", from, port));
+  }
+
+  /**
+   * Releases a port, once the browser it was handed to is listening on it or has failed to start.
+   */
+  public synchronized void release(int port) {
+    Socket reservation = reserved.remove(port);
+    if (reservation != null) {
+      close(reservation);
+    }
+  }
+
+  synchronized boolean isReserved(int port) {
+    return reserved.containsKey(port);
+  }
+
+  private static boolean bind(Socket socket, int port) {
+    InetSocketAddress address =
+        new InetSocketAddress(networkUtils.obtainLoopbackIp4Address(), port);
+    try {
+      socket.bind(address);
+      return true;
+    } catch (IOException e) {
+      // Port is already bound.
+      close(socket);
+      return false;
+    }
+  }
+
+  private static void close(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException ignored) {
+      // Nothing sane to do. Ignore this.
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.firefox.internal;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import org.openqa.selenium.io.TemporaryFilesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Keeps fully laid out Firefox profiles, with the model profile copied and every extension
+ * already extracted, so that a new profile only needs a plain copy of the matching template
+ * rather than pulling extensions out of jars and unzipping them each time.
+ * <p/>
+ * Templates are keyed by a hash of the model profile's contents and of the extensions installed,
+ * so a changed model or extension simply results in a new template. Only the most recently used
+ * templates are kept. Templates live in the temporary directory, and one that has been deleted
+ * from under the cache is laid out again.
+ */
+public class ProfileTemplateCache {
+
+  /**
+   * Lays out a profile template in the given directory.
+   */
+  public interface Layout {
+    void writeTo(File profileDir) throws IOException;
+  }
+
+  private static final int MAX_TEMPLATES = 8;
+
+  private static final ProfileTemplateCache DEFAULT = new ProfileTemplateCache();
+
+  private final Map<String, FutureTask<File>> templates =
+      new LinkedHashMap<String, FutureTask<File>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FutureTask<File>> eldest) {
+          if (size() <= MAX_TEMPLATES) {
+            return false;
+          }
+          deleteTemplate(eldest.getValue());
+          return true;
+        }
+      };
+
+  public static ProfileTemplateCache getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Returns the template directory for the given model and extensions, laying it out first if
+   * there isn't one yet. Returns null if the template can't be cached, because one of the
+   * extensions is of a kind whose contents can't be hashed.
+   *
+   * @param model the model profile directory, or null.
+   * @param extensions the extensions to install, by name.
+   * @param layout writes the template to a directory.
+   */
+  public File getTemplate(File model, SortedMap<String, Extension> extensions,
+      final Layout layout) throws IOException {
+    String key = key(model, extensions);
+    if (key == null) {
+      return null;
+    }
+
+    File template = getTemplate(key, layout);
+    if (!template.exists()) {
+      // swept away with the other temporary files, lay it out again.
+      template = getTemplate(key, layout);
+    }
+    return template;
+  }
+
+  private File getTemplate(String key, final Layout layout) throws IOException {
+    FutureTask<File> task;
+    boolean created = false;
+    synchronized (templates) {
+      task = templates.get(key);
+      if (task == null) {
+        task = new FutureTask<File>(new Callable<File>() {
+          public File call() throws IOException {
+            File template = TemporaryFilesystem.getDefaultTmpFS()
+                .createTempDir("template", "webdriver-profile");
+            layout.writeTo(template);
+            return template;
+          }
+        });
+        templates.put(key, task);
+        created = true;
+      }
+    }
+
+    if (created) {
+      task.run();
+    }
+    try {
+      File template = task.get();
+      if (!template.exists()) {
+        forget(key, task);
+      }
+      return template;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      forget(key, task);
+      Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private void forget(String key, FutureTask<File> task) {
+    synchronized (templates) {
+      if (templates.get(key) == task) {
+        templates.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Deletes all templates.
+   */
+  public void clear() {
+    synchronized (templates) {
+      for (Iterator<FutureTask<File>> i = templates.values().iterator(); i.hasNext();) {
+        deleteTemplate(i.next());
+        i.remove();
+      }
+    }
+  }
+
+  private void deleteTemplate(FutureTask<File> task) {
+    if (!task.isDone()) {
+      return;
+    }
+    try {
+      TemporaryFilesystem.getDefaultTmpFS().deleteTempDir(task.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // Nothing was laid out, so nothing to delete.
+    }
+  }
+
+  private String key(File model, SortedMap<String, Extension> extensions) throws IOException {
+    Hasher hasher = Hashing.sha1().newHasher();
+    if (model != null && model.exists()) {
+      hashDirectory(hasher, model, "");
+    }
+    for (Map.Entry<String, Extension> entry : extensions.entrySet()) {
+      String fingerprint;
+      if (entry.getValue() instanceof ClasspathExtension) {
+        fingerprint = ((ClasspathExtension) entry.getValue()).fingerprint();
+      } else if (entry.getValue() instanceof FileExtension) {
+        fingerprint = ((FileExtension) entry.getValue()).fingerprint();
+      } else {
+        return null;
+      }
+      hasher.putString(entry.getKey(), Charsets.UTF_8).putString(fingerprint, Charsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  static void hashDirectory(Hasher hasher, File dir, String relativePath) throws IOException {
+    File[] children = dir.listFiles();
+    if (children == null) {
+      return;
+    }
+    Arrays.sort(children);
+    for (File child : children) {
+      String childPath = relativePath + "/" + child.getName();
+      hasher.putString(childPath, Charsets.UTF_8);
+      if (child.isDirectory()) {
+        hashDirectory(hasher, child, childPath);
+      } else {
+        hasher.putBytes(Files.hash(child, Hashing.sha1()).asBytes());
+      }
+    }
+  }
+}
@@ -31,6 +31,7 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -81,7 +82,14 @@ public String zipFile(File baseDir, File fileToCompress) throws IOException {
 
   }
 
-  private void zip(File inputDir, OutputStream writeTo) throws IOException {
+  /**
+   * Zips a directory to a stream. Entries are written in name order and without timestamps, so
+   * the same directory contents always zip to the same bytes.
+   *
+   * @param inputDir the directory to zip.
+   * @param writeTo the stream to write to, which is closed once done.
+   */
+  public void zip(File inputDir, OutputStream writeTo) throws IOException {
     ZipOutputStream zos = null;
     try {
       zos = new ZipOutputStream(writeTo);
@@ -93,7 +101,9 @@ private void zip(File inputDir, OutputStream writeTo) throws IOException {
 
   private void addToZip(String basePath, ZipOutputStream zos, File toAdd) throws IOException {
     if (toAdd.isDirectory()) {
-      for (File file : toAdd.listFiles()) {
+      File[] files = toAdd.listFiles();
+      Arrays.sort(files);
+      for (File file : files) {
         addToZip(basePath, zos, file);
       }
     } else {
@@ -101,6 +111,7 @@ private void addToZip(String basePath, ZipOutputStream zos, File toAdd) throws I
       String name = toAdd.getAbsolutePath().substring(basePath.length() + 1);
 
       ZipEntry entry = new ZipEntry(name);
+      entry.setTime(0);
       zos.putNextEntry(entry);
 
       int len;
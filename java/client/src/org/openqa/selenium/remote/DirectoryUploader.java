@@ -0,0 +1,178 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.util.EntityUtils;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.io.TemporaryFilesystem;
+import org.openqa.selenium.io.Zip;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Streams {@link UploadableDirectory} capabilities to the server's upload endpoint before a new
+ * session is requested, so that they don't have to be inlined into the capabilities as base64.
+ * <p/>
+ * Each directory is zipped to a temporary file and named by the SHA-1 hash of the zip. The server
+ * is asked whether it already has that hash first, so an unchanged directory is only sent once.
+ * Servers without the endpoint, such as older servers and the grid hub, get the capabilities
+ * unchanged.
+ */
+class DirectoryUploader {
+
+  private static final Logger log = Logger.getLogger(DirectoryUploader.class.getName());
+
+  private final HttpClient client;
+  private final HttpHost targetHost;
+  private final String uploadUrl;
+  private volatile boolean unsupported;
+
+  DirectoryUploader(HttpClient client, HttpHost targetHost, URL remoteServer) {
+    this.client = client;
+    this.targetHost = targetHost;
+    this.uploadUrl = remoteServer.toExternalForm().replaceAll("/$", "") + "/upload/";
+  }
+
+  /**
+   * Uploads the directories in the given new session parameters.
+   *
+   * @return the parameters with each uploaded directory replaced by a reference to it, or the
+   *     parameters as they were if the server can't take uploads.
+   */
+  Map<String, ?> upload(Map<String, ?> parameters) throws IOException {
+    if (unsupported) {
+      return parameters;
+    }
+
+    ImmutableMap.Builder<String, Object> uploaded = ImmutableMap.builder();
+    boolean changed = false;
+    for (Map.Entry<String, ?> entry : parameters.entrySet()) {
+      Object value = entry.getValue();
+      if (value instanceof Capabilities) {
+        Capabilities capabilities = upload((Capabilities) value);
+        if (capabilities == null) {
+          return parameters;
+        }
+        changed |= capabilities != value;
+        value = capabilities;
+      }
+      uploaded.put(entry.getKey(), value);
+    }
+    return changed ? uploaded.build() : parameters;
+  }
+
+  private Capabilities upload(Capabilities capabilities) throws IOException {
+    Map<String, Object> uploaded = Maps.newHashMap(capabilities.asMap());
+    boolean changed = false;
+    for (Map.Entry<String, Object> entry : uploaded.entrySet()) {
+      if (entry.getValue() instanceof UploadableDirectory) {
+        String hash = upload((UploadableDirectory) entry.getValue());
+        if (hash == null) {
+          return null;
+        }
+        entry.setValue(ImmutableMap.of(UploadableDirectory.UPLOADED_DIRECTORY, hash));
+        changed = true;
+      }
+    }
+    return changed ? new DesiredCapabilities(uploaded) : capabilities;
+  }
+
+  private String upload(UploadableDirectory directory) throws IOException {
+    TemporaryFilesystem tempFs = TemporaryFilesystem.getDefaultTmpFS();
+    File tempDir = tempFs.createTempDir("upload", "zip");
+    try {
+      File zip = new File(tempDir, "upload.zip");
+      File toZip = directory.writeToDirectory();
+      try {
+        new Zip().zip(toZip, new FileOutputStream(zip));
+      } finally {
+        directory.cleanDirectory(toZip);
+      }
+
+      String hash = Files.hash(zip, Hashing.sha1()).toString();
+      Boolean present = isUploaded(hash);
+      if (present == null) {
+        log.fine("Server does not accept uploads; sending directories inline");
+        unsupported = true;
+        return null;
+      }
+      if (!present) {
+        send(hash, zip);
+      }
+      return hash;
+    } finally {
+      tempFs.deleteTempDir(tempDir);
+    }
+  }
+
+  /**
+   * @return whether the server has the upload, or null if the server doesn't take uploads.
+   */
+  private Boolean isUploaded(String hash) throws IOException {
+    HttpGet get = new HttpGet(uploadUrl + hash);
+    get.addHeader("Accept", "application/json");
+    HttpResponse response = client.execute(targetHost, get);
+    try {
+      if (response.getStatusLine().getStatusCode() != 200 || response.getEntity() == null) {
+        return null;
+      }
+      Object value = new JsonToBeanConverter().convert(Map.class,
+          EntityUtils.toString(response.getEntity(), "UTF-8")).get("value");
+      return value instanceof Boolean ? (Boolean) value : null;
+    } catch (JsonException e) {
+      return null;
+    } finally {
+      EntityUtils.consume(response.getEntity());
+    }
+  }
+
+  private void send(String hash, File zip) throws IOException {
+    HttpPost post = new HttpPost(uploadUrl + hash);
+    FileEntity entity = new FileEntity(zip, ContentType.create("application/zip"));
+    entity.setChunked(true);
+    post.setEntity(entity);
+    HttpResponse response = client.execute(targetHost, post);
+    try {
+      if (response.getStatusLine().getStatusCode() != 200) {
+        throw new WebDriverException(String.format("Unable to upload %s: %s", hash,
+            response.getEntity() == null ? response.getStatusLine()
+                : EntityUtils.toString(response.getEntity(), "UTF-8")));
+      }
+    } finally {
+      EntityUtils.consume(response.getEntity());
+    }
+  }
+}
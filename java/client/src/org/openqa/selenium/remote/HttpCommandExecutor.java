@@ -72,6 +72,7 @@ public class HttpCommandExecutor implements CommandExecutor, NeedsLocalLogs {
   private final Map<String, CommandInfo> nameToUrl;
   private final HttpClient client;
   private final ErrorCodes errorCodes = new ErrorCodes();
+  private final DirectoryUploader uploader;
 
   private static HttpClientFactory httpClientFactory;
 
@@ -116,6 +117,7 @@ public HttpCommandExecutor(Map<String, CommandInfo> additionalCommands, URL addr
 
     targetHost = new HttpHost(
         host, remoteServer.getPort(), remoteServer.getProtocol());
+    uploader = new DirectoryUploader(client, targetHost, remoteServer);
 
     ImmutableMap.Builder<String, CommandInfo> builder = ImmutableMap.builder();
     for (Map.Entry<String, CommandInfo> entry : additionalCommands.entrySet()) {
@@ -284,7 +286,11 @@ public Response execute(Command command) throws IOException {
       setAcceptHeader(httpMethod);
 
       if (httpMethod instanceof HttpPost) {
-        String payload = new BeanToJsonConverter().convert(command.getParameters());
+        Map<String, ?> parameters = command.getParameters();
+        if (NEW_SESSION.equals(command.getName())) {
+          parameters = uploader.upload(parameters);
+        }
+        String payload = new BeanToJsonConverter().convert(parameters);
         ((HttpPost) httpMethod).setEntity(new StringEntity(payload, "utf-8"));
         httpMethod.addHeader("Content-Type", "application/json; charset=utf-8");
       }
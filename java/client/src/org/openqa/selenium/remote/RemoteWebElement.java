@@ -18,6 +18,8 @@
 package org.openqa.selenium.remote;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 
 import org.openqa.selenium.By;
 import org.openqa.selenium.Dimension;
@@ -101,6 +103,11 @@ private String upload(File localFile) {
     }
 
     try {
+      String remotePath = uploadByHash(localFile);
+      if (remotePath != null) {
+        return remotePath;
+      }
+
       String zip = new Zip().zipFile(localFile.getParentFile(), localFile);
       Response response = execute(DriverCommand.UPLOAD_FILE, ImmutableMap.of("file", zip));
       return (String) response.getValue();
@@ -109,6 +116,23 @@ private String upload(File localFile) {
     }
   }
 
+  /**
+   * Asks the server for a copy of a file it has been sent before, by the hash of its contents.
+   *
+   * @return the path of the copy on the server, or null if the file has to be sent.
+   */
+  private String uploadByHash(File localFile) throws IOException {
+    String hash = Files.hash(localFile, Hashing.sha1()).toString();
+    try {
+      Response response = execute(DriverCommand.UPLOAD_FILE,
+          ImmutableMap.of("hash", hash, "name", localFile.getName()));
+      return (String) response.getValue();
+    } catch (WebDriverException e) {
+      // Servers that don't keep uploads expect the file itself.
+      return null;
+    }
+  }
+
   public void clear() {
     execute(DriverCommand.CLEAR_ELEMENT, ImmutableMap.of("id", id));
   }
@@ -0,0 +1,47 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A capability whose value is a whole directory, such as a browser profile. When the server
+ * supports it, {@link HttpCommandExecutor} streams the directory to the server as a zip ahead of
+ * the new session request, and the capability is replaced by a reference to the upload.
+ */
+public interface UploadableDirectory {
+
+  /**
+   * The key of the map that replaces an uploaded capability. Its value is the hex SHA-1 hash of
+   * the uploaded zip.
+   */
+  String UPLOADED_DIRECTORY = "uploadedDirectory";
+
+  /**
+   * Writes the directory to disk.
+   *
+   * @return the directory written.
+   */
+  File writeToDirectory() throws IOException;
+
+  /**
+   * Cleans up a directory returned by {@link #writeToDirectory()} once it has been sent.
+   */
+  void cleanDirectory(File directory);
+}
@@ -158,6 +158,24 @@ public void shouldInstallExtensionUsingClasspath() throws IOException {
     assertTrue(extensionDir.exists());
   }
 
+  @Test
+  public void profilesCopiedFromTheSameTemplateKeepTheirOwnPreferences() throws IOException {
+    FirefoxProfile first = new FirefoxProfile();
+    first.addExtension(InProject.locate(FIREBUG_PATH));
+    first.setPreference("cheese", "brie");
+    FirefoxProfile second = new FirefoxProfile();
+    second.addExtension(InProject.locate(FIREBUG_PATH));
+    second.setPreference("cheese", "cheddar");
+
+    File firstDir = first.layoutOnDisk();
+    File secondDir = second.layoutOnDisk();
+
+    assertTrue(new File(secondDir, "extensions/firebug@software.joehewitt.com").exists());
+    assertThat(FileHandler.readAsString(new File(firstDir, "user.js")), containsString("brie"));
+    assertThat(FileHandler.readAsString(new File(secondDir, "user.js")),
+               containsString("cheddar"));
+  }
+
   @Test
   public void shouldConvertItselfIntoAMeaningfulRepresentation() throws IOException {
     FirefoxProfile profile = new FirefoxProfile();
@@ -20,6 +20,9 @@
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.openqa.selenium.firefox.internal.ExecutableTest;
+import org.openqa.selenium.firefox.internal.NewProfileExtensionConnectionTest;
+import org.openqa.selenium.firefox.internal.PortReservationsTest;
+import org.openqa.selenium.firefox.internal.ProfileTemplateCacheTest;
 import org.openqa.selenium.firefox.internal.SocketLockTest;
 import org.openqa.selenium.firefox.internal.StreamsTest;
 
@@ -31,7 +34,10 @@
     FirefoxDriverTest.class,
     FirefoxProfileTest.class,
     NativeEventsTest.class,
+    NewProfileExtensionConnectionTest.class,
+    PortReservationsTest.class,
     PreferencesTest.class,
+    ProfileTemplateCacheTest.class,
     SocketLockTest.class,
     StreamsTest.class
 })
@@ -0,0 +1,189 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.firefox.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.firefox.FirefoxBinary;
+import org.openqa.selenium.firefox.FirefoxProfile;
+import org.openqa.selenium.internal.SocketLock;
+import org.openqa.selenium.net.PortProber;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Starts several connections at once against fake browsers that take a while to boot, to check
+ * that startups overlap rather than queue up behind each other.
+ */
+public class NewProfileExtensionConnectionTest {
+
+  private static final int BROWSERS = 4;
+  private static final long BOOT_TIME = 1000;
+
+  private static final Pattern PORT =
+      Pattern.compile("user_pref\\(\"" + FirefoxProfile.PORT_PREFERENCE + "\", (\\d+)\\);");
+
+  private File executable;
+  private int lockPort;
+  private List<NewProfileExtensionConnection> connections;
+
+  @Before
+  public void setUp() throws IOException {
+    executable = File.createTempFile("firefox", "bin");
+    lockPort = PortProber.findFreePort();
+    connections = new ArrayList<NewProfileExtensionConnection>();
+  }
+
+  @After
+  public void tearDown() {
+    for (NewProfileExtensionConnection connection : connections) {
+      connection.quit();
+    }
+    executable.delete();
+  }
+
+  @Test
+  public void startsSeveralBrowsersConcurrently() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(BROWSERS);
+    List<Future<FakeBinary>> started = new ArrayList<Future<FakeBinary>>();
+    long start = System.currentTimeMillis();
+    try {
+      for (int i = 0; i < BROWSERS; i++) {
+        started.add(executor.submit(new Callable<FakeBinary>() {
+          public FakeBinary call() throws Exception {
+            FakeBinary binary = new FakeBinary(executable);
+            NewProfileExtensionConnection connection = connect(binary);
+            connection.start();
+            return binary;
+          }
+        }));
+      }
+
+      Set<Integer> ports = new HashSet<Integer>();
+      for (Future<FakeBinary> future : started) {
+        ports.add(future.get().port);
+      }
+      long elapsed = System.currentTimeMillis() - start;
+
+      assertEquals(BROWSERS, ports.size());
+      assertTrue(String.format("%d browsers took %dms to start", BROWSERS, elapsed),
+          elapsed < BROWSERS * BOOT_TIME);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void releasesThePortOnceTheBrowserIsListening() throws Exception {
+    FakeBinary binary = new FakeBinary(executable);
+
+    connect(binary).start();
+
+    assertTrue(binary.port > 0);
+    assertFalse(PortReservations.getDefault().isReserved(binary.port));
+  }
+
+  private synchronized NewProfileExtensionConnection connect(FakeBinary binary) throws Exception {
+    NewProfileExtensionConnection connection = new NewProfileExtensionConnection(
+        new SocketLock(lockPort), binary, new FirefoxProfile(), "localhost") {
+      @Override
+      protected void addWebDriverExtensionIfNeeded() {
+        // The fake browser doesn't need the extension.
+      }
+    };
+    connections.add(connection);
+    return connection;
+  }
+
+  /**
+   * Starts listening on the port in the profile's preferences a while after it is launched.
+   */
+  private static class FakeBinary extends FirefoxBinary {
+    private volatile ServerSocket server;
+    private volatile int port;
+
+    FakeBinary(File executable) {
+      super(executable);
+    }
+
+    @Override
+    public void clean(FirefoxProfile profile, File profileDir) {
+      // Nothing to clean.
+    }
+
+    @Override
+    public void startProfile(FirefoxProfile profile, File profileDir, String... commandLineFlags)
+        throws IOException {
+      String prefs = Files.toString(new File(profileDir, "user.js"), Charsets.UTF_8);
+      Matcher matcher = PORT.matcher(prefs);
+      assertTrue(matcher.find());
+      port = Integer.parseInt(matcher.group(1));
+
+      new Thread("fake firefox on port " + port) {
+        @Override
+        public void run() {
+          try {
+            Thread.sleep(BOOT_TIME);
+            ServerSocket socket = new ServerSocket();
+            socket.bind(new InetSocketAddress("127.0.0.1", port));
+            server = socket;
+          } catch (Exception e) {
+            // The connection will time out.
+          }
+        }
+      }.start();
+    }
+
+    @Override
+    public String getConsoleOutput() {
+      return "";
+    }
+
+    @Override
+    public void quit() {
+      try {
+        if (server != null) {
+          server.close();
+        }
+      } catch (IOException ignored) {
+        // Nothing sane to do. Ignore this.
+      }
+    }
+  }
+}
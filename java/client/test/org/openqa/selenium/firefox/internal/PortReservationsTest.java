@@ -0,0 +1,94 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.firefox.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.net.PortProber;
+
+public class PortReservationsTest {
+
+  private PortReservations reservations;
+  private PortReservations otherProcess;
+  private int from;
+
+  @Before
+  public void setUp() {
+    reservations = new PortReservations();
+    otherProcess = new PortReservations();
+    from = PortProber.findFreePort();
+  }
+
+  @After
+  public void tearDown() {
+    for (int port = from; port < from + 10; port++) {
+      reservations.release(port);
+      otherProcess.release(port);
+    }
+  }
+
+  @Test
+  public void neverHandsOutTheSamePortTwice() {
+    int first = reservations.reserve(from);
+    int second = reservations.reserve(from);
+
+    assertTrue(first != second);
+    assertTrue(reservations.isReserved(first));
+    assertTrue(reservations.isReserved(second));
+  }
+
+  @Test
+  public void aReleasedPortCanBeReservedAgain() {
+    int port = reservations.reserve(from);
+
+    reservations.release(port);
+
+    assertFalse(reservations.isReserved(port));
+    assertEquals(port, reservations.reserve(port));
+  }
+
+  @Test
+  public void reservesPortsTooNearTheTopOfTheRangeForACompanionPort() {
+    int top = PortReservations.MAX_PORT - 5;
+    int first = reservations.reserve(top);
+    int second = reservations.reserve(top);
+    try {
+      assertTrue(first >= top && first <= PortReservations.MAX_PORT);
+      assertTrue(second >= top && second <= PortReservations.MAX_PORT);
+      assertTrue(first != second);
+    } finally {
+      reservations.release(first);
+      reservations.release(second);
+    }
+  }
+
+  @Test
+  public void reservationsAreHonouredAcrossInstances() {
+    int port = reservations.reserve(from);
+
+    assertTrue(otherProcess.reserve(port) != port);
+
+    reservations.release(port);
+    assertEquals(port, otherProcess.reserve(port));
+  }
+}
@@ -0,0 +1,123 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.firefox.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.io.TemporaryFilesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class ProfileTemplateCacheTest {
+
+  private ProfileTemplateCache cache;
+  private File model;
+  private CountingLayout layout;
+
+  @Before
+  public void setUp() throws IOException {
+    cache = new ProfileTemplateCache();
+    model = TemporaryFilesystem.getDefaultTmpFS().createTempDir("model", "profile");
+    Files.write("user_pref(\"cheese\", \"brie\");", new File(model, "prefs.js"), Charsets.UTF_8);
+    layout = new CountingLayout();
+  }
+
+  @After
+  public void tearDown() {
+    cache.clear();
+    TemporaryFilesystem.getDefaultTmpFS().deleteTempDir(model);
+  }
+
+  @Test
+  public void laysOutATemplateOnlyOnceForTheSameModel() throws IOException {
+    File first = cache.getTemplate(model, noExtensions(), layout);
+    File second = cache.getTemplate(model, noExtensions(), layout);
+
+    assertEquals(first, second);
+    assertEquals(1, layout.count);
+    assertTrue(new File(first, "prefs.js").exists());
+  }
+
+  @Test
+  public void laysOutANewTemplateWhenTheModelChanges() throws IOException {
+    File first = cache.getTemplate(model, noExtensions(), layout);
+    Files.write("user_pref(\"cheese\", \"cheddar\");", new File(model, "prefs.js"), Charsets.UTF_8);
+
+    File second = cache.getTemplate(model, noExtensions(), layout);
+
+    assertFalse(first.equals(second));
+    assertEquals(2, layout.count);
+  }
+
+  @Test
+  public void doesNotCacheExtensionsWhoseContentsAreUnknown() throws IOException {
+    SortedMap<String, Extension> extensions = noExtensions();
+    extensions.put("custom", new Extension() {
+      public void writeTo(File parentDirectory) {
+      }
+    });
+
+    assertNull(cache.getTemplate(model, extensions, layout));
+    assertEquals(0, layout.count);
+  }
+
+  @Test
+  public void laysOutATemplateAgainWhenItHasBeenDeleted() throws IOException {
+    File first = cache.getTemplate(model, noExtensions(), layout);
+    TemporaryFilesystem.getDefaultTmpFS().deleteTempDir(first);
+
+    File second = cache.getTemplate(model, noExtensions(), layout);
+
+    assertTrue(new File(second, "prefs.js").exists());
+    assertEquals(2, layout.count);
+  }
+
+  @Test
+  public void clearingTheCacheDeletesTemplates() throws IOException {
+    File template = cache.getTemplate(model, noExtensions(), layout);
+
+    cache.clear();
+
+    assertFalse(template.exists());
+  }
+
+  private SortedMap<String, Extension> noExtensions() {
+    return new TreeMap<String, Extension>();
+  }
+
+  private class CountingLayout implements ProfileTemplateCache.Layout {
+    int count;
+
+    public void writeTo(File profileDir) throws IOException {
+      count++;
+      Files.copy(new File(model, "prefs.js"), new File(profileDir, "prefs.js"));
+    }
+  }
+}
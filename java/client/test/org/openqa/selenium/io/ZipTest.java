@@ -23,6 +23,7 @@
 import org.junit.Test;
 import org.openqa.selenium.testing.InProject;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -30,6 +31,7 @@
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -92,6 +94,20 @@ public void testShouldZipMultipleDirectories() throws IOException {
     assertZipContains(output, "subdir2/fishy/food.txt");
   }
 
+  @Test
+  public void testZippingTheSameContentsGivesTheSameBytes() throws IOException {
+    touch(new File(inputDir, "subdir/example.txt"));
+    touch(new File(inputDir, "other.txt"));
+
+    ByteArrayOutputStream first = new ByteArrayOutputStream();
+    zip.zip(inputDir, first);
+    assertTrue(new File(inputDir, "other.txt").setLastModified(0));
+    ByteArrayOutputStream second = new ByteArrayOutputStream();
+    zip.zip(inputDir, second);
+
+    assertArrayEquals(first.toByteArray(), second.toByteArray());
+  }
+
   @Test
   public void testCanUnzipASingleEntry() throws IOException {
     File source = InProject.locate(
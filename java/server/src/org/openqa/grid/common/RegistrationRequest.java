@@ -17,7 +17,10 @@
 
 package org.openqa.grid.common;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -42,6 +45,7 @@
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Logger;
 
 /**
@@ -83,6 +87,7 @@ public class RegistrationRequest {
   public static final String REMOTE_HOST = "remoteHost";
 
   public static final String MAX_SESSION = "maxSession";
+  public static final String WEIGHT = "weight";
   public static final String AUTO_REGISTER = "register";
 
   // polling nodes params
@@ -160,6 +165,22 @@ public String toJSON() {
     return res.toString();
   }
 
+  /**
+   * @return a hash of the capabilities and configuration, the same for two requests registering
+   *         the same node the same way whatever the order of their keys.
+   */
+  public String getHash() {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putString(String.valueOf(id), Charsets.UTF_8);
+    hasher.putString(String.valueOf(name), Charsets.UTF_8);
+    hasher.putString(String.valueOf(description), Charsets.UTF_8);
+    hasher.putString(new TreeMap<String, Object>(configuration).toString(), Charsets.UTF_8);
+    for (DesiredCapabilities c : capabilities) {
+      hasher.putString(new TreeMap<String, Object>(c.asMap()).toString(), Charsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
   public JSONObject getAssociatedJSON() {
 
     JSONObject res = new JSONObject();
@@ -487,6 +508,9 @@ private void loadFromCommandLine(String[] args) {
     if (helper.isParamPresent("-maxSession")) {
       configuration.put(MAX_SESSION, Integer.parseInt(helper.getParamValue("-maxSession")));
     }
+    if (helper.isParamPresent("-" + WEIGHT)) {
+      configuration.put(WEIGHT, Double.parseDouble(helper.getParamValue("-" + WEIGHT)));
+    }
     if (helper.isParamPresent("-" + AUTO_REGISTER)) {
       configuration.put(AUTO_REGISTER,
           Boolean.parseBoolean(helper.getParamValue("-" + AUTO_REGISTER)));
@@ -17,49 +17,95 @@
 
 package org.openqa.grid.internal;
 
+import com.google.common.collect.Iterators;
+
 import net.jcip.annotations.ThreadSafe;
 import org.openqa.grid.common.exception.GridException;
 
+import java.util.AbstractSet;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 /**
- * The set of active test sessions.
+ * The set of active test sessions, indexed by internal and by external key.
+ * <p/>
+ * A session is added before the remote has told us its external key, and
+ * {@link TestSession#setExternalKey} does not know about this class. Sessions added without an
+ * external key are therefore kept aside, and moved to the external index the first time a lookup
+ * misses it. Only sessions still being created are ever scanned.
  */
 @ThreadSafe
 class ActiveTestSessions {
 
   private static final Logger log = Logger.getLogger(ActiveTestSessions.class.getName());
 
-  private final Set<TestSession> activeTestSessions = new CopyOnWriteArraySet<TestSession>();
+  static final int MAX_TERMINATED_SESSIONS = 1000;
+
+  private final ConcurrentMap<String, TestSession> byInternalKey =
+      new ConcurrentHashMap<String, TestSession>();
+  private final ConcurrentMap<ExternalSessionKey, TestSession> byExternalKey =
+      new ConcurrentHashMap<ExternalSessionKey, TestSession>();
+  private final Set<TestSession> withoutExternalKey =
+      Collections.newSetFromMap(new ConcurrentHashMap<TestSession, Boolean>());
+
+  private final Map<ExternalSessionKey, SessionTerminationReason> reasons =
+      Collections.synchronizedMap(
+          new LinkedHashMap<ExternalSessionKey, SessionTerminationReason>() {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<ExternalSessionKey, SessionTerminationReason> eldest) {
+              return size() > MAX_TERMINATED_SESSIONS;
+            }
+          });
+
+  private final Set<TestSession> view = new AbstractSet<TestSession>() {
+    @Override
+    public Iterator<TestSession> iterator() {
+      return Iterators.unmodifiableIterator(byInternalKey.values().iterator());
+    }
 
-  private final
-  Queue<ExternalSessionKey>
-      terminatedSessions =
-      new ConcurrentLinkedQueue<ExternalSessionKey>();
-  private final
-  Map<ExternalSessionKey, SessionTerminationReason>
-      reasons =
-      new ConcurrentHashMap<ExternalSessionKey, SessionTerminationReason>();
+    @Override
+    public int size() {
+      return byInternalKey.size();
+    }
 
+    @Override
+    public boolean contains(Object o) {
+      return o instanceof TestSession
+             && o.equals(byInternalKey.get(((TestSession) o).getInternalKey()));
+    }
+  };
 
   public boolean add(TestSession testSession) {
-    final boolean added = activeTestSessions.add(testSession);
+    final boolean added =
+        byInternalKey.putIfAbsent(testSession.getInternalKey(), testSession) == null;
     if (!added) {
       log.severe("Error adding session : " + testSession);
+      return false;
+    }
+    ExternalSessionKey externalKey = testSession.getExternalKey();
+    if (externalKey != null) {
+      byExternalKey.put(externalKey, testSession);
+    } else {
+      withoutExternalKey.add(testSession);
     }
-    return added;
+    return true;
   }
 
   public boolean remove(TestSession o, SessionTerminationReason reason) {
     updateReason(o, reason);
-    return activeTestSessions.remove(o);
+    withoutExternalKey.remove(o);
+    ExternalSessionKey externalKey = o.getExternalKey();
+    if (externalKey != null) {
+      byExternalKey.remove(externalKey, o);
+    }
+    return byInternalKey.remove(o.getInternalKey(), o);
   }
 
   private void updateReason(TestSession o, SessionTerminationReason reason) {
@@ -72,25 +118,14 @@ private void updateReason(TestSession o, SessionTerminationReason reason) {
       return;
     }
 
-    terminatedSessions.add(o.getExternalKey());
     reasons.put(o.getExternalKey(), reason);
-    if (reasons.size() > 1000) {
-      ExternalSessionKey remove = terminatedSessions.remove();
-      reasons.remove(remove);
-    }
   }
 
   public TestSession findSessionByInternalKey(String internalKey) {
     if (internalKey == null) {
       return null;
     }
-
-    for (TestSession session : activeTestSessions) {
-      if (internalKey.equals(session.getInternalKey())) {
-        return session;
-      }
-    }
-    return null;
+    return byInternalKey.get(internalKey);
   }
 
   public TestSession getExistingSession(ExternalSessionKey externalkey) {
@@ -103,7 +138,8 @@ public TestSession getExistingSession(ExternalSessionKey externalkey) {
           log.fine(msg);
           throw new GridException(msg);
       } else {
-          String msg = "Session [" + keyId + "] not available and is not among the last 1000 terminated sessions.\n"
+          String msg = "Session [" + keyId + "] not available and is not among the last "
+                  + MAX_TERMINATED_SESSIONS + " terminated sessions.\n"
                   + "Active sessions are" + this.unmodifiableSet();
           log.fine(msg);
           throw new GridException(msg);
@@ -117,16 +153,47 @@ public TestSession findSessionByExternalKey(ExternalSessionKey externalkey) {
       return null;
     }
 
-    for (TestSession session : activeTestSessions) {
-      if (externalkey.equals(session.getExternalKey())) {
+    TestSession session = byExternalKey.get(externalkey);
+    if (session != null) {
+      boolean active = session.equals(byInternalKey.get(session.getInternalKey()));
+      if (active && externalkey.equals(session.getExternalKey())) {
         return session;
       }
+      // Removed while being indexed, or given another key since.
+      byExternalKey.remove(externalkey, session);
+      if (active) {
+        withoutExternalKey.add(session);
+      }
+    }
+    return indexSessionsGivenAnExternalKey(externalkey);
+  }
+
+  /**
+   * Moves the sessions that have been given an external key since they were added to the external
+   * index.
+   *
+   * @return the session with the given key, if it was one of them.
+   */
+  private TestSession indexSessionsGivenAnExternalKey(ExternalSessionKey externalkey) {
+    TestSession found = null;
+    for (TestSession session : withoutExternalKey) {
+      ExternalSessionKey key = session.getExternalKey();
+      if (key == null) {
+        continue;
+      }
+      if (withoutExternalKey.remove(session)
+          && byInternalKey.containsKey(session.getInternalKey())) {
+        byExternalKey.put(key, session);
+      }
+      if (key.equals(externalkey)) {
+        found = session;
+      }
     }
-    return null;
+    return found;
   }
 
   public Set<TestSession> unmodifiableSet() {
-    return Collections.unmodifiableSet(activeTestSessions);
+    return view;
   }
 
 }
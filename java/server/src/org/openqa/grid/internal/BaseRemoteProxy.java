@@ -31,6 +31,7 @@
 import org.openqa.grid.internal.utils.CapabilityMatcher;
 import org.openqa.grid.internal.utils.DefaultHtmlRenderer;
 import org.openqa.grid.internal.utils.HtmlRenderer;
+import org.openqa.grid.internal.utils.TimerWheel;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.remote.internal.HttpClientFactory;
 
@@ -43,6 +44,7 @@
 import java.net.URL;
 import java.security.InvalidParameterException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -74,7 +76,7 @@ public class BaseRemoteProxy implements RemoteProxy {
   private final String id;
 
   private volatile boolean stop = false;
-  private CleanUpThread cleanUpThread;
+  private CleanUpTask cleanUpTask;
 
   // connection and socket timeout for getStatus node alive check
   // 0 means default timeouts of grid http client will be used.
@@ -211,13 +213,12 @@ private String getPath(DesiredCapabilities capability) {
   }
 
   public void setupTimeoutListener() {
-    cleanUpThread = null;
+    cleanUpTask = null;
     if (this instanceof TimeoutListener) {
       if (cleanUpCycle > 0 && timeOutMs > 0) {
-        log.fine("starting cleanup thread");
-        cleanUpThread = new CleanUpThread(this);
-        new Thread(cleanUpThread, "RemoteProxy CleanUpThread for " + getId())
-            .start(); // Thread safety reviewed (hopefully ;)
+        log.fine("scheduling the slot clean up");
+        cleanUpTask = new CleanUpTask(this);
+        cleanUpTask.schedule();
       }
     }
   }
@@ -251,34 +252,50 @@ public String getId() {
 
   public void teardown() {
     stop = true;
+    CleanUpTask task = cleanUpTask;
+    if (task != null) {
+      task.cancel();
+    }
   }
 
   /**
    * Internal use only
    */
   public void forceSlotCleanerRun() {
-    cleanUpThread.cleanUpAllSlots();
+    cleanUpTask.cleanUpAllSlots();
   }
 
-  class CleanUpThread implements Runnable {
+  /**
+   * Looks for timed out and orphaned sessions every clean up cycle. It runs on the registry timer
+   * rather than on a thread of its own, so an idle proxy costs nothing.
+   */
+  class CleanUpTask implements Runnable {
 
-    private BaseRemoteProxy proxy;
+    private final BaseRemoteProxy proxy;
+    private volatile TimerWheel.Timeout next;
 
-    public CleanUpThread(BaseRemoteProxy proxy) {
+    public CleanUpTask(BaseRemoteProxy proxy) {
       this.proxy = proxy;
     }
 
-    public void run() {
+    void schedule() {
+      if (!proxy.stop) {
+        next = registry.getTimer().schedule(this, cleanUpCycle, TimeUnit.MILLISECONDS);
+      }
+    }
 
-      log.fine("cleanup thread starting...");
-      while (!proxy.stop) {
-        try {
-          Thread.sleep(cleanUpCycle);
-        } catch (InterruptedException e) {
-          log.severe("clean up thread died. " + e.getMessage());
-        }
+    void cancel() {
+      TimerWheel.Timeout timeout = next;
+      if (timeout != null) {
+        timeout.cancel();
+      }
+    }
 
+    public void run() {
+      try {
         cleanUpAllSlots();
+      } finally {
+        schedule();
       }
     }
 
@@ -295,6 +312,11 @@ void cleanUpAllSlots() {
 
     private void cleanUpSlot(TestSlot slot) {
       TestSession session = slot.getSession();
+      if (session != null && registry.isServedByAnotherHub(session)) {
+        log.info("session " + session + " is now served by another hub and will be forgotten");
+        registry.forceRelease(slot, SessionTerminationReason.SERVED_BY_ANOTHER_HUB);
+        return;
+      }
       if (session != null) {
         long inactivity = session.getInactivityTime();
         boolean hasTimedOut = inactivity > timeOutMs;
@@ -457,7 +479,8 @@ public boolean equals(Object obj) {
     return true;
   }
 
-  // less busy to more busy.
+  // less busy to more busy. The hub asks the proxies in the order of its LoadBalancingStrategy,
+  // which doesn't call this.
   public int compareTo(RemoteProxy o) {
     if (o == null) {
       return -1;
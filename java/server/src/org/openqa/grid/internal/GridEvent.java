@@ -0,0 +1,108 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Something that happened on the grid, as sent to the
+ * {@link org.openqa.grid.internal.listeners.GridEventListener}s.
+ */
+public class GridEvent {
+
+  public enum Type {
+    PROXY_ADDED("proxyAdded"),
+    PROXY_REMOVED("proxyRemoved"),
+    NODE_DOWN("nodeDown"),
+    NODE_UP("nodeUp"),
+    SLOT_ACQUIRED("slotAcquired"),
+    SLOT_RELEASED("slotReleased"),
+    REQUEST_QUEUED("requestQueued"),
+    REQUEST_MATCHED("requestMatched"),
+    REQUEST_TIMED_OUT("requestTimedOut");
+
+    private final String name;
+
+    private Type(String name) {
+      this.name = name;
+    }
+
+    /**
+     * @return the name of the event as sent to clients.
+     */
+    public String getName() {
+      return name;
+    }
+  }
+
+  private final long id;
+  private final long time;
+  private final Type type;
+  private final Map<String, Object> data;
+
+  GridEvent(long id, Type type, Map<String, Object> data) {
+    this.id = id;
+    this.time = System.currentTimeMillis();
+    this.type = type;
+    this.data = Collections.unmodifiableMap(data);
+  }
+
+  /**
+   * @return a number that goes up with every event sent by the registry.
+   */
+  public long getId() {
+    return id;
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * @return what the event is about, like the id of the proxy or the key of the session.
+   */
+  public Map<String, Object> getData() {
+    return data;
+  }
+
+  public JSONObject toJSON() {
+    try {
+      // JSONObject keeps the map it is given, so give it one it can add to.
+      JSONObject res = new JSONObject(new LinkedHashMap<String, Object>(data));
+      res.put("type", type.getName());
+      res.put("time", time);
+      return res;
+    } catch (JSONException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return type.getName() + " " + data;
+  }
+}
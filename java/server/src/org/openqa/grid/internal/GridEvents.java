@@ -0,0 +1,159 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.openqa.grid.internal.GridEvent.Type;
+import org.openqa.grid.internal.listeners.GridEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends what happens on the grid to the listeners that asked for it, so that monitoring doesn't
+ * have to poll the registry. Nothing is built when no one is listening.
+ */
+@ThreadSafe
+public class GridEvents {
+
+  private static final Logger log = Logger.getLogger(GridEvents.class.getName());
+
+  private final List<GridEventListener> listeners = new CopyOnWriteArrayList<GridEventListener>();
+  private final AtomicLong ids = new AtomicLong();
+
+  public void addListener(GridEventListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(GridEventListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * @return the id of the last event sent.
+   */
+  public long getLastEventId() {
+    return ids.get();
+  }
+
+  void proxyAdded(RemoteProxy proxy) {
+    if (!listeners.isEmpty()) {
+      Map<String, Object> data = proxyData(proxy);
+      data.put("slots", proxy.getTestSlots().size());
+      fire(Type.PROXY_ADDED, data);
+    }
+  }
+
+  void proxyRemoved(RemoteProxy proxy) {
+    if (!listeners.isEmpty()) {
+      fire(Type.PROXY_REMOVED, proxyData(proxy));
+    }
+  }
+
+  /**
+   * The node behind the proxy could not be reached, and no new session will be started on it
+   * until it can be again.
+   */
+  public void nodeDown(RemoteProxy proxy) {
+    if (!listeners.isEmpty()) {
+      fire(Type.NODE_DOWN, proxyData(proxy));
+    }
+  }
+
+  /**
+   * The node behind a proxy that was down can be reached again.
+   */
+  public void nodeUp(RemoteProxy proxy) {
+    if (!listeners.isEmpty()) {
+      fire(Type.NODE_UP, proxyData(proxy));
+    }
+  }
+
+  void slotAcquired(TestSession session) {
+    if (!listeners.isEmpty()) {
+      fire(Type.SLOT_ACQUIRED, sessionData(session));
+    }
+  }
+
+  void slotReleased(TestSession session, SessionTerminationReason reason) {
+    if (!listeners.isEmpty()) {
+      Map<String, Object> data = sessionData(session);
+      data.put("reason", reason.name());
+      fire(Type.SLOT_RELEASED, data);
+    }
+  }
+
+  void requestQueued(Map<String, Object> desiredCapabilities) {
+    if (!listeners.isEmpty()) {
+      fire(Type.REQUEST_QUEUED, requestData(desiredCapabilities));
+    }
+  }
+
+  void requestMatched(Map<String, Object> desiredCapabilities, TestSession session) {
+    if (!listeners.isEmpty()) {
+      Map<String, Object> data = requestData(desiredCapabilities);
+      data.putAll(sessionData(session));
+      fire(Type.REQUEST_MATCHED, data);
+    }
+  }
+
+  /**
+   * A new session request waited longer than the new session wait timeout for a slot.
+   */
+  public void requestTimedOut(Map<String, Object> desiredCapabilities) {
+    if (!listeners.isEmpty()) {
+      fire(Type.REQUEST_TIMED_OUT, requestData(desiredCapabilities));
+    }
+  }
+
+  private void fire(Type type, Map<String, Object> data) {
+    GridEvent event = new GridEvent(ids.incrementAndGet(), type, data);
+    for (GridEventListener listener : listeners) {
+      try {
+        listener.onEvent(event);
+      } catch (Throwable t) {
+        log.log(Level.WARNING, "Error sending " + event + " to " + listener, t);
+      }
+    }
+  }
+
+  private static Map<String, Object> proxyData(RemoteProxy proxy) {
+    Map<String, Object> data = new LinkedHashMap<String, Object>();
+    data.put("proxy", proxy.getId());
+    return data;
+  }
+
+  private static Map<String, Object> sessionData(TestSession session) {
+    Map<String, Object> data = proxyData(session.getSlot().getProxy());
+    data.put("session", session.getInternalKey());
+    data.put("capabilities", session.getSlot().getCapabilities());
+    return data;
+  }
+
+  private static Map<String, Object> requestData(Map<String, Object> desiredCapabilities) {
+    Map<String, Object> data = new LinkedHashMap<String, Object>();
+    data.put("desiredCapabilities", desiredCapabilities);
+    return data;
+  }
+}
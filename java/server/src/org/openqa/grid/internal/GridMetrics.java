@@ -0,0 +1,244 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openqa.grid.internal.utils.Histogram;
+import org.openqa.selenium.remote.CapabilityType;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How long things take on the grid, by capability signature (browser, version and platform
+ * requested), to size the nodes and to tell the time spent in the hub from the time spent on the
+ * nodes :
+ * <ul>
+ * <li>queueTime : how long new session requests wait for a slot, including the ones that timed
+ * out.</li>
+ * <li>sessionDuration : from the slot being taken to it being released.</li>
+ * <li>hubOverhead and nodeTime : each forwarded command, split between what the hub does and the
+ * wait for the node to answer. nodeTime runs from sending the request to having read the whole
+ * response body, so a slow transfer from the node isn't counted against the hub.</li>
+ * </ul>
+ * Available as JSON on grid/api/metrics/ and over JMX. The hub only records these, forecasting the
+ * capacity needed from them is left to whatever reads them.
+ */
+@ThreadSafe
+public class GridMetrics implements GridMetricsMXBean {
+
+  // signatures come from the clients. Bound them so that odd capabilities can't fill the hub.
+  static final int MAX_SIGNATURES = 64;
+  static final String OTHER = "other";
+
+  private final ConcurrentMap<String, CapabilityMetrics> bySignature =
+      new ConcurrentHashMap<String, CapabilityMetrics>();
+  // the signatures in bySignature, other than OTHER, counted before they are added.
+  private final AtomicInteger signatures = new AtomicInteger();
+
+  /**
+   * @return browser:version:platform, with "any" for what wasn't requested.
+   */
+  public static String getSignature(Map<String, Object> capabilities) {
+    return value(capabilities, CapabilityType.BROWSER_NAME) + ":"
+           + value(capabilities, CapabilityType.VERSION) + ":"
+           + value(capabilities, CapabilityType.PLATFORM);
+  }
+
+  private static String value(Map<String, Object> capabilities, String key) {
+    Object o = capabilities == null ? null : capabilities.get(key);
+    String s = o == null ? "" : o.toString().trim();
+    return s.isEmpty() || "ANY".equalsIgnoreCase(s) ? "any" : s;
+  }
+
+  public CapabilityMetrics get(Map<String, Object> capabilities) {
+    String signature = getSignature(capabilities);
+    CapabilityMetrics metrics = bySignature.get(signature);
+    if (metrics != null) {
+      return metrics;
+    }
+    boolean counted = countSignature();
+    if (!counted) {
+      signature = OTHER;
+    }
+    metrics = new CapabilityMetrics();
+    CapabilityMetrics previous = bySignature.putIfAbsent(signature, metrics);
+    if (previous != null) {
+      if (counted) {
+        signatures.decrementAndGet();
+      }
+      return previous;
+    }
+    return metrics;
+  }
+
+  /**
+   * @return true if there is room for one more signature, which is then counted.
+   */
+  private boolean countSignature() {
+    while (true) {
+      int count = signatures.get();
+      if (count >= MAX_SIGNATURES) {
+        return false;
+      }
+      if (signatures.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * @return the metrics by signature, sorted.
+   */
+  public Map<String, CapabilityMetrics> getAll() {
+    return new TreeMap<String, CapabilityMetrics>(bySignature);
+  }
+
+  /**
+   * A new session request got a slot.
+   */
+  public void requestMatched(Map<String, Object> desiredCapabilities, long waitedNanos) {
+    get(desiredCapabilities).queueTime.record(micros(waitedNanos));
+  }
+
+  /**
+   * A new session request gave up waiting for a slot.
+   */
+  public void requestTimedOut(Map<String, Object> desiredCapabilities, long waitedNanos) {
+    CapabilityMetrics metrics = get(desiredCapabilities);
+    metrics.queueTime.record(micros(waitedNanos));
+    metrics.timedOut.incrementAndGet();
+  }
+
+  void sessionEnded(TestSession session) {
+    get(session.getRequestedCapabilities()).sessionDuration
+        .record(micros(System.nanoTime() - session.getStartedAt()));
+  }
+
+  void forwarded(TestSession session, long totalNanos, long nodeNanos) {
+    CapabilityMetrics metrics = get(session.getRequestedCapabilities());
+    metrics.nodeTime.record(micros(nodeNanos));
+    metrics.hubOverhead.record(micros(totalNanos - nodeNanos));
+  }
+
+  private static long micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  public JSONObject toJSON() {
+    try {
+      JSONObject res = new JSONObject();
+      for (Map.Entry<String, CapabilityMetrics> entry : getAll().entrySet()) {
+        res.put(entry.getKey(), entry.getValue().toJSON());
+      }
+      return res;
+    } catch (JSONException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public Map<String, Histogram.Snapshot> getQueueTimes() {
+    Map<String, Histogram.Snapshot> res = new TreeMap<String, Histogram.Snapshot>();
+    for (Map.Entry<String, CapabilityMetrics> entry : bySignature.entrySet()) {
+      res.put(entry.getKey(), entry.getValue().getQueueTime().getSnapshot());
+    }
+    return res;
+  }
+
+  public Map<String, Histogram.Snapshot> getSessionDurations() {
+    Map<String, Histogram.Snapshot> res = new TreeMap<String, Histogram.Snapshot>();
+    for (Map.Entry<String, CapabilityMetrics> entry : bySignature.entrySet()) {
+      res.put(entry.getKey(), entry.getValue().getSessionDuration().getSnapshot());
+    }
+    return res;
+  }
+
+  public Map<String, Histogram.Snapshot> getHubOverheads() {
+    Map<String, Histogram.Snapshot> res = new TreeMap<String, Histogram.Snapshot>();
+    for (Map.Entry<String, CapabilityMetrics> entry : bySignature.entrySet()) {
+      res.put(entry.getKey(), entry.getValue().getHubOverhead().getSnapshot());
+    }
+    return res;
+  }
+
+  public Map<String, Histogram.Snapshot> getNodeTimes() {
+    Map<String, Histogram.Snapshot> res = new TreeMap<String, Histogram.Snapshot>();
+    for (Map.Entry<String, CapabilityMetrics> entry : bySignature.entrySet()) {
+      res.put(entry.getKey(), entry.getValue().getNodeTime().getSnapshot());
+    }
+    return res;
+  }
+
+  public Map<String, Long> getTimedOutRequests() {
+    Map<String, Long> res = new TreeMap<String, Long>();
+    for (Map.Entry<String, CapabilityMetrics> entry : bySignature.entrySet()) {
+      res.put(entry.getKey(), entry.getValue().getTimedOut());
+    }
+    return res;
+  }
+
+  public static class CapabilityMetrics {
+    private final Histogram queueTime = new Histogram();
+    private final Histogram sessionDuration = new Histogram();
+    private final Histogram hubOverhead = new Histogram();
+    private final Histogram nodeTime = new Histogram();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public Histogram getQueueTime() {
+      return queueTime;
+    }
+
+    public Histogram getSessionDuration() {
+      return sessionDuration;
+    }
+
+    public Histogram getHubOverhead() {
+      return hubOverhead;
+    }
+
+    public Histogram getNodeTime() {
+      return nodeTime;
+    }
+
+    public long getTimedOut() {
+      return timedOut.get();
+    }
+
+    public JSONObject toJSON() {
+      try {
+        JSONObject res = new JSONObject();
+        res.put("timedOut", timedOut.get());
+        res.put("queueTime", queueTime.toJSON());
+        res.put("sessionDuration", sessionDuration.toJSON());
+        res.put("hubOverhead", hubOverhead.toJSON());
+        res.put("nodeTime", nodeTime.toJSON());
+        return res;
+      } catch (JSONException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import org.openqa.grid.internal.utils.Histogram;
+
+import java.util.Map;
+
+/**
+ * The timings of the hub over JMX, by capability signature, in milliseconds.
+ *
+ * @see GridMetrics
+ */
+public interface GridMetricsMXBean {
+
+  public Map<String, Histogram.Snapshot> getQueueTimes();
+
+  public Map<String, Histogram.Snapshot> getSessionDurations();
+
+  public Map<String, Histogram.Snapshot> getHubOverheads();
+
+  public Map<String, Histogram.Snapshot> getNodeTimes();
+
+  public Map<String, Long> getTimedOutRequests();
+}
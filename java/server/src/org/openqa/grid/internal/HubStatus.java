@@ -0,0 +1,89 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing the state of the grid, kept up to date by the {@link Registry} as proxies
+ * come and go and slots are taken and released, so that status pages don't have to walk every
+ * proxy and slot to build them.
+ * <p/>
+ * The version goes up on every change, including changes to the queue of new session requests.
+ * Anything rendered from the registry can be kept until the version moves on.
+ */
+@ThreadSafe
+public class HubStatus {
+
+  private final AtomicInteger proxies = new AtomicInteger();
+  private final AtomicInteger totalSlots = new AtomicInteger();
+  private final AtomicInteger usedSlots = new AtomicInteger();
+  private final AtomicLong version = new AtomicLong();
+
+  void proxyAdded(RemoteProxy proxy) {
+    proxies.incrementAndGet();
+    totalSlots.addAndGet(proxy.getTestSlots().size());
+    changed();
+  }
+
+  void proxyRemoved(RemoteProxy proxy) {
+    proxies.decrementAndGet();
+    totalSlots.addAndGet(-proxy.getTestSlots().size());
+    changed();
+  }
+
+  void slotTaken() {
+    usedSlots.incrementAndGet();
+    changed();
+  }
+
+  void slotReleased() {
+    usedSlots.decrementAndGet();
+    changed();
+  }
+
+  void changed() {
+    version.incrementAndGet();
+  }
+
+  /**
+   * @return a number that changes each time anything on the grid does.
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  public int getProxyCount() {
+    return proxies.get();
+  }
+
+  public int getTotalSlots() {
+    return totalSlots.get();
+  }
+
+  public int getUsedSlots() {
+    return usedSlots.get();
+  }
+
+  public int getFreeSlots() {
+    return Math.max(0, getTotalSlots() - getUsedSlots());
+  }
+}
@@ -0,0 +1,101 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * How evenly the sessions are spread on the proxies, measured on the share of its sessions each
+ * proxy uses, in percent. A standard deviation close to 0 means the proxies are as busy as each
+ * other.
+ */
+public class LoadSpread {
+
+  private final int proxies;
+  private final float min;
+  private final float max;
+  private final float mean;
+  private final float standardDeviation;
+
+  LoadSpread(Iterable<RemoteProxy> proxies) {
+    int count = 0;
+    float min = 0;
+    float max = 0;
+    double sum = 0;
+    double squares = 0;
+    for (RemoteProxy proxy : proxies) {
+      float usage = proxy.getResourceUsageInPercent();
+      if (count == 0 || usage < min) {
+        min = usage;
+      }
+      if (count == 0 || usage > max) {
+        max = usage;
+      }
+      sum += usage;
+      squares += usage * usage;
+      count++;
+    }
+    this.proxies = count;
+    this.min = min;
+    this.max = max;
+    double mean = count == 0 ? 0 : sum / count;
+    this.mean = (float) mean;
+    this.standardDeviation =
+        count == 0 ? 0 : (float) Math.sqrt(Math.max(0, squares / count - mean * mean));
+  }
+
+  public int getProxyCount() {
+    return proxies;
+  }
+
+  public float getMin() {
+    return min;
+  }
+
+  public float getMax() {
+    return max;
+  }
+
+  public float getMean() {
+    return mean;
+  }
+
+  public float getStandardDeviation() {
+    return standardDeviation;
+  }
+
+  public JSONObject toJSON() {
+    try {
+      JSONObject res = new JSONObject();
+      res.put("proxies", proxies);
+      res.put("min", min);
+      res.put("max", max);
+      res.put("mean", mean);
+      res.put("standardDeviation", standardDeviation);
+      return res;
+    } catch (JSONException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return toJSON().toString();
+  }
+}
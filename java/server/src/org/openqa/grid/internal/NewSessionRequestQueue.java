@@ -27,6 +27,7 @@
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -52,6 +53,15 @@ public synchronized void add(RequestHandler request) {
     newSessionRequests.add(request);
   }
 
+  /**
+   * Puts back a request that was taken from the queue but could not be given its slot, ahead of
+   * the requests that came after it.
+   * @param request the RequestHandler to put back
+   */
+  public synchronized void requeue(RequestHandler request) {
+    newSessionRequests.add(0, request);
+  }
+
   /**
    * Processes all the entries in this queue.
    *
@@ -92,12 +102,19 @@ public synchronized void clearNewSessionRequests() {
   }
 
   /**
-   * Remove a specific request
+   * Remove a specific request. The requests not matched yet are all equal, so it is looked up by
+   * identity.
    * @param request The request to remove
-   * @return A boolean result from doing a newSessionRequest.remove(request).
+   * @return true if the request was in the queue.
    */
   public synchronized boolean removeNewSessionRequest(RequestHandler request) {
-    return newSessionRequests.remove(request);
+    for (Iterator<RequestHandler> it = newSessionRequests.iterator(); it.hasNext(); ) {
+      if (it.next() == request) {
+        it.remove();
+        return true;
+      }
+    }
+    return false;
   }
 
   /**
@@ -17,36 +17,57 @@
 
 package org.openqa.grid.internal;
 
+import com.google.common.collect.Iterables;
+
 import net.jcip.annotations.ThreadSafe;
 
 import org.openqa.grid.common.exception.CapabilityNotPresentOnTheGridException;
 import org.openqa.grid.common.exception.GridException;
+import org.openqa.grid.internal.utils.LeastUsedStrategy;
+import org.openqa.grid.internal.utils.LoadBalancingStrategy;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
+import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * A set of RemoteProxies.
  *
- * Obeys the iteration guarantees of CopyOnWriteArraySet
+ * Obeys the iteration guarantees of CopyOnWriteArraySet. Proxies are also indexed by id and by
+ * remote host, as nodes look themselves up on every registration cycle. The order in which the
+ * proxies are asked for a new session is up to the {@link LoadBalancingStrategy}.
  */
 @ThreadSafe
 public class ProxySet implements Iterable<RemoteProxy> {
 
-  private final Set<RemoteProxy> proxies = new CopyOnWriteArraySet<RemoteProxy>();
+  // in the order the proxies were added. Writes only happen when nodes (un)register.
+  private final List<RemoteProxy> proxies = new CopyOnWriteArrayList<RemoteProxy>();
+  private final ConcurrentMap<String, RemoteProxy> byId =
+      new ConcurrentHashMap<String, RemoteProxy>();
+  // by external form, as URL.equals resolves host names.
+  private final ConcurrentMap<String, RemoteProxy> byRemoteHost =
+      new ConcurrentHashMap<String, RemoteProxy>();
+
+  private final LoadBalancingStrategy strategy;
 
   private static final Logger log = Logger.getLogger(ProxySet.class.getName());
   private volatile boolean throwOnCapabilityNotPresent = true;
 
   public ProxySet(boolean throwOnCapabilityNotPresent) {
+    this(throwOnCapabilityNotPresent, new LeastUsedStrategy());
+  }
+
+  public ProxySet(boolean throwOnCapabilityNotPresent, LoadBalancingStrategy strategy) {
     this.throwOnCapabilityNotPresent = throwOnCapabilityNotPresent;
+    this.strategy = strategy;
   }
 
   /**
@@ -72,25 +93,42 @@ public boolean hasCapability(Map<String, Object> requestedCapability) {
    * @param proxy The proxy to remove, must be present in this set
    * @return The instance that was removed. Not null.
    */
-  public RemoteProxy remove(RemoteProxy proxy) {
+  public synchronized RemoteProxy remove(RemoteProxy proxy) {
     // Find the original proxy. While the supplied one is logically equivalent, it may be a fresh object with
     // an empty TestSlot list, which doesn't figure into the proxy equivalence check.  Since we want to free up
     // those test sessions, we need to operate on that original object.
-    for (RemoteProxy p : proxies) {
-      if (p.equals(proxy)) {
-        proxies.remove(p);
-        return p;
-      }
+    RemoteProxy p = find(proxy);
+    if (p == null) {
+      throw new IllegalStateException("Did not contain proxy" + proxy);
+    }
+    proxies.remove(p);
+    byId.remove(p.getId(), p);
+    if (p.getRemoteHost() != null) {
+      byRemoteHost.remove(p.getRemoteHost().toExternalForm(), p);
     }
-    throw new IllegalStateException("Did not contain proxy" + proxy);
+    strategy.remove(p);
+    return p;
   }
 
-  public void add(RemoteProxy proxy) {
+  public synchronized void add(RemoteProxy proxy) {
+    if (find(proxy) != null) {
+      return;
+    }
     proxies.add(proxy);
+    byId.put(proxy.getId(), proxy);
+    if (proxy.getRemoteHost() != null) {
+      byRemoteHost.put(proxy.getRemoteHost().toExternalForm(), proxy);
+    }
+    strategy.add(proxy);
   }
 
   public boolean contains(RemoteProxy o) {
-    return proxies.contains(o);
+    return find(o) != null;
+  }
+
+  private RemoteProxy find(RemoteProxy proxy) {
+    RemoteProxy p = byId.get(proxy.getId());
+    return p != null && p.equals(proxy) ? p : null;
   }
 
   public List<RemoteProxy> getBusyProxies() {
@@ -107,12 +145,17 @@ public RemoteProxy getProxyById(String id) {
     if (id == null) {
       return null;
     }
-    for (RemoteProxy p : proxies) {
-      if (id.equals(p.getId())) {
-        return p;
-      }
+    return byId.get(id);
+  }
+
+  /**
+   * @return the proxy for the node listening on that url, or null.
+   */
+  public RemoteProxy getProxyByRemoteHost(URL remoteHost) {
+    if (remoteHost == null) {
+      return null;
     }
-    return null;
+    return byRemoteHost.get(remoteHost.toExternalForm());
   }
 
 
@@ -120,22 +163,35 @@ public boolean isEmpty() {
     return proxies.isEmpty();
   }
 
-  private List<RemoteProxy> getSorted() {
-    List<RemoteProxy> sorted = new ArrayList<RemoteProxy>(proxies);
-    Collections.sort(sorted);
-    return sorted;
+  /**
+   * To be called when sessions are started or stopped on the proxy other than through
+   * {@link #getNewSession(Map)}, so that the load balancing strategy knows about it.
+   */
+  void loadChanged(RemoteProxy proxy) {
+    strategy.loadChanged(proxy);
+  }
+
+  public LoadBalancingStrategy getLoadBalancingStrategy() {
+    return strategy;
+  }
+
+  /**
+   * @return how evenly the sessions are spread on the proxies right now.
+   */
+  public LoadSpread getLoadSpread() {
+    return new LoadSpread(proxies);
   }
 
   public TestSession getNewSession(Map<String, Object> desiredCapabilities) {
-    // sort the proxies first, by default by total number of
-    // test running, to avoid putting all the load of the first
-    // proxies.
-    List<RemoteProxy> sorted = getSorted();
-    log.info("Available nodes: " + sorted);
+    Iterable<RemoteProxy> ordered = strategy.getProxies(desiredCapabilities);
+    if (log.isLoggable(Level.FINE)) {
+      log.fine("Available nodes: " + Iterables.toString(ordered));
+    }
 
-    for (RemoteProxy proxy : sorted) {
+    for (RemoteProxy proxy : ordered) {
       TestSession session = proxy.getNewSession(desiredCapabilities);
       if (session != null) {
+        strategy.loadChanged(proxy);
         return session;
       }
     }
@@ -18,23 +18,44 @@
 package org.openqa.grid.internal;
 
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import net.jcip.annotations.ThreadSafe;
 
+import org.openqa.grid.common.RegistrationRequest;
 import org.openqa.grid.internal.listeners.Prioritizer;
 import org.openqa.grid.internal.listeners.RegistrationListener;
 import org.openqa.grid.internal.listeners.SelfHealingProxy;
 import org.openqa.grid.internal.utils.CapabilityMatcher;
 import org.openqa.grid.internal.utils.GridHubConfiguration;
+import org.openqa.grid.internal.utils.InMemoryRegistryStore;
+import org.openqa.grid.internal.utils.RegistryStore;
+import org.openqa.grid.internal.utils.SessionRoute;
+import org.openqa.grid.internal.utils.TimerWheel;
 import org.openqa.grid.web.Hub;
 import org.openqa.grid.web.servlet.handler.RequestHandler;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.remote.internal.HttpClientFactory;
 import org.openqa.selenium.remote.server.log.LoggingManager;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -49,6 +70,12 @@
 public class Registry {
 
   public static final String KEY = Registry.class.getName();
+  static final int MAX_REGISTRATION_BATCH = 100;
+  // how often, in ms, the nodes registered through the other hubs are looked for, the lease of
+  // this hub renewed, and which hub serves a session checked again.
+  static final int STORE_SYNC_CYCLE = 5000;
+  // how long, in ms, the slots and routes of a hub are kept after it last renewed its lease.
+  static final int STORE_LEASE = 6 * STORE_SYNC_CYCLE;
   private static final Logger log = Logger.getLogger(Registry.class.getName());
 
   // lock for anything modifying the tests session currently running on this
@@ -57,12 +84,37 @@ public class Registry {
   private final Condition testSessionAvailable = lock.newCondition();
   private final ProxySet proxies;
   private final ActiveTestSessions activeTestSessions = new ActiveTestSessions();
+  private final HubStatus status = new HubStatus();
+  private final GridEvents events = new GridEvents();
+  private final GridMetrics metrics = new GridMetrics();
   private final GridHubConfiguration configuration;
   private final HttpClientFactory httpClientFactory;
   private final NewSessionRequestQueue newSessionQueue;
   private final Matcher matcherThread = new Matcher();
-  private final List<RemoteProxy> registeringProxies = new CopyOnWriteArrayList<RemoteProxy>();
+  private final Set<RemoteProxy> registeringProxies =
+      Collections.newSetFromMap(new ConcurrentHashMap<RemoteProxy, Boolean>());
+  // by proxy id, the hash of the registration request of the proxies added through register().
+  private final Map<String, String> registrationHashes = new ConcurrentHashMap<String, String>();
+  private final Registrar registrar = new Registrar();
   private final CapabilityMatcher capabilityMatcher;
+  private final ExecutorService timerTasks = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Grid timer task %d").build());
+  private final TimerWheel timer = new TimerWheel("Grid timer", 20, 512, timerTasks);
+  private final RegistryStore store;
+  // tells this hub from the others sharing the store.
+  private final String hubId = UUID.randomUUID().toString();
+  // the sessions that ended here, whose slot and route are still to be freed in the store.
+  private final Queue<TestSession> storeReleases = new ConcurrentLinkedQueue<TestSession>();
+  // the new session requests given a slot here, while the slot is being taken in the store.
+  // by identity, as the requests waiting for a session are all equal.
+  private final Set<RequestHandler> claiming = Collections.synchronizedSet(
+      Collections.newSetFromMap(new IdentityHashMap<RequestHandler, Boolean>()));
+  // the slots found used through another hub, until the store says they are free, and whether the
+  // session holding them was known then.
+  private final Map<TestSlot, Boolean> usedElsewhere = new ConcurrentHashMap<TestSlot, Boolean>();
+  // guarded by lock.
+  private boolean updatingStore;
+  private boolean changedWhileUpdatingStore;
 
   private volatile boolean stop = false;
   // The following three variables need to be volatile because we expose a public setters
@@ -77,8 +129,10 @@ private Registry(Hub hub, GridHubConfiguration config) {
     this.prioritizer = config.getPrioritizer();
     this.newSessionQueue = new NewSessionRequestQueue();
     this.configuration = config;
+    this.store = config.getRegistryStore();
     this.httpClientFactory = new HttpClientFactory();
-    proxies = new ProxySet(config.isThrowOnCapabilityNotPresent());
+    proxies = new ProxySet(config.isThrowOnCapabilityNotPresent(),
+        config.newLoadBalancingStrategy());
     this.matcherThread.setUncaughtExceptionHandler(new UncaughtExceptionHandler());
   }
   
@@ -90,7 +144,12 @@ public static Registry newInstance() {
 
   public static Registry newInstance(Hub hub, GridHubConfiguration config) {
     Registry registry = new Registry(hub, config);
+    registry.store.renewLease(registry.hubId, System.currentTimeMillis() + STORE_LEASE);
     registry.matcherThread.start();
+    registry.registrar.start();
+    if (!(registry.store instanceof InMemoryRegistryStore)) {
+      registry.new StoreSync().schedule();
+    }
 
     // freynaud : TODO
     // Registry is in a valid state when testSessionAvailable.await(); from
@@ -169,6 +228,18 @@ void terminateSynchronousFOR_TEST_ONLY(TestSession testSession) {
   }
 
   public void removeIfPresent(RemoteProxy proxy) {
+    RemoteProxy removed = removeLocally(proxy);
+    if (removed != null) {
+      store.removeRegistration(removed.getId());
+    }
+  }
+
+  /**
+   * Removes the proxy from this hub only, leaving its registration in the store.
+   *
+   * @return the proxy removed, null if it wasn't registered.
+   */
+  private RemoteProxy removeLocally(RemoteProxy proxy) {
     // Find the original proxy. While the supplied one is logically equivalent, it may be a fresh object with
     // an empty TestSlot list, which doesn't figure into the proxy equivalence check.  Since we want to free up
     // those test sessions, we need to operate on that original object.
@@ -177,11 +248,16 @@ public void removeIfPresent(RemoteProxy proxy) {
           "Proxy '%s' was previously registered.  Cleaning up any stale test sessions.", proxy));
 
       final RemoteProxy p = proxies.remove(proxy);
+      registrationHashes.remove(p.getId());
       for (TestSlot slot : p.getTestSlots()) {
         forceRelease(slot, SessionTerminationReason.PROXY_REREGISTRATION);
       }
+      status.proxyRemoved(p);
+      events.proxyRemoved(p);
       p.teardown();
+      return p;
     }
+    return null;
   }
 
   /**
@@ -195,6 +271,7 @@ public void forceRelease(TestSlot testSlot, SessionTerminationReason reason) {
     String internalKey = testSlot.getInternalKey();
     release(internalKey, reason);
     testSlot.doFinishRelease();
+    proxies.loadChanged(testSlot.getProxy());
   }
 
 
@@ -220,11 +297,101 @@ public void run() {
 
   }
 
+  /**
+   * Applies the registrations sent to {@link #register(RegistrationRequest)}, as many at a time as
+   * are pending.
+   */
+  class Registrar extends Thread { // Thread safety reviewed
+
+    private final BlockingQueue<PendingRegistration> pending =
+        new LinkedBlockingQueue<PendingRegistration>();
+
+    Registrar() {
+      super("Registration thread");
+      setDaemon(true);
+    }
+
+    void add(PendingRegistration registration) {
+      pending.add(registration);
+    }
+
+    @Override
+    public void run() {
+      List<PendingRegistration> batch = new ArrayList<PendingRegistration>();
+      while (!stop) {
+        try {
+          batch.add(pending.take());
+          pending.drainTo(batch, MAX_REGISTRATION_BATCH - 1);
+          apply(batch);
+        } catch (InterruptedException e) {
+          break;
+        } catch (Throwable t) {
+          log.log(Level.SEVERE, "Error registering " + batch, t);
+          teardownUnregistered(batch);
+        } finally {
+          batch.clear();
+        }
+      }
+      for (PendingRegistration registration : pending) {
+        registration.proxy.teardown();
+      }
+    }
+
+    /**
+     * Tears down the proxies of a failed batch that didn't make it into the registry, the same way
+     * pending registrations are torn down on shutdown.
+     */
+    private void teardownUnregistered(List<PendingRegistration> batch) {
+      for (PendingRegistration registration : batch) {
+        if (proxies.getProxyById(registration.proxy.getId()) != registration.proxy) {
+          registration.proxy.teardown();
+        }
+      }
+    }
+
+    private void apply(List<PendingRegistration> batch) {
+      // only the last registration of a node counts.
+      Map<String, PendingRegistration> latest = new LinkedHashMap<String, PendingRegistration>();
+      for (PendingRegistration registration : batch) {
+        PendingRegistration previous = latest.remove(registration.proxy.getId());
+        if (previous != null) {
+          previous.proxy.teardown();
+        }
+        latest.put(registration.proxy.getId(), registration);
+      }
+      List<RemoteProxy> toAdd = new ArrayList<RemoteProxy>();
+      List<String> hashes = new ArrayList<String>();
+      for (PendingRegistration registration : latest.values()) {
+        toAdd.add(registration.proxy);
+        hashes.add(registration.hash);
+      }
+      addAll(toAdd, hashes, false);
+    }
+  }
+
+  private static class PendingRegistration {
+    private final RemoteProxy proxy;
+    private final String hash;
+
+    PendingRegistration(RemoteProxy proxy, String hash) {
+      this.proxy = proxy;
+      this.hash = hash;
+    }
+
+    @Override
+    public String toString() {
+      return proxy.toString();
+    }
+  }
+
   public void stop() {
     stop = true;
     matcherThread.interrupt();
+    registrar.interrupt();
     newSessionQueue.stop();
     proxies.teardown();
+    timer.stop();
+    timerTasks.shutdownNow();
     httpClientFactory.close();
 
   }
@@ -244,6 +411,8 @@ public void addNewSessionRequest(RequestHandler handler) {
 
       proxies.verifyAbilityToHandleDesiredCapabilities(handler.getRequest().getDesiredCapabilities());
       newSessionQueue.add(handler);
+      status.changed();
+      events.requestQueued(handler.getRequest().getDesiredCapabilities());
       fireMatcherStateChanged();
     } finally {
       lock.unlock();
@@ -258,15 +427,23 @@ public void addNewSessionRequest(RequestHandler handler) {
    */
 
   private void assignRequestToProxy() {
+    boolean matchAgain = false;
     while (!stop) {
       try {
-        testSessionAvailable.await(5, TimeUnit.SECONDS);
+        if (!matchAgain) {
+          testSessionAvailable.await(5, TimeUnit.SECONDS);
+        }
+        matchAgain = false;
 
+        final List<Reservation> reserved = new ArrayList<Reservation>();
         newSessionQueue.processQueue(new Predicate<RequestHandler>() {
           public boolean apply(RequestHandler input) {
-            return takeRequestHandler(input);
+            return reserveSlot(input, reserved);
           }
         }, prioritizer);
+        if (!reserved.isEmpty() || !storeReleases.isEmpty() || !usedElsewhere.isEmpty()) {
+          matchAgain = updateStore(reserved);
+        }
         // Just make sure we delete anything that is logged on this thread from memory
         LoggingManager.perSessionLogHandler().clearThreadTempLogs();
       } catch (InterruptedException e) {
@@ -278,14 +455,177 @@ public boolean apply(RequestHandler input) {
 
   }
 
-  private boolean takeRequestHandler(RequestHandler handler) {
+  /**
+   * Gives the request a slot on this hub. The slot still has to be taken in the store before the
+   * request gets its session, see {@link #updateStore(List)}.
+   */
+  private boolean reserveSlot(RequestHandler handler, List<Reservation> reserved) {
     final TestSession session = proxies.getNewSession(handler.getRequest().getDesiredCapabilities());
-    final boolean sessionCreated = session != null;
-    if (sessionCreated) {
-      activeTestSessions.add(session);
-      handler.bindSession(session);
+    if (session == null) {
+      return false;
+    }
+    claiming.add(handler);
+    reserved.add(new Reservation(handler, session));
+    return true;
+  }
+
+  private static class Reservation {
+    private final RequestHandler handler;
+    private final TestSession session;
+
+    Reservation(RequestHandler handler, TestSession session) {
+      this.handler = handler;
+      this.session = session;
+    }
+  }
+
+  private void sessionTaken(RequestHandler handler, TestSession session) {
+    activeTestSessions.add(session);
+    status.slotTaken();
+    events.slotAcquired(session);
+    events.requestMatched(handler.getRequest().getDesiredCapabilities(), session);
+    handler.bindSession(session);
+  }
+
+  /**
+   * Brings the store up to date with this hub : frees the slots of the sessions that ended, takes
+   * the slots just given to new session requests, and looks again at the slots used through other
+   * hubs. The store is only called once the lock is released, so that a slow store doesn't hold up
+   * the rest of the registry.
+   * <p/>
+   * Called by the matcher thread, which holds the lock once. A request whose slot is used through
+   * another hub goes back to the head of the queue. So does a request whose slot this hub has yet
+   * to free in the store, as when a node registered again while running a test : the slot is only
+   * claimed for the new session once the old one is freed.
+   *
+   * @return true if the queue should be matched again right away, as requests went back to it.
+   */
+  private boolean updateStore(List<Reservation> reserved) {
+    Set<TestSession> claimed = new HashSet<TestSession>();
+    Set<TestSlot> ownerless = new HashSet<TestSlot>();
+    Set<TestSlot> freed = new HashSet<TestSlot>();
+    Set<String> releasing = new HashSet<String>();
+    updatingStore = true;
+    changedWhileUpdatingStore = false;
+    lock.unlock();
+    try {
+      applyStoreReleases();
+      for (TestSession session : storeReleases) {
+        releasing.add(slotKey(session.getSlot()));
+      }
+      for (Reservation reservation : reserved) {
+        TestSession session = reservation.session;
+        if (releasing.contains(slotKey(session.getSlot()))) {
+          log.fine("Test slot " + session.getSlot() + " is not freed in the store yet");
+        } else if (claimSlot(session)) {
+          claimed.add(session);
+        } else if (getSlotOwner(session.getSlot()) == null) {
+          // taken by a hub that hasn't written the owner yet, or the store failed.
+          ownerless.add(session.getSlot());
+        }
+      }
+      for (TestSlot slot : usedElsewhere.keySet()) {
+        if (getSlotOwner(slot) == null) {
+          freed.add(slot);
+        }
+      }
+    } finally {
+      lock.lock();
+      updatingStore = false;
+    }
+
+    boolean changed = changedWhileUpdatingStore;
+    for (Map.Entry<TestSlot, Boolean> entry : usedElsewhere.entrySet()) {
+      TestSlot slot = entry.getKey();
+      RemoteProxy proxy = slot.getProxy();
+      if (freed.contains(slot) || proxies.getProxyById(proxy.getId()) != proxy) {
+        usedElsewhere.remove(slot);
+        slot.setUsedThroughAnotherHub(false);
+        // a slot the store gave no owner for already, would be tried again right away.
+        changed |= entry.getValue();
+      }
+    }
+
+    List<RequestHandler> requeued = new ArrayList<RequestHandler>();
+    for (Reservation reservation : reserved) {
+      RequestHandler handler = reservation.handler;
+      TestSession session = reservation.session;
+      TestSlot slot = session.getSlot();
+      boolean stillReserved = slot.getSession() == session;
+      if (claimed.contains(session) && stillReserved && claiming.remove(handler)) {
+        sessionTaken(handler, session);
+        continue;
+      }
+
+      slot.cancelNewSession(session);
+      proxies.loadChanged(slot.getProxy());
+      // a slot still to be freed is tried again with the next change, or the next sync.
+      changed |= !releasing.contains(slotKey(slot));
+      if (claimed.contains(session)) {
+        // the request gave up waiting, or the node went away, while the slot was being taken.
+        storeReleases.add(session);
+      } else if (stillReserved && !releasing.contains(slotKey(slot))) {
+        log.fine("Test slot " + slot.getCapabilities() + " is used through another hub");
+        slot.setUsedThroughAnotherHub(true);
+        usedElsewhere.put(slot, !ownerless.contains(slot));
+      }
+      requeued.add(handler);
+    }
+    // backwards, so that the requests going back to the head of the queue keep their order.
+    for (int i = requeued.size() - 1; i >= 0; i--) {
+      RequestHandler handler = requeued.get(i);
+      newSessionQueue.requeue(handler);
+      if (!claiming.remove(handler)) {
+        // the request gave up waiting, see removeNewSessionRequest.
+        newSessionQueue.removeNewSessionRequest(handler);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * @return the internal key of the session holding the slot in the store, null if it is free or
+   *         the store can't tell.
+   */
+  private String getSlotOwner(TestSlot slot) {
+    try {
+      return store.getSlotOwner(slotKey(slot));
+    } catch (RuntimeException e) {
+      log.log(Level.WARNING, "Cannot read the owner of " + slot + " in the store", e);
+      return null;
+    }
+  }
+
+  private boolean claimSlot(TestSession session) {
+    try {
+      return store.claimSlot(slotKey(session.getSlot()), session.getInternalKey(), hubId);
+    } catch (RuntimeException e) {
+      log.log(Level.WARNING, "Cannot take the slot of " + session + " in the store", e);
+      return false;
     }
-    return sessionCreated;
+  }
+
+  /**
+   * Frees in the store the slots and routes of the sessions that ended on this hub, unless another
+   * hub serves them now. The ones the store fails to free are kept for the next time.
+   */
+  void applyStoreReleases() {
+    List<TestSession> failed = new ArrayList<TestSession>();
+    TestSession session;
+    while ((session = storeReleases.poll()) != null) {
+      try {
+        if (!isServedByAnotherHub(session)) {
+          store.releaseSlot(slotKey(session.getSlot()), session.getInternalKey());
+          if (session.getExternalKey() != null) {
+            store.removeRoute(session.getExternalKey().getKey());
+          }
+        }
+      } catch (RuntimeException e) {
+        log.log(Level.WARNING, "Cannot free the slot of " + session + " in the store", e);
+        failed.add(session);
+      }
+    }
+    storeReleases.addAll(failed);
   }
 
   /**
@@ -300,6 +640,12 @@ private void release(TestSession session, SessionTerminationReason reason) {
       lock.lock();
       boolean removed = activeTestSessions.remove(session, reason);
       if (removed) {
+        // freed by the matcher thread, outside of the lock.
+        storeReleases.add(session);
+        proxies.loadChanged(session.getSlot().getProxy());
+        status.slotReleased();
+        events.slotReleased(session, reason);
+        metrics.sessionEnded(session);
         fireMatcherStateChanged();
       }
     } finally {
@@ -330,49 +676,131 @@ public void add(RemoteProxy proxy) {
     if (proxy == null) {
       return;
     }
-    log.fine("adding  " + proxy);
+    addAll(Collections.singletonList(proxy), null, false);
+  }
+
+  /**
+   * Registers the node asynchronously. If the node is already registered with the same
+   * capabilities and configuration and is not running tests, it is only a heartbeat and nothing
+   * changes. Otherwise the proxy is built right away, and added with the other pending
+   * registrations in one go, so that many nodes registering at once don't each hold up the
+   * matcher.
+   *
+   * @return true if the registration was only a heartbeat.
+   */
+  public boolean register(RegistrationRequest request) {
+    String hash = request.getHash();
+    RemoteProxy existing = findRegistered(request);
+    if (existing != null && hash.equals(registrationHashes.get(existing.getId()))
+        && !existing.isBusy()) {
+      log.fine("heartbeat from " + existing);
+      return true;
+    }
+    RemoteProxy proxy = BaseRemoteProxy.getNewInstance(request, this);
+    registrar.add(new PendingRegistration(proxy, hash));
+    return false;
+  }
+
+  private RemoteProxy findRegistered(RegistrationRequest request) {
+    Object id = request.getConfiguration().get(RegistrationRequest.ID);
+    if (id != null) {
+      return proxies.getProxyById(id.toString());
+    }
+    Object remoteHost = request.getConfiguration().get(RegistrationRequest.REMOTE_HOST);
+    if (remoteHost == null) {
+      return null;
+    }
+    try {
+      return proxies.getProxyByRemoteHost(new URL(remoteHost.toString()));
+    } catch (MalformedURLException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Adds the proxies taking the lock once before and once after running their registration
+   * listeners, instead of twice per proxy.
+   *
+   * @param hashes    the hashes of the registration requests, or null if they are not known.
+   * @param fromStore true if the proxies were registered through another hub, and so are in the
+   *                  store already.
+   */
+  private void addAll(List<RemoteProxy> batch, List<String> hashes, boolean fromStore) {
+    List<RemoteProxy> accepted = new ArrayList<RemoteProxy>();
+    List<String> acceptedHashes = new ArrayList<String>();
     try {
       lock.lock();
+      for (int i = 0; i < batch.size(); i++) {
+        RemoteProxy proxy = batch.get(i);
+        log.fine("adding  " + proxy);
 
-      removeIfPresent(proxy);
+        removeLocally(proxy);
 
-      if (registeringProxies.contains(proxy)) {
-        log.warning(String.format("Proxy '%s' is already queued for registration.", proxy));
+        if (registeringProxies.contains(proxy)) {
+          log.warning(String.format("Proxy '%s' is already queued for registration.", proxy));
+          continue;
+        }
 
-        return;
+        registeringProxies.add(proxy);
+        accepted.add(proxy);
+        acceptedHashes.add(hashes == null ? null : hashes.get(i));
       }
-
-      registeringProxies.add(proxy);
       fireMatcherStateChanged();
     } finally {
       lock.unlock();
     }
 
-    boolean listenerOk = true;
-    try {
-      if (proxy instanceof RegistrationListener) {
-        ((RegistrationListener) proxy).beforeRegistration();
+    boolean[] listenerOk = new boolean[accepted.size()];
+    for (int i = 0; i < accepted.size(); i++) {
+      RemoteProxy proxy = accepted.get(i);
+      listenerOk[i] = true;
+      try {
+        if (proxy instanceof RegistrationListener) {
+          ((RegistrationListener) proxy).beforeRegistration();
+        }
+      } catch (Throwable t) {
+        log.severe("Error running the registration listener on " + proxy + ", " + t.getMessage());
+        t.printStackTrace();
+        listenerOk[i] = false;
       }
-    } catch (Throwable t) {
-      log.severe("Error running the registration listener on " + proxy + ", " + t.getMessage());
-      t.printStackTrace();
-      listenerOk = false;
     }
 
+    List<RemoteProxy> added = new ArrayList<RemoteProxy>();
     try {
       lock.lock();
-      registeringProxies.remove(proxy);
-      if (listenerOk) {
-        if (proxy instanceof SelfHealingProxy) {
-          ((SelfHealingProxy) proxy).startPolling();
+      for (int i = 0; i < accepted.size(); i++) {
+        RemoteProxy proxy = accepted.get(i);
+        registeringProxies.remove(proxy);
+        if (listenerOk[i]) {
+          added.add(proxy);
+          if (proxy instanceof SelfHealingProxy) {
+            ((SelfHealingProxy) proxy).startPolling();
+          }
+          proxies.add(proxy);
+          if (acceptedHashes.get(i) != null) {
+            registrationHashes.put(proxy.getId(), acceptedHashes.get(i));
+          }
+          status.proxyAdded(proxy);
+          events.proxyAdded(proxy);
         }
-        proxies.add(proxy);
-        fireMatcherStateChanged();
       }
+      fireMatcherStateChanged();
     } finally {
       lock.unlock();
     }
 
+    if (!fromStore) {
+      for (RemoteProxy proxy : added) {
+        RegistrationRequest request = proxy.getOriginalRegistrationRequest();
+        try {
+          if (request != null) {
+            store.putRegistration(proxy.getId(), request.toJSON());
+          }
+        } catch (RuntimeException e) {
+          log.log(Level.WARNING, "Cannot share the registration of " + proxy, e);
+        }
+      }
+    }
   }
 
   /**
@@ -389,6 +817,10 @@ public void setThrowOnCapabilityNotPresent(boolean throwOnCapabilityNotPresent)
 
   private void fireMatcherStateChanged() {
     testSessionAvailable.signalAll();
+    // the matcher isn't waiting while it updates the store, it has to look again once done.
+    if (updatingStore) {
+      changedWhileUpdatingStore = true;
+    }
   }
 
   public ProxySet getAllProxies() {
@@ -407,7 +839,28 @@ public List<RemoteProxy> getUsedProxies() {
    * @return null if the hub doesn't have a node associated to the provided externalKey
    */
   public TestSession getSession(ExternalSessionKey externalKey) {
-    return activeTestSessions.findSessionByExternalKey(externalKey);
+    TestSession session = activeTestSessions.findSessionByExternalKey(externalKey);
+    if (externalKey == null) {
+      return session;
+    }
+    // the store is only asked again once in a while whether the client went through another hub.
+    long now = System.currentTimeMillis();
+    if (session != null && now - session.getRouteCheckedAt() < STORE_SYNC_CYCLE) {
+      return session;
+    }
+    SessionRoute route = store.getRoute(externalKey.getKey());
+    if (session == null) {
+      return route == null ? null : adopt(externalKey, route);
+    }
+    if (route == null) {
+      session.setRouteCheckedAt(now);
+      return session;
+    }
+    if (!hubId.equals(route.getHub())) {
+      takeOver(session);
+    }
+    session.setRouteCheckedAt(now);
+    return session;
   }
 
   /**
@@ -420,9 +873,185 @@ public TestSession getSession(ExternalSessionKey externalKey) {
    * @return null if the hub doesn't have a node associated to the provided externalKey
    */
   public TestSession getExistingSession(ExternalSessionKey externalKey) {
+    TestSession session = getSession(externalKey);
+    if (session != null) {
+      return session;
+    }
     return activeTestSessions.getExistingSession(externalKey);
   }
 
+  /**
+   * Tells the other hubs sharing the store where the session runs, once the node has given it its
+   * external key, so that they can forward its commands.
+   */
+  public void sessionStarted(TestSession session) {
+    if (session.getExternalKey() != null) {
+      store.putRoute(session.getExternalKey().getKey(), route(session));
+      session.setRouteCheckedAt(System.currentTimeMillis());
+    }
+  }
+
+  /**
+   * @return true if the commands of the session now go through another hub sharing the store. The
+   *         session is then that hub's to release, and this hub only has to forget about it.
+   */
+  boolean isServedByAnotherHub(TestSession session) {
+    if (session.getExternalKey() == null) {
+      return false;
+    }
+    SessionRoute route = store.getRoute(session.getExternalKey().getKey());
+    return route != null && route.getInternalKey().equals(session.getInternalKey())
+           && !hubId.equals(route.getHub());
+  }
+
+  /**
+   * Makes the slot and route of the session this hub's in the store, as the commands of the
+   * session now go through this hub.
+   */
+  private void takeOver(TestSession session) {
+    if (!store.claimSlot(slotKey(session.getSlot()), session.getInternalKey(), hubId)) {
+      log.warning("The slot of " + session + " was given to another session in the meantime");
+    }
+    store.putRoute(session.getExternalKey().getKey(), route(session));
+  }
+
+  /**
+   * Takes over the session another hub started, so that its commands can go through this one.
+   *
+   * @return the session, or null if it can't be served from here.
+   */
+  private TestSession adopt(ExternalSessionKey externalKey, SessionRoute route) {
+    RemoteProxy proxy = proxies.getProxyById(route.getProxyId());
+    if (proxy == null) {
+      String registration = store.getRegistration(route.getProxyId());
+      if (registration == null) {
+        return null;
+      }
+      RegistrationRequest request = RegistrationRequest.getNewInstance(registration);
+      addAll(Collections.<RemoteProxy>singletonList(BaseRemoteProxy.getNewInstance(request, this)),
+             Collections.singletonList(request.getHash()), true);
+      proxy = proxies.getProxyById(route.getProxyId());
+      if (proxy == null) {
+        return null;
+      }
+    }
+    if (route.getSlot() < 0 || route.getSlot() >= proxy.getTestSlots().size()) {
+      log.warning("No slot " + route.getSlot() + " on " + proxy + " for session " + externalKey);
+      return null;
+    }
+    TestSlot slot = proxy.getTestSlots().get(route.getSlot());
+    // read before taking the lock, the store may be slow.
+    boolean heldByRoute = route.getInternalKey().equals(store.getSlotOwner(slotKey(slot)));
+    TestSession session;
+    try {
+      lock.lock();
+      TestSession stale = slot.getSession();
+      if (stale != null && !stale.getInternalKey().equals(route.getInternalKey()) && heldByRoute) {
+        // the session this hub knew on the slot ended through another hub.
+        forceRelease(slot, SessionTerminationReason.SERVED_BY_ANOTHER_HUB);
+      }
+      session = slot.adoptSession(route.getInternalKey(), externalKey);
+      if (session == null) {
+        return null;
+      }
+      usedElsewhere.remove(slot);
+      log.info("Forwarding the commands of " + session + ", started through another hub");
+      activeTestSessions.add(session);
+      status.slotTaken();
+      events.slotAcquired(session);
+      proxies.loadChanged(proxy);
+    } finally {
+      lock.unlock();
+    }
+    takeOver(session);
+    session.setRouteCheckedAt(System.currentTimeMillis());
+    return session;
+  }
+
+  private SessionRoute route(TestSession session) {
+    TestSlot slot = session.getSlot();
+    return new SessionRoute(session.getInternalKey(), slot.getProxy().getId(),
+                            slot.getProxy().getTestSlots().indexOf(slot), hubId);
+  }
+
+  /**
+   * Proxies of different types for the same node are different proxies, see
+   * {@link BaseRemoteProxy#equals(Object)}, and so do not share their slots.
+   */
+  private static String slotKey(TestSlot slot) {
+    RemoteProxy proxy = slot.getProxy();
+    return proxy.getId() + "#" + proxy.getClass().getName() + "#"
+           + proxy.getTestSlots().indexOf(slot);
+  }
+
+  /**
+   * Renews the lease of this hub in the store, and expires the leases of the hubs that stopped
+   * renewing theirs, freeing their slots.
+   *
+   * @param now the current time, in ms.
+   */
+  void renewLease(long now) {
+    store.renewLease(hubId, now + STORE_LEASE);
+    Set<String> expired = store.expireLeases(now);
+    if (!expired.isEmpty()) {
+      log.warning("The hubs " + expired + " stopped renewing their lease, their slots are free");
+    }
+  }
+
+  /**
+   * Adds the nodes that registered through the other hubs sharing the store, and looks again for
+   * slots for the queued requests, as other hubs may have released some.
+   * <p/>
+   * It runs every {@link #STORE_SYNC_CYCLE} ms, unless the store is in memory : the only hubs
+   * sharing it are in the same JVM, and a node registered through one of them is picked up by the
+   * others when they first serve a session on it.
+   */
+  void syncWithStore() {
+    List<RemoteProxy> batch = new ArrayList<RemoteProxy>();
+    List<String> hashes = new ArrayList<String>();
+    for (Map.Entry<String, String> registration : store.getRegistrations().entrySet()) {
+      if (proxies.getProxyById(registration.getKey()) != null) {
+        continue;
+      }
+      try {
+        RegistrationRequest request = RegistrationRequest.getNewInstance(registration.getValue());
+        batch.add(BaseRemoteProxy.getNewInstance(request, this));
+        hashes.add(request.getHash());
+      } catch (RuntimeException e) {
+        log.log(Level.WARNING, "Cannot add " + registration.getKey() + " from the store", e);
+      }
+    }
+    if (!batch.isEmpty()) {
+      addAll(batch, hashes, true);
+    }
+    try {
+      lock.lock();
+      fireMatcherStateChanged();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  class StoreSync implements Runnable {
+
+    void schedule() {
+      if (!stop) {
+        timer.schedule(this, STORE_SYNC_CYCLE, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    public void run() {
+      try {
+        renewLease(System.currentTimeMillis());
+        syncWithStore();
+      } catch (Throwable t) {
+        log.log(Level.WARNING, "Error reading the registry store", t);
+      } finally {
+        schedule();
+      }
+    }
+  }
+
   /*
    * May race.
    */
@@ -432,16 +1061,58 @@ public int getNewSessionRequestCount() {
 
   public void clearNewSessionRequests() {
     newSessionQueue.clearNewSessionRequests();
+    status.changed();
   }
 
   public boolean removeNewSessionRequest(RequestHandler request) {
-    return newSessionQueue.removeNewSessionRequest(request);
+    // a request whose slot is being taken in the store is out of the queue for that time.
+    boolean removed = claiming.remove(request) || newSessionQueue.removeNewSessionRequest(request);
+    if (removed) {
+      status.changed();
+    }
+    return removed;
   }
 
   public Iterable<DesiredCapabilities> getDesiredCapabilities() {
     return newSessionQueue.getDesiredCapabilities();
   }
 
+  /**
+   * @return the counters describing the grid, updated as it changes.
+   */
+  public HubStatus getHubStatus() {
+    return status;
+  }
+
+  /**
+   * @return where to listen for what happens on the grid.
+   */
+  public GridEvents getGridEvents() {
+    return events;
+  }
+
+  /**
+   * @return the timings of the requests and sessions, by capability.
+   */
+  public GridMetrics getGridMetrics() {
+    return metrics;
+  }
+
+  /**
+   * @return the timer the proxies and sessions schedule their timeouts on, rather than each
+   *         having a thread of its own.
+   */
+  public TimerWheel getTimer() {
+    return timer;
+  }
+
+  /**
+   * @return where the state shared with the other hubs is kept.
+   */
+  public RegistryStore getRegistryStore() {
+    return store;
+  }
+
   public Set<TestSession> getActiveSessions() {
     return activeTestSessions.unmodifiableSet();
   }
@@ -26,5 +26,6 @@ public enum SessionTerminationReason {
   FORWARDING_TO_NODE_FAILED,
   CREATIONFAILED,
   PROXY_REREGISTRATION,
-  SO_TIMEOUT
+  SO_TIMEOUT,
+  SERVED_BY_ANOTHER_HUB
   }
@@ -25,9 +25,12 @@
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.servlet.http.HttpServletRequest;
@@ -40,13 +43,15 @@
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.entity.InputStreamEntity;
-import org.apache.http.message.BasicHttpEntityEnclosingRequest;
 import org.apache.http.message.BasicHttpRequest;
 import org.apache.http.util.EntityUtils;
 import org.openqa.grid.common.exception.ClientGoneException;
 import org.openqa.grid.common.exception.GridException;
 import org.openqa.grid.internal.listeners.CommandListener;
+import org.openqa.grid.internal.utils.TimerWheel;
 import org.openqa.grid.web.Hub;
 import org.openqa.grid.web.servlet.handler.LegacySeleniumRequest;
 import org.openqa.grid.web.servlet.handler.RequestType;
@@ -70,16 +75,26 @@ public class TestSession {
   private static final Logger log = Logger.getLogger(TestSession.class.getName());
   static final int MAX_IDLE_TIME_BEFORE_CONSIDERED_ORPHANED = 5000;
 
+  /**
+   * How long, in ms, a command may take on the node. A client can send it to give a command less
+   * time than the browser timeout of the hub. The hub sends the node the smaller of the two, the
+   * time it gives the command before aborting it.
+   */
+  public static final String COMMAND_TIMEOUT_HEADER = "X-Grid-Command-Timeout";
+
   private final String internalKey;
   private final TestSlot slot;
   private volatile ExternalSessionKey externalKey = null;
   private volatile long sessionCreatedAt;
   private volatile long lastActivity;
+  private final long startedAt = System.nanoTime();
   private final Map<String, Object> requestedCapabilities;
   private Map<String, Object> objects = Collections.synchronizedMap(new HashMap<String, Object>());
   private volatile boolean ignoreTimeout = false;
   private final TimeSource timeSource;
   private volatile boolean forwardingRequest;
+  // when the registry store was last asked which hub serves the session.
+  private volatile long routeCheckedAt;
   private final int MAX_NETWORK_LATENCY = 1000;
 
   public String getInternalKey() {
@@ -91,13 +106,29 @@ public String getInternalKey() {
    */
   public TestSession(TestSlot slot, Map<String, Object> requestedCapabilities,
                      TimeSource timeSource) {
-    internalKey = UUID.randomUUID().toString();
+    this(slot, requestedCapabilities, timeSource, UUID.randomUUID().toString());
+  }
+
+  /**
+   * Creates a test session for a session another hub started, under the key that hub gave it.
+   */
+  TestSession(TestSlot slot, Map<String, Object> requestedCapabilities, TimeSource timeSource,
+              String internalKey) {
+    this.internalKey = internalKey;
     this.slot = slot;
     this.requestedCapabilities = requestedCapabilities;
     this.timeSource = timeSource;
     lastActivity = this.timeSource.currentTimeInMillis();
   }
 
+  long getRouteCheckedAt() {
+    return routeCheckedAt;
+  }
+
+  void setRouteCheckedAt(long routeCheckedAt) {
+    this.routeCheckedAt = routeCheckedAt;
+  }
+
   /**
    * the capabilities the client requested. It will match the TestSlot capabilities, but is not
    * equals.
@@ -116,6 +147,13 @@ public ExternalSessionKey getExternalKey() {
     return externalKey;
   }
 
+  /**
+   * @return when the slot was taken, as a {@link System#nanoTime()}.
+   */
+  long getStartedAt() {
+    return startedAt;
+  }
+
   /**
    * associate this session to the session provided by the remote.
    */
@@ -205,6 +243,8 @@ public String forward(SeleniumBasedRequest request, HttpServletResponse response
                         boolean newSessionRequest)
       throws IOException {
     String res = null;
+    long start = System.nanoTime();
+    TimerWheel.Timeout deadline = null;
 
     String currentThreadName = Thread.currentThread().getName();
     setThreadDisplayName();
@@ -217,9 +257,12 @@ public String forward(SeleniumBasedRequest request, HttpServletResponse response
 
       lastActivity = timeSource.currentTimeInMillis();
 
-      HttpRequest proxyRequest = prepareProxyRequest(request/*, config*/);
+      HttpUriRequest proxyRequest = prepareProxyRequest(request/*, config*/);
+      deadline = scheduleDeadline(request, proxyRequest);
 
+      long sent = System.nanoTime();
       HttpResponse proxyResponse = sendRequestToNode(proxyRequest);
+      long nodeTime = System.nanoTime() - sent;
       lastActivity = timeSource.currentTimeInMillis();
 
       final int statusCode = proxyResponse.getStatusLine().getStatusCode();
@@ -258,6 +301,9 @@ public String forward(SeleniumBasedRequest request, HttpServletResponse response
           }
 
           final byte[] bytes = drainInputStream(in);
+          // all the node had to say is here, what is left is up to the client.
+          nodeTime = System.nanoTime() - sent;
+          deadline = cancel(deadline);
           writeRawBody(response, bytes);
 
         } finally {
@@ -272,13 +318,82 @@ public String forward(SeleniumBasedRequest request, HttpServletResponse response
         ((CommandListener) slot.getProxy()).afterCommand(this, request, wrappedResponse);
       }
       response.flushBuffer();
+      Registry registry = slot.getProxy().getRegistry();
+      if (registry != null) {
+        registry.getGridMetrics().forwarded(this, System.nanoTime() - start, nodeTime);
+      }
       return res;
+    } catch (IOException e) {
+      if (deadline != null && deadline.isExpired() && !(e instanceof ClientGoneException)) {
+        SocketTimeoutException timeout = new SocketTimeoutException(
+            "The node didn't answer " + request.getRequestURI() + " for " + this + " in time");
+        timeout.initCause(e);
+        throw timeout;
+      }
+      throw e;
     } finally {
+      cancel(deadline);
       forwardingRequest = false;
       Thread.currentThread().setName(currentThreadName);
     }
   }
 
+  /**
+   * Aborts the request to the node once the command has taken longer than it may, so that a stuck
+   * browser is given back in seconds rather than when the socket times out.
+   *
+   * @return the deadline to cancel once the node has answered, or null if there is none.
+   */
+  private TimerWheel.Timeout scheduleDeadline(HttpServletRequest request,
+                                              final HttpUriRequest proxyRequest) {
+    Registry registry = slot.getProxy().getRegistry();
+    if (registry == null) {
+      return null;
+    }
+    final long timeout = getCommandTimeout(registry, request);
+    if (timeout <= 0) {
+      return null;
+    }
+    proxyRequest.setHeader(COMMAND_TIMEOUT_HEADER, String.valueOf(timeout));
+    return registry.getTimer().schedule(new Runnable() {
+      public void run() {
+        log.warning("Aborting " + proxyRequest.getRequestLine() + " for " + TestSession.this
+                    + ", the node didn't answer in " + timeout + " ms");
+        proxyRequest.abort();
+      }
+    }, timeout, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return the time the command may take in ms, 0 if it may take as long as it needs.
+   */
+  private long getCommandTimeout(Registry registry, HttpServletRequest request) {
+    long timeout = 0;
+    int browserTimeout = registry.getConfiguration().getBrowserTimeout();
+    if (browserTimeout > 0) {
+      timeout = browserTimeout + MAX_NETWORK_LATENCY;
+    }
+    String requested = request.getHeader(COMMAND_TIMEOUT_HEADER);
+    if (requested != null) {
+      try {
+        long commandTimeout = Long.parseLong(requested.trim());
+        if (commandTimeout > 0 && (timeout == 0 || commandTimeout < timeout)) {
+          timeout = commandTimeout;
+        }
+      } catch (NumberFormatException e) {
+        log.log(Level.FINE, "Ignoring " + COMMAND_TIMEOUT_HEADER + ": " + requested, e);
+      }
+    }
+    return timeout;
+  }
+
+  private static TimerWheel.Timeout cancel(TimerWheel.Timeout deadline) {
+    if (deadline != null) {
+      deadline.cancel();
+    }
+    return null;
+  }
+
   private void setThreadDisplayName() {
     DateFormat dfmt = DateFormat.getTimeInstance();
     String name = "Forwarding " + this + " to " + slot.getRemoteURL() + " at " +
@@ -360,7 +475,7 @@ private HttpResponse sendRequestToNode(HttpRequest proxyRequest) throws ClientPr
     return client.execute(host, proxyRequest);
   }
 
-  private HttpRequest prepareProxyRequest(HttpServletRequest request
+  private HttpUriRequest prepareProxyRequest(HttpServletRequest request
 /*, ForwardConfiguration config*/)
       throws IOException {
     URL remoteURL = slot.getRemoteURL();
@@ -383,16 +498,11 @@ private HttpRequest prepareProxyRequest(HttpServletRequest request
       body = request.getInputStream();
     }
 
-    HttpRequest proxyRequest;
-
+    RequestBuilder builder = RequestBuilder.create(request.getMethod()).setUri(uri);
     if (body != null) {
-      BasicHttpEntityEnclosingRequest r =
-          new BasicHttpEntityEnclosingRequest(request.getMethod(), uri);
-      r.setEntity(new InputStreamEntity(body, request.getContentLength()));
-      proxyRequest = r;
-    } else {
-      proxyRequest = new BasicHttpRequest(request.getMethod(), uri);
+      builder.setEntity(new InputStreamEntity(body, request.getContentLength()));
     }
+    HttpUriRequest proxyRequest = builder.build();
 
     for (Enumeration<?> e = request.getHeaderNames(); e.hasMoreElements(); ) {
       String headerName = (String) e.nextElement();
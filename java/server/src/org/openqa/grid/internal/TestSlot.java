@@ -26,6 +26,7 @@
 import java.net.URL;
 import java.security.InvalidParameterException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -41,8 +42,8 @@
  * executed.The other one will be discarded.
  * 
  * This class sees multiple threads but is currently sort-of protected by the lock in Registry.
- * Unfortunately the CleanUpThread also messes around in here, so it should be thread safe on its
- * own.
+ * Unfortunately the proxy clean up task also messes around in here, so it should be thread safe on
+ * its own.
  * 
  */
 public class TestSlot {
@@ -58,6 +59,8 @@ public class TestSlot {
 
   private volatile TestSession currentSession;
   volatile boolean beingReleased = false;
+  // set while the registry store says another hub has a session on this slot.
+  private volatile boolean usedThroughAnotherHub = false;
   private boolean showWarning = false;
 
 
@@ -101,7 +104,7 @@ public RemoteProxy getProxy() {
   public TestSession getNewSession(Map<String, Object> desiredCapabilities) {
     try {
       lock.lock();
-      if (currentSession != null) {
+      if (currentSession != null || usedThroughAnotherHub) {
         return null;
       } else {
         if (matches(desiredCapabilities)) {
@@ -119,6 +122,55 @@ public TestSession getNewSession(Map<String, Object> desiredCapabilities) {
   }
 
 
+  /**
+   * Creates the session for a session another hub started on this slot, so that this hub can
+   * forward its commands too.
+   *
+   * @return the session, or null if the slot is used by another session on this hub.
+   */
+  TestSession adoptSession(String internalKey, ExternalSessionKey externalKey) {
+    try {
+      lock.lock();
+      if (currentSession != null) {
+        return null;
+      }
+      TestSession session = new TestSession(this, new HashMap<String, Object>(capabilities),
+                                            new DefaultTimeSource(), internalKey);
+      session.setExternalKey(externalKey);
+      currentSession = session;
+      usedThroughAnotherHub = false;
+      return session;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Gives the slot back if it still holds the given session, which never started : the slot
+   * could not be taken in the registry store, or the request gave up waiting for it.
+   */
+  void cancelNewSession(TestSession session) {
+    try {
+      lock.lock();
+      if (currentSession == session) {
+        currentSession = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Keeps new sessions off the slot while another hub sharing the registry store uses it.
+   */
+  void setUsedThroughAnotherHub(boolean usedThroughAnotherHub) {
+    this.usedThroughAnotherHub = usedThroughAnotherHub;
+  }
+
+  boolean isUsedThroughAnotherHub() {
+    return usedThroughAnotherHub;
+  }
+
 
   /**
    * the type of protocol for the TestSlot.Ideally should always be webdriver, but can also be
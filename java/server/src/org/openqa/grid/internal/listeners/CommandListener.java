@@ -31,6 +31,11 @@ public interface CommandListener {
    * Executed before the hub forwards the request. reading the content of the request stream will
    * prevent the content from being forwarded.
    * <p/>
+   * Request bodies are streamed to the node unless something reads them first. To look at the body
+   * in {@link #afterCommand}, read it here with
+   * {@link org.openqa.grid.web.servlet.handler.SeleniumBasedRequest#getBody()}, which keeps it in
+   * memory and forwards that copy instead.
+   * <p/>
    * Throwing an exception will prevent the forward to the remote.
    * 
    * @param session
@@ -43,6 +48,10 @@ public void beforeCommand(TestSession session, HttpServletRequest request,
   /**
    * Executed just before the forwards returns.
    * <p/>
+   * The request body has already been streamed to the node by then, and
+   * {@link org.openqa.grid.web.servlet.handler.SeleniumBasedRequest#getBody()} returns null unless
+   * it was read before the forward.
+   * <p/>
    * Throwing an exception will result in an error for the client.
    * 
    * @param session
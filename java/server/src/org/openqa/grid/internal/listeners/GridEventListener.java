@@ -0,0 +1,33 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.listeners;
+
+import org.openqa.grid.internal.GridEvent;
+
+/**
+ * To be notified of what happens on the grid, register with
+ * {@link org.openqa.grid.internal.GridEvents#addListener(GridEventListener)}.
+ * <p/>
+ * WARNING : events are sent on the thread that caused them, often while the registry is locked.
+ * The listener should hand the event off and return, and should not call back into the registry.
+ */
+public interface GridEventListener {
+
+  public void onEvent(GridEvent event);
+
+}
@@ -0,0 +1,127 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.Hashing;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.openqa.grid.internal.RemoteProxy;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sends the requests with the same affinity key to the same node as long as it has a free slot, so
+ * that they find what the previous ones left there (caches, a warm browser profile...). When it
+ * hasn't, the next nodes on the hash ring are asked, so that a node coming or going only moves the
+ * keys it owned.
+ * <p/>
+ * The key is the {@link #AFFINITY_KEY} desired capability. Requests without one are keyed on
+ * their desired capabilities, so that the same kind of tests go to the same nodes.
+ */
+@ThreadSafe
+public class ConsistentHashStrategy implements LoadBalancingStrategy {
+
+  public static final String AFFINITY_KEY = "affinityKey";
+
+  // points per proxy on the ring, so that the keys spread evenly.
+  private static final int REPLICAS = 16;
+
+  private final ConcurrentNavigableMap<Long, RemoteProxy> ring =
+      new ConcurrentSkipListMap<Long, RemoteProxy>();
+
+  public synchronized void add(RemoteProxy proxy) {
+    for (int i = 0; i < REPLICAS; i++) {
+      ring.put(hash(proxy.getId() + "#" + i), proxy);
+    }
+  }
+
+  public synchronized void remove(RemoteProxy proxy) {
+    for (int i = 0; i < REPLICAS; i++) {
+      ring.remove(hash(proxy.getId() + "#" + i), proxy);
+    }
+  }
+
+  public void loadChanged(RemoteProxy proxy) {
+    // where a key goes doesn't depend on the load.
+  }
+
+  public Iterable<RemoteProxy> getProxies(Map<String, Object> desiredCapabilities) {
+    Object key = desiredCapabilities.get(AFFINITY_KEY);
+    if (key == null) {
+      key = new TreeMap<String, Object>(desiredCapabilities);
+    }
+    long hash = hash(key.toString());
+    final Iterable<RemoteProxy> walk =
+        Iterables.concat(ring.tailMap(hash).values(), ring.headMap(hash).values());
+    return new Iterable<RemoteProxy>() {
+      public Iterator<RemoteProxy> iterator() {
+        return new Distinct(walk.iterator());
+      }
+    };
+  }
+
+  private static long hash(String s) {
+    return Hashing.murmur3_128().hashString(s, Charsets.UTF_8).asLong();
+  }
+
+  /**
+   * Each proxy is on the ring several times, but is only asked once.
+   */
+  private static class Distinct implements Iterator<RemoteProxy> {
+    private final Iterator<RemoteProxy> it;
+    private final Set<RemoteProxy> seen = new HashSet<RemoteProxy>();
+    private RemoteProxy next;
+
+    Distinct(Iterator<RemoteProxy> it) {
+      this.it = it;
+    }
+
+    public boolean hasNext() {
+      while (next == null && it.hasNext()) {
+        RemoteProxy p = it.next();
+        if (seen.add(p)) {
+          next = p;
+        }
+      }
+      return next != null;
+    }
+
+    public RemoteProxy next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      RemoteProxy res = next;
+      next = null;
+      return res;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
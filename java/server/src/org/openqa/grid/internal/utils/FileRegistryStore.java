@@ -0,0 +1,280 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.openqa.grid.common.exception.GridException;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the state in files under a directory, so that hubs running on the same machine, or
+ * sharing a file system, can serve the same grid. Each entry is a file : the registrations, the
+ * slots taken, the routes and the leases of the hubs each have their own sub directory.
+ * <p/>
+ * A slot is taken by creating its file, which only one hub can do, and then writing the session
+ * and hub holding it in it. The other entries are written to a temporary file first and renamed,
+ * so a hub never reads half an entry. A slot file still empty after {@link #EMPTY_CLAIM_MILLIS}
+ * was left by a hub that died while taking the slot, and is expired with the leases.
+ * <p/>
+ * The directory is given by the {@value #DIRECTORY_PROPERTY} system property, and defaults to
+ * selenium-grid-registry in the temporary directory.
+ */
+@ThreadSafe
+public class FileRegistryStore implements RegistryStore {
+
+  public static final String DIRECTORY_PROPERTY = "grid.registryStore.dir";
+
+  // how long a hub can take to write the owner of a slot it has just created the file of.
+  static final long EMPTY_CLAIM_MILLIS = 60000;
+
+  private final File registrations;
+  private final File slots;
+  private final File routes;
+  private final File leases;
+
+  public FileRegistryStore() {
+    this(new File(System.getProperty(DIRECTORY_PROPERTY,
+        new File(System.getProperty("java.io.tmpdir"), "selenium-grid-registry").getPath())));
+  }
+
+  public FileRegistryStore(File directory) {
+    registrations = createDirectory(new File(directory, "registrations"));
+    slots = createDirectory(new File(directory, "slots"));
+    routes = createDirectory(new File(directory, "routes"));
+    leases = createDirectory(new File(directory, "leases"));
+  }
+
+  public void putRegistration(String proxyId, String registration) {
+    write(registrations, proxyId, registration);
+  }
+
+  public String getRegistration(String proxyId) {
+    return read(new File(registrations, encode(proxyId)));
+  }
+
+  public void removeRegistration(String proxyId) {
+    delete(registrations, proxyId);
+  }
+
+  public Map<String, String> getRegistrations() {
+    Map<String, String> res = new HashMap<String, String>();
+    for (File file : list(registrations)) {
+      String registration = read(file);
+      if (registration != null) {
+        res.put(decode(file.getName()), registration);
+      }
+    }
+    return res;
+  }
+
+  public boolean claimSlot(String slotKey, String internalKey, String hubId) {
+    File file = new File(slots, encode(slotKey));
+    String claim = internalKey + "\n" + hubId;
+    try {
+      if (file.createNewFile()) {
+        Files.write(claim, file, Charsets.UTF_8);
+        return true;
+      }
+    } catch (IOException e) {
+      throw new GridException("Cannot claim slot " + slotKey + " : " + e.getMessage());
+    }
+    if (!internalKey.equals(getSlotOwner(slotKey))) {
+      return false;
+    }
+    if (!claim.equals(read(file))) {
+      write(slots, slotKey, claim);
+    }
+    return true;
+  }
+
+  public void releaseSlot(String slotKey, String internalKey) {
+    if (internalKey.equals(getSlotOwner(slotKey))) {
+      new File(slots, encode(slotKey)).delete();
+    }
+  }
+
+  public String getSlotOwner(String slotKey) {
+    String[] claim = readClaim(new File(slots, encode(slotKey)));
+    return claim == null ? null : claim[0];
+  }
+
+  public void putRoute(String externalKey, SessionRoute route) {
+    write(routes, externalKey, route.toJSON().toString());
+  }
+
+  public SessionRoute getRoute(String externalKey) {
+    String route = read(new File(routes, encode(externalKey)));
+    return route == null ? null : SessionRoute.fromJSON(route);
+  }
+
+  public void removeRoute(String externalKey) {
+    delete(routes, externalKey);
+  }
+
+  public void renewLease(String hubId, long expiresAt) {
+    write(leases, hubId, String.valueOf(expiresAt));
+  }
+
+  public Set<String> expireLeases(long now) {
+    Set<String> live = new HashSet<String>();
+    Set<String> expired = new HashSet<String>();
+    for (File file : list(leases)) {
+      String lease = read(file);
+      if (lease == null) {
+        continue;
+      }
+      String hubId = decode(file.getName());
+      try {
+        if (Long.parseLong(lease.trim()) >= now) {
+          live.add(hubId);
+          continue;
+        }
+      } catch (NumberFormatException e) {
+        // not a lease any hub wrote, drop it.
+      }
+      if (lease.equals(read(file)) && file.delete()) {
+        expired.add(hubId);
+      }
+    }
+
+    for (File file : list(slots)) {
+      String content = read(file);
+      if (content == null) {
+        continue;
+      }
+      String[] claim = readClaim(file);
+      boolean stale = claim == null
+                      ? now - file.lastModified() > EMPTY_CLAIM_MILLIS
+                      : !live.contains(claim[1]);
+      // the slot may have been freed and taken again since it was read.
+      if (stale && content.equals(read(file))) {
+        file.delete();
+      }
+    }
+
+    for (File file : list(routes)) {
+      String content = read(file);
+      if (content != null && !live.contains(SessionRoute.fromJSON(content).getHub())
+          && content.equals(read(file))) {
+        file.delete();
+      }
+    }
+    return expired;
+  }
+
+  private static File createDirectory(File directory) {
+    if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+      throw new GridException("Cannot create the registry store directory " + directory);
+    }
+    return directory;
+  }
+
+  private static void write(File directory, String key, String content) {
+    File file = new File(directory, encode(key));
+    File tmp = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+    try {
+      Files.write(content, tmp, Charsets.UTF_8);
+    } catch (IOException e) {
+      throw new GridException("Cannot write " + file + " : " + e.getMessage());
+    }
+    // renaming onto an existing file fails on windows.
+    if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+      tmp.delete();
+      throw new GridException("Cannot write " + file);
+    }
+  }
+
+  /**
+   * @return the entries in the directory, without the temporary files being written.
+   */
+  private static Set<File> list(File directory) {
+    Set<File> res = new HashSet<File>();
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (!file.getName().endsWith(".tmp")) {
+          res.add(file);
+        }
+      }
+    }
+    return res;
+  }
+
+  /**
+   * @return the internal key of the session holding the slot and the id of its hub, null if the
+   *         slot is free or its owner isn't written yet.
+   */
+  private static String[] readClaim(File file) {
+    String content = read(file);
+    if (content == null) {
+      return null;
+    }
+    int newLine = content.indexOf('\n');
+    if (newLine <= 0) {
+      return null;
+    }
+    return new String[] {content.substring(0, newLine), content.substring(newLine + 1)};
+  }
+
+  private static void delete(File directory, String key) {
+    new File(directory, encode(key)).delete();
+  }
+
+  /**
+   * @return the content of the file, null if there is none.
+   */
+  private static String read(File file) {
+    try {
+      return Files.toString(file, Charsets.UTF_8);
+    } catch (FileNotFoundException e) {
+      return null;
+    } catch (IOException e) {
+      throw new GridException("Cannot read " + file + " : " + e.getMessage());
+    }
+  }
+
+  private static String encode(String key) {
+    try {
+      return URLEncoder.encode(key, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String decode(String name) {
+    try {
+      return URLDecoder.decode(name, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -84,6 +84,17 @@ public class GridHubConfiguration {
    */
   private CapabilityMatcher matcher = new DefaultCapabilityMatcher();
 
+  /**
+   * to specify in which order the nodes will be asked for a new session. A strategy keeps track of
+   * the nodes it orders, so each set of proxies gets its own instance.
+   */
+  private Class<? extends LoadBalancingStrategy> loadBalancingStrategy = LeastUsedStrategy.class;
+
+  /**
+   * where the registry keeps the state it shares with the other hubs. In memory by default.
+   */
+  private RegistryStore registryStore = new InMemoryRegistryStore();
+
   /**
    * true by default.If true, the hub will throw exception as soon as a request not supported by the
    * grid is received. If set to false, the request will be queued, hoping that a node will be
@@ -199,6 +210,12 @@ public void loadFromCommandLine(String[] args) {
     if (helper.isParamPresent("-capabilityMatcher")) {
       setCapabilityMatcher(helper.getParamValue("-capabilityMatcher"));
     }
+    if (helper.isParamPresent("-loadBalancingStrategy")) {
+      setLoadBalancingStrategy(helper.getParamValue("-loadBalancingStrategy"));
+    }
+    if (helper.isParamPresent("-registryStore")) {
+      setRegistryStore(helper.getParamValue("-registryStore"));
+    }
     if (helper.isParamPresent("-servlets")) {
       servlets = helper.getParamValues("-servlets");
     }
@@ -311,6 +328,13 @@ public void loadFromJSON(String resource) {
         String capabilityMatcherClass = o.getString("capabilityMatcher");
         setCapabilityMatcher(capabilityMatcherClass);
       }
+      if (o.has("loadBalancingStrategy") && !o.isNull("loadBalancingStrategy")) {
+        String strategyClass = o.getString("loadBalancingStrategy");
+        setLoadBalancingStrategy(strategyClass);
+      }
+      if (o.has("registryStore") && !o.isNull("registryStore")) {
+        setRegistryStore(o.getString("registryStore"));
+      }
       if (o.has("throwOnCapabilityNotPresent") && !o.isNull("throwOnCapabilityNotPresent")) {
         throwOnCapabilityNotPresent = o.getBoolean("throwOnCapabilityNotPresent");
       }
@@ -389,6 +413,31 @@ public CapabilityMatcher getCapabilityMatcher() {
     return matcher;
   }
 
+  public Class<? extends LoadBalancingStrategy> getLoadBalancingStrategy() {
+    return loadBalancingStrategy;
+  }
+
+  /**
+   * @return a new instance of the load balancing strategy, for a set of proxies to use on its own.
+   */
+  public LoadBalancingStrategy newLoadBalancingStrategy() {
+    return newLoadBalancingStrategy(loadBalancingStrategy);
+  }
+
+  private static LoadBalancingStrategy newLoadBalancingStrategy(
+      Class<? extends LoadBalancingStrategy> strategyClass) {
+    try {
+      return strategyClass.getConstructor().newInstance();
+    } catch (Throwable e) {
+      throw new GridConfigurationException("Error creating the load balancing strategy from class "
+          + strategyClass.getName() + " : " + e.getMessage(), e);
+    }
+  }
+
+  public RegistryStore getRegistryStore() {
+    return registryStore;
+  }
+
   public boolean isThrowOnCapabilityNotPresent() {
     return throwOnCapabilityNotPresent;
   }
@@ -469,6 +518,41 @@ public void setCapabilityMatcher(CapabilityMatcher matcher) {
     this.matcher = matcher;
   }
 
+  public void setLoadBalancingStrategy(String strategyClass) {
+    Class<? extends LoadBalancingStrategy> c;
+    try {
+      c = Class.forName(strategyClass).asSubclass(LoadBalancingStrategy.class);
+    } catch (Throwable e) {
+      throw new GridConfigurationException("Error creating the load balancing strategy from class "
+          + strategyClass + " : " + e.getMessage(), e);
+    }
+    setLoadBalancingStrategy(c);
+  }
+
+  /**
+   * @param loadBalancingStrategy the strategy, with a public no argument constructor.
+   */
+  public void setLoadBalancingStrategy(
+      Class<? extends LoadBalancingStrategy> loadBalancingStrategy) {
+    // fail now rather than when the hub starts.
+    newLoadBalancingStrategy(loadBalancingStrategy);
+    this.loadBalancingStrategy = loadBalancingStrategy;
+  }
+
+  public void setRegistryStore(String storeClass) {
+    try {
+      Class<? extends RegistryStore> p = Class.forName(storeClass).asSubclass(RegistryStore.class);
+      registryStore = p.getConstructor().newInstance();
+    } catch (Throwable e) {
+      throw new GridConfigurationException("Error creating the registry store from class "
+          + storeClass + " : " + e.getMessage(), e);
+    }
+  }
+
+  public void setRegistryStore(RegistryStore registryStore) {
+    this.registryStore = registryStore;
+  }
+
   public void setThrowOnCapabilityNotPresent(boolean throwOnCapabilityNotPresent) {
     this.throwOnCapabilityNotPresent = throwOnCapabilityNotPresent;
   }
@@ -491,6 +575,12 @@ public String prettyPrint() {
 
     b.append("capabilityMatcher: ")
         .append(matcher == null ? "null" : matcher.getClass().getCanonicalName()).append("\n");
+    b.append("loadBalancingStrategy: ")
+        .append(loadBalancingStrategy == null ? "null"
+                : loadBalancingStrategy.getCanonicalName()).append("\n");
+    b.append("registryStore: ")
+        .append(registryStore == null ? "null" : registryStore.getClass().getCanonicalName())
+        .append("\n");
     b.append("prioritizer: ")
         .append(prioritizer == null ? "null" : prioritizer.getClass().getCanonicalName())
         .append("\n");
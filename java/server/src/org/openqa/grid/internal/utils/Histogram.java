@@ -0,0 +1,202 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in fixed buckets, the way HdrHistogram does : each power of 2 is split in
+ * {@link #SUB_BUCKETS} buckets, so that the error on a recorded value is at most 1/8th whatever its
+ * magnitude, and recording is a couple of atomic increments with no allocation.
+ * <p/>
+ * Values are in microseconds, and anything above {@link #MAX_VALUE} (about 50 days) is counted as
+ * {@link #MAX_VALUE}.
+ */
+@ThreadSafe
+public class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_MAGNITUDE = 42;
+  public static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long micros) {
+    long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+    counts.incrementAndGet(index(value));
+    count.incrementAndGet();
+    total.addAndGet(value);
+    long current;
+    while (value > (current = max.get())) {
+      if (max.compareAndSet(current, value)) {
+        break;
+      }
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * @param percentile between 0 and 100.
+   * @return the highest value of the bucket the percentile falls in, in microseconds, or 0 if
+   *         nothing was recorded.
+   */
+  public long getValueAtPercentile(double percentile) {
+    long n = count.get();
+    if (n == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+    long seen = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(upperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  public Snapshot getSnapshot() {
+    long n = count.get();
+    return new Snapshot(n, n == 0 ? 0 : millis(total.get()) / n, millis(max.get()),
+                        millis(getValueAtPercentile(50)), millis(getValueAtPercentile(90)),
+                        millis(getValueAtPercentile(99)));
+  }
+
+  /**
+   * @return the summary, and the buckets that are not empty as [highest value in ms, count].
+   */
+  public JSONObject toJSON() {
+    try {
+      JSONObject res = getSnapshot().toJSON();
+      JSONArray buckets = new JSONArray();
+      for (int i = 0; i < counts.length(); i++) {
+        long c = counts.get(i);
+        if (c != 0) {
+          JSONArray bucket = new JSONArray();
+          bucket.put(millis(upperBound(i)));
+          bucket.put(c);
+          buckets.put(bucket);
+        }
+      }
+      res.put("buckets", buckets);
+      return res;
+    } catch (JSONException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    int shift = magnitude - SUB_BUCKET_BITS;
+    int sub = (int) (value >> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + sub;
+  }
+
+  static long upperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    int sub = index % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+  }
+
+  private static double millis(long micros) {
+    return micros / 1000.0;
+  }
+
+  /**
+   * What the histogram looks like at some point, in milliseconds.
+   */
+  public static class Snapshot {
+    private final long count;
+    private final double mean;
+    private final double max;
+    private final double p50;
+    private final double p90;
+    private final double p99;
+
+    @ConstructorProperties({"count", "mean", "max", "p50", "p90", "p99"})
+    public Snapshot(long count, double mean, double max, double p50, double p90, double p99) {
+      this.count = count;
+      this.mean = mean;
+      this.max = max;
+      this.p50 = p50;
+      this.p90 = p90;
+      this.p99 = p99;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public double getMean() {
+      return mean;
+    }
+
+    public double getMax() {
+      return max;
+    }
+
+    public double getP50() {
+      return p50;
+    }
+
+    public double getP90() {
+      return p90;
+    }
+
+    public double getP99() {
+      return p99;
+    }
+
+    public JSONObject toJSON() {
+      try {
+        JSONObject res = new JSONObject();
+        res.put("count", count);
+        res.put("mean", mean);
+        res.put("max", max);
+        res.put("p50", p50);
+        res.put("p90", p90);
+        res.put("p99", p99);
+        return res;
+      } catch (JSONException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the state in memory. That is all a single hub needs, and hubs running in the same JVM can
+ * share one.
+ */
+@ThreadSafe
+public class InMemoryRegistryStore implements RegistryStore {
+
+  private final ConcurrentMap<String, String> registrations =
+      new ConcurrentHashMap<String, String>();
+  private final ConcurrentMap<String, Claim> slots = new ConcurrentHashMap<String, Claim>();
+  private final ConcurrentMap<String, SessionRoute> routes =
+      new ConcurrentHashMap<String, SessionRoute>();
+  private final ConcurrentMap<String, Long> leases = new ConcurrentHashMap<String, Long>();
+
+  public void putRegistration(String proxyId, String registration) {
+    registrations.put(proxyId, registration);
+  }
+
+  public String getRegistration(String proxyId) {
+    return registrations.get(proxyId);
+  }
+
+  public void removeRegistration(String proxyId) {
+    registrations.remove(proxyId);
+  }
+
+  public Map<String, String> getRegistrations() {
+    return Collections.unmodifiableMap(new HashMap<String, String>(registrations));
+  }
+
+  public boolean claimSlot(String slotKey, String internalKey, String hubId) {
+    Claim claim = new Claim(internalKey, hubId);
+    while (true) {
+      Claim owner = slots.putIfAbsent(slotKey, claim);
+      if (owner == null) {
+        return true;
+      }
+      if (!owner.internalKey.equals(internalKey)) {
+        return false;
+      }
+      if (slots.replace(slotKey, owner, claim)) {
+        return true;
+      }
+    }
+  }
+
+  public void releaseSlot(String slotKey, String internalKey) {
+    Claim owner = slots.get(slotKey);
+    if (owner != null && owner.internalKey.equals(internalKey)) {
+      slots.remove(slotKey, owner);
+    }
+  }
+
+  public String getSlotOwner(String slotKey) {
+    Claim owner = slots.get(slotKey);
+    return owner == null ? null : owner.internalKey;
+  }
+
+  public void putRoute(String externalKey, SessionRoute route) {
+    routes.put(externalKey, route);
+  }
+
+  public SessionRoute getRoute(String externalKey) {
+    return routes.get(externalKey);
+  }
+
+  public void removeRoute(String externalKey) {
+    routes.remove(externalKey);
+  }
+
+  public void renewLease(String hubId, long expiresAt) {
+    leases.put(hubId, expiresAt);
+  }
+
+  public Set<String> expireLeases(long now) {
+    Set<String> expired = new HashSet<String>();
+    for (Map.Entry<String, Long> lease : leases.entrySet()) {
+      if (lease.getValue() < now && leases.remove(lease.getKey(), lease.getValue())) {
+        expired.add(lease.getKey());
+      }
+    }
+    for (Map.Entry<String, Claim> slot : slots.entrySet()) {
+      if (!leases.containsKey(slot.getValue().hubId)) {
+        slots.remove(slot.getKey(), slot.getValue());
+      }
+    }
+    for (Map.Entry<String, SessionRoute> route : routes.entrySet()) {
+      if (!leases.containsKey(route.getValue().getHub())) {
+        routes.remove(route.getKey(), route.getValue());
+      }
+    }
+    return expired;
+  }
+
+  private static class Claim {
+    private final String internalKey;
+    private final String hubId;
+
+    Claim(String internalKey, String hubId) {
+      this.internalKey = internalKey;
+      this.hubId = hubId;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.openqa.grid.internal.RemoteProxy;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Default load balancing strategy : the proxies using the smallest part of their sessions are asked
+ * first, and proxies that are as busy as each other are asked in the order they registered.
+ * <p/>
+ * The proxies are kept ordered as their load changes, so a request only walks them until one has a
+ * free slot.
+ * <p/>
+ * {@link RemoteProxy#compareTo(RemoteProxy)} is not used : it compares the live load of the
+ * proxies, which would change under the ordered set. A proxy that has to be asked earlier or later
+ * than its load says is placed by overriding {@link #score(RemoteProxy)}, or by a strategy of its
+ * own.
+ */
+@ThreadSafe
+public class LeastUsedStrategy implements LoadBalancingStrategy {
+
+  private final ConcurrentSkipListSet<Entry> ordered = new ConcurrentSkipListSet<Entry>();
+  // guarded by this, as is the order of the writes to the set.
+  private final Map<RemoteProxy, Entry> entries = new HashMap<RemoteProxy, Entry>();
+  private long added = 0;
+
+  public synchronized void add(RemoteProxy proxy) {
+    Entry previous = entries.get(proxy);
+    // keep its place in the registration order if it is already there.
+    long rank = previous != null ? previous.rank : added++;
+    update(proxy, previous, new Entry(proxy, score(proxy), rank));
+  }
+
+  public synchronized void remove(RemoteProxy proxy) {
+    Entry entry = entries.remove(proxy);
+    if (entry != null) {
+      ordered.remove(entry);
+    }
+  }
+
+  public synchronized void loadChanged(RemoteProxy proxy) {
+    Entry previous = entries.get(proxy);
+    if (previous == null) {
+      return;
+    }
+    float score = score(proxy);
+    if (score != previous.score) {
+      update(proxy, previous, new Entry(proxy, score, previous.rank));
+    }
+  }
+
+  private void update(RemoteProxy proxy, Entry previous, Entry entry) {
+    if (previous != null) {
+      ordered.remove(previous);
+    }
+    entries.put(proxy, entry);
+    ordered.add(entry);
+  }
+
+  public Iterable<RemoteProxy> getProxies(Map<String, Object> desiredCapabilities) {
+    return new Iterable<RemoteProxy>() {
+      public Iterator<RemoteProxy> iterator() {
+        final Iterator<Entry> it = ordered.iterator();
+        return new Iterator<RemoteProxy>() {
+          public boolean hasNext() {
+            return it.hasNext();
+          }
+
+          public RemoteProxy next() {
+            return it.next().proxy;
+          }
+
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * @return how busy the proxy is. The proxies with the lowest score are asked first.
+   */
+  protected float score(RemoteProxy proxy) {
+    return proxy.getResourceUsageInPercent();
+  }
+
+  private static class Entry implements Comparable<Entry> {
+    private final RemoteProxy proxy;
+    private final float score;
+    private final long rank;
+
+    Entry(RemoteProxy proxy, float score, long rank) {
+      this.proxy = proxy;
+      this.score = score;
+      this.rank = rank;
+    }
+
+    public int compareTo(Entry o) {
+      int res = Float.compare(score, o.score);
+      if (res != 0) {
+        return res;
+      }
+      return rank < o.rank ? -1 : (rank == o.rank ? 0 : 1);
+    }
+  }
+}
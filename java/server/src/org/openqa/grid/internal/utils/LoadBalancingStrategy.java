@@ -0,0 +1,50 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import org.openqa.grid.internal.RemoteProxy;
+
+import java.util.Map;
+
+/**
+ * Decides in which order the proxies are asked for a new session, and so how the load spreads on
+ * the grid. The first proxy that has a free slot matching the request gets the session.
+ * <p/>
+ * The strategy is told when proxies come and go and when the load of a proxy changes, so that it
+ * can keep its order up to date instead of sorting all the proxies for each request. It is called
+ * from several threads at once and has to be thread safe.
+ *
+ * @link {@link GridHubConfiguration#setLoadBalancingStrategy(LoadBalancingStrategy)}
+ */
+public interface LoadBalancingStrategy {
+
+  public void add(RemoteProxy proxy);
+
+  public void remove(RemoteProxy proxy);
+
+  /**
+   * A session was started or stopped on the proxy.
+   */
+  public void loadChanged(RemoteProxy proxy);
+
+  /**
+   * @return the proxies to ask for a session for that request, in order. Iterating it must not
+   *         fail if proxies come and go or their load changes in the meantime.
+   */
+  public Iterable<RemoteProxy> getProxies(Map<String, Object> desiredCapabilities);
+}
@@ -0,0 +1,103 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The part of the state of the registry that several hubs need to agree on to serve the same grid
+ * : the nodes registered, which slots are taken, and which node runs each session. With a store
+ * shared between hubs, any hub can start a session on any node without giving away a slot another
+ * hub is using, and forward the commands of a session another hub started.
+ * <p/>
+ * The new session requests stay with the hub that received them : a hub only matches its own
+ * queue, against the slots the store says are free.
+ * <p/>
+ * The slots taken and the routes belong to the hub that took them, for as long as that hub keeps
+ * renewing its lease. Once a lease runs out, any hub can expire it, which frees the slots and drops
+ * the routes of the hub that is gone.
+ * <p/>
+ * The store is called from several threads at once and has to be thread safe. Keys and values are
+ * strings, so that a store doesn't need to know about proxies and sessions to keep them.
+ *
+ * @link {@link GridHubConfiguration#setRegistryStore(RegistryStore)}
+ */
+public interface RegistryStore {
+
+  /**
+   * Keeps the registration request of a node, as JSON, for the other hubs to pick up.
+   */
+  public void putRegistration(String proxyId, String registration);
+
+  /**
+   * @return the registration request of the node, null if it isn't registered.
+   */
+  public String getRegistration(String proxyId);
+
+  public void removeRegistration(String proxyId);
+
+  /**
+   * @return the registration requests of all the nodes, by proxy id.
+   */
+  public Map<String, String> getRegistrations();
+
+  /**
+   * Takes the slot for a session, unless it is already taken by another session. If the session
+   * already holds the slot, the slot now belongs to the given hub.
+   *
+   * @return true if the slot is now held by that session.
+   */
+  public boolean claimSlot(String slotKey, String internalKey, String hubId);
+
+  /**
+   * Frees the slot, if it is still held by that session.
+   */
+  public void releaseSlot(String slotKey, String internalKey);
+
+  /**
+   * @return the internal key of the session holding the slot, null if it is free.
+   */
+  public String getSlotOwner(String slotKey);
+
+  /**
+   * Tells the other hubs where the session with that external key runs.
+   */
+  public void putRoute(String externalKey, SessionRoute route);
+
+  /**
+   * @return where the session runs, null if no hub knows about it.
+   */
+  public SessionRoute getRoute(String externalKey);
+
+  public void removeRoute(String externalKey);
+
+  /**
+   * Keeps the slots and routes of the hub until the given time. A hub renews its lease for as long
+   * as it runs.
+   */
+  public void renewLease(String hubId, long expiresAt);
+
+  /**
+   * Frees the slots and drops the routes of the hubs whose lease ended before the given time, or
+   * that have no lease at all.
+   *
+   * @return the ids of the hubs whose lease ended.
+   */
+  public Set<String> expireLeases(long now);
+}
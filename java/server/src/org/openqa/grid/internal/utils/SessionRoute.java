@@ -0,0 +1,100 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Where a session runs : the proxy, the index of the slot in that proxy, and the internal key the
+ * hub that started it gave it. Also which hub served the session last, the one that will release
+ * it if the client goes away.
+ */
+public class SessionRoute {
+
+  private final String internalKey;
+  private final String proxyId;
+  private final int slot;
+  private final String hub;
+
+  public SessionRoute(String internalKey, String proxyId, int slot, String hub) {
+    this.internalKey = internalKey;
+    this.proxyId = proxyId;
+    this.slot = slot;
+    this.hub = hub;
+  }
+
+  public String getInternalKey() {
+    return internalKey;
+  }
+
+  public String getProxyId() {
+    return proxyId;
+  }
+
+  public int getSlot() {
+    return slot;
+  }
+
+  public String getHub() {
+    return hub;
+  }
+
+  public JSONObject toJSON() {
+    try {
+      JSONObject res = new JSONObject();
+      res.put("internalKey", internalKey);
+      res.put("proxy", proxyId);
+      res.put("slot", slot);
+      res.put("hub", hub);
+      return res;
+    } catch (JSONException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static SessionRoute fromJSON(String json) {
+    try {
+      JSONObject o = new JSONObject(json);
+      return new SessionRoute(o.getString("internalKey"), o.getString("proxy"), o.getInt("slot"),
+                              o.getString("hub"));
+    } catch (JSONException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof SessionRoute)) {
+      return false;
+    }
+    SessionRoute other = (SessionRoute) o;
+    return internalKey.equals(other.internalKey) && proxyId.equals(other.proxyId)
+           && slot == other.slot && hub.equals(other.hub);
+  }
+
+  @Override
+  public int hashCode() {
+    return internalKey.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return proxyId + "#" + slot + " (" + internalKey + ", served by " + hub + ")";
+  }
+}
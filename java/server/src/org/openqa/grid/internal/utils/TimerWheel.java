@@ -0,0 +1,184 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs tasks after a delay, with one thread for all of them : the tasks are kept in a wheel of
+ * buckets, one per tick, and each tick only looks at the bucket whose time has come. Scheduling and
+ * cancelling are cheap, so that every forwarded command can have its own deadline, and the
+ * precision is a tick.
+ * <p/>
+ * The tasks run on the executor given at construction, so that a slow one doesn't delay the
+ * others.
+ */
+@ThreadSafe
+public class TimerWheel {
+
+  private static final Logger log = Logger.getLogger(TimerWheel.class.getName());
+
+  private final long tickNanos;
+  private final List<List<Timeout>> wheel;
+  private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<Timeout>();
+  private final Executor executor;
+  private final Thread worker;
+  private final long start = System.nanoTime();
+  private volatile boolean stopped;
+
+  public TimerWheel(String name, long tickMillis, int buckets, Executor executor) {
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    this.wheel = new ArrayList<List<Timeout>>(buckets);
+    for (int i = 0; i < buckets; i++) {
+      wheel.add(new LinkedList<Timeout>());
+    }
+    this.executor = executor;
+    this.worker = new Thread(new Worker(), name);
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  /**
+   * @return the handle to cancel the task with.
+   */
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(delay, 0)));
+    if (stopped) {
+      timeout.cancel();
+    } else {
+      scheduled.add(timeout);
+    }
+    return timeout;
+  }
+
+  /**
+   * Stops the timer. The tasks that haven't run yet never will.
+   */
+  public void stop() {
+    stopped = true;
+    worker.interrupt();
+  }
+
+  public static class Timeout {
+    private static final int WAITING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final Runnable task;
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    private long rounds;
+
+    Timeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * @return true if the task won't run because of this call, false if it already ran or was
+     *         cancelled.
+     */
+    public boolean cancel() {
+      return state.compareAndSet(WAITING, CANCELLED);
+    }
+
+    public boolean isCancelled() {
+      return state.get() == CANCELLED;
+    }
+
+    /**
+     * @return true once the task was handed to the executor.
+     */
+    public boolean isExpired() {
+      return state.get() == EXPIRED;
+    }
+  }
+
+  private class Worker implements Runnable {
+    private long tick;
+
+    public void run() {
+      while (!stopped) {
+        tick++;
+        try {
+          waitForNextTick();
+        } catch (InterruptedException e) {
+          break;
+        }
+        transferScheduled();
+        expire(wheel.get((int) (tick % wheel.size())));
+      }
+      scheduled.clear();
+    }
+
+    private void waitForNextTick() throws InterruptedException {
+      long deadline = start + tick * tickNanos;
+      long sleep;
+      while ((sleep = deadline - System.nanoTime()) > 0) {
+        TimeUnit.NANOSECONDS.sleep(sleep);
+      }
+    }
+
+    private void transferScheduled() {
+      Timeout timeout;
+      while ((timeout = scheduled.poll()) != null) {
+        if (timeout.isCancelled()) {
+          continue;
+        }
+        long ticks = (timeout.deadline - start + tickNanos - 1) / tickNanos;
+        // already late : run it on this tick.
+        long due = Math.max(ticks, tick);
+        timeout.rounds = (due - tick) / wheel.size();
+        wheel.get((int) (due % wheel.size())).add(timeout);
+      }
+    }
+
+    private void expire(List<Timeout> bucket) {
+      for (Iterator<Timeout> it = bucket.iterator(); it.hasNext(); ) {
+        Timeout timeout = it.next();
+        if (timeout.isCancelled()) {
+          it.remove();
+        } else if (timeout.rounds > 0) {
+          timeout.rounds--;
+        } else {
+          it.remove();
+          if (timeout.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+            try {
+              executor.execute(timeout.task);
+            } catch (RejectedExecutionException e) {
+              log.log(Level.FINE, "timer stopped, not running " + timeout.task, e);
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.openqa.grid.common.RegistrationRequest;
+import org.openqa.grid.internal.RemoteProxy;
+
+import java.util.logging.Logger;
+
+/**
+ * Spreads the load according to the weight each node reported when registering, for instance a CPU
+ * score, so that a node twice as heavy gets twice as many sessions. Nodes that don't report a
+ * weight, or a weight that isn't a number, weigh their max number of sessions.
+ */
+@ThreadSafe
+public class WeightedStrategy extends LeastUsedStrategy {
+
+  private static final Logger log = Logger.getLogger(WeightedStrategy.class.getName());
+
+  @Override
+  public void add(RemoteProxy proxy) {
+    Object weight = proxy.getConfig().get(RegistrationRequest.WEIGHT);
+    // warned about once, the weight is read again each time the load of the node changes.
+    if (weight instanceof String && parse((String) weight) == null) {
+      log.warning("Node " + proxy + " reported the weight '" + weight + "', which isn't a number."
+                  + " It weighs its max number of sessions instead");
+    }
+    super.add(proxy);
+  }
+
+  @Override
+  protected float score(RemoteProxy proxy) {
+    return proxy.getTotalUsed() / getWeight(proxy);
+  }
+
+  static float getWeight(RemoteProxy proxy) {
+    Object weight = proxy.getConfig().get(RegistrationRequest.WEIGHT);
+    Float res = null;
+    if (weight instanceof Number) {
+      res = ((Number) weight).floatValue();
+    } else if (weight instanceof String) {
+      res = parse((String) weight);
+    }
+    if (res == null) {
+      res = (float) proxy.getMaxNumberOfConcurrentTestSessions();
+    }
+    // a node can't make the others wait forever by reporting it weighs nothing.
+    return res > 0 ? res : Float.MIN_VALUE;
+  }
+
+  private static Float parse(String weight) {
+    try {
+      return Float.parseFloat(weight.trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
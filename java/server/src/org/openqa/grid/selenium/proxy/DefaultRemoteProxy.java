@@ -158,6 +158,9 @@ public void run() {
                     }
                   }
                 } else {
+                  if (down) {
+                    getRegistry().getGridEvents().nodeUp(DefaultRemoteProxy.this);
+                  }
                   down = false;
                   failedPollingTries = 0;
                   downSince = 0;
@@ -186,6 +189,9 @@ public void onEvent(List<RemoteException> events, RemoteException lastInserted)
     for (RemoteException e : events) {
       if (e instanceof RemoteNotReachableException) {
         log.warning(e.getMessage());
+        if (!down) {
+          getRegistry().getGridEvents().nodeDown(this);
+        }
         down = true;
         this.errors.clear();
       }
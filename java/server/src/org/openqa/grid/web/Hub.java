@@ -25,6 +25,8 @@
 import org.openqa.grid.web.servlet.DisplayHelpServlet;
 import org.openqa.grid.web.servlet.DriverServlet;
 import org.openqa.grid.web.servlet.Grid1HeartbeatServlet;
+import org.openqa.grid.web.servlet.GridEventsServlet;
+import org.openqa.grid.web.servlet.GridMetricsServlet;
 import org.openqa.grid.web.servlet.HubStatusServlet;
 import org.openqa.grid.web.servlet.LifecycleServlet;
 import org.openqa.grid.web.servlet.ProxyStatusServlet;
@@ -37,11 +39,17 @@
 import org.seleniumhq.jetty7.server.bio.SocketConnector;
 import org.seleniumhq.jetty7.servlet.ServletContextHandler;
 
+import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import javax.servlet.Servlet;
 
 /**
@@ -126,6 +134,8 @@ private void initServer() {
       root.addServlet(ProxyStatusServlet.class.getName(), "/grid/api/proxy/*");
       root.addServlet(HubStatusServlet.class.getName(), "/grid/api/hub/*");
       root.addServlet(TestSessionStatusServlet.class.getName(), "/grid/api/testsession/*");
+      root.addServlet(GridEventsServlet.class.getName(), "/grid/api/events/*");
+      root.addServlet(GridMetricsServlet.class.getName(), "/grid/api/metrics/*");
       root.addServlet(LifecycleServlet.class.getName(), "/lifecycle-manager/*");
 
       // Selenium Grid 1.0 compatibility routes for older nodes trying to
@@ -154,12 +164,42 @@ public String getHost() {
   public void start() throws Exception {
     initServer();
     server.start();
+    registerMetrics();
   }
 
   public void stop() throws Exception {
+    unregisterMetrics();
     server.stop();
   }
 
+  private ObjectName getMetricsName() throws JMException {
+    return new ObjectName("org.openqa.grid:type=Hub,name=Metrics,port=" + port);
+  }
+
+  private void registerMetrics() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = getMetricsName();
+      if (!server.isRegistered(name)) {
+        server.registerMBean(registry.getGridMetrics(), name);
+      }
+    } catch (JMException e) {
+      log.log(Level.WARNING, "Could not register the hub metrics with JMX", e);
+    }
+  }
+
+  private void unregisterMetrics() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = getMetricsName();
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    } catch (JMException e) {
+      log.log(Level.WARNING, "Could not unregister the hub metrics from JMX", e);
+    }
+  }
+
   public URL getUrl() {
     try {
       return new URL("http://" + getHost() + ":" + getPort());
@@ -48,6 +48,7 @@ public class ConsoleServlet extends RegistryBasedServlet {
   private static final Logger log = Logger.getLogger(ConsoleServlet.class.getName());
   private static String coreVersion;
   private static String coreRevision;
+  private final StatusPageCache cache = new StatusPageCache();
 
   public ConsoleServlet() {
     this(null);
@@ -86,8 +87,30 @@ protected void process(HttpServletRequest request, HttpServletResponse response)
 
     response.setContentType("text/html");
     response.setCharacterEncoding("UTF-8");
-    response.setStatus(200);
 
+    if (request.getParameter("config") != null) {
+      response.setStatus(200);
+      InputStream in = new ByteArrayInputStream(render(request, refresh).getBytes("UTF-8"));
+      try {
+        ByteStreams.copy(in, response.getOutputStream());
+      } finally {
+        in.close();
+        response.flushBuffer();
+      }
+      return;
+    }
+
+    String variant = String.valueOf(refresh);
+    long version = getRegistry().getHubStatus().getVersion();
+    StatusPageCache.Page page = cache.get(variant, version);
+    if (page == null) {
+      page = cache.put(variant, version, render(request, refresh));
+    }
+    page.write(request, response);
+    response.flushBuffer();
+  }
+
+  private String render(HttpServletRequest request, int refresh) {
     StringBuilder builder = new StringBuilder();
 
     builder.append("<html>");
@@ -135,14 +158,7 @@ protected void process(HttpServletRequest request, HttpServletResponse response)
 
     builder.append("</body>");
     builder.append("</html>");
-
-    InputStream in = new ByteArrayInputStream(builder.toString().getBytes("UTF-8"));
-    try {
-      ByteStreams.copy(in, response.getOutputStream());
-    } finally {
-      in.close();
-      response.flushBuffer();
-    }
+    return builder.toString();
   }
 
   /**
@@ -18,9 +18,10 @@
 package org.openqa.grid.web.servlet;
 
 import org.openqa.grid.internal.Registry;
-import org.openqa.grid.internal.RemoteProxy;
 
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.Map;
 
 import javax.servlet.ServletException;
@@ -55,12 +56,13 @@ protected void doGet(HttpServletRequest request, HttpServletResponse response)
         String.format("http://%s:%s", queryParams.get("host")[0],
             queryParams.get("port")[0]);
 
-    // Check each registered node and see if the pinging node is in the list.
-    boolean alreadyRegistered = false;
-    for (RemoteProxy proxy : getRegistry().getAllProxies()) {
-      if (proxy.getRemoteHost().toString().equals(nodeUrl)) {
-        alreadyRegistered = true;
-      }
+    // Check if the pinging node is among the registered ones.
+    boolean alreadyRegistered;
+    try {
+      alreadyRegistered =
+          getRegistry().getAllProxies().getProxyByRemoteHost(new URL(nodeUrl)) != null;
+    } catch (MalformedURLException e) {
+      alreadyRegistered = false;
     }
 
     if (alreadyRegistered) {
@@ -0,0 +1,163 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.web.servlet;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openqa.grid.common.exception.GridException;
+import org.openqa.grid.internal.GridEvent;
+import org.openqa.grid.internal.GridEvents;
+import org.openqa.grid.internal.HubStatus;
+import org.openqa.grid.internal.Registry;
+import org.openqa.grid.internal.listeners.GridEventListener;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Streams what happens on the grid as server-sent events, so that monitoring can follow the hub
+ * instead of polling it.
+ *
+ * use the API by sending a GET to grid/api/events/ and reading the text/event-stream response. The
+ * first event is a "status" with the slot counts at the time of connecting, and the id of the last
+ * event they count. The following ones are named after the {@link GridEvent.Type}s, with the event
+ * as JSON in the data field :
+ *
+ * id: 42
+ * event: slotAcquired
+ * data: {"type":"slotAcquired","proxy":"http://node1:5555","session":"...",...}
+ *
+ * Each connected client holds a hub thread. A client that lets more than {@link #QUEUE_SIZE}
+ * events pile up is disconnected, and can reconnect to start again from a fresh status.
+ */
+public class GridEventsServlet extends RegistryBasedServlet {
+
+  private static final long serialVersionUID = -3213286722407357563L;
+
+  static final int QUEUE_SIZE = 1000;
+  static final long KEEP_ALIVE_MS = 15000;
+
+  public GridEventsServlet() {
+    this(null);
+  }
+
+  public GridEventsServlet(Registry registry) {
+    super(registry);
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    process(request, response);
+  }
+
+  protected void process(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    response.setStatus(200);
+
+    EventQueue queue = new EventQueue();
+    GridEvents events = getRegistry().getGridEvents();
+    // listening before the snapshot is taken, so that no event falls between the two.
+    events.addListener(queue);
+    try {
+      Writer out = new OutputStreamWriter(response.getOutputStream(), "UTF-8");
+      long snapshotId = events.getLastEventId();
+      writeStatus(out, snapshotId);
+      out.flush();
+      response.flushBuffer();
+
+      List<GridEvent> batch = new ArrayList<GridEvent>();
+      while (!queue.overflowed) {
+        GridEvent event = queue.poll(KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+        if (event == null) {
+          // a comment, to find out if the client is gone and keep proxies from timing out.
+          out.write(": keep-alive\n\n");
+        } else {
+          batch.add(event);
+          queue.drainTo(batch);
+          for (GridEvent e : batch) {
+            // the status already counts the events up to its id.
+            if (e.getId() > snapshotId) {
+              write(out, e.getId(), e.getType().getName(), e.toJSON());
+            }
+          }
+          batch.clear();
+        }
+        out.flush();
+        response.flushBuffer();
+      }
+    } catch (InterruptedException e) {
+      // the hub is stopping.
+    } finally {
+      events.removeListener(queue);
+    }
+  }
+
+  private void writeStatus(Writer out, long lastEventId) throws IOException {
+    HubStatus status = getRegistry().getHubStatus();
+    try {
+      JSONObject res = new JSONObject();
+      res.put("type", "status");
+      res.put("time", System.currentTimeMillis());
+      res.put("proxies", status.getProxyCount());
+      res.put("free", status.getFreeSlots());
+      res.put("total", status.getTotalSlots());
+      res.put("newSessionRequestCount", getRegistry().getNewSessionRequestCount());
+      write(out, lastEventId, "status", res);
+    } catch (JSONException e) {
+      throw new GridException(e.getMessage());
+    }
+  }
+
+  private static void write(Writer out, long id, String name, JSONObject data)
+      throws IOException {
+    out.write("id: " + id + "\n");
+    out.write("event: " + name + "\n");
+    out.write("data: " + data + "\n\n");
+  }
+
+  private static class EventQueue extends ArrayBlockingQueue<GridEvent>
+      implements GridEventListener {
+
+    private static final long serialVersionUID = 4715920736812049384L;
+
+    private volatile boolean overflowed;
+
+    EventQueue() {
+      super(QUEUE_SIZE);
+    }
+
+    public void onEvent(GridEvent event) {
+      if (!offer(event)) {
+        overflowed = true;
+      }
+    }
+  }
+}
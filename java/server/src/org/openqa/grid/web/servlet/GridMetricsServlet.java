@@ -0,0 +1,87 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.web.servlet;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openqa.grid.common.exception.GridException;
+import org.openqa.grid.internal.GridMetrics;
+import org.openqa.grid.internal.Registry;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * API to get the timings of the hub.
+ *
+ * use the API by sending a GET to grid/api/metrics/. The response has, for each capability
+ * signature (browser:version:platform), the number of requests that timed out and the histograms
+ * described in {@link GridMetrics}, in milliseconds :
+ *
+ * {"success": true,
+ *  "metrics": {
+ *    "firefox:any:any": {
+ *      "timedOut": 0,
+ *      "queueTime": {"count": 12, "mean": 3.2, "max": 20.4, "p50": 1.1, "p90": 9.2, "p99": 20.4,
+ *                    "buckets": [[1.151, 7], [9.215, 4], [20.479, 1]]},
+ *      "sessionDuration": {...},
+ *      "hubOverhead": {...},
+ *      "nodeTime": {...}
+ *    }
+ *  }
+ * }
+ *
+ * buckets are [highest value, count] for the buckets that are not empty.
+ */
+public class GridMetricsServlet extends RegistryBasedServlet {
+
+  private static final long serialVersionUID = 4402716262318917224L;
+
+  public GridMetricsServlet() {
+    this(null);
+  }
+
+  public GridMetricsServlet(Registry registry) {
+    super(registry);
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    process(request, response);
+  }
+
+  protected void process(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    response.setContentType("application/json");
+    response.setCharacterEncoding("UTF-8");
+    response.setStatus(200);
+    try {
+      JSONObject res = new JSONObject();
+      res.put("success", true);
+      res.put("metrics", getRegistry().getGridMetrics().toJSON());
+      response.getWriter().print(res);
+      response.getWriter().close();
+    } catch (JSONException e) {
+      throw new GridException(e.getMessage());
+    }
+  }
+}
@@ -23,8 +23,7 @@
 import org.json.JSONObject;
 import org.openqa.grid.common.exception.GridException;
 import org.openqa.grid.internal.Registry;
-import org.openqa.grid.internal.RemoteProxy;
-import org.openqa.grid.internal.TestSlot;
+import org.openqa.grid.internal.HubStatus;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -56,9 +55,12 @@
  * 
  * {"configuration": []  }
  *
+ * Responses are kept until the registry changes, and carry an ETag for conditional GETs.
  */
 public class HubStatusServlet extends RegistryBasedServlet {
 
+  private final StatusPageCache cache = new StatusPageCache();
+
   public HubStatusServlet() {
     super(null);
   }
@@ -79,24 +81,28 @@ protected void process(HttpServletRequest request, HttpServletResponse response)
       throws IOException {
     response.setContentType("application/json");
     response.setCharacterEncoding("UTF-8");
-    response.setStatus(200);
-    JSONObject res;
     try {
-      res = getResponse(request);
-      response.getWriter().print(res);
-      response.getWriter().close();
+      String json = request.getInputStream() != null ? getRequestBody(request) : null;
+      String variant = String.valueOf(json);
+      long version = getRegistry().getHubStatus().getVersion();
+      StatusPageCache.Page page = cache.get(variant, version);
+      if (page == null) {
+        page = cache.put(variant, version, getResponse(json).toString());
+      }
+      page.write(request, response);
+      response.getOutputStream().close();
     } catch (JSONException e) {
       throw new GridException(e.getMessage());
     }
 
   }
 
-  private JSONObject getResponse(HttpServletRequest request) throws IOException, JSONException {
+  private JSONObject getResponse(String json) throws JSONException {
     JSONObject res = new JSONObject();
     res.put("success", true);
     try {
-      if (request.getInputStream() != null) {
-        JSONObject requestJSON = getRequestJSON(request);
+      if (json != null) {
+        JSONObject requestJSON = "".equals(json) ? null : new JSONObject(json);
         JSONArray keys = requestJSON != null ? requestJSON.getJSONArray("configuration") : null;
 
         Set<String> paramsToReturn;
@@ -122,6 +128,11 @@ private JSONObject getResponse(HttpServletRequest request) throws IOException, J
           paramsToReturn.remove("slotCounts");
         }
 
+        if (paramsToReturn.contains("loadSpread")) {
+          res.put("loadSpread", registry.getAllProxies().getLoadSpread().toJSON());
+          paramsToReturn.remove("loadSpread");
+        }
+
         for (String key : paramsToReturn) {
           Object value = allParams.get(key);
           if (value == null) {
@@ -141,29 +152,17 @@ private JSONObject getResponse(HttpServletRequest request) throws IOException, J
   }
 
   private JSONObject getSlotCounts() throws JSONException {
-    int freeSlots = 0;
-    int totalSlots = 0;
-
-    for (RemoteProxy proxy : getRegistry().getAllProxies()) {
-      for (TestSlot slot : proxy.getTestSlots()) {
-        if (slot.getSession() == null) {
-          freeSlots += 1;
-        }
-
-        totalSlots += 1;
-      }
-    }
+    HubStatus status = getRegistry().getHubStatus();
 
     JSONObject result = new JSONObject();
 
-    result.put("free", freeSlots);
-    result.put("total", totalSlots);
+    result.put("free", status.getFreeSlots());
+    result.put("total", status.getTotalSlots());
 
     return result;
   }
 
-  private JSONObject getRequestJSON(HttpServletRequest request) throws IOException, JSONException {
-    JSONObject requestJSON = null;
+  private String getRequestBody(HttpServletRequest request) throws IOException {
     BufferedReader rd = new BufferedReader(new InputStreamReader(request.getInputStream()));
     StringBuilder s = new StringBuilder();
     String line;
@@ -171,10 +170,6 @@ private JSONObject getRequestJSON(HttpServletRequest request) throws IOException
       s.append(line);
     }
     rd.close();
-    String json = s.toString();
-    if (!"".equals(json)) {
-      requestJSON = new JSONObject(json);
-    }
-    return requestJSON;
+    return s.toString();
   }
 }
@@ -27,14 +27,15 @@
 import javax.servlet.http.HttpServletResponse;
 
 import org.openqa.grid.common.RegistrationRequest;
-import org.openqa.grid.internal.BaseRemoteProxy;
 import org.openqa.grid.internal.Registry;
-import org.openqa.grid.internal.RemoteProxy;
 import org.openqa.grid.internal.utils.GridHubConfiguration;
 
 /**
  * entry point for the registration API the grid provides. The {@link RegistrationRequest} sent to
  * http://hub:port/grid/register will be used to create a RemoteProxy and add it to the grid.
+ * <p/>
+ * The proxy is added asynchronously. A node registering again the same way while idle is only a
+ * heartbeat, see {@link Registry#register(RegistrationRequest)}.
  */
 public class RegistrationServlet extends RegistryBasedServlet {
   private static final long serialVersionUID = -8670670577712086527L;
@@ -84,15 +85,10 @@ protected void process(HttpServletRequest request, HttpServletResponse response)
 
     // TODO freynaud : load template desiredCapability from the hub. Is that useful?
 
-    final RemoteProxy proxy = BaseRemoteProxy.getNewInstance(server, getRegistry());
+    boolean heartbeat = getRegistry().register(server);
+    log.fine((heartbeat ? "heartbeat from " : "registration queued for ")
+             + server.getConfiguration().get(RegistrationRequest.REMOTE_HOST));
     reply(response, "ok");
-
-    new Thread(new Runnable() {  // Thread safety reviewed
-      public void run() {
-        getRegistry().add(proxy);
-        log.fine("proxy added " + proxy.getRemoteHost());
-      }
-    }).start();
   }
 
   protected void reply(HttpServletResponse response, String content) throws IOException {
@@ -0,0 +1,127 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.web.servlet;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import org.openqa.grid.internal.HubStatus;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Pages rendered from the state of the registry, kept for as long as the {@link HubStatus} version
+ * they were rendered from is current, so that dashboards polling the hub don't make it walk every
+ * proxy on each request.
+ * <p/>
+ * Some of what the pages show, like the last command of a session, changes without the version
+ * moving on, so pages are also dropped once they are older than the max age.
+ * <p/>
+ * Each page carries an ETag, and a client sending it back in If-None-Match gets a 304.
+ */
+public class StatusPageCache {
+
+  public static final long DEFAULT_MAX_AGE_MS = 10000;
+
+  // there is a page per variant (query parameters, requested keys...). Bound them so a client
+  // can't fill the hub's memory with variants.
+  private static final int MAX_VARIANTS = 32;
+
+  private final long maxAgeMillis;
+  private final ConcurrentMap<String, Page> pages = new ConcurrentHashMap<String, Page>();
+
+  public StatusPageCache() {
+    this(DEFAULT_MAX_AGE_MS);
+  }
+
+  public StatusPageCache(long maxAgeMillis) {
+    this.maxAgeMillis = maxAgeMillis;
+  }
+
+  /**
+   * @param variant what the page was rendered for, beyond the state of the registry.
+   * @param version the current version of the {@link HubStatus}.
+   * @return the page, or null if there is none for that version or it is too old.
+   */
+  public Page get(String variant, long version) {
+    Page page = pages.get(variant);
+    if (page == null || page.version != version
+        || System.currentTimeMillis() - page.created > maxAgeMillis) {
+      return null;
+    }
+    return page;
+  }
+
+  /**
+   * Keeps a newly rendered page.
+   *
+   * @param version the version of the {@link HubStatus} read before rendering the page.
+   */
+  public Page put(String variant, long version, String content) {
+    Page page = new Page(version, content.getBytes(Charsets.UTF_8));
+    if (pages.size() >= MAX_VARIANTS) {
+      pages.clear();
+    }
+    pages.put(variant, page);
+    return page;
+  }
+
+  public static class Page {
+    private final long version;
+    private final long created = System.currentTimeMillis();
+    private final byte[] content;
+    private final String etag;
+
+    Page(long version, byte[] content) {
+      this.version = version;
+      this.content = content;
+      this.etag = "\"" + Hashing.murmur3_128().hashBytes(content) + "\"";
+    }
+
+    public String getETag() {
+      return etag;
+    }
+
+    public byte[] getContent() {
+      return content;
+    }
+
+    /**
+     * Sends the page, or a 304 if the client already has it. The content type and encoding are
+     * expected to be set already.
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response)
+        throws IOException {
+      response.setHeader("ETag", etag);
+      response.setHeader("Cache-Control", "no-cache");
+      String ifNoneMatch = request.getHeader("If-None-Match");
+      if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || "*".equals(ifNoneMatch.trim()))) {
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return;
+      }
+      response.setStatus(HttpServletResponse.SC_OK);
+      response.setContentLength(content.length);
+      response.getOutputStream().write(content);
+    }
+  }
+}
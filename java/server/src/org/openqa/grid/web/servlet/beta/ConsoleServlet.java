@@ -37,6 +37,7 @@
 import org.openqa.grid.internal.utils.GridHubConfiguration;
 import org.openqa.grid.internal.utils.HtmlRenderer;
 import org.openqa.grid.web.servlet.RegistryBasedServlet;
+import org.openqa.grid.web.servlet.StatusPageCache;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
 import com.google.common.io.ByteStreams;
@@ -47,6 +48,7 @@ public class ConsoleServlet extends RegistryBasedServlet {
   private static final Logger log = Logger.getLogger(ConsoleServlet.class.getName());
   private static String coreVersion;
   private static String coreRevision;
+  private final StatusPageCache cache = new StatusPageCache();
 
   public ConsoleServlet() {
     this(null);
@@ -85,8 +87,34 @@ protected void process(HttpServletRequest request, HttpServletResponse response)
 
     response.setContentType("text/html");
     response.setCharacterEncoding("UTF-8");
-    response.setStatus(200);
 
+    if (request.getParameter("config") != null) {
+      response.setStatus(200);
+      InputStream in = new ByteArrayInputStream(render(request, refresh).getBytes("UTF-8"));
+      try {
+        ByteStreams.copy(in, response.getOutputStream());
+      } finally {
+        in.close();
+        response.getOutputStream().close();
+      }
+      return;
+    }
+
+    // rendering asks every node for its status, so only do it when something changed.
+    String variant = String.valueOf(refresh);
+    long version = getRegistry().getHubStatus().getVersion();
+    StatusPageCache.Page page = cache.get(variant, version);
+    if (page == null) {
+      page = cache.put(variant, version, render(request, refresh));
+    }
+    try {
+      page.write(request, response);
+    } finally {
+      response.getOutputStream().close();
+    }
+  }
+
+  private String render(HttpServletRequest request, int refresh) {
     StringBuilder builder = new StringBuilder();
 
     builder.append("<html>");
@@ -165,14 +193,7 @@ protected void process(HttpServletRequest request, HttpServletResponse response)
     builder.append("</div>");
     builder.append("</body>");
     builder.append("</html>");
-
-    InputStream in = new ByteArrayInputStream(builder.toString().getBytes("UTF-8"));
-    try {
-      ByteStreams.copy(in, response.getOutputStream());
-    } finally {
-      in.close();
-      response.getOutputStream().close();
-    }
+    return builder.toString();
   }
 
   private Object getRequestQueue() {
@@ -104,13 +104,22 @@ public void process() {
       case START_SESSION:
         log.info("Got a request to create a new session: "
                  + new DesiredCapabilities(request.getDesiredCapabilities()));
+        long queued = System.nanoTime();
         try {
           registry.addNewSessionRequest(this);
           waitForSessionBound();
+          registry.getGridMetrics().requestMatched(request.getDesiredCapabilities(),
+                                                   System.nanoTime() - queued);
           beforeSessionEvent();
           forwardNewSessionRequestAndUpdateRegistry(session);  
+          registry.sessionStarted(session);
         } catch (Exception e) {
           cleanup();
+          if (e instanceof TimeoutException) {
+            registry.getGridEvents().requestTimedOut(request.getDesiredCapabilities());
+            registry.getGridMetrics().requestTimedOut(request.getDesiredCapabilities(),
+                                                      System.nanoTime() - queued);
+          }
           throw new GridException("Error forwarding the new session " + e.getMessage(), e);
         }
         break;
@@ -49,11 +49,15 @@
  * details that are selenium related ( type of protocol, new session request
  * etc ) Also allows to change the content of the request, or read it 
  * on the hub.
- * 
+ * <p>
+ * The body is only read into memory the first time something on the hub asks for it, which for
+ * webdriver is only new session requests. Otherwise {@link #getInputStream()} hands out the
+ * original stream, so the body goes straight through to the node.
  */
 public abstract class SeleniumBasedRequest extends HttpServletRequestWrapper {
 
   private byte[] body;
+  private boolean bodyStreamed;
   private final Registry registry;
   private final RequestType type;
   private final String encoding = "UTF-8";
@@ -94,12 +98,6 @@ public SeleniumBasedRequest(HttpServletRequest request, Registry registry, Reque
 
   public SeleniumBasedRequest(HttpServletRequest httpServletRequest, Registry registry) {
     super(httpServletRequest);
-    try {
-      InputStream is = super.getInputStream();
-      setBody(ByteStreams.toByteArray(is));
-    } catch (IOException ex) {
-      throw new RuntimeException(ex);
-    }
     this.registry = registry;
     type = extractRequestType();
 
@@ -148,7 +146,11 @@ public RequestType getRequestType() {
 
   @Override
   public ServletInputStream getInputStream() throws IOException {
-    return new ServletInputStreamImpl(new ByteArrayInputStream(body));
+    if (body != null) {
+      return new ServletInputStreamImpl(new ByteArrayInputStream(body));
+    }
+    bodyStreamed = true;
+    return super.getInputStream();
   }
 
   @Override
@@ -159,14 +161,25 @@ public BufferedReader getReader() throws IOException {
   @Override
   public int getContentLength() {
     if (body == null){
-      return 0;  
+      return super.getContentLength();
     }else {
       return body.length;
     }
     
   }
 
+  /**
+   * Reads the body into memory if it has not been already, after which it is also what gets
+   * forwarded to the node. Once the body has been streamed to the node it is gone: calling this
+   * after the forward, from {@link org.openqa.grid.internal.listeners.CommandListener#afterCommand}
+   * for instance, returns null. Call it before the forward to keep the body around.
+   *
+   * @return the body, or null if it was already streamed to the node.
+   */
   public String getBody() {
+    if (!bufferBody()) {
+      return null;
+    }
     try {
       Charset charset = Charset.forName(encoding);
       CharsetDecoder decoder = charset.newDecoder();
@@ -178,6 +191,20 @@ public String getBody() {
     return null;
   }
 
+  private boolean bufferBody() {
+    if (body == null && !bodyStreamed) {
+      try {
+        InputStream in = super.getInputStream();
+        if (in != null) {
+          setBody(ByteStreams.toByteArray(in));
+        }
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+    return body != null;
+  }
+
   public void setBody(String content) {
     setBody(content.getBytes());
   }
@@ -197,8 +224,9 @@ public String toString() {
     StringBuilder builder = new StringBuilder();
     builder.append("["+format.format(new Date(timestamp))+"] ");
     builder.append(getMethod().toUpperCase() +" "+getPathInfo()+"   ");
-    if (getBody() != null && !getBody().isEmpty()) {
-      builder.append(getBody());
+    // only what is already in memory, printing must not buffer a body that would be streamed.
+    if (body != null && body.length != 0) {
+      builder.append(new String(body, Charset.forName(encoding)));
     }
     return builder.toString();
   }
@@ -219,6 +247,10 @@ public int read() throws IOException {
       return is.read();
     }
 
+    public int read(byte[] b, int off, int len) throws IOException {
+      return is.read(b, off, len);
+    }
+
     public boolean markSupported() {
       return false;
     }
@@ -203,7 +203,7 @@ public boolean equals(Object o)
             return
                 fi==this ||
                 fi._hashCode==_hashCode ||
-                fi._name.equals(_name);
+                fi._lname.equals(_lname);
         }
     }
 
@@ -461,10 +461,20 @@ public static void formatDate(StringBuffer buf,Calendar calendar, boolean cookie
     /* ------------------------------------------------------------ */
     /* ------------------------------------------------------------ */
     /* ------------------------------------------------------------ */
+    /** A header field.
+     * Fields read from a request keep a copy of their value characters and
+     * only create the value String when it is asked for, so headers that
+     * are never looked at cost no String. The character buffer is kept
+     * when the field is reused for the next request on the connection, so
+     * reading the headers of a kept alive connection allocates nothing
+     * once the buffers are big enough.
+     */
     private static final class Field
     {
         FieldInfo _info;
         String _value;
+        char[] _chars;
+        int _length=-1;
         Field _next;
         Field _prev;
         int _version;
@@ -482,15 +492,8 @@ public static void formatDate(StringBuffer buf,Calendar calendar, boolean cookie
         /* ------------------------------------------------------------ */
         Field(FieldInfo info, char[] buf, int offset, int length, int version)
         {
-            Map.Entry valueEntry=__values.getEntry(buf,offset,length);
-            String value=null;
-            if (valueEntry!=null)
-                value=(String)valueEntry.getKey();
-            else
-                value=new String(buf,offset,length);
-            
             _info=info;
-            _value=value;
+            setChars(buf,offset,length);
             _next=null;
             _prev=null;
             _version=version;
@@ -510,6 +513,24 @@ public int hashCode()
             return _info.hashCode()*_version;
         }
         
+        /* ------------------------------------------------------------ */
+        /** Get the value, creating the String from the characters read
+         * if this is the first time it has been asked for. Well known
+         * values are shared rather than created.
+         */
+        String getValue()
+        {
+            if (_value==null && _length>=0)
+            {
+                Map.Entry valueEntry=__values.getEntry(_chars,0,_length);
+                if (valueEntry!=null)
+                    _value=(String)valueEntry.getKey();
+                else
+                    _value=new String(_chars,0,_length);
+            }
+            return _value;
+        }
+        
         /* ------------------------------------------------------------ */
         void clear()
         {
@@ -521,6 +542,8 @@ void destroy()
         {
             _info=null;
             _value=null;
+            _chars=null;
+            _length=-1;
             _next=null;
             _prev=null;
             _version=-1;
@@ -530,29 +553,43 @@ void destroy()
         void reset(String value,int version)
         {
             _value=value;
+            _length=-1;
             _version=version;
         }
         
         /* ------------------------------------------------------------ */
         /** Reassign a value to this field.
-         * Checks if the value is the same as that in the char array, if so
-         * then just reuse existing value.
+         * Checks if the value is the same as the one in the char array, if
+         * so then just reuse the existing value.
          */
         void reset(char[] buf, int offset, int length, int version)
         {  
             _version=version;
-            if (!StringUtil.equals(_value,buf,offset,length))
-            {
-                Map.Entry valueEntry=__values.getEntry(buf,offset,length);
-                String value=null;
-                if (valueEntry!=null)
-                    value=(String)valueEntry.getKey();
-                else
-                    value=new String(buf,offset,length);
-                _value=value;
-            }
+            if (_length>=0 ? !sameChars(buf,offset,length) :
+                (_value==null || !StringUtil.equals(_value,buf,offset,length)))
+                setChars(buf,offset,length);
         }
 
+        /* ------------------------------------------------------------ */
+        private boolean sameChars(char[] buf, int offset, int length)
+        {
+            if (_length!=length)
+                return false;
+            for (int i=0;i<length;i++)
+                if (_chars[i]!=buf[offset+i])
+                    return false;
+            return true;
+        }
+        
+        /* ------------------------------------------------------------ */
+        private void setChars(char[] buf, int offset, int length)
+        {
+            if (_chars==null || _chars.length<length)
+                _chars=new char[Math.max(length,16)];
+            System.arraycopy(buf,offset,_chars,0,length);
+            _length=length;
+            _value=null;
+        }
         
         /* ------------------------------------------------------------ */
         void write(Writer writer, int version)
@@ -569,7 +606,7 @@ void write(Writer writer, int version)
                 Field f=this;
                 while (true)
                 {
-                    writer.write(QuotedStringTokenizer.quote(f._value,", \t"));
+                    writer.write(QuotedStringTokenizer.quote(f.getValue(),", \t"));
                     f=f._next;
                     if (f==null)
                         break;
@@ -581,7 +618,10 @@ void write(Writer writer, int version)
             {
                 writer.write(_info._name);
                 writer.write(__COLON);
-                writer.write(_value);
+                if (_value==null && _length>=0)
+                    writer.write(_chars,0,_length);
+                else
+                    writer.write(_value);
                 writer.write(__CRLF);
             }
         }
@@ -597,7 +637,7 @@ public String toString()
         {
             return ("["+
                 (_prev==null?"":"<-")+
-                getDisplayName()+"="+_value+
+                getDisplayName()+"="+getValue()+
                 (_next==null?"":"->")+
                 "]");
         }
@@ -744,7 +784,7 @@ public String get(String name)
         FieldInfo info=getFieldInfo(name);
         Field field=getField(info,true);
         if (field!=null)
-            return field._value;
+            return field.getValue();
         return null;
     }
     
@@ -778,7 +818,7 @@ public Object nextElement()
                             throw new NoSuchElementException();
                         Field n=f;
                         do f=f._next; while (f!=null && f._version!=_version);
-                        return n._value;
+                        return n.getValue();
                     }
                 };
         }
@@ -844,7 +884,7 @@ public String put(String name,String value)
         // Look for value to replace.
         if (field!=null)
         {
-            String old=(field._version==_version)?field._value:null;
+            String old=(field._version==_version)?field.getValue():null;
             field.reset(value,_version);
 
             field=field._next;
@@ -960,7 +1000,7 @@ public String remove(String name)
 
         if (field!=null)
         {
-            old=field._value;
+            old=field.getValue();
             while(field!=null)
             {
                 field.clear();
@@ -1188,7 +1228,7 @@ public void read(LineInput in)
                 if (name_l<=0)
                 {
                     if (i1>0 && last!=null)
-                        last._value=last._value+' '+new String(buf,i1,i2-i1+1);
+                        last.reset(last.getValue()+' '+new String(buf,i1,i2-i1+1),_version);
                     continue;
                 }
 
@@ -1558,7 +1598,7 @@ public void add(HttpFields fields)
         
         Entry(int i) {_i=i;}
         public String getKey() {return ((Field)_fields.get(_i)).getDisplayName();}
-        public String getValue() {return ((Field)_fields.get(_i))._value;}
+        public String getValue() {return ((Field)_fields.get(_i)).getValue();}
     }
 
     /* ------------------------------------------------------------ */
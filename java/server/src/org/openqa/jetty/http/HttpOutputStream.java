@@ -15,19 +15,28 @@
 
 package org.openqa.jetty.http;
 
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 
 import org.apache.commons.logging.Log;
 import org.openqa.jetty.log.LogFactory;
 import org.openqa.jetty.util.ByteArrayPool;
+import org.openqa.jetty.util.CachedResource;
+import org.openqa.jetty.util.ChannelOutput;
 import org.openqa.jetty.util.IO;
 import org.openqa.jetty.util.LogSupport;
+import org.openqa.jetty.util.MappedFileCache;
 import org.openqa.jetty.util.OutputObserver;
+import org.openqa.jetty.util.Resource;
 import org.openqa.jetty.util.StringUtil;
 
 
@@ -425,6 +434,156 @@ public void write(byte b[], int off, int len)
             flush();
     }
 
+    /* ------------------------------------------------------------ */
+    /** Write part of a resource.
+     * File backed resources are not copied through the response buffers:
+     * hot files are written from a mapping held by the cache and others
+     * with FileChannel.transferTo, which becomes a sendfile when the
+     * connection is a channel. Other resources are written as by
+     * {@link Resource#writeTo(OutputStream, long, long)}.
+     * @param cache Cache of mapped files, or null to not map files.
+     */
+    public void write(Resource resource, long start, long count, MappedFileCache cache)
+        throws IOException
+    {
+        File file=(resource instanceof CachedResource)?null:resource.getFile();
+        if (file==null || count<0 || count>Integer.MAX_VALUE || !file.isFile())
+        {
+            resource.writeTo(this,start,count);
+            return;
+        }
+
+        ByteBuffer mapped=cache==null?null:cache.get(file);
+        if (mapped!=null && start+count<=mapped.capacity())
+        {
+            mapped.limit((int)(start+count));
+            mapped.position((int)start);
+            write(mapped);
+            return;
+        }
+
+        FileInputStream in=new FileInputStream(file);
+        try
+        {
+            write(in.getChannel(),start,(int)count);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Write the remaining bytes of a buffer.
+     */
+    public void write(ByteBuffer buffer)
+        throws IOException
+    {
+        int len=prepareOutput(buffer.remaining());
+        if (!_nulled)
+        {
+            buffer.limit(buffer.position()+len);
+            if (canWriteDirectly(len))
+            {
+                _bufferedOut.flush();
+                if (_realOut instanceof ChannelOutput)
+                    ((ChannelOutput)_realOut).write(buffer);
+                else
+                    copy(buffer,_realOut);
+            }
+            else
+                copy(buffer,_out);
+        }
+        if (_bytes==_contentLength)
+            flush();
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Write a region of a file.
+     */
+    public void write(FileChannel file, long position, int length)
+        throws IOException
+    {
+        int len=prepareOutput(length);
+        if (!_nulled)
+        {
+            if (canWriteDirectly(len))
+            {
+                _bufferedOut.flush();
+                if (_realOut instanceof ChannelOutput)
+                    ((ChannelOutput)_realOut).transferFrom(file,position,len);
+                else
+                    copy(file,position,len,_realOut);
+            }
+            else
+                copy(file,position,len,_out);
+        }
+        if (_bytes==_contentLength)
+            flush();
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Can content skip the buffers and be written to the connection?
+     * Only when it is not chunked and is too big to buffer anyway, so that
+     * small responses still go out with their headers in a single write.
+     */
+    private boolean canWriteDirectly(int length)
+    {
+        return _out==_bufferedOut && !isChunking() && length>_bufferSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void copy(ByteBuffer buffer, OutputStream out)
+        throws IOException
+    {
+        if (buffer.hasArray())
+        {
+            out.write(buffer.array(),buffer.arrayOffset()+buffer.position(),buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        byte[] buf=ByteArrayPool.getByteArray(_bufferSize);
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                int len=Math.min(buf.length,buffer.remaining());
+                buffer.get(buf,0,len);
+                out.write(buf,0,len);
+            }
+        }
+        finally
+        {
+            ByteArrayPool.returnByteArray(buf);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private void copy(FileChannel file, long position, int length, OutputStream out)
+        throws IOException
+    {
+        byte[] buf=ByteArrayPool.getByteArray(_bufferSize);
+        try
+        {
+            ByteBuffer buffer=ByteBuffer.wrap(buf);
+            while (length>0)
+            {
+                buffer.clear();
+                buffer.limit(Math.min(buf.length,length));
+                int len=file.read(buffer,position);
+                if (len<0)
+                    throw new EOFException();
+                out.write(buf,0,len);
+                position+=len;
+                length-=len;
+            }
+        }
+        finally
+        {
+            ByteArrayPool.returnByteArray(buf);
+        }
+    }
+
     /* ------------------------------------------------------------ */
     protected void checkOutput()
     {
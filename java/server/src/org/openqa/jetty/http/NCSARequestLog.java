@@ -21,6 +21,8 @@
 import java.io.Writer;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.servlet.http.Cookie;
 
@@ -28,13 +30,22 @@
 import org.openqa.jetty.log.LogFactory;
 import org.openqa.jetty.util.DateCache;
 import org.openqa.jetty.util.LogSupport;
+import org.openqa.jetty.util.RingBuffer;
 import org.openqa.jetty.util.RolloverFileOutputStream;
+import org.openqa.jetty.util.StringBufferWriter;
 import org.openqa.jetty.util.StringUtil;
 
 
 /* ------------------------------------------------------------ */
 /** NCSA HTTP Request Log.
  * NCSA common or NCSA extended (combined) request log.
+ * <p>
+ * By default each line is written and flushed by the thread that handled
+ * the request. If async is set, lines are formatted by that thread but
+ * put on a {@link RingBuffer}, and a writer thread writes them in batches,
+ * flushing whenever it has caught up. When the buffer is full, lines are
+ * dropped and counted, or, if blockWhenFull is set, the request thread
+ * waits for space.
  * @version $Id: NCSARequestLog.java,v 1.35 2005/08/13 00:01:24 gregwilkins Exp $
  * @author Tony Thompson
  * @author Greg Wilkins
@@ -55,12 +66,18 @@ public class NCSARequestLog implements RequestLog
     private String[] _ignorePaths;
     private boolean _logLatency=false;
     private boolean _logCookies=false;
+    private boolean _async=false;
+    private int _queueSize=1024;
+    private boolean _blockWhenFull=false;
+    private boolean _compress=false;
     
     private transient OutputStream _out;
     private transient OutputStream _fileOut;
     private transient DateCache _logDateCache;
     private transient PathMap _ignorePathMap;
     private transient Writer _writer;
+    private transient AsyncWriter _asyncWriter;
+    private final AtomicLong _dropped=new AtomicLong();
     
     /* ------------------------------------------------------------ */
     /** Constructor.
@@ -296,6 +313,92 @@ public void setPreferProxiedForAddress(boolean value)
        _preferProxiedForAddress = value;
     }
     
+    /* ------------------------------------------------------------ */
+    /**
+     * @return True if lines are written by a background thread.
+     */
+    public boolean isAsync()
+    {
+        return _async;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param async If true, lines are queued and written by a background
+     * thread, so request threads never wait on the log file. Takes effect
+     * on the next start.
+     */
+    public void setAsync(boolean async)
+    {
+        _async=async;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of lines that may be waiting to be written.
+     */
+    public int getQueueSize()
+    {
+        return _queueSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param queueSize The number of lines that may be waiting to be
+     * written when async. Rounded up to a power of two, and to at least two.
+     */
+    public void setQueueSize(int queueSize)
+    {
+        _queueSize=queueSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return True if request threads wait for space when the queue is
+     * full, rather than dropping the line.
+     */
+    public boolean isBlockWhenFull()
+    {
+        return _blockWhenFull;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param block If true, request threads wait for space when the queue
+     * is full. If false, the line is dropped and counted.
+     */
+    public void setBlockWhenFull(boolean block)
+    {
+        _blockWhenFull=block;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of lines dropped because the queue was full.
+     */
+    public long getDroppedLogs()
+    {
+        return _dropped.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return True if rolled over log files are gzipped.
+     */
+    public boolean isCompressRolledFiles()
+    {
+        return _compress;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param compress If true, rolled over log files are gzipped.
+     */
+    public void setCompressRolledFiles(boolean compress)
+    {
+        _compress=compress;
+    }
+    
     /* ------------------------------------------------------------ */
     public void start()
         throws Exception
@@ -305,7 +408,10 @@ public void start()
         
         if (_filename != null)
         {
-            _fileOut=new RolloverFileOutputStream(_filename,_append,_retainDays);
+            RolloverFileOutputStream rollover=
+                new RolloverFileOutputStream(_filename,_append,_retainDays);
+            rollover.setCompress(_compress);
+            _fileOut=rollover;
             _closeOut=true;
         }
         else
@@ -323,6 +429,12 @@ public void start()
             _ignorePathMap=null;
 
         _writer=new OutputStreamWriter(_out);
+
+        if (_async)
+        {
+            _asyncWriter=new AsyncWriter(new RingBuffer(_queueSize));
+            _asyncWriter.start();
+        }
     }
 
     /* ------------------------------------------------------------ */
@@ -334,6 +446,11 @@ public boolean isStarted()
     /* ------------------------------------------------------------ */
     public void stop()
     {
+        if (_asyncWriter!=null)
+        {
+            _asyncWriter.finish();
+            _asyncWriter=null;
+        }
         try{if (_writer!=null)_writer.flush();} catch (IOException e){LogSupport.ignore(log,e);}
         if (_out!=null && _closeOut)
             try{_out.close();}catch(IOException e){LogSupport.ignore(log,e);}
@@ -364,7 +481,8 @@ public void log(HttpRequest request,
             if (_fileOut==null)
                 return;
 
-            StringBuffer buf = new StringBuffer(160);
+            StringBuffer buf = new StringBuffer(256);
+            Writer writer = new StringBufferWriter(buf);
             
             String addr = null;
             if(_preferProxiedForAddress)
@@ -414,42 +532,49 @@ public void log(HttpRequest request,
             else
                 buf.append(" - ");
 
-            String log =buf.toString();
-            synchronized(_writer)
+            if (_extended)
             {
-                _writer.write(log);
-                if (_extended)
-                {
-                    logExtended(request,response,_writer);
-                    if (!_logCookies)
-                        _writer.write(" -");
-                }
-                
-                if (_logCookies)
+                logExtended(request,response,writer);
+                if (!_logCookies)
+                    writer.write(" -");
+            }
+            
+            if (_logCookies)
+            {
+                Cookie[] cookies = request.getCookies();
+                if (cookies==null || cookies.length==0)
+                    writer.write(" -");
+                else
                 {
-                    Cookie[] cookies = request.getCookies();
-                    if (cookies==null || cookies.length==0)
-                        _writer.write(" -");
-                    else
+                    writer.write(" \"");
+                    for (int i=0;i<cookies.length;i++)
                     {
-                        _writer.write(" \"");
-                        for (int i=0;i<cookies.length;i++)
-                        {
-                            if (i!=0)
-                                _writer.write(';');
-                            _writer.write(cookies[i].getName());
-                            _writer.write('=');
-                            _writer.write(cookies[i].getValue());
-                        }
-                        _writer.write("\"");
+                        if (i!=0)
+                            writer.write(';');
+                        writer.write(cookies[i].getName());
+                        writer.write('=');
+                        writer.write(cookies[i].getValue());
                     }
+                    writer.write("\"");
+                }
+            }
+            
+            if (_logLatency)
+                writer.write(" "+(System.currentTimeMillis()-request.getTimeStamp()));
+            
+            writer.write(StringUtil.__LINE_SEPARATOR);
+
+            String line=buf.toString();
+            AsyncWriter asyncWriter=_asyncWriter;
+            if (asyncWriter!=null)
+                asyncWriter.enqueue(line);
+            else
+            {
+                synchronized(_writer)
+                {
+                    _writer.write(line);
+                    _writer.flush();
                 }
-                
-                if (_logLatency)
-                    _writer.write(" "+(System.currentTimeMillis()-request.getTimeStamp()));
-                
-                _writer.write(StringUtil.__LINE_SEPARATOR);
-                _writer.flush();
             }
         }
         catch(IOException e)
@@ -498,5 +623,95 @@ protected void logExtended(HttpRequest request,
         
 
     }
-}
 
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /** Writes queued lines, flushing each time the queue is emptied.
+     */
+    private class AsyncWriter extends Thread
+    {
+        private final RingBuffer _lines;
+        private final Writer _out=_writer;
+        private volatile boolean _running=true;
+        private volatile boolean _waiting;
+
+        AsyncWriter(RingBuffer lines)
+        {
+            _lines=lines;
+            setName("NCSARequestLog");
+            setDaemon(true);
+        }
+
+        /* ------------------------------------------------------------ */
+        void enqueue(String line)
+        {
+            if (!_lines.offer(line))
+            {
+                if (!_blockWhenFull)
+                {
+                    if (_dropped.incrementAndGet()==1)
+                        log.warn("Request log queue full, dropping lines");
+                    return;
+                }
+                while (!_lines.offer(line))
+                {
+                    if (!isAlive())
+                    {
+                        _dropped.incrementAndGet();
+                        return;
+                    }
+                    LockSupport.unpark(this);
+                    LockSupport.parkNanos(100000L);
+                }
+            }
+            if (_waiting)
+                LockSupport.unpark(this);
+        }
+
+        /* ------------------------------------------------------------ */
+        /** Write what is queued and wait for the thread to end.
+         */
+        void finish()
+        {
+            _running=false;
+            LockSupport.unpark(this);
+            try
+            {
+                join(10000);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /* ------------------------------------------------------------ */
+        public void run()
+        {
+            while (true)
+            {
+                try
+                {
+                    String line=(String)_lines.poll();
+                    if (line!=null)
+                    {
+                        _out.write(line);
+                        continue;
+                    }
+                    _out.flush();
+                }
+                catch(IOException e)
+                {
+                    log.warn(LogSupport.EXCEPTION,e);
+                }
+
+                if (!_running && _lines.isEmpty())
+                    break;
+                _waiting=true;
+                if (_running && _lines.isEmpty())
+                    LockSupport.parkNanos(100000000L);
+                _waiting=false;
+            }
+        }
+    }
+}
@@ -25,6 +25,7 @@
 import org.openqa.jetty.log.LogFactory;
 import org.openqa.jetty.http.HttpException;
 import org.openqa.jetty.http.HttpFields;
+import org.openqa.jetty.http.HttpOutputStream;
 import org.openqa.jetty.http.HttpRequest;
 import org.openqa.jetty.http.HttpResponse;
 import org.openqa.jetty.http.InclusiveByteRange;
@@ -33,6 +34,7 @@
 import org.openqa.jetty.util.CachedResource;
 import org.openqa.jetty.util.IO;
 import org.openqa.jetty.util.LogSupport;
+import org.openqa.jetty.util.MappedFileCache;
 import org.openqa.jetty.util.Resource;
 import org.openqa.jetty.util.StringMap;
 import org.openqa.jetty.util.TypeUtil;
@@ -61,6 +63,7 @@ public class ResourceHandler extends AbstractHttpHandler
     private String _allowed;
     private boolean _dirAllowed=true;
     private int _minGzipLength =-1;
+    private MappedFileCache _mappedFileCache=MappedFileCache.getDefault();
     private StringMap _methodMap = new StringMap();
     {
         setAllowedMethods(new String[]
@@ -195,6 +198,22 @@ public void setMinGzipLength(int minGzipLength)
         _minGzipLength = minGzipLength;
     }
 
+    /* ------------------------------------------------------------ */
+    public MappedFileCache getMappedFileCache()
+    {
+        return _mappedFileCache;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Set the cache of memory mapped files.
+     * @param cache Cache to map hot files into, or null to never map
+     * files. Defaults to the cache shared by all handlers.
+     */
+    public void setMappedFileCache(MappedFileCache cache)
+    {
+        _mappedFileCache = cache;
+    }
+
     
     /* ------------------------------------------------------------ */
     /** get Resource to serve.
@@ -631,7 +650,7 @@ public void sendData(HttpRequest request,
             
             request.setHandled(true);
             OutputStream out = response.getOutputStream();
-            data.writeTo(out,0,resLength);
+            writeData(out,data,0,resLength);
             return;
         }
             
@@ -673,9 +692,9 @@ public void sendData(HttpRequest request,
             response.setField(HttpFields.__ContentRange, 
                               singleSatisfiableRange.toHeaderRangeString(resLength));
             OutputStream out = response.getOutputStream();
-            resource.writeTo(out,
-                             singleSatisfiableRange.getFirst(resLength), 
-                             singleLength);
+            writeData(out,resource,
+                      singleSatisfiableRange.getFirst(resLength), 
+                      singleLength);
             request.setHandled(true);
             return;
         }
@@ -750,6 +769,19 @@ public void sendData(HttpRequest request,
     }
 
 
+    /* ------------------------------------------------------------ */
+    /** Write a resource, without copying file content through the
+     * response buffers when writing straight to the connection.
+     */
+    private void writeData(OutputStream out, Resource resource, long start, long count)
+        throws IOException
+    {
+        if (out instanceof HttpOutputStream)
+            ((HttpOutputStream)out).write(resource,start,count,_mappedFileCache);
+        else
+            resource.writeTo(out,start,count);
+    }
+
     /* ------------------------------------------------------------------- */
     void sendDirectory(HttpRequest request,
                        HttpResponse response,
@@ -37,6 +37,7 @@ public class ByteBufferInputStream extends InputStream
     
     long _timeout=30000;
     int _bufferSize;
+    ByteBufferPool _pool;
     ByteBuffer _buffer;
     Object _buffers;
     Object _recycle;
@@ -51,6 +52,17 @@ public ByteBufferInputStream(int bufferSize)
         _bufferSize=bufferSize;
     }
 
+    /* ------------------------------------------------------------------------------- */
+    /** Constructor.
+     * @param pool Pool to take buffers from and to return them to once consumed.
+     */
+    public ByteBufferInputStream(ByteBufferPool pool)
+    {
+        super();
+        _pool=pool;
+        _bufferSize=pool.getBufferSize();
+    }
+
 
     /* ------------------------------------------------------------------------------- */
     /** getSoTimeout.
@@ -78,18 +90,25 @@ public synchronized int read() throws IOException
     {
         if (!waitForContent())
             return -1;
-         return _buffer.get();
+        int b=_buffer.get();
+        releaseIfDrained();
+        return b;
     }
 
     /* ------------------------------------------------------------------------------- */
-    /*
+    /** The number of bytes that can be read without blocking.
+     * Never waits for content, as callers use this to decide whether there
+     * is more to handle now or whether the connection has gone idle.
      * @see java.io.InputStream#available()
      */
     public synchronized int available() throws IOException
     {
-        if (!waitForContent())
-            return -1;
-         return _buffer.remaining();
+        if (_closed)
+            return 0;
+        int available=_buffer==null?0:_buffer.remaining();
+        for (int i=LazyList.size(_buffers);i-->0;)
+            available+=((ByteBuffer)LazyList.get(_buffers,i)).remaining();
+        return available;
     }
 
     /* ------------------------------------------------------------------------------- */
@@ -136,6 +155,7 @@ public synchronized int read(byte[] buf, int offset, int length)
             length=_buffer.remaining();
             
          _buffer.get(buf, offset, length);
+        releaseIfDrained();
         return length;
     }
 
@@ -152,6 +172,7 @@ public synchronized int read(byte[] buf) throws IOException
             length=_buffer.remaining();
             
          _buffer.get(buf, 0, length);
+        releaseIfDrained();
         return length;
     }
 
@@ -169,13 +190,14 @@ public synchronized void reset() throws IOException
     /**
      * @see java.io.InputStream#skip(long)
      */
-    public long skip(long length) throws IOException
+    public synchronized long skip(long length) throws IOException
     {
         if (!waitForContent())
             return -1;
          if (length>_buffer.remaining())
             length=_buffer.remaining();
          _buffer.position((int)(_buffer.position()+length));
+        releaseIfDrained();
         return length;
     }
 
@@ -191,6 +213,19 @@ public synchronized void write(ByteBuffer buffer)
              recycle(buffer);
      }
 
+    /* ------------------------------------------------------------------------------- */
+    /** Give the current buffer back as soon as it has been read, so that a
+     * connection that has gone idle holds no buffer.
+     */
+    private void releaseIfDrained()
+    {
+        if (!_buffer.hasRemaining())
+        {
+            recycle(_buffer);
+            _buffer=null;
+        }
+    }
+
     /* ------------------------------------------------------------------------------- */
     private synchronized boolean waitForContent()
         throws InterruptedIOException
@@ -237,6 +272,8 @@ private synchronized boolean waitForContent()
      */
     public synchronized ByteBuffer getBuffer()
     {
+        if (_pool!=null)
+            return _pool.getBuffer();
         ByteBuffer buf=null;
         int s=LazyList.size(_recycle);
         if (s>0)
@@ -256,12 +293,21 @@ public synchronized ByteBuffer getBuffer()
     /* ------------------------------------------------------------------------------- */
     public synchronized void recycle(ByteBuffer buf)
     {
-         _recycle=LazyList.add(_recycle,buf);
+        if (_pool!=null)
+            _pool.returnBuffer(buf);
+        else
+            _recycle=LazyList.add(_recycle,buf);
     }
 
     /* ------------------------------------------------------------------------------- */
-    public void destroy()
+    public synchronized void destroy()
     {
+        if (_pool!=null)
+        {
+            _pool.returnBuffer(_buffer);
+            for (int i=LazyList.size(_buffers);i-->0;)
+                _pool.returnBuffer((ByteBuffer)LazyList.get(_buffers,i));
+        }
         _buffer=null;
         _buffers=null;
         _recycle=null;
@@ -0,0 +1,105 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.jetty.http.nio;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* ------------------------------------------------------------ */
+/** Pool of direct buffers shared by all the connections of a listener.
+ * Unlike {@link org.openqa.jetty.util.ByteArrayPool}, which keeps its arrays
+ * per thread, buffers here are taken by the selector thread and given back
+ * by whichever thread consumed them, so the pool is shared and thread safe.
+ * A connection only holds buffers while it has data in flight, so idle
+ * connections cost no direct memory at all.
+ */
+public class ByteBufferPool
+{
+    private final int _bufferSize;
+    private final int _maxPooled;
+    private final ConcurrentLinkedQueue _buffers=new ConcurrentLinkedQueue();
+    private final AtomicInteger _pooled=new AtomicInteger();
+    private final AtomicInteger _outstanding=new AtomicInteger();
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param bufferSize The capacity of the buffers handed out.
+     * @param maxPooled The most buffers to keep for reuse. Buffers returned
+     * when the pool is full are left to the garbage collector.
+     */
+    public ByteBufferPool(int bufferSize, int maxPooled)
+    {
+        _bufferSize=bufferSize;
+        _maxPooled=maxPooled;
+    }
+
+    /* ------------------------------------------------------------ */
+    public int getBufferSize()
+    {
+        return _bufferSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of buffers currently waiting to be reused.
+     */
+    public int getPooled()
+    {
+        return _pooled.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of buffers handed out and not given back yet.
+     */
+    public int getOutstanding()
+    {
+        return _outstanding.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Get a cleared buffer, either a recycled one or a new direct buffer.
+     */
+    public ByteBuffer getBuffer()
+    {
+        _outstanding.incrementAndGet();
+        ByteBuffer buf=(ByteBuffer)_buffers.poll();
+        if (buf==null)
+            return ByteBuffer.allocateDirect(_bufferSize);
+        _pooled.decrementAndGet();
+        buf.clear();
+        return buf;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Give a buffer back to the pool.
+     */
+    public void returnBuffer(ByteBuffer buf)
+    {
+        if (buf==null || buf.capacity()!=_bufferSize || !buf.isDirect())
+            return;
+        _outstanding.decrementAndGet();
+        if (_pooled.incrementAndGet()>_maxPooled)
+        {
+            _pooled.decrementAndGet();
+            return;
+        }
+        _buffers.add(buf);
+    }
+}
@@ -39,7 +39,13 @@
 import org.openqa.jetty.util.ThreadPool;
 
 /* ------------------------------------------------------------------------------- */
-/**  EXPERIMENTAL NIO listener!
+/** NIO listener.
+ * A single selector thread reads from every connection and a pool thread
+ * is only taken while a connection has a request to handle. Idle keep-alive
+ * connections therefore hold neither a thread nor a buffer: buffers are
+ * shared between connections through a {@link ByteBufferPool}, and idle
+ * connections are closed once they have been idle for longer than
+ * {@link #getMaxIdleTimeMs()}.
  * 
  * @version $Revision: 1.6 $
  * @author gregw
@@ -47,18 +53,22 @@
 public class SocketChannelListener extends ThreadPool implements HttpListener
 {
     private static Log log= LogFactory.getLog(SocketChannelListener.class);
+
+    private static final int IDLE_CHECK_MS= 1000;
     
     private InetSocketAddress _address;
     private int _bufferSize= 4096;
     private int _bufferReserve= 512;
     private int _sslPort;
     private int _lingerTimeSecs=5;
+    private int _maxPooledBuffers=256;
     private HttpHandler _handler;
     
     private transient HttpServer _server;
 
     private transient ServerSocketChannel _acceptChannel;
     private transient Selector _selector;
+    private transient ByteBufferPool _bufferPool;
     private transient SelectorThread _selectorThread;
     private transient boolean _isLow=false;
     private transient boolean _isOut=false;
@@ -165,6 +175,32 @@ public int getBufferReserve()
         return _bufferReserve;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @param max The most read and write buffers to keep for reuse between
+     * connections.
+     */
+    public void setMaxPooledBuffers(int max)
+    {
+        _maxPooledBuffers= max;
+    }
+
+    /* ------------------------------------------------------------ */
+    public int getMaxPooledBuffers()
+    {
+        return _maxPooledBuffers;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The pool the connections take their buffers from, or null if
+     * the listener has not been started.
+     */
+    public ByteBufferPool getBufferPool()
+    {
+        return _bufferPool;
+    }
+
     /* ------------------------------------------------------------------------------- */
     /*
      * @see org.openqa.jetty.http.HttpListener#getDefaultScheme()
@@ -365,6 +401,8 @@ public void start() throws Exception
         // with listeners on anonymous ports
         _address= (InetSocketAddress)_acceptChannel.socket().getLocalSocketAddress();
 
+        _bufferPool= new ByteBufferPool(_bufferSize, _maxPooledBuffers);
+
         // create a selector;
         _selector= Selector.open();
 
@@ -373,6 +411,7 @@ public void start() throws Exception
 
         // Start selector thread
         _selectorThread= new SelectorThread();
+        _selectorThread.setName("SocketChannelListener-" + getPort());
         _selectorThread.start();
 
         // Start the thread Pool
@@ -398,6 +437,7 @@ public void stop() throws InterruptedException
     private class SelectorThread extends Thread  // Thread safety reviewed
     {
         boolean _running= false;
+        long _lastIdleCheck= System.currentTimeMillis();
 
         /* ------------------------------------------------------------ */
         public void run()
@@ -411,7 +451,7 @@ public void run()
                     SelectionKey key= null;
                     try
                     {
-                        _selector.select();
+                        _selector.select(IDLE_CHECK_MS);
                         Iterator iter= _selector.selectedKeys().iterator();
 
                         while (iter.hasNext())
@@ -424,6 +464,13 @@ public void run()
                             key= null;
                             iter.remove();
                         }
+
+                        long now= System.currentTimeMillis();
+                        if (now - _lastIdleCheck >= IDLE_CHECK_MS)
+                        {
+                            _lastIdleCheck= now;
+                            closeIdleConnections(now);
+                        }
                     }
                     catch (Exception e)
                     {
@@ -438,6 +485,9 @@ public void run()
             {
                 log.info("Stopping " + this.getName());
 
+                if (_selector != null)
+                    closeConnections();
+
                 try
                 {
                     if (_acceptChannel != null)
@@ -466,12 +516,14 @@ public void run()
         /* ------------------------------------------------------------ */
         void doAccept(SelectionKey key)
             throws IOException, InterruptedException
-        {            
-            if (isLowOnResources())
-                return;
-                
+        {
+            // Accepting costs no thread, so there is no need to hold back
+            // when low on resources. Skipping the accept would only make the
+            // selector spin on the still pending key.
             ServerSocketChannel server = (ServerSocketChannel) key.channel();
             SocketChannel channel = server.accept();
+            if (channel == null)
+                return;
             channel.configureBlocking(false);
             SelectionKey readKey = channel.register(_selector, SelectionKey.OP_READ);
             
@@ -499,21 +551,60 @@ void doRead(SelectionKey key)
             throws IOException
         {
             Connection connection = (Connection)key.attachment();
-            if (connection._idle && isOutOfResources())
-                // Don't handle idle connections if out of resources.
-                return;
-            ByteBuffer buf= connection._in.getBuffer();
-            int count = ((SocketChannel)key.channel()).read(buf);
+            ByteBuffer buf= _bufferPool.getBuffer();
+            int count;
+            try
+            {
+                count = ((SocketChannel)key.channel()).read(buf);
+            }
+            catch (IOException e)
+            {
+                _bufferPool.returnBuffer(buf);
+                connection.closeFromSelector();
+                throw e;
+            }
             if (count<0)
             {
-                connection.close();
+                _bufferPool.returnBuffer(buf);
+                connection.closeFromSelector();
+            }
+            else if (count==0)
+            {
+                _bufferPool.returnBuffer(buf);
             }
-            else 
+            else
             {
                 buf.flip();
                 connection.write(buf);
             }
-        }   
+        }
+
+        /* ------------------------------------------------------------ */
+        void closeIdleConnections(long now)
+        {
+            int maxIdle= getMaxIdleTimeMs();
+            if (maxIdle <= 0)
+                return;
+            Iterator iter= _selector.keys().iterator();
+            while (iter.hasNext())
+            {
+                Object attachment= ((SelectionKey)iter.next()).attachment();
+                if (attachment instanceof Connection)
+                    ((Connection)attachment).closeIfIdle(now, maxIdle);
+            }
+        }
+
+        /* ------------------------------------------------------------ */
+        void closeConnections()
+        {
+            Iterator iter= _selector.keys().iterator();
+            while (iter.hasNext())
+            {
+                Object attachment= ((SelectionKey)iter.next()).attachment();
+                if (attachment instanceof Connection)
+                    ((Connection)attachment).closeIfIdle(Long.MAX_VALUE, 0);
+            }
+        }
 
         void doStop()
         {
@@ -532,8 +623,10 @@ private static class Connection
       implements Runnable
     {
         boolean _idle=true;
+        long _lastActive;
         SocketChannel _channel;
         SelectionKey _key;
+        LineInput _lineIn;
         ByteBufferInputStream _in;
         SocketChannelOutputStream _out;
         SocketChannelListener _listener;
@@ -542,113 +635,173 @@ private static class Connection
         {
             super(listener,
                          channel.socket().getInetAddress(),
-                         new ByteBufferInputStream(listener.getBufferSize()),
-                         new SocketChannelOutputStream(channel,listener.getBufferSize()),
+                         new ByteBufferInputStream(listener.getBufferPool()),
+                         new SocketChannelOutputStream(channel,listener.getBufferPool()),
                          channel);
             _channel=channel;
             _key=key;
             _listener=listener;
-            _in=(ByteBufferInputStream) ((LineInput)(getInputStream().getInputStream())).getInputStream();
+            _lineIn=(LineInput)(getInputStream().getInputStream());
+            _in=(ByteBufferInputStream)_lineIn.getInputStream();
             _out=(SocketChannelOutputStream)(getOutputStream().getOutputStream());
             _in.setTimeout(listener.getMaxIdleTimeMs());
+            _lastActive=System.currentTimeMillis();
         }
         
 
         /* ------------------------------------------------------------------------------- */
+        /** Called by the selector thread with data read from the channel.
+         * An idle connection is handed to a pool thread once some actual
+         * content arrives; a busy one just queues the data for its thread.
+         */
         void write(ByteBuffer buf)
         {
-            if (!_idle)
-                _in.write(buf);
-            else
+            SocketChannelListener listener;
+            synchronized (this)
             {
-                boolean written=false;
-                
-                // Is there any actual content there?
-                for (int i=buf.position();i<buf.limit();i++)
+                if (_in==null)
                 {
-                    byte b = buf.get(i);
-                    
-                    if (b>' ')
-                    {
-                        buf.position(i);
-                    
-                        try
-                        {
-                            written=true;
-                            _in.write(buf);
-                            _listener.run(this);
-                            _idle=false;
-                        }
-                        catch(InterruptedException e)
-                        {
-                            LogSupport.ignore(log, e);
-                        }
-                        finally
-                        {
-                            i=buf.limit();
-                        }
-                    }
+                    // Destroyed while the read was in progress.
+                    return;
+                }
+                _lastActive=System.currentTimeMillis();
+                if (!_idle)
+                {
+                    _in.write(buf);
+                    return;
                 }
-                
-                if (!written)
+
+                // Is there any actual content there?
+                int i=buf.position();
+                while (i<buf.limit() && buf.get(i)<=' ')
+                    i++;
+                if (i==buf.limit())
                 {
                     _in.recycle(buf);
+                    return;
                 }
+                buf.position(i);
+                _in.write(buf);
+                _idle=false;
+                listener=_listener;
+            }
+
+            try
+            {
+                listener.run(this);
+            }
+            catch(InterruptedException e)
+            {
+                LogSupport.ignore(log, e);
             }
         }
         
         /* ------------------------------------------------------------------------------- */
-        /**
+        /** Handle requests for as long as there is content to handle them from,
+         * then give the thread back to the pool and leave the connection idle.
          */
         public void run()
         {
             try
             {
                 associateThread();
-                while (_in!=null && _in.available()>0 && _listener.isStarted())
+                while (true)
                 {
-                    if (handleNext())
-                        recycle();
-                    else
-                        destroy();
+                    SocketChannelListener listener=_listener;
+                    if (listener==null || !listener.isStarted() || !handleNext())
+                    {
+                        closeAndDestroy();
+                        return;
+                    }
+                    recycle();
+
+                    synchronized (this)
+                    {
+                        if (_lineIn.available()<=0)
+                        {
+                            _idle=true;
+                            _lastActive=System.currentTimeMillis();
+                            return;
+                        }
+                    }
                 }
             }
             catch(IOException e)
             {
                 log.warn(e.toString());
                 log.debug(e);
-                destroy();
+                closeAndDestroy();
             }
             finally
             {
-                _idle=true;
                 disassociateThread();
             }
         }
 
+        /* ------------------------------------------------------------------------------- */
+        /** Close a connection the remote end has closed. A busy connection is
+         * only closed, so that its thread notices and destroys it once it is
+         * done with the request and response.
+         */
+        synchronized void closeFromSelector()
+        {
+            if (_in==null)
+                return;
+            if (_idle)
+            {
+                closeAndDestroy();
+                return;
+            }
+            try
+            {
+                close();
+            }
+            catch(IOException e)
+            {
+                LogSupport.ignore(log, e);
+            }
+        }
+
+        /* ------------------------------------------------------------------------------- */
+        synchronized void closeIfIdle(long now, int maxIdleTimeMs)
+        {
+            if (_idle && _in!=null && now-_lastActive>maxIdleTimeMs)
+                closeAndDestroy();
+        }
+
+        /* ------------------------------------------------------------------------------- */
+        synchronized void closeAndDestroy()
+        {
+            if (_in==null)
+                return;
+            try
+            {
+                close();
+            }
+            catch(IOException e)
+            {
+                LogSupport.ignore(log, e);
+            }
+            destroy();
+        }
+
         /* ------------------------------------------------------------------------------- */
         public synchronized void close()
             throws IOException
          {
+                 _key.cancel();
                  _out.close();
                  _in.close();
-                 if (!_channel.isOpen())
-                    return;
-                 _key.cancel();
-                 _channel.socket().shutdownOutput();
-                 _channel.close();
-                 _channel.socket().close();
-                 super.close();
-                 _channel.close();
          }
          
         /* ------------------------------------------------------------------------------- */
-        public void destroy()
+        public synchronized void destroy()
         {
             super.destroy();
             if (_in!=null)
                 _in.destroy();
             _in=null;
+            _lineIn=null;
             if (_out!=null)
                 _out.destroy();
             _out=null;
@@ -18,12 +18,14 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 
 import org.apache.commons.logging.Log;
 import org.openqa.jetty.log.LogFactory;
+import org.openqa.jetty.util.ChannelOutput;
 import org.openqa.jetty.util.LogSupport;
 
 /* ------------------------------------------------------------------------------- */
@@ -34,10 +36,11 @@
  * @version $Revision: 1.4 $
  * @author gregw
  */
-public class SocketChannelOutputStream extends OutputStream
+public class SocketChannelOutputStream extends OutputStream implements ChannelOutput
 {
     private static Log log= LogFactory.getLog(SocketChannelOutputStream.class);
     
+    ByteBufferPool _pool;
     ByteBuffer _buffer;
     ByteBuffer _flush;
     SocketChannel _channel;
@@ -54,17 +57,36 @@ public SocketChannelOutputStream(SocketChannel channel,
         _buffer=ByteBuffer.allocateDirect(bufferSize);
     }
 
+    /* ------------------------------------------------------------------------------- */
+    /** Constructor.
+     * Buffers are only taken from the pool for the duration of a write, so
+     * connections that are not writing hold none.
+     */
+    public SocketChannelOutputStream(SocketChannel channel, ByteBufferPool pool)
+    {
+        _channel=channel;
+        _pool=pool;
+    }
+
     /* ------------------------------------------------------------------------------- */
     /*
      * @see java.io.OutputStream#write(int)
      */
     public void write(int b) throws IOException
     {
-        _buffer.clear();
-        _buffer.put((byte)b);
-        _buffer.flip();
-        _flush=_buffer;
-        flushBuffer();
+        ByteBuffer buffer=takeBuffer();
+        try
+        {
+            buffer.clear();
+            buffer.put((byte)b);
+            buffer.flip();
+            _flush=buffer;
+            flushBuffer();
+        }
+        finally
+        {
+            giveBuffer(buffer);
+        }
     }
 
     
@@ -91,16 +113,27 @@ public void flush() throws IOException
      */
     public void write(byte[] buf, int offset, int length) throws IOException
     {
-        if (length>_buffer.capacity())
+        int capacity=_pool==null?_buffer.capacity():_pool.getBufferSize();
+        if (length>capacity)
+        {
             _flush=ByteBuffer.wrap(buf,offset,length);
-        else
-         {
-             _buffer.clear();
-             _buffer.put(buf,offset,length);
-             _buffer.flip();
-             _flush=_buffer;
-         }
-         flushBuffer();
+            flushBuffer();
+            return;
+        }
+
+        ByteBuffer buffer=takeBuffer();
+        try
+        {
+            buffer.clear();
+            buffer.put(buf,offset,length);
+            buffer.flip();
+            _flush=buffer;
+            flushBuffer();
+        }
+        finally
+        {
+            giveBuffer(buffer);
+        }
     }
 
     /* ------------------------------------------------------------------------------- */
@@ -109,19 +142,62 @@ public void write(byte[] buf, int offset, int length) throws IOException
      */
     public void write(byte[] buf) throws IOException
     {
-        if (buf.length>_buffer.capacity())
-            _flush=ByteBuffer.wrap(buf);
-        else
-         {
-             _buffer.clear();
-             _buffer.put(buf);
-             _buffer.flip();
-             _flush=_buffer;
-         }
-         flushBuffer();
+        write(buf,0,buf.length);
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    private ByteBuffer takeBuffer()
+    {
+        return _pool==null?_buffer:_pool.getBuffer();
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    private void giveBuffer(ByteBuffer buffer)
+    {
+        _flush=null;
+        if (_pool!=null)
+            _pool.returnBuffer(buffer);
     }
 
 
+    /* ------------------------------------------------------------------------------- */
+    /*
+     * @see org.openqa.jetty.util.ChannelOutput#write(java.nio.ByteBuffer)
+     */
+    public void write(ByteBuffer buffer) throws IOException
+    {
+        _flush=buffer;
+        try
+        {
+            flushBuffer();
+        }
+        finally
+        {
+            _flush=null;
+        }
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    /** Send a file region with FileChannel.transferTo, so that the kernel
+     * copies it straight from the file to the socket.
+     * @see org.openqa.jetty.util.ChannelOutput#transferFrom(java.nio.channels.FileChannel, long, long)
+     */
+    public void transferFrom(FileChannel file, long position, long count) throws IOException
+    {
+        while (count>0)
+        {
+            long len=file.transferTo(position,count,_channel);
+            if (len==0)
+            {
+                if (position>=file.size())
+                    throw new IOException("EOF");
+                waitForWritable();
+            }
+            position+=len;
+            count-=len;
+        }
+    }
+
     /* ------------------------------------------------------------------------------- */
     private void flushBuffer() throws IOException
     {
@@ -138,20 +214,25 @@ private void flushBuffer() throws IOException
                 if (len<0)
                     throw new IOException("EOF");
                 if (len==0)
-                {
-                    // still full.  need to  block until it is writable.
-                    if (_selector==null)
-                     {
-                            _selector=Selector.open();
-                            _channel.register(_selector,SelectionKey.OP_WRITE);
-                     }
-
-                     _selector.select();
-                }
+                    waitForWritable();
             }
         }
     }
 
+    /* ------------------------------------------------------------------------------- */
+    private void waitForWritable() throws IOException
+    {
+        // still full.  need to  block until it is writable.
+        if (_selector==null)
+         {
+                _selector=Selector.open();
+                _channel.register(_selector,SelectionKey.OP_WRITE);
+         }
+
+         _selector.select();
+         _selector.selectedKeys().clear();
+    }
+
     /* ------------------------------------------------------------------------------- */
     public void destroy()
     {
@@ -33,6 +33,7 @@
 import org.openqa.jetty.log.LogFactory;
 import org.openqa.jetty.http.HttpContext;
 import org.openqa.jetty.http.HttpFields;
+import org.openqa.jetty.http.HttpOutputStream;
 import org.openqa.jetty.http.HttpRequest;
 import org.openqa.jetty.http.HttpResponse;
 import org.openqa.jetty.http.InclusiveByteRange;
@@ -41,6 +42,7 @@
 import org.openqa.jetty.util.CachedResource;
 import org.openqa.jetty.util.IO;
 import org.openqa.jetty.util.LogSupport;
+import org.openqa.jetty.util.MappedFileCache;
 import org.openqa.jetty.util.Resource;
 import org.openqa.jetty.util.URI;
 import org.openqa.jetty.util.WriterOutputStream;
@@ -530,6 +532,18 @@ protected void sendDirectory(HttpServletRequest request, HttpServletResponse res
             response.getOutputStream().write(data);
     }
 
+    /* ------------------------------------------------------------ */
+    /** Write a resource, without copying file content through the
+     * response buffers when the response has not been wrapped.
+     */
+    private void writeData(OutputStream out, Resource resource, long start, long count) throws IOException
+    {
+        if (out instanceof ServletOut && ((ServletOut) out)._out instanceof HttpOutputStream)
+            ((HttpOutputStream) ((ServletOut) out)._out).write(resource, start, count, MappedFileCache.getDefault());
+        else
+            resource.writeTo(out, start, count);
+    }
+
     /* ------------------------------------------------------------ */
     protected void sendData(HttpServletRequest request, HttpServletResponse response, String pathInContext, Resource resource) throws IOException
     {
@@ -575,7 +589,7 @@ protected void sendData(HttpServletRequest request, HttpServletResponse response
                 writeHeaders(response, resource, resLength);
             }
 
-            data.writeTo(out, 0, resLength);
+            writeData(out, data, 0, resLength);
             return;
         }
 
@@ -601,7 +615,7 @@ protected void sendData(HttpServletRequest request, HttpServletResponse response
             writeHeaders(response, resource, singleLength);
             response.setStatus(HttpResponse.__206_Partial_Content);
             response.setHeader(HttpFields.__ContentRange, singleSatisfiableRange.toHeaderRangeString(resLength));
-            resource.writeTo(out, singleSatisfiableRange.getFirst(resLength), singleLength);
+            writeData(out, resource, singleSatisfiableRange.getFirst(resLength), singleLength);
             return;
         }
 
@@ -0,0 +1,43 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.jetty.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/* ------------------------------------------------------------ */
+/** Output that is backed by a channel.
+ * Implemented by connection output streams that can take buffers and
+ * file regions without them first being copied into a byte array, so
+ * that static content can be sent with FileChannel.transferTo.
+ */
+public interface ChannelOutput
+{
+    /* ------------------------------------------------------------ */
+    /** Write all the remaining bytes of a buffer, blocking if needed.
+     */
+    public void write(ByteBuffer buffer)
+        throws IOException;
+
+    /* ------------------------------------------------------------ */
+    /** Write a region of a file, blocking if needed.
+     */
+    public void transferFrom(FileChannel file, long position, long count)
+        throws IOException;
+}
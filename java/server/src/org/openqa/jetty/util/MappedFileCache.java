@@ -0,0 +1,241 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.jetty.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* ------------------------------------------------------------ */
+/** Cache of memory mapped files.
+ * Files too big for the {@link org.openqa.jetty.http.ResourceCache} but
+ * small enough to map are mapped the second time they are asked for, so
+ * that files requested only once are never mapped. Mapped files are
+ * kept in an LRU bounded by their total size, and are remapped when
+ * their length or modification time changes.
+ * <p>
+ * Java offers no way to unmap a file, so an evicted mapping is only
+ * released once the garbage collector finds it unreachable. Until then
+ * the file stays locked on Windows, and can't be rewritten or deleted.
+ * Only files that have not been modified for {@link #getMinFileAge()}
+ * are mapped, so that files still being worked on are left alone.
+ */
+public class MappedFileCache
+{
+    private static final MappedFileCache __default=new MappedFileCache();
+    private static final int __MAX_CANDIDATES=256;
+
+    private int _minFileSize=64*1024;
+    private int _maxFileSize=16*1024*1024;
+    private long _maxCacheSize=128L*1024*1024;
+    private long _minFileAge=60*1000;
+
+    private long _cacheSize;
+    private final LinkedHashMap _mapped=new LinkedHashMap(16,0.75f,true);
+    private final LinkedHashMap _candidates=new LinkedHashMap(16,0.75f,true)
+    {
+        protected boolean removeEldestEntry(Map.Entry eldest)
+        {
+            return size()>__MAX_CANDIDATES;
+        }
+    };
+
+    /* ------------------------------------------------------------ */
+    /** The cache shared by the resource handlers of this server.
+     */
+    public static MappedFileCache getDefault()
+    {
+        return __default;
+    }
+
+    /* ------------------------------------------------------------ */
+    public int getMinFileSize()
+    {
+        return _minFileSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param size Smaller files are not worth mapping.
+     */
+    public void setMinFileSize(int size)
+    {
+        _minFileSize=size;
+    }
+
+    /* ------------------------------------------------------------ */
+    public int getMaxFileSize()
+    {
+        return _maxFileSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    public void setMaxFileSize(int size)
+    {
+        _maxFileSize=size;
+    }
+
+    /* ------------------------------------------------------------ */
+    public long getMinFileAge()
+    {
+        return _minFileAge;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param millis Files modified more recently than this are not
+     * mapped, as they may still change.
+     */
+    public void setMinFileAge(long millis)
+    {
+        _minFileAge=millis;
+    }
+
+    /* ------------------------------------------------------------ */
+    public long getMaxCacheSize()
+    {
+        return _maxCacheSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param size The most bytes to keep mapped, or 0 to map nothing.
+     */
+    public synchronized void setMaxCacheSize(long size)
+    {
+        _maxCacheSize=size;
+        evict(0);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The total size of the files currently mapped.
+     */
+    public synchronized long getCacheSize()
+    {
+        return _cacheSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Get the contents of a file.
+     * @return A read only buffer of the whole file, with its own position
+     * and limit, or null if the file is not cached.
+     */
+    public ByteBuffer get(File file)
+        throws IOException
+    {
+        long length=file.length();
+        if (length<_minFileSize || length>_maxFileSize || length>_maxCacheSize)
+            return null;
+
+        String key=file.getPath();
+        long lastModified=file.lastModified();
+        synchronized(this)
+        {
+            Mapping mapping=(Mapping)_mapped.get(key);
+            if (mapping!=null)
+            {
+                if (mapping._length==length && mapping._lastModified==lastModified)
+                    return mapping._buffer.duplicate();
+                remove(key);
+            }
+            if (System.currentTimeMillis()-lastModified<_minFileAge)
+            {
+                // it was worth mapping, map it again once it settles.
+                if (mapping!=null)
+                    _candidates.put(key,key);
+                return null;
+            }
+            if (mapping==null && _candidates.remove(key)==null)
+            {
+                _candidates.put(key,key);
+                return null;
+            }
+        }
+
+        ByteBuffer buffer;
+        FileInputStream in=new FileInputStream(file);
+        try
+        {
+            buffer=in.getChannel().map(FileChannel.MapMode.READ_ONLY,0,length);
+        }
+        finally
+        {
+            in.close();
+        }
+
+        synchronized(this)
+        {
+            remove(key);
+            evict(length);
+            _mapped.put(key,new Mapping(buffer,length,lastModified));
+            _cacheSize+=length;
+        }
+        return buffer.duplicate();
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Forget every mapped file.
+     */
+    public synchronized void clear()
+    {
+        _mapped.clear();
+        _candidates.clear();
+        _cacheSize=0;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void remove(String key)
+    {
+        Mapping mapping=(Mapping)_mapped.remove(key);
+        if (mapping!=null)
+            _cacheSize-=mapping._length;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void evict(long needed)
+    {
+        Iterator iter=_mapped.values().iterator();
+        while (_cacheSize+needed>_maxCacheSize && iter.hasNext())
+        {
+            _cacheSize-=((Mapping)iter.next())._length;
+            iter.remove();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    private static class Mapping
+    {
+        final ByteBuffer _buffer;
+        final long _length;
+        final long _lastModified;
+
+        Mapping(ByteBuffer buffer, long length, long lastModified)
+        {
+            _buffer=buffer;
+            _length=length;
+            _lastModified=lastModified;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.jetty.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* ------------------------------------------------------------ */
+/** Bounded lock free queue.
+ * A fixed array of slots, each with a sequence number that says whether
+ * it is free to be filled or ready to be taken. Producers and consumers
+ * claim slots with a compare and set on the tail or head, so neither
+ * ever waits on a lock, and a full buffer is reported to the caller
+ * rather than blocking it.
+ */
+public class RingBuffer
+{
+    private final Object[] _items;
+    private final AtomicLongArray _sequences;
+    private final int _mask;
+    private final AtomicLong _head=new AtomicLong();
+    private final AtomicLong _tail=new AtomicLong();
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param capacity The least number of items the buffer holds. It is
+     * rounded up to a power of two, and to at least two, as with a single
+     * slot a full slot cannot be told from a free one.
+     */
+    public RingBuffer(int capacity)
+    {
+        if (capacity<1)
+            throw new IllegalArgumentException("capacity "+capacity);
+        int size=2;
+        while (size<capacity)
+            size<<=1;
+        _items=new Object[size];
+        _sequences=new AtomicLongArray(size);
+        for (int i=0;i<size;i++)
+            _sequences.set(i,i);
+        _mask=size-1;
+    }
+
+    /* ------------------------------------------------------------ */
+    public int getCapacity()
+    {
+        return _items.length;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of items waiting. Only a snapshot when other
+     * threads are using the buffer.
+     */
+    public int size()
+    {
+        long size=_tail.get()-_head.get();
+        return (int)Math.max(0,Math.min(size,_items.length));
+    }
+
+    /* ------------------------------------------------------------ */
+    public boolean isEmpty()
+    {
+        return size()==0;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Add an item.
+     * @param item The item, which may not be null.
+     * @return True if the item was added, false if the buffer is full.
+     */
+    public boolean offer(Object item)
+    {
+        if (item==null)
+            throw new NullPointerException();
+        while (true)
+        {
+            long tail=_tail.get();
+            int index=(int)tail&_mask;
+            long diff=_sequences.get(index)-tail;
+            if (diff==0)
+            {
+                if (_tail.compareAndSet(tail,tail+1))
+                {
+                    _items[index]=item;
+                    _sequences.set(index,tail+1);
+                    return true;
+                }
+            }
+            else if (diff<0)
+                return false;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Take the oldest item.
+     * @return The item, or null if the buffer is empty.
+     */
+    public Object poll()
+    {
+        while (true)
+        {
+            long head=_head.get();
+            int index=(int)head&_mask;
+            long diff=_sequences.get(index)-(head+1);
+            if (diff==0)
+            {
+                if (_head.compareAndSet(head,head+1))
+                {
+                    Object item=_items[index];
+                    _items[index]=null;
+                    _sequences.set(index,head+_items.length);
+                    return item;
+                }
+            }
+            else if (diff<0)
+                return null;
+        }
+    }
+}
@@ -19,6 +19,7 @@
 import org.openqa.jetty.log.LogFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
@@ -31,6 +32,7 @@
 import java.util.GregorianCalendar;
 import java.util.ListIterator;
 import java.util.StringTokenizer;
+import java.util.zip.GZIPOutputStream;
 
 /* ------------------------------------------------------------ */
 /** A File OutputStream that rolls overs.
@@ -54,6 +56,7 @@ public class RolloverFileOutputStream extends FilterOutputStream
     private File _file;
     private boolean _append;
     private int _retainDays;
+    private volatile boolean _compress;
     private WeakReference _ref;
     
     /* ------------------------------------------------------------ */
@@ -124,6 +127,22 @@ public int getRetainDays()
         return _retainDays;
     }
 
+    /* ------------------------------------------------------------ */
+    public boolean isCompress()
+    {
+        return _compress;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param compress If true, the file written until a rollover is
+     * gzipped once the new file is open.
+     */
+    public void setCompress(boolean compress)
+    {
+        _compress=compress;
+    }
+
     /* ------------------------------------------------------------ */
     private synchronized void setFile()
         throws IOException
@@ -156,17 +175,75 @@ private synchronized void setFile()
         if (out==null || !file.equals(_file))
         {
             // Yep
+            File oldFile=_file;
             _file=file;
             if (!_append && file.exists())
                 file.renameTo(new File(file.toString()+"."+_fileBackupFormat.format(now)));
             OutputStream oldOut=out;
             out=new FileOutputStream(file.toString(),_append);
             if (oldOut!=null)
+            {
                 oldOut.close();
+                if (_compress && oldFile!=null)
+                    compressInBackground(oldFile);
+            }
             if(log.isDebugEnabled())log.debug("Opened "+_file);
         }
     }
 
+    /* ------------------------------------------------------------ */
+    /** Compress a rolled over file on its own thread, so that the
+     * rollover does not hold the stream's lock while it is gzipped.
+     */
+    private static void compressInBackground(final File file)
+    {
+        Thread compressor=new Thread("Compress "+file.getName())
+        {
+            public void run()
+            {
+                compress(file);
+            }
+        };
+        compressor.setDaemon(true);
+        compressor.start();
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Replace a rolled over file with a gzipped copy.
+     * A failure is logged and leaves the file as it was.
+     */
+    static void compress(File file)
+    {
+        File gz=new File(file.getPath()+".gz");
+        try
+        {
+            FileInputStream in=new FileInputStream(file);
+            try
+            {
+                OutputStream out=new GZIPOutputStream(new FileOutputStream(gz));
+                try
+                {
+                    IO.copy(in,out);
+                }
+                finally
+                {
+                    out.close();
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+            if (!file.delete())
+                log.warn("Could not delete "+file+" after compressing it");
+        }
+        catch(IOException e)
+        {
+            log.warn("Could not compress "+file,e);
+            gz.delete();
+        }
+    }
+
     /* ------------------------------------------------------------ */
     private void removeOldFiles()
     {
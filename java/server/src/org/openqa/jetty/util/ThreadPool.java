@@ -18,6 +18,20 @@
 import org.openqa.jetty.log.LogFactory;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 /* ------------------------------------------------------------ */
 /**
  * A pool of threads.
@@ -30,6 +44,15 @@
  * This implementation uses the run(Object) method to place a job on a queue, which is read by the
  * getJob(timeout) method. Derived implementations may specialize getJob(timeout) to obtain jobs
  * from other sources without queing overheads.
+ * <p>
+ * Alternatively jobs can be run by a java.util.concurrent ExecutorService, either one created by
+ * {@link #newExecutor()} when {@link #setUseExecutor(boolean)} is set (or the
+ * {@link #__EXECUTOR} system property is true), or any executor given to
+ * {@link #setExecutor(ExecutorService)}, such as a ForkJoinPool on JVMs that have one. Jobs are
+ * then queued rather than making the caller wait for a free thread, and the pool's own locking is
+ * avoided altogether. The queue of the executor from {@link #newExecutor()} is bounded by
+ * {@link #getMaxQueued()}; once it is full the caller waits for room, as it would wait for a
+ * thread from the Pool, and the job is stopped if none comes within the max idle time.
  * 
  * @version $Id: ThreadPool.java,v 1.41 2005/08/13 00:01:28 gregwilkins Exp $
  * @author Juancarlo A�ez <juancarlo@modelistica.com>
@@ -41,11 +64,24 @@ public class ThreadPool implements LifeCycle,Serializable
     static private int __pool=0;
     public static final String __DAEMON="org.openqa.jetty.util.ThreadPool.daemon";
     public static final String __PRIORITY="org.openqa.jetty.util.ThreadPool.priority";
+    public static final String __EXECUTOR="org.openqa.jetty.util.ThreadPool.executor";
     
     /* ------------------------------------------------------------------- */
     private Pool _pool;
     private Object _join="";
-    private transient boolean _started;
+    private transient volatile boolean _started;
+    private boolean _useExecutor=Boolean.getBoolean(__EXECUTOR);
+    private transient ExecutorService _executor;
+    private transient boolean _ownExecutor;
+    private transient Set _running;
+    private int _maxQueued;
+
+    private final AtomicInteger _queued=new AtomicInteger();
+    private final AtomicInteger _active=new AtomicInteger();
+    private final AtomicLong _jobsStarted=new AtomicLong();
+    private final AtomicLong _jobsDone=new AtomicLong();
+    private final AtomicLong _waitNanos=new AtomicLong();
+    private final AtomicLong _runNanos=new AtomicLong();
 
     /* ------------------------------------------------------------------- */
     /*
@@ -174,6 +210,11 @@ public boolean isStarted()
      */
     public int getThreads()
     {
+        ExecutorService executor=_executor;
+        if (executor instanceof ThreadPoolExecutor)
+            return ((ThreadPoolExecutor)executor).getPoolSize();
+        if (executor!=null)
+            return _active.get();
         return _pool.size();
     }
 
@@ -186,9 +227,107 @@ public int getThreads()
      */
     public int getIdleThreads()
     {
+        ExecutorService executor=_executor;
+        if (executor instanceof ThreadPoolExecutor)
+        {
+            ThreadPoolExecutor tpe=(ThreadPoolExecutor)executor;
+            return Math.max(0,tpe.getPoolSize()-tpe.getActiveCount());
+        }
+        if (executor!=null)
+            return 0;
         return _pool.available();
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return True if jobs are run by an ExecutorService rather than the Pool.
+     */
+    public boolean getUseExecutor()
+    {
+        return _useExecutor || _executor!=null;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Run jobs with an executor from {@link #newExecutor()} instead of the Pool. The executor
+     * is sized by the max threads and max idle time, and is created on start and shut down on
+     * stop.
+     */
+    public void setUseExecutor(boolean useExecutor)
+    {
+        if (isStarted())
+            throw new IllegalStateException("started");
+        _useExecutor=useExecutor;
+    }
+
+    /* ------------------------------------------------------------ */
+    public ExecutorService getExecutor()
+    {
+        return _executor;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Run jobs with the given executor instead of the Pool. The executor is not shut down when
+     * this ThreadPool stops, so that it may be shared.
+     * 
+     * @param executor The executor, or null to go back to the Pool.
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        if (isStarted())
+            throw new IllegalStateException("started");
+        _executor=executor;
+        _ownExecutor=false;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of jobs waiting for a thread.
+     */
+    public int getQueuedJobs()
+    {
+        return _queued.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of jobs being run.
+     */
+    public int getActiveJobs()
+    {
+        return _active.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of jobs run to completion since the pool was created.
+     */
+    public long getJobs()
+    {
+        return _jobsDone.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The average time jobs waited for a thread, in ms.
+     */
+    public double getAverageJobLatencyMs()
+    {
+        long started=_jobsStarted.get();
+        return started==0?0:_waitNanos.get()/1e6/started;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The average time jobs took to run, in ms.
+     */
+    public double getAverageJobTimeMs()
+    {
+        long done=_jobsDone.get();
+        return done==0?0:_runNanos.get()/1e6/done;
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * Get the minimum number of threads. Delegated to the named or anonymous Pool.
@@ -237,6 +376,28 @@ public void setMaxThreads(int maxThreads)
         _pool.setMaxSize(maxThreads);
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @see #setMaxQueued
+     * @return The most jobs the executor from {@link #newExecutor()} queues.
+     */
+    public int getMaxQueued()
+    {
+        return _maxQueued>0?_maxQueued:getMaxThreads();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the most jobs the executor from {@link #newExecutor()} queues while all its threads are
+     * busy. Defaults to the max threads. Takes effect when the pool is started.
+     * 
+     * @param maxQueued The most jobs to queue, or 0 for the default.
+     */
+    public void setMaxQueued(int maxQueued)
+    {
+        _maxQueued=maxQueued;
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * Get the maximum thread idle time. Delegated to the named or anonymous Pool.
@@ -308,8 +469,65 @@ public void setMaxStopTimeMs(int ms)
      */
     public void start() throws Exception
     {
+        if (_executor==null && _useExecutor)
+        {
+            _executor=newExecutor();
+            _ownExecutor=true;
+        }
+        if (_executor!=null)
+            _running=Collections.newSetFromMap(new ConcurrentHashMap());
+        else
+            _pool.start();
         _started=true;
-        _pool.start();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Create the executor used when {@link #getUseExecutor()} is set. Runs up to the max threads,
+     * queueing up to {@link #getMaxQueued()} jobs beyond that, and lets threads die once idle for
+     * the max idle time. May be specialized to use another kind of executor.
+     */
+    protected ExecutorService newExecutor()
+    {
+        final String name=getName();
+        final boolean daemon=isDaemon();
+        final int priority=getThreadsPriority();
+        ThreadPoolExecutor executor=new ThreadPoolExecutor(getMaxThreads(),getMaxThreads(),
+            Math.max(getMaxIdleTimeMs(),1),TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(getMaxQueued()),
+            new ThreadFactory()
+            {
+                private final AtomicInteger _ids=new AtomicInteger();
+
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread=new Thread(runnable,name+"-"+_ids.getAndIncrement());
+                    thread.setDaemon(daemon);
+                    thread.setPriority(priority);
+                    return thread;
+                }
+            },
+            new RejectedExecutionHandler()
+            {
+                public void rejectedExecution(Runnable job, ThreadPoolExecutor executor)
+                {
+                    // push back on the caller as the Pool does, rather than queue without limit.
+                    try
+                    {
+                        if (!executor.isShutdown() && executor.getQueue()
+                            .offer(job,Math.max(getMaxIdleTimeMs(),1),TimeUnit.MILLISECONDS))
+                            return;
+                    }
+                    catch(InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new RejectedExecutionException("No room for "+job);
+                }
+            });
+        if (getMaxIdleTimeMs()>0)
+            executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     /* ------------------------------------------------------------ */
@@ -322,13 +540,42 @@ public void start() throws Exception
     public void stop() throws InterruptedException
     {
         _started=false;
-        _pool.stop();
+        if (_executor!=null)
+            stopExecutor();
+        else
+            _pool.stop();
         synchronized(_join)
         {
             _join.notifyAll();
         }
     }
 
+    /* ------------------------------------------------------------ */
+    private void stopExecutor() throws InterruptedException
+    {
+        // Running jobs may be blocked in IO that interrupts do not end.
+        for (Iterator i=_running==null?Collections.EMPTY_SET.iterator():_running.iterator();i.hasNext();)
+        {
+            ExecutorJob job=(ExecutorJob)i.next();
+            stopJob(job._thread,job._job);
+        }
+
+        if (!_ownExecutor)
+            return;
+        List queued=_executor.shutdownNow();
+        for (int i=0;i<queued.size();i++)
+        {
+            Object job=queued.get(i);
+            if (job instanceof ExecutorJob)
+            {
+                _queued.decrementAndGet();
+                stopJob(null,((ExecutorJob)job)._job);
+            }
+        }
+        _executor.awaitTermination(Math.max(getMaxIdleTimeMs(),1),TimeUnit.MILLISECONDS);
+        _executor=null;
+    }
+
     /* ------------------------------------------------------------ */
     public void join()
     {
@@ -366,9 +613,37 @@ public void run(Object job) throws InterruptedException
     {
         if(job==null)
             return;
+        ExecutorService executor=_executor;
+        if(executor!=null)
+        {
+            _queued.incrementAndGet();
+            try
+            {
+                executor.execute(new ExecutorJob(job));
+            }
+            catch(RejectedExecutionException e)
+            {
+                _queued.decrementAndGet();
+                log.warn("No thread for "+job);
+                stopJob(null,job);
+            }
+            return;
+        }
         try
         {
-            PoolThread thread=(PoolThread)_pool.get(getMaxIdleTimeMs());
+            long start=System.nanoTime();
+            PoolThread thread;
+            _queued.incrementAndGet();
+            try
+            {
+                thread=(PoolThread)_pool.get(getMaxIdleTimeMs());
+            }
+            finally
+            {
+                _queued.decrementAndGet();
+            }
+            if(thread!=null)
+                jobStarting(System.nanoTime()-start);
             if(thread!=null)
                 thread.run(this,job);
             else
@@ -416,6 +691,78 @@ protected void handle(Object job) throws InterruptedException
     protected void stopJob(Thread thread,Object job)
     {}
 
+    /* ------------------------------------------------------------ */
+    void jobStarting(long waitNanos)
+    {
+        _jobsStarted.incrementAndGet();
+        _waitNanos.addAndGet(waitNanos);
+    }
+
+    /* ------------------------------------------------------------ */
+    void runJob(Object job) throws InterruptedException
+    {
+        _active.incrementAndGet();
+        long start=System.nanoTime();
+        try
+        {
+            handle(job);
+        }
+        finally
+        {
+            _runNanos.addAndGet(System.nanoTime()-start);
+            _jobsDone.incrementAndGet();
+            _active.decrementAndGet();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * A job given to the executor.
+     */
+    private class ExecutorJob implements Runnable
+    {
+        final Object _job;
+        final long _queuedAt=System.nanoTime();
+        volatile Thread _thread;
+
+        ExecutorJob(Object job)
+        {
+            _job=job;
+        }
+
+        public void run()
+        {
+            _queued.decrementAndGet();
+            if (!isStarted())
+            {
+                // Left in a shared executor by a pool that has since stopped.
+                stopJob(null,_job);
+                return;
+            }
+            jobStarting(System.nanoTime()-_queuedAt);
+            _thread=Thread.currentThread();
+            Set running=_running;
+            running.add(this);
+            try
+            {
+                runJob(_job);
+            }
+            catch(InterruptedException e)
+            {
+                LogSupport.ignore(log,e);
+            }
+            catch(RuntimeException e)
+            {
+                log.warn(LogSupport.EXCEPTION,e);
+            }
+            finally
+            {
+                running.remove(this);
+                _thread=null;
+            }
+        }
+    }
+
 
 
     /* ------------------------------------------------------------ */
@@ -534,7 +881,7 @@ public void run()
                     
                     // handle outside of sync
                     if(run!=null && runPool!=null)
-                        runPool.handle(run);
+                        runPool.runJob(run);
                     else if (run==null && _pool!=null)
                         _pool.shrink();
                 }
@@ -55,5 +55,12 @@ protected void defineManagedResource()
         defineAttribute("maxThreads");
         defineAttribute("maxIdleTimeMs");
         defineAttribute("threadsPriority");
+        defineAttribute("useExecutor");
+        defineAttribute("maxQueued");
+        defineAttribute("queuedJobs",READ_ONLY);
+        defineAttribute("activeJobs",READ_ONLY);
+        defineAttribute("jobs",READ_ONLY);
+        defineAttribute("averageJobLatencyMs",READ_ONLY);
+        defineAttribute("averageJobTimeMs",READ_ONLY);
     }    
 }
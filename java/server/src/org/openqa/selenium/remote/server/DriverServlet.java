@@ -40,6 +40,7 @@ public class DriverServlet extends HttpServlet {
   public static final String SESSIONS_KEY = DriverServlet.class.getName() + ".sessions";
 
   private static final String CROSS_DOMAIN_RPC_PATH = "/xdrpc";
+  private static final String UPLOAD_PATH = "/upload/";
 
   private final Supplier<DriverSessions> sessionsSupplier;
 
@@ -155,7 +156,11 @@ private void setAccessControlHeaders(HttpServletResponse response) {
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
-    handleRequest(request, response);
+    if (isUpload(request)) {
+      handleUploadQuery(request, response);
+    } else {
+      handleRequest(request, response);
+    }
   }
 
   @Override
@@ -163,6 +168,8 @@ protected void doPost(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
     if (CROSS_DOMAIN_RPC_PATH.equalsIgnoreCase(request.getPathInfo())) {
       handleCrossDomainRpc(request, response);
+    } else if (isUpload(request)) {
+      handleUpload(request, response);
     } else {
       handleRequest(request, response);
     }
@@ -192,6 +199,63 @@ private void handleCrossDomainRpc(HttpServletRequest request, HttpServletRespons
     handleRequest(request, response);
   }
 
+  private boolean isUpload(HttpServletRequest request) {
+    return request.getPathInfo() != null && request.getPathInfo().startsWith(UPLOAD_PATH);
+  }
+
+  private String getUploadHash(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String hash = request.getPathInfo().substring(UPLOAD_PATH.length());
+    if (!UploadedDirectories.isValidHash(hash)) {
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      response.getOutputStream().println("Not a SHA-1 hash: " + hash);
+      response.getOutputStream().flush();
+      return null;
+    }
+    return hash;
+  }
+
+  /**
+   * Tells a client whether a directory it wants to upload is already here.
+   */
+  private void handleUploadQuery(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String hash = getUploadHash(request, response);
+    if (hash == null) {
+      return;
+    }
+    writeUploadResponse(response, String.valueOf(UploadedDirectories.getDefault().contains(hash)));
+  }
+
+  /**
+   * Unzips a directory, such as a Firefox profile, as it is streamed in by a client.
+   */
+  private void handleUpload(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String hash = getUploadHash(request, response);
+    if (hash == null) {
+      return;
+    }
+    try {
+      UploadedDirectories.getDefault().store(hash, request.getInputStream());
+    } catch (IOException e) {
+      getLogger().warning("Upload of " + hash + " failed: " + e.getMessage());
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      response.getOutputStream().println(e.getMessage());
+      response.getOutputStream().flush();
+      return;
+    }
+    writeUploadResponse(response, "\"" + hash + "\"");
+  }
+
+  private void writeUploadResponse(HttpServletResponse response, String value)
+      throws IOException {
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType("application/json");
+    response.getOutputStream().print("{\"status\":0,\"value\":" + value + "}");
+    response.getOutputStream().flush();
+  }
+
   protected void handleRequest(HttpServletRequest request, HttpServletResponse response)
       throws ServletException {
     try {
@@ -0,0 +1,235 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote.server;
+
+import com.google.common.io.ByteStreams;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.io.FileHandler;
+import org.openqa.selenium.io.TemporaryFilesystem;
+import org.openqa.selenium.io.Zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Directories that clients have streamed to the server as zips, unzipped and keyed by the hex
+ * SHA-1 hash of the zip. A client that finds its hash already here needn't send the zip again.
+ * Only the most recently used directories are kept.
+ * <p/>
+ * A client checks for its upload, or sends it, before asking for a new session that refers to it.
+ * An upload is pinned for a while after either, so that other clients' uploads can't evict it
+ * before that new session request comes in. The session then uses the unzipped directory as it
+ * is, holding on to it until the session has started.
+ */
+public class UploadedDirectories {
+
+  private static final int MAX_DIRECTORIES = 16;
+
+  // how long, in ms, an upload a client was told about is kept for its new session request.
+  static final long PIN_MILLIS = 60000;
+
+  private static final Pattern SHA1 = Pattern.compile("[0-9a-f]{40}");
+
+  private static final UploadedDirectories DEFAULT = new UploadedDirectories(
+      TemporaryFilesystem.getDefaultTmpFS());
+
+  private final TemporaryFilesystem tempFs;
+  private final long pinMillis;
+  // in access order, so that the least recently used uploads are evicted first.
+  private final Map<String, Upload> directories =
+      new LinkedHashMap<String, Upload>(16, 0.75f, true);
+
+  public UploadedDirectories(TemporaryFilesystem tempFs) {
+    this(tempFs, PIN_MILLIS);
+  }
+
+  UploadedDirectories(TemporaryFilesystem tempFs, long pinMillis) {
+    this.tempFs = tempFs;
+    this.pinMillis = pinMillis;
+  }
+
+  public static UploadedDirectories getDefault() {
+    return DEFAULT;
+  }
+
+  public static boolean isValidHash(String hash) {
+    return hash != null && SHA1.matcher(hash).matches();
+  }
+
+  /**
+   * @return true if the upload is here, in which case it is kept for at least the pin time.
+   */
+  public synchronized boolean contains(String hash) {
+    Upload upload = directories.get(hash);
+    if (upload == null) {
+      return false;
+    }
+    upload.pin(pinMillis);
+    return true;
+  }
+
+  /**
+   * Unzips an upload as it is read, checking that the zip has the hash it was sent under.
+   *
+   * @param hash the hex SHA-1 hash of the zip.
+   * @param zip the zipped directory, which is read to the end but not closed.
+   */
+  public void store(String hash, InputStream zip) throws IOException {
+    if (!isValidHash(hash)) {
+      throw new IllegalArgumentException("Not a SHA-1 hash: " + hash);
+    }
+
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new WebDriverException(e);
+    }
+
+    File dir = tempFs.createTempDir("uploaded", "directory");
+    boolean stored = false;
+    try {
+      DigestInputStream digested = new DigestInputStream(zip, digest);
+      ZipInputStream zis = new ZipInputStream(digested);
+      Zip unzipper = new Zip();
+      ZipEntry entry;
+      while ((entry = zis.getNextEntry()) != null) {
+        if (entry.getName().contains("..")) {
+          throw new IOException("Refusing to unzip outside the upload: " + entry.getName());
+        }
+        if (entry.isDirectory()) {
+          FileHandler.createDir(new File(dir, entry.getName()));
+        } else {
+          unzipper.unzipFile(dir, zis, entry.getName());
+        }
+      }
+      // The central directory follows the last entry, and is part of what was hashed.
+      ByteStreams.copy(digested, ByteStreams.nullOutputStream());
+
+      String actual = toHex(digest.digest());
+      if (!hash.equals(actual)) {
+        throw new IOException(
+            String.format("Upload was sent as %s but its contents hash to %s", hash, actual));
+      }
+
+      synchronized (this) {
+        Upload upload = directories.get(hash);
+        if (upload == null) {
+          upload = new Upload(dir);
+          directories.put(hash, upload);
+          stored = true;
+        }
+        upload.pin(pinMillis);
+        evict();
+      }
+    } finally {
+      if (!stored) {
+        tempFs.deleteTempDir(dir);
+      }
+    }
+  }
+
+  /**
+   * Gets an uploaded directory, which is kept until it is {@link #release(String) released}. The
+   * directory is shared and must not be changed, users copy what they need from it.
+   *
+   * @return the directory, or null if there is no upload with the given hash.
+   */
+  public synchronized File acquire(String hash) {
+    Upload upload = directories.get(hash);
+    if (upload == null) {
+      return null;
+    }
+    upload.users++;
+    return upload.dir;
+  }
+
+  /**
+   * Lets an upload that was {@link #acquire(String) acquired} be evicted again.
+   */
+  public synchronized void release(String hash) {
+    Upload upload = directories.get(hash);
+    if (upload != null && upload.users > 0) {
+      upload.users--;
+      evict();
+    }
+  }
+
+  /**
+   * Deletes all uploaded directories that are not in use.
+   */
+  public synchronized void clear() {
+    for (Iterator<Upload> i = directories.values().iterator(); i.hasNext();) {
+      Upload upload = i.next();
+      if (upload.users == 0) {
+        tempFs.deleteTempDir(upload.dir);
+        i.remove();
+      }
+    }
+  }
+
+  /**
+   * Deletes the least recently used uploads that are neither pinned nor in use, until
+   * there are no more than the max. There can be more for as long as the others are in use.
+   */
+  private void evict() {
+    long now = System.currentTimeMillis();
+    for (Iterator<Upload> i = directories.values().iterator();
+         i.hasNext() && directories.size() > MAX_DIRECTORIES;) {
+      Upload upload = i.next();
+      if (upload.users == 0 && upload.pinnedUntil <= now) {
+        tempFs.deleteTempDir(upload.dir);
+        i.remove();
+      }
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  private static class Upload {
+    private final File dir;
+    private long pinnedUntil;
+    // the number of sessions starting from it.
+    private int users;
+
+    Upload(File dir) {
+      this.dir = dir;
+    }
+
+    void pin(long millis) {
+      pinnedUntil = Math.max(pinnedUntil, System.currentTimeMillis() + millis);
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote.server;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import org.openqa.selenium.io.TemporaryFilesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps copies of files uploaded to sessions, keyed by the SHA-1 hash of their contents and their
+ * name, so that a client uploading the same file again only has to send the hash. Files are kept
+ * on disk, and the least recently used are deleted once they take up more than a set size. A file
+ * that is being copied out is not deleted until the copy is done.
+ */
+public class UploadedFiles {
+
+  /**
+   * System property giving the most bytes of uploaded files to keep.
+   */
+  public static final String MAX_BYTES_PROPERTY = "webdriver.remote.server.uploadCacheSize";
+
+  private static final long DEFAULT_MAX_BYTES = 256 * 1024 * 1024;
+
+  private static final UploadedFiles DEFAULT = new UploadedFiles(
+      TemporaryFilesystem.getDefaultTmpFS(),
+      Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+
+  private final TemporaryFilesystem tempFs;
+  private final long maxBytes;
+  // in access order, so that the least recently used files are evicted first.
+  private final Map<String, Kept> files = new LinkedHashMap<String, Kept>(16, 0.75f, true);
+  private long bytes;
+
+  public UploadedFiles(TemporaryFilesystem tempFs, long maxBytes) {
+    this.tempFs = tempFs;
+    this.maxBytes = maxBytes;
+  }
+
+  public static UploadedFiles getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Keeps a copy of an uploaded file.
+   *
+   * @return the hex SHA-1 hash of the file's contents.
+   */
+  public String add(File file) throws IOException {
+    String hash = Files.hash(file, Hashing.sha1()).toString();
+    String key = key(hash, file.getName());
+    if (file.length() > maxBytes) {
+      return hash;
+    }
+
+    synchronized (this) {
+      if (files.containsKey(key)) {
+        return hash;
+      }
+    }
+
+    File dir = tempFs.createTempDir("uploaded", "file");
+    File copy = new File(dir, file.getName());
+    Files.copy(file, copy);
+
+    synchronized (this) {
+      if (files.containsKey(key)) {
+        tempFs.deleteTempDir(dir);
+        return hash;
+      }
+      files.put(key, new Kept(copy));
+      bytes += copy.length();
+      evict();
+    }
+    return hash;
+  }
+
+  /**
+   * Copies a kept file into the given directory, keeping its name.
+   *
+   * @param hash the hex SHA-1 hash of the file's contents.
+   * @return the copy, or null if there is no such file.
+   */
+  public File copyTo(String hash, String name, File dir) throws IOException {
+    if (!UploadedDirectories.isValidHash(hash)) {
+      throw new IllegalArgumentException("Not a SHA-1 hash: " + hash);
+    }
+
+    Kept kept;
+    synchronized (this) {
+      kept = files.get(key(hash, name));
+      if (kept == null) {
+        return null;
+      }
+      kept.users++;
+    }
+
+    File copy = new File(dir, name);
+    try {
+      Files.copy(kept.file, copy);
+    } finally {
+      synchronized (this) {
+        kept.users--;
+        evict();
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Deletes all kept files that are not being copied.
+   */
+  public synchronized void clear() {
+    for (Iterator<Kept> i = files.values().iterator(); i.hasNext();) {
+      Kept kept = i.next();
+      if (kept.users == 0) {
+        bytes -= kept.file.length();
+        tempFs.deleteTempDir(kept.file.getParentFile());
+        i.remove();
+      }
+    }
+  }
+
+  synchronized long size() {
+    return bytes;
+  }
+
+  /**
+   * Deletes the least recently used files that are not being copied, until they take up no more
+   * than the max.
+   */
+  private void evict() {
+    for (Iterator<Kept> i = files.values().iterator(); bytes > maxBytes && i.hasNext();) {
+      Kept eldest = i.next();
+      if (eldest.users > 0) {
+        continue;
+      }
+      bytes -= eldest.file.length();
+      tempFs.deleteTempDir(eldest.file.getParentFile());
+      i.remove();
+    }
+  }
+
+  private static String key(String hash, String name) {
+    return hash + "/" + name;
+  }
+
+  private static class Kept {
+    final File file;
+    // how many copies of the file are being made, during which it is not evicted.
+    int users;
+
+    Kept(File file) {
+      this.file = file;
+    }
+  }
+}
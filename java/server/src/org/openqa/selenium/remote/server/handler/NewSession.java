@@ -16,20 +16,26 @@
 
 package org.openqa.selenium.remote.server.handler;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.logging.LoggingPreferences;
 import org.openqa.selenium.remote.CapabilityType;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.remote.Response;
 import org.openqa.selenium.remote.SessionId;
+import org.openqa.selenium.remote.UploadableDirectory;
 import org.openqa.selenium.remote.server.DriverSessions;
 import org.openqa.selenium.remote.server.JsonParametersAware;
+import org.openqa.selenium.remote.server.UploadedDirectories;
 import org.openqa.selenium.remote.server.rest.RestishHandler;
 import org.openqa.selenium.remote.server.rest.ResultType;
 import org.openqa.selenium.remote.server.log.LoggingManager;
 
+import java.io.File;
+import java.util.List;
 import java.util.Map;
 
 public class NewSession implements RestishHandler, JsonParametersAware {
@@ -54,14 +60,53 @@ public Response getResponse() {
   @SuppressWarnings({"unchecked"})
   public void setJsonParameters(Map<String, Object> allParameters)
       throws Exception {
-    desiredCapabilities = new DesiredCapabilities(
-        (Map<String, Object>) allParameters.get("desiredCapabilities"));
+    Map<String, Object> capabilities =
+        (Map<String, Object>) allParameters.get("desiredCapabilities");
+    desiredCapabilities = new DesiredCapabilities(capabilities);
+  }
+
+  /**
+   * Replaces references to directories the client has already uploaded, such as Firefox
+   * profiles, with those directories. They are kept until released, and must only be read: the
+   * driver copies what it needs from them.
+   *
+   * @param acquired the hashes of the uploads acquired, to release once the session has started.
+   */
+  private Capabilities resolveUploadedDirectories(Capabilities capabilities,
+                                                  List<String> acquired) {
+    Map<String, Object> resolved = Maps.newHashMap(capabilities.asMap());
+    for (Map.Entry<String, Object> entry : resolved.entrySet()) {
+      if (!(entry.getValue() instanceof Map)) {
+        continue;
+      }
+      Object hash = ((Map<?, ?>) entry.getValue()).get(UploadableDirectory.UPLOADED_DIRECTORY);
+      if (hash == null) {
+        continue;
+      }
+      File directory = UploadedDirectories.getDefault().acquire(String.valueOf(hash));
+      if (directory == null) {
+        throw new WebDriverException(String.format(
+            "Capability %s refers to an upload that is not on this server: %s",
+            entry.getKey(), hash));
+      }
+      acquired.add(String.valueOf(hash));
+      entry.setValue(directory);
+    }
+    return new DesiredCapabilities(resolved);
   }
 
   public ResultType handle() throws Exception {
     // Handle the case where the client does not send any desired capabilities.
-    sessionId = allSessions.newSession(desiredCapabilities != null
-                                       ? desiredCapabilities : new DesiredCapabilities());
+    List<String> acquired = Lists.newArrayList();
+    try {
+      sessionId = allSessions.newSession(desiredCapabilities != null
+          ? resolveUploadedDirectories(desiredCapabilities, acquired)
+          : new DesiredCapabilities());
+    } finally {
+      for (String hash : acquired) {
+        UploadedDirectories.getDefault().release(hash);
+      }
+    }
 
     Map<String, Object> capabilities =
         Maps.newHashMap(allSessions.get(sessionId).getCapabilities().asMap());
@@ -22,6 +22,8 @@
 import org.openqa.selenium.io.Zip;
 import org.openqa.selenium.remote.server.JsonParametersAware;
 import org.openqa.selenium.remote.server.Session;
+import org.openqa.selenium.remote.server.UploadedDirectories;
+import org.openqa.selenium.remote.server.UploadedFiles;
 import org.openqa.selenium.remote.server.rest.ResultType;
 
 import java.io.File;
@@ -32,15 +34,37 @@
 public class UploadFile extends ResponseAwareWebDriverHandler implements JsonParametersAware {
 
   private String file;
+  private String hash;
+  private String name;
 
   public UploadFile(Session session) {
     super(session);
   }
 
   public ResultType call() throws Exception {
+    boolean askingForKeptFile = file == null && hash != null;
+    if (askingForKeptFile) {
+      if (name == null || name.contains("/") || name.contains("\\") || name.contains("..")) {
+        throw new WebDriverException("Not a file name: " + name);
+      }
+      if (!UploadedDirectories.isValidHash(hash)) {
+        throw new WebDriverException("Not a SHA-1 hash: " + hash);
+      }
+    }
+
     TemporaryFilesystem tempfs = getSession().getTemporaryFileSystem();
     File tempDir = tempfs.createTempDir("upload", "file");
 
+    if (askingForKeptFile) {
+      // The client is asking whether we already have the file, to save sending it.
+      File copy = UploadedFiles.getDefault().copyTo(hash, name, tempDir);
+      if (copy == null) {
+        tempfs.deleteTempDir(tempDir);
+      }
+      response.setValue(copy == null ? null : copy.getAbsolutePath());
+      return SUCCESS;
+    }
+
     new Zip().unzip(file, tempDir);
     // Select the first file
     File[] allFiles = tempDir.listFiles();
@@ -49,6 +73,7 @@ public ResultType call() throws Exception {
           allFiles.length);
     }
 
+    UploadedFiles.getDefault().add(allFiles[0]);
     response.setValue(allFiles[0].getAbsolutePath());
 
     return SUCCESS;
@@ -56,5 +81,7 @@ public ResultType call() throws Exception {
 
   public void setJsonParameters(Map<String, Object> allParameters) throws Exception {
     file = (String) allParameters.get("file");
+    hash = (String) allParameters.get("hash");
+    name = (String) allParameters.get("name");
   }
 }
@@ -16,6 +16,7 @@
 
 package org.openqa.selenium.remote.server.log;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -26,6 +27,15 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -41,10 +51,23 @@
 /**
  * RestishHandler which keeps in memory the log records per session so that users can retrieve logs per
  * session.
+ * <p/>
+ * Publishing a record only locks the buffer of the session it belongs to. Once a session has
+ * buffered more than {@code capacity} records, they are handed to a background thread that appends
+ * them to the session's log file, so threads logging never wait for the disk. Batches are queued
+ * while the session's buffer is locked, so they reach the file in order, and reading or removing
+ * a session's log waits for the batches already queued for it.
  */
 public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
 
-  private final Map<SessionId, List<LogRecord>> perSessionRecords;
+  private static final ThreadLocal<ThreadKey> currentThreadKey = new ThreadLocal<ThreadKey>() {
+    @Override
+    protected ThreadKey initialValue() {
+      return new ThreadKey();
+    }
+  };
+
+  private final ConcurrentMap<SessionId, SessionRecords> perSessionRecords;
   
   private final Map<SessionId, Map<String, LogEntries>> perSessionDriverEntries;
 
@@ -57,6 +80,8 @@ public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
   private Map<ThreadKey, SessionId> threadToSessionMap;
   private Map<SessionId, ThreadKey> sessionToThreadMap;
   private SessionLogsToFileRepository logFileRepository;
+  // Writes log files in the background, one batch at a time and in the order they were queued.
+  private final ThreadPoolExecutor logFileWriter;
   private int capacity;
   private boolean storeLogsOnSessionQuit = false;
   
@@ -76,51 +101,77 @@ public DefaultPerSessionLogHandler(int capacity, Level minimumLevel, Formatter f
     this.capacity = capacity;
     this.formatter = formatter;
     this.storeLogsOnSessionQuit = captureLogsOnQuit;
-    this.perSessionRecords = Maps.<SessionId, List<LogRecord>>newHashMap();
-    this.perThreadTempRecords = Maps.<ThreadKey, List<LogRecord>>newHashMap();
-    this.threadToSessionMap = Maps.<ThreadKey, SessionId>newHashMap();
-    this.sessionToThreadMap = Maps.<SessionId, ThreadKey>newHashMap();
+    this.perSessionRecords = new ConcurrentHashMap<SessionId, SessionRecords>();
+    this.perThreadTempRecords = new ConcurrentHashMap<ThreadKey, List<LogRecord>>();
+    this.threadToSessionMap = new ConcurrentHashMap<ThreadKey, SessionId>();
+    this.sessionToThreadMap = new ConcurrentHashMap<SessionId, ThreadKey>();
     this.logFileRepository = new SessionLogsToFileRepository();
     this.perSessionDriverEntries = Maps.<SessionId, Map<String, LogEntries>>newHashMap();
+    this.logFileWriter = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Session log writer");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    this.logFileWriter.allowCoreThreadTimeOut(true);
   }
 
   @Override
-  synchronized public void publish(LogRecord record) {
-    ThreadKey threadId = new ThreadKey();
+  public void publish(LogRecord record) {
+    ThreadKey threadId = currentThreadKey.get();
     SessionId sessionId = threadToSessionMap.get(threadId);
 
     if (sessionId != null) {
-      List<LogRecord> records = perSessionRecords.get(sessionId);
+      while (!sessionRecords(sessionId).add(record)) {
+        // the log was just read or removed, start afresh.
+      }
+    } else {
+      // Only ever touched by the thread it belongs to.
+      List<LogRecord> records = perThreadTempRecords.get(threadId);
       if (records == null) {
         records = new ArrayList<LogRecord>();
+        perThreadTempRecords.put(threadId, records);
       }
       records.add(record);
-      perSessionRecords.put(sessionId, records);
-      
-      if (records.size() > capacity) {
-        perSessionRecords.put( sessionId, new ArrayList<LogRecord>());
-        // flush records to file;
+    }
+  }
+
+  private SessionRecords sessionRecords(SessionId sessionId) {
+    SessionRecords records = perSessionRecords.get(sessionId);
+    if (records == null) {
+      SessionRecords newRecords = new SessionRecords(sessionId);
+      records = perSessionRecords.putIfAbsent(sessionId, newRecords);
+      if (records == null) {
+        records = newRecords;
+      }
+    }
+    return records;
+  }
+
+  private void writeToLogFile(final SessionId sessionId, final List<LogRecord> records) {
+    logFileWriter.execute(new Runnable() {
+      public void run() {
         try {
           logFileRepository.flushRecordsToLogFile(sessionId, records);
-          // clear in memory session records
-          records.clear();
         } catch (IOException ex) {
           ex.printStackTrace();
         }
       }
-    } else {
-      List<LogRecord> records = perThreadTempRecords.get(threadId);
-      if (records == null) {
-        records = new ArrayList<LogRecord>();
-        perThreadTempRecords.put(threadId, records);
-      }
-      records.add(record);
-    }
+    });
   }
 
+  /**
+   * Waits until all records handed to the log file writer so far are on disk.
+   */
   @Override
   public void flush() {
-    /* NOOP */
+    onLogFileWriter(new Callable<Void>() {
+      public Void call() {
+        return null;
+      }
+    });
   }
 
   @Override
@@ -129,16 +180,51 @@ public synchronized void close() throws SecurityException {
     perThreadTempRecords.clear();
   }
 
-  private LogRecord[] records(SessionId sessionId) throws IOException {
-    List<LogRecord> logFileRecords = logFileRepository.getLogRecords(sessionId);
-    List<LogRecord> records = perSessionRecords.remove(sessionId);
+  private LogRecord[] records(final SessionId sessionId) throws IOException {
+    // Read on the writer, so that batches of this session still queued are written first.
+    Callable<List<LogRecord>> read = new Callable<List<LogRecord>>() {
+      public List<LogRecord> call() throws IOException {
+        List<LogRecord> logFileRecords = logFileRepository.getLogRecords(sessionId);
+        logFileRepository.removeLogFile(sessionId);
+        return logFileRecords;
+      }
+    };
+    SessionRecords sessionRecords = perSessionRecords.get(sessionId);
+    List<LogRecord> records = null;
+    Future<List<LogRecord>> fromFile;
+    if (sessionRecords == null) {
+      fromFile = logFileWriter.submit(read);
+    } else {
+      // Closed before it is removed, so that no newer batch can be queued ahead of the read.
+      synchronized (sessionRecords) {
+        records = sessionRecords.close();
+        fromFile = logFileWriter.submit(read);
+        perSessionRecords.remove(sessionId, sessionRecords);
+      }
+    }
+
+    List<LogRecord> logFileRecords = await(fromFile);
     if (records != null) {
       logFileRecords.addAll(records);
     }
-    logFileRepository.removeLogFile(sessionId);
     return logFileRecords.toArray(new LogRecord[logFileRecords.size()]);
   }
 
+  private <T> T onLogFileWriter(Callable<T> task) {
+    return await(logFileWriter.submit(task));
+  }
+
+  private <T> T await(Future<T> result) {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
   private String formattedRecords(SessionId sessionId) throws IOException {
     final StringWriter writer;
 
@@ -151,7 +237,7 @@ private String formattedRecords(SessionId sessionId) throws IOException {
 
   @Override
   public synchronized void attachToCurrentThread(SessionId sessionId) {
-    ThreadKey threadId = new ThreadKey();
+    ThreadKey threadId = currentThreadKey.get();
     if (threadToSessionMap.get(threadId) == null
         || threadToSessionMap.get(threadId).equals(sessionId)) {
       threadToSessionMap.put(threadId, sessionId);
@@ -162,23 +248,20 @@ public synchronized void attachToCurrentThread(SessionId sessionId) {
 
   @Override
   public void transferThreadTempLogsToSessionLogs(SessionId sessionId) {
-    ThreadKey threadId = new ThreadKey();
+    ThreadKey threadId = currentThreadKey.get();
     List<LogRecord> threadRecords = perThreadTempRecords.get(threadId);
-    List<LogRecord> sessionRecords = perSessionRecords.get(sessionId);
 
     if (threadRecords != null) {
-      if (sessionRecords == null) {
-        sessionRecords = new ArrayList<LogRecord>();
-        perSessionRecords.put(sessionId, sessionRecords);
+      while (!sessionRecords(sessionId).addAll(threadRecords)) {
+        // the log was just read or removed, start afresh.
       }
-      sessionRecords.addAll(threadRecords);
     }
     clearThreadTempLogs();
   }
 
   @Override
   public synchronized void detachFromCurrentThread() {
-    ThreadKey threadId = new ThreadKey();
+    ThreadKey threadId = currentThreadKey.get();
     SessionId sessionId = threadToSessionMap.get(threadId);
     if (sessionId != null) {
       threadToSessionMap.remove(threadId);
@@ -195,18 +278,32 @@ public synchronized void detachFromCurrentThread() {
    * @param sessionId The session id to use.
    */
   @Override
-  public synchronized void removeSessionLogs(SessionId sessionId) {
+  public synchronized void removeSessionLogs(final SessionId sessionId) {
     if (storeLogsOnSessionQuit) {
       return;
     }
     ThreadKey threadId = sessionToThreadMap.get(sessionId);
-    SessionId sessionIdForThread = threadToSessionMap.get(threadId);
+    SessionId sessionIdForThread = threadId == null ? null : threadToSessionMap.get(threadId);
     if (threadId != null && sessionIdForThread != null && sessionIdForThread.equals(sessionId)) {
       threadToSessionMap.remove(threadId);
       sessionToThreadMap.remove(sessionId);
     }
-    perSessionRecords.remove(sessionId);
-    logFileRepository.removeLogFile(sessionId);
+    Runnable remove = new Runnable() {
+      public void run() {
+        logFileRepository.removeLogFile(sessionId);
+      }
+    };
+    SessionRecords sessionRecords = perSessionRecords.get(sessionId);
+    if (sessionRecords == null) {
+      logFileWriter.execute(remove);
+    } else {
+      // after the batches already queued, and before any other batch can be.
+      synchronized (sessionRecords) {
+        sessionRecords.close();
+        logFileWriter.execute(remove);
+        perSessionRecords.remove(sessionId, sessionRecords);
+      }
+    }
   }
 
   /**
@@ -222,9 +319,8 @@ public synchronized void removeSessionLogs(SessionId sessionId) {
    * small task.
    */
   @Override
-  public synchronized void clearThreadTempLogs() {
-    ThreadKey threadId = new ThreadKey();
-    perThreadTempRecords.remove(threadId);
+  public void clearThreadTempLogs() {
+    perThreadTempRecords.remove(currentThreadKey.get());
   }
 
   /**
@@ -235,7 +331,7 @@ public synchronized void clearThreadTempLogs() {
    * @throws IOException when the elves go bad
    */
   @Override
-  public synchronized String getLog(SessionId sessionId) throws IOException {
+  public String getLog(SessionId sessionId) throws IOException {
     // TODO(chandra): Provide option to clear logs after getLog()
     String logs = formattedRecords(sessionId);
     logs = "\n<RC_Logs RC_Session_ID=" + sessionId + ">\n" + logs
@@ -251,7 +347,7 @@ public synchronized String getLog(SessionId sessionId) throws IOException {
    * @throws IOException If there was a problem reading from file.
    */
   @Override
-  public synchronized LogEntries getSessionLog(SessionId sessionId) throws IOException {
+  public LogEntries getSessionLog(SessionId sessionId) throws IOException {
     List<LogEntry> entries = Lists.<LogEntry>newLinkedList();
     LogRecord[] records = records(sessionId);
     if (records != null) {
@@ -337,6 +433,61 @@ public void configureLogging(LoggingPreferences prefs) {
     }
   }
 
+  /**
+   * The records of a single session not yet handed to the log file writer. Batches are handed over
+   * while holding the lock, so that the writer gets them in order.
+   */
+  private class SessionRecords {
+    private final SessionId sessionId;
+    private List<LogRecord> records = new ArrayList<LogRecord>();
+    private boolean closed;
+
+    SessionRecords(SessionId sessionId) {
+      this.sessionId = sessionId;
+    }
+
+    /**
+     * Adds the record, and hands the buffered records to the log file writer if there are now more
+     * than capacity of them.
+     *
+     * @return false if the records were closed, in which case the record wasn't added.
+     */
+    synchronized boolean add(LogRecord record) {
+      if (closed) {
+        return false;
+      }
+      records.add(record);
+      if (records.size() > capacity) {
+        writeToLogFile(sessionId, takeAll());
+      }
+      return true;
+    }
+
+    synchronized boolean addAll(List<LogRecord> toAdd) {
+      if (closed) {
+        return false;
+      }
+      records.addAll(toAdd);
+      return true;
+    }
+
+    /**
+     * Stops taking records, once the log is being read or removed.
+     *
+     * @return the records that hadn't been handed to the writer.
+     */
+    synchronized List<LogRecord> close() {
+      closed = true;
+      return takeAll();
+    }
+
+    private List<LogRecord> takeAll() {
+      List<LogRecord> taken = records;
+      records = new ArrayList<LogRecord>();
+      return taken;
+    }
+  }
+
   private static class ThreadKey {
 
     private final String name;
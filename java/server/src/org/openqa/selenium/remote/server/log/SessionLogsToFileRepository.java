@@ -20,6 +20,13 @@
 
 import org.openqa.selenium.remote.SessionId;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -27,52 +34,76 @@
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.LogRecord;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * An append-only file of log records. Each batch of records is written as one gzip compressed
+ * block, preceded by its length, so that appending never rewrites what is already on disk.
+ */
 class LogFile {
   private String logName;
-  private ObjectOutputStream logWriter;
-  private ObjectInputStream logReader;
 
   public LogFile(String logName) {
     this.logName = logName;
   }
 
-  public void openLogWriter() throws IOException {
-    logWriter = new ObjectOutputStream(new FileOutputStream(logName));
-  }
+  public synchronized void appendRecords(List<LogRecord> records) throws IOException {
+    ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    ObjectOutputStream batchWriter = new ObjectOutputStream(new GZIPOutputStream(batch));
+    batchWriter.writeInt(records.size());
+    for (LogRecord record : records) {
+      batchWriter.writeObject(record);
+    }
+    batchWriter.close();
 
-  public void closeLogWriter() throws IOException {
-    if (logWriter != null) {
+    DataOutputStream logWriter = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(logName, true)));
+    try {
+      logWriter.writeInt(batch.size());
+      batch.writeTo(logWriter);
+    } finally {
       logWriter.close();
     }
   }
 
-  public void openLogReader() throws IOException {
-    logReader = new ObjectInputStream(new FileInputStream(logName));
-  }
-
-  public void closeLogReader() throws IOException {
-    if (logReader != null) {
+  public synchronized List<LogRecord> readRecords() throws IOException {
+    List<LogRecord> records = new ArrayList<LogRecord>();
+    DataInputStream logReader =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(logName)));
+    try {
+      while (true) {
+        byte[] batch;
+        try {
+          batch = new byte[logReader.readInt()];
+          logReader.readFully(batch);
+        } catch (EOFException e) {
+          // A batch cut short by a crash is dropped along with anything after it.
+          return records;
+        }
+        ObjectInputStream batchReader =
+            new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(batch)));
+        try {
+          for (int count = batchReader.readInt(); count > 0; count--) {
+            records.add((LogRecord) batchReader.readObject());
+          }
+        } catch (ClassNotFoundException e) {
+          return records;
+        } finally {
+          batchReader.close();
+        }
+      }
+    } finally {
       logReader.close();
     }
   }
 
-  public ObjectOutputStream getLogWriter() {
-    return logWriter;
-  }
-
-  public ObjectInputStream getLogReader() {
-    return logReader;
-  }
-
-  public void removeLogFile() throws IOException {
+  public synchronized void removeLogFile() {
     if (logName != null) {
-      closeLogReader();
-      closeLogWriter();
       new File(logName).delete();
     }
   }
@@ -83,7 +114,7 @@ public class SessionLogsToFileRepository {
   private Map<SessionId, LogFile> sessionToLogFileMap;
 
   public SessionLogsToFileRepository() {
-    sessionToLogFileMap = new HashMap<SessionId, LogFile>();
+    sessionToLogFileMap = new ConcurrentHashMap<SessionId, LogFile>();
   }
 
   /**
@@ -105,27 +136,24 @@ public void createLogFileAndAddToMap(SessionId sessionId) throws IOException {
 
   /**
    * This creates a mapping between session and file representation of logs if doesnt exist already.
-   * Writes the log records to the log file. This does *NOT* flush the logs to file. This does *NOT*
-   * clear the records after writing to file.
+   * Appends the log records to the log file, after any records written earlier, as a single
+   * compressed batch. This does *NOT* clear the records after writing to file.
    * 
    * @param sessionId session-id to which the log records belong
    * @param records logRecords that need to be stored
    * @throws IOException
    */
-  synchronized public void flushRecordsToLogFile(SessionId sessionId,
+  public void flushRecordsToLogFile(SessionId sessionId,
       List<LogRecord> records) throws IOException {
-    LogFile logFile = sessionToLogFileMap.get(sessionId);
-
-    if (logFile == null) {
-      createLogFileAndAddToMap(sessionId);
+    LogFile logFile;
+    synchronized (this) {
       logFile = sessionToLogFileMap.get(sessionId);
+      if (logFile == null) {
+        createLogFileAndAddToMap(sessionId);
+        logFile = sessionToLogFileMap.get(sessionId);
+      }
     }
-
-    logFile.openLogWriter();
-    for (LogRecord record : records) {
-      logFile.getLogWriter().writeObject(record);
-    }
-    logFile.closeLogWriter();
+    logFile.appendRecords(records);
   }
 
   /**
@@ -141,36 +169,14 @@ public List<LogRecord> getLogRecords(SessionId sessionId) throws IOException {
     if (logFile == null) {
       return new ArrayList<LogRecord>();
     }
-    logFile.openLogReader();
-    ObjectInputStream logObjInStream = logFile.getLogReader();
-    List<LogRecord> logRecords = new ArrayList<LogRecord>();
-    try {
-      LogRecord tmpLogRecord;
-      while (null != (tmpLogRecord = (LogRecord) logObjInStream
-          .readObject())) {
-        logRecords.add(tmpLogRecord);
-      }
-    } catch (IOException ex) {
-      logFile.closeLogReader();
-      return logRecords;
-    } catch (ClassNotFoundException e) {
-      logFile.closeLogReader();
-      return logRecords;
-    }
-    logFile.closeLogReader();
-    return logRecords;
+    return logFile.readRecords();
   }
 
   public void removeLogFile(SessionId sessionId) {
-    LogFile logFile = sessionToLogFileMap.get(sessionId);
-    sessionToLogFileMap.remove(sessionId);
+    LogFile logFile = sessionToLogFileMap.remove(sessionId);
     if (logFile == null) {
       return;
     }
-    try {
-      logFile.removeLogFile();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    logFile.removeLogFile();
   }
 }
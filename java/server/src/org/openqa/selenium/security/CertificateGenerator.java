@@ -97,6 +97,17 @@ public CertificateGenerator(File root) {
   }
 
   public KeyAndCert generateCertificate(String hostname, String certificateRevocationList) {
+    return generateCertificate(hostname, certificateRevocationList, generateKeyPair());
+  }
+
+  /**
+   * Generates a certificate for the given host that is signed by the Cybervillains CA, using the
+   * given key pair rather than a freshly generated one. Since the private key never leaves the
+   * server, a single key pair can safely be shared by every generated certificate, which avoids
+   * the cost of an RSA key generation per host.
+   */
+  public KeyAndCert generateCertificate(String hostname, String certificateRevocationList,
+      KeyPair keypair) {
     X500Principal x500issuer = caCert.getCertificate().getIssuerX500Principal();
     String subject = String.format(
         "CN=%s, OU=Test, O=CyberVillainsCA, L=Seattle, S=Washington, C=US", hostname);
@@ -105,8 +116,6 @@ public KeyAndCert generateCertificate(String hostname, String certificateRevocat
     Date begin = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
     Date end = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365));
 
-    KeyPair keypair = pairGenerator.generateKeyPair();
-
     try {
       SubjectPublicKeyInfo info = new SubjectPublicKeyInfo(
           (ASN1Sequence) new ASN1InputStream(
@@ -158,6 +167,10 @@ DistributionPointName.FULL_NAME, new GeneralName(
     }
   }
 
+  public KeyPair generateKeyPair() {
+    return pairGenerator.generateKeyPair();
+  }
+
   private KeyAndCert readRootSigningCert() {
     InputStream is = null;
 
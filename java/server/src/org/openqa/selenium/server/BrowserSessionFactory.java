@@ -23,17 +23,26 @@
 import org.openqa.selenium.browserlaunchers.BrowserLauncher;
 import org.openqa.selenium.remote.SessionId;
 import org.openqa.selenium.server.browserlaunchers.BrowserLauncherFactory;
+import org.openqa.selenium.server.browserlaunchers.BrowserOptions;
 import org.openqa.selenium.server.browserlaunchers.InvalidBrowserExecutableException;
 import org.openqa.selenium.remote.server.log.LoggingManager;
 import org.openqa.selenium.remote.server.log.PerSessionLogHandler;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,7 +50,9 @@
  * Manages browser sessions, their creation, and their closure.
  * <p/>
  * Maintains a cache of unused and available browser sessions in case the server is reusing
- * sessions. Also manages the creation and finalization of all browser sessions.
+ * sessions, which can also be kept filled with pre-launched browsers (see
+ * {@link #startWarmPool(WarmBrowserPool, RemoteControlConfiguration)}). Also manages the creation
+ * and finalization of all browser sessions.
  * 
  * @author jbevan@google.com (Jennifer Bevan)
  */
@@ -60,6 +71,22 @@ public class BrowserSessionFactory {
   protected final Set<BrowserSessionInfo> activeSessions =
       Collections.synchronizedSet(new HashSet<BrowserSessionInfo>());
 
+  // warm pools, keyed by browser string and start URL.
+  private final Map<String, WarmBrowserPool> warmPools =
+      new ConcurrentHashMap<String, WarmBrowserPool>();
+  private final Map<String, AtomicInteger> warmLaunchesInProgress =
+      new ConcurrentHashMap<String, AtomicInteger>();
+  private volatile RemoteControlConfiguration warmPoolConfiguration;
+  private ExecutorService warmUpExecutor;
+
+  // time taken to hand out a session and for its first command to come in, keyed by browser
+  // string.
+  private final ConcurrentMap<String, SessionStartTimes> sessionStartTimes =
+      new ConcurrentHashMap<String, SessionStartTimes>();
+  // sessions handed out that have not had a command yet, keyed by session id.
+  private final ConcurrentMap<String, HandedOutSession> awaitingFirstCommand =
+      new ConcurrentHashMap<String, HandedOutSession>();
+
   private final BrowserLauncherFactory browserLauncherFactory;
   private final Timer cleanupTimer;
   private final long maxIdleSessionTime;
@@ -125,6 +152,7 @@ protected BrowserSessionInfo getNewBrowserSession(String browserString, String s
       boolean useCached, boolean ensureClean, RemoteControlConfiguration configuration)
       throws RemoteCommandException {
 
+    long start = System.currentTimeMillis();
     BrowserSessionInfo sessionInfo = null;
     browserString = validateBrowserString(browserString, configuration);
 
@@ -133,18 +161,33 @@ protected BrowserSessionInfo getNewBrowserSession(String browserString, String s
       InjectionHelper.init();
     }
 
-    if (useCached) {
+    // Warm browsers are launched with the default options, so can't stand in for customised ones.
+    boolean warm = warmPools.containsKey(poolKey(browserString, startURL))
+        && (browserConfigurations == null || !BrowserOptions.hasOptionsSet(browserConfigurations));
+
+    if (useCached || warm) {
       log.info("grabbing available session...");
       sessionInfo = grabAvailableSession(browserString, startURL);
+      if (warm && null != sessionInfo && null != sessionInfo.session) {
+        sessionInfo.session.setExtensionJs(extensionJs);
+      }
+    }
+
+    if (warm) {
+      refillWarmPool(poolKey(browserString, startURL));
     }
 
     // couldn't find one in the cache, or not reusing sessions.
-    if (null == sessionInfo) {
+    boolean launched = null == sessionInfo;
+    if (launched) {
       log.info("creating new remote session");
       sessionInfo = createNewRemoteSession(browserString, startURL, extensionJs,
           browserConfigurations, ensureClean, configuration);
     }
 
+    recordSessionStart(browserString, System.currentTimeMillis() - start, !launched);
+    awaitingFirstCommand.put(sessionInfo.sessionId, new HandedOutSession(browserString, start));
+
     assert null != sessionInfo;
     if (false/* ensureClean */) {
       // need to add this to the launcher API.
@@ -159,6 +202,7 @@ protected BrowserSessionInfo getNewBrowserSession(String browserString, String s
    * Active and available but inactive sessions are ended.
    */
   protected void endAllBrowserSessions(RemoteControlConfiguration configuration) {
+    stopWarmPools();
     boolean done = false;
     Set<BrowserSessionInfo> allSessions = new HashSet<BrowserSessionInfo>();
     while (!done) {
@@ -184,6 +228,189 @@ protected void endAllBrowserSessions(RemoteControlConfiguration configuration) {
     }
   }
 
+  /**
+   * Pre-launches the given number of browsers in the background and keeps them idle among the
+   * available sessions, refilling the pool whenever one of them is handed out. Sessions requested
+   * with the pool's browser string and start URL, and without any browser options, are then
+   * served from the pool even if the server is not otherwise reusing browser sessions.
+   * 
+   * @param pool the browser string, start URL and number of browsers to keep ready.
+   * @param configuration Remote Control configuration. Cannot be null.
+   */
+  public void startWarmPool(WarmBrowserPool pool, RemoteControlConfiguration configuration) {
+    String browserString = validateBrowserString(pool.getBrowserString(), configuration);
+    String key = poolKey(browserString, pool.getStartURL());
+
+    warmPoolConfiguration = configuration;
+    warmPools.put(key, new WarmBrowserPool(browserString, pool.getStartURL(), pool.getSize()));
+    if (!warmLaunchesInProgress.containsKey(key)) {
+      warmLaunchesInProgress.put(key, new AtomicInteger());
+    }
+    log.info("Keeping a warm pool of " + pool.getSize() + " " + browserString + " browsers for "
+        + pool.getStartURL());
+    refillWarmPool(key);
+  }
+
+  /**
+   * Stops refilling all warm pools. Browsers already launched stay available until they are
+   * handed out, idle out or are ended. Browsers still launching are closed once they are up.
+   */
+  public void stopWarmPools() {
+    synchronized (warmPools) {
+      warmPools.clear();
+    }
+    synchronized (this) {
+      if (null != warmUpExecutor) {
+        warmUpExecutor.shutdownNow();
+        warmUpExecutor = null;
+      }
+    }
+  }
+
+  /**
+   * Launches as many browsers in the background as are needed to bring the given pool back up to
+   * size, counting both idle and still launching ones.
+   */
+  protected void refillWarmPool(String key) {
+    final WarmBrowserPool pool = warmPools.get(key);
+    final AtomicInteger inProgress = warmLaunchesInProgress.get(key);
+    if (null == pool || null == inProgress) {
+      return;
+    }
+
+    int missing;
+    synchronized (inProgress) {
+      missing = pool.getSize() - inProgress.get()
+          - countAvailableSessions(pool.getBrowserString(), pool.getStartURL());
+      if (missing <= 0) {
+        return;
+      }
+      inProgress.addAndGet(missing);
+    }
+
+    ExecutorService executor = getWarmUpExecutor();
+    for (int i = 0; i < missing; i++) {
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            launchWarmSession(pool);
+          } finally {
+            inProgress.decrementAndGet();
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Launches a browser for the given pool and parks it among the available sessions, or closes it
+   * if the pools were stopped while it was launching.
+   */
+  protected void launchWarmSession(WarmBrowserPool pool) {
+    RemoteControlConfiguration configuration = warmPoolConfiguration;
+    try {
+      BrowserSessionInfo sessionInfo = createNewRemoteSession(pool.getBrowserString(),
+          pool.getStartURL(), "", BrowserOptions.newBrowserOptions(), false, configuration);
+      // stopWarmPools() clears the pools under the same lock, so no browser is parked after it.
+      synchronized (warmPools) {
+        if (!activeSessions.remove(sessionInfo)) {
+          // already ended along with all the other sessions.
+          return;
+        }
+        if (warmPools.containsKey(poolKey(pool.getBrowserString(), pool.getStartURL()))) {
+          sessionInfo.lastClosedAt = System.currentTimeMillis();
+          availableSessions.add(sessionInfo);
+          log.fine("Warm " + pool.getBrowserString() + " session " + sessionInfo.sessionId
+              + " ready");
+          return;
+        }
+      }
+      log.fine("Closing warm " + pool.getBrowserString() + " session " + sessionInfo.sessionId
+          + ", the pool has been stopped");
+      shutdownBrowserAndClearSessionData(sessionInfo);
+    } catch (RemoteCommandException e) {
+      log.log(Level.WARNING, "Unable to launch a warm " + pool.getBrowserString() + " browser", e);
+    } catch (RuntimeException e) {
+      log.log(Level.WARNING, "Unable to launch a warm " + pool.getBrowserString() + " browser", e);
+    }
+  }
+
+  private synchronized ExecutorService getWarmUpExecutor() {
+    if (null == warmUpExecutor) {
+      warmUpExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "Warm browser launcher " + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return warmUpExecutor;
+  }
+
+  private int countAvailableSessions(String browserString, String baseUrl) {
+    int count = 0;
+    synchronized (availableSessions) {
+      for (BrowserSessionInfo info : availableSessions) {
+        if (info.browserString.equals(browserString) && info.baseUrl.equals(baseUrl)) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  private static String poolKey(String browserString, String baseUrl) {
+    return browserString + " " + baseUrl;
+  }
+
+  private SessionStartTimes getSessionStartTimes(String browserString) {
+    SessionStartTimes times = sessionStartTimes.get(browserString);
+    if (null == times) {
+      SessionStartTimes created = new SessionStartTimes();
+      times = sessionStartTimes.putIfAbsent(browserString, created);
+      if (null == times) {
+        times = created;
+      }
+    }
+    return times;
+  }
+
+  private void recordSessionStart(String browserString, long millis, boolean fromPool) {
+    getSessionStartTimes(browserString).record(millis, fromPool);
+    log.info("Handed out " + (fromPool ? "an already running " : "a newly launched ")
+        + browserString + " session after " + millis + "ms");
+  }
+
+  /**
+   * Records the time from asking for the given session to its first command, if this is its first
+   * command. Cheap enough to be called on every command.
+   *
+   * @param sessionId the session the command is for.
+   */
+  public void commandReceived(String sessionId) {
+    if (null == sessionId || awaitingFirstCommand.isEmpty()) {
+      return;
+    }
+    HandedOutSession handedOut = awaitingFirstCommand.remove(sessionId);
+    if (null != handedOut) {
+      long millis = System.currentTimeMillis() - handedOut.requestedAt;
+      getSessionStartTimes(handedOut.browserString).recordFirstCommand(millis);
+      log.fine("First command for " + handedOut.browserString + " session " + sessionId
+          + " came " + millis + "ms after it was asked for");
+    }
+  }
+
+  /**
+   * Returns the time taken to hand out a session, and for its first command to come in, so far,
+   * keyed by browser string.
+   */
+  public Map<String, SessionStartTimes> getSessionStartTimes() {
+    return new HashMap<String, SessionStartTimes>(sessionStartTimes);
+  }
+
   /**
    * Ends a browser session, using SeleniumServer static fields to populate parameters.
    * 
@@ -215,6 +442,7 @@ public void endBrowserSession(boolean forceClose, String sessionId,
   protected void endBrowserSession(boolean forceClose, String sessionId,
       RemoteControlConfiguration configuration,
       boolean ensureClean) {
+    awaitingFirstCommand.remove(sessionId);
     BrowserSessionInfo sessionInfo = lookupInfoBySessionId(sessionId, activeSessions);
     if (null != sessionInfo) {
       activeSessions.remove(sessionInfo);
@@ -260,6 +488,7 @@ protected void endBrowserSession(boolean forceClose, String sessionId,
    * @param sessionInfo the browser session to end.
    */
   protected void shutdownBrowserAndClearSessionData(BrowserSessionInfo sessionInfo) {
+    awaitingFirstCommand.remove(sessionInfo.sessionId);
     try {
       sessionInfo.launcher.close(); // can throw RuntimeException
     } finally {
@@ -446,6 +675,7 @@ protected boolean registerExternalSession(BrowserSessionInfo sessionInfo) {
    * @param sessionInfo the session to remove.
    */
   protected void deregisterExternalSession(BrowserSessionInfo sessionInfo) {
+    awaitingFirstCommand.remove(sessionInfo.sessionId);
     activeSessions.remove(sessionInfo);
   }
 
@@ -493,18 +723,31 @@ protected BrowserSessionInfo lookupInfoByBrowserAndUrl(String browserString,
     return result;
   }
 
+  /**
+   * Shuts down available sessions that have been idle for too long, or whose browser has gone
+   * away, and relaunches any that belonged to a warm pool.
+   */
   protected void removeIdleAvailableSessions() {
     long now = System.currentTimeMillis();
+    Set<String> depletedPools = new HashSet<String>();
     synchronized (availableSessions) {
       Iterator<BrowserSessionInfo> iter = availableSessions.iterator();
       while (iter.hasNext()) {
         BrowserSessionInfo info = iter.next();
-        if (now - info.lastClosedAt > maxIdleSessionTime) {
+        if (now - info.lastClosedAt > maxIdleSessionTime || isBrowserGone(info)) {
           iter.remove();
           shutdownBrowserAndClearSessionData(info);
+          depletedPools.add(poolKey(info.browserString, info.baseUrl));
         }
       }
     }
+    for (String key : depletedPools) {
+      refillWarmPool(key);
+    }
+  }
+
+  private boolean isBrowserGone(BrowserSessionInfo info) {
+    return null != info.session && info.session.getCommandQueue().isClosed();
   }
 
   /**
@@ -571,6 +814,86 @@ protected static boolean isValid(BrowserSessionInfo sessionInfo) {
     }
   }
 
+  /**
+   * Time taken to hand out sessions for one browser string, both from already running browsers
+   * and from newly launched ones, and from asking for a session to its first command.
+   */
+  public static class SessionStartTimes {
+    private int fromPool;
+    private int launched;
+    private long totalMillis;
+    private long maxMillis;
+    private int firstCommands;
+    private long totalFirstCommandMillis;
+    private long maxFirstCommandMillis;
+
+    synchronized void record(long millis, boolean wasFromPool) {
+      if (wasFromPool) {
+        fromPool++;
+      } else {
+        launched++;
+      }
+      totalMillis += millis;
+      maxMillis = Math.max(maxMillis, millis);
+    }
+
+    synchronized void recordFirstCommand(long millis) {
+      firstCommands++;
+      totalFirstCommandMillis += millis;
+      maxFirstCommandMillis = Math.max(maxFirstCommandMillis, millis);
+    }
+
+    /** @return the number of sessions handed out from already running browsers. */
+    public synchronized int getFromPool() {
+      return fromPool;
+    }
+
+    /** @return the number of sessions for which a browser had to be launched. */
+    public synchronized int getLaunched() {
+      return launched;
+    }
+
+    public synchronized long getAverageMillis() {
+      int count = fromPool + launched;
+      return count == 0 ? 0 : totalMillis / count;
+    }
+
+    public synchronized long getMaxMillis() {
+      return maxMillis;
+    }
+
+    /** @return the number of sessions that have had a command. */
+    public synchronized int getFirstCommands() {
+      return firstCommands;
+    }
+
+    /** @return the average time from asking for a session to its first command. */
+    public synchronized long getAverageFirstCommandMillis() {
+      return firstCommands == 0 ? 0 : totalFirstCommandMillis / firstCommands;
+    }
+
+    public synchronized long getMaxFirstCommandMillis() {
+      return maxFirstCommandMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+      return "sessions: " + (fromPool + launched) + " (" + fromPool + " warm), average: "
+          + getAverageMillis() + "ms, max: " + maxMillis + "ms, to first command average: "
+          + getAverageFirstCommandMillis() + "ms, max: " + maxFirstCommandMillis + "ms";
+    }
+  }
+
+  private static class HandedOutSession {
+    private final String browserString;
+    private final long requestedAt;
+
+    HandedOutSession(String browserString, long requestedAt) {
+      this.browserString = browserString;
+      this.requestedAt = requestedAt;
+    }
+  }
+
   /**
    * TimerTask that looks for unused sessions in the availableSessions collection.
    * 
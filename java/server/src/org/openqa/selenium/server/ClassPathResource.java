@@ -16,6 +16,8 @@
  */
 package org.openqa.selenium.server;
 
+import com.google.common.hash.Hashing;
+
 import org.openqa.jetty.util.IO;
 import org.openqa.jetty.util.Resource;
 
@@ -27,6 +29,7 @@
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Represents resource file off of the classpath.
@@ -36,22 +39,64 @@
 public class ClassPathResource extends Resource {
   String path;
 
-  ByteArrayOutputStream os;
+  private final byte[] bytes;
+  private final String etag;
+  private final String gzippedEtag;
+  private volatile byte[] gzipped;
 
   /**
    * Specifies the classpath path containing the resource
    */
   public ClassPathResource(String path) {
     this.path = path;
+    byte[] read = null;
     InputStream is = getSeleniumResourceAsStream(path);
     if (is != null) {
-      os = new ByteArrayOutputStream();
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
       try {
         IO.copy(is, os);
       } catch (IOException e) {
         e.printStackTrace();
+      } finally {
+        IO.close(is);
       }
+      read = os.toByteArray();
+    }
+    bytes = read;
+    String hash = read == null ? null : Hashing.sha1().hashBytes(read).toString();
+    etag = hash == null ? null : "\"" + hash + "\"";
+    gzippedEtag = hash == null ? null : "\"" + hash + "-gzip\"";
+  }
+
+  /**
+   * Returns a strong entity tag for the resource's contents, or null if it doesn't exist.
+   */
+  public String getETag() {
+    return etag;
+  }
+
+  /**
+   * Returns a strong entity tag for the resource's gzipped contents, which are a different
+   * representation and so need a tag of their own, or null if it doesn't exist.
+   */
+  public String getGzippedETag() {
+    return gzippedEtag;
+  }
+
+  /**
+   * Returns the resource's contents gzipped. They are compressed on first use and kept.
+   */
+  public byte[] getGzippedBytes() throws IOException {
+    byte[] compressed = gzipped;
+    if (compressed == null && bytes != null) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream(bytes.length / 3 + 64);
+      GZIPOutputStream gzip = new GZIPOutputStream(os);
+      gzip.write(bytes);
+      gzip.close();
+      compressed = os.toByteArray();
+      gzipped = compressed;
     }
+    return compressed;
   }
 
   public static InputStream getSeleniumResourceAsStream(String resourceFile) {
@@ -70,7 +115,7 @@ public void release() {
 
   @Override
   public boolean exists() {
-    return os != null;
+    return bytes != null;
   }
 
   @Override
@@ -88,8 +133,8 @@ public long lastModified() {
 
   @Override
   public long length() {
-    if (os != null) {
-      return os.size();
+    if (bytes != null) {
+      return bytes.length;
     }
 
     return 0;
@@ -112,8 +157,8 @@ public String getName() {
 
   @Override
   public InputStream getInputStream() throws IOException {
-    if (os != null) {
-      return new ByteArrayInputStream(os.toByteArray());
+    if (bytes != null) {
+      return new ByteArrayInputStream(bytes);
     }
     return null;
   }
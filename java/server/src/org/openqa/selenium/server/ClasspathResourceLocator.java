@@ -22,12 +22,31 @@
 import org.openqa.jetty.util.Resource;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Serves resources off the classpath. The classpath doesn't change while the server runs, so
+ * each resource found is read only once and then served from memory.
+ */
 public class ClasspathResourceLocator implements ResourceLocator {
 
+  private final ConcurrentMap<String, ClassPathResource> resources =
+      new ConcurrentHashMap<String, ClassPathResource>();
+
   public Resource getResource(HttpContext context, String pathInContext) throws IOException {
-    Resource resource = new ClassPathResource(pathInContext);
-    context.getResourceMetaData(resource);
+    ClassPathResource resource = resources.get(pathInContext);
+    if (resource == null) {
+      resource = new ClassPathResource(pathInContext);
+      context.getResourceMetaData(resource);
+      if (!resource.exists()) {
+        return resource;
+      }
+      ClassPathResource existing = resources.putIfAbsent(pathInContext, resource);
+      if (existing != null) {
+        resource = existing;
+      }
+    }
     return resource;
   }
 
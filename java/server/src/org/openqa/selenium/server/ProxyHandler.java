@@ -16,8 +16,6 @@
 
 package org.openqa.selenium.server;
 
-import cybervillains.ca.KeyStoreManager;
-
 import org.openqa.jetty.http.HttpConnection;
 import org.openqa.jetty.http.HttpFields;
 import org.openqa.jetty.http.HttpMessage;
@@ -31,7 +29,6 @@
 import org.openqa.jetty.util.StringMap;
 import org.openqa.jetty.util.URI;
 import org.openqa.selenium.browserlaunchers.LauncherUtils;
-import org.openqa.selenium.server.browserlaunchers.ResourceExtractor;
 import org.openqa.selenium.server.commands.AddCustomRequestHeaderCommand;
 import org.openqa.selenium.server.commands.CaptureNetworkTrafficCommand;
 
@@ -88,6 +85,7 @@ public class ProxyHandler extends AbstractHttpHandler {
   private final boolean proxyInjectionMode;
   private final boolean forceProxyChain;
   private boolean fakeCertsGenerated;
+  private SslCertificateCache sslCertificateCache;
 
   // see docs for the lock object on SeleniumServer for information on this and why it is IMPORTANT!
   private final Object shutdownLock;
@@ -177,6 +175,35 @@ public void start() throws Exception {
     super.start();
   }
 
+  @Override
+  public void stop() throws InterruptedException {
+    super.stop();
+    synchronized (this) {
+      if (sslCertificateCache != null) {
+        sslCertificateCache.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Sets the cache the SSL relays get their certificates from. By default a cache in a temporary
+   * directory is created the first time a relay is needed.
+   */
+  public synchronized void setSslCertificateCache(SslCertificateCache sslCertificateCache) {
+    this.sslCertificateCache = sslCertificateCache;
+  }
+
+  public synchronized SslCertificateCache getSslCertificateCache() {
+    if (sslCertificateCache == null) {
+      sslCertificateCache = new SslCertificateCache(null, getCertificateRevocationListUrl(port));
+    }
+    return sslCertificateCache;
+  }
+
+  public static String getCertificateRevocationListUrl(int port) {
+    return "http://127.0.0.1:" + port + "/selenium-server/sslSupport/blank_crl.pem";
+  }
+
   /* ------------------------------------------------------------ */
   public void handle(String pathInContext, String pathParams, HttpRequest request,
       HttpResponse response) throws IOException {
@@ -629,26 +656,8 @@ protected SslRelay getSslRelayOrCreateNew(URI uri, String serverHost, Integer se
   }
 
   protected void wireUpSslWithCyberVilliansCA(String host, SslRelay listener) {
-    try {
-      File root = File.createTempFile("seleniumSslSupport", host);
-      root.delete();
-      root.mkdirs();
-
-      ResourceExtractor.extractResourcePath(getClass(), "/sslSupport", root);
-
-
-      KeyStoreManager mgr =
-          new KeyStoreManager(root, "http://127.0.0.1:" + port +
-              "/selenium-server/sslSupport/blank_crl.pem");
-      mgr.getCertificateByHostname(host);
-      mgr.getKeyStore().deleteEntry(KeyStoreManager._caPrivKeyAlias);
-      mgr.persist();
-
-      listener.setKeystore(new File(root, "cybervillainsCA.jks").getAbsolutePath());
-      listener.setNukeDirOrFile(root);
-    } catch (Exception e) {
-      throw new RuntimeException(e);
-    }
+    File keystore = getSslCertificateCache().getKeystore(host);
+    listener.setKeystore(keystore.getAbsolutePath());
   }
 
   /* ------------------------------------------------------------ */
@@ -24,6 +24,9 @@
 import org.openqa.selenium.remote.server.log.LoggingOptions;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Encapsulate Remote Control Configuration
@@ -36,6 +39,8 @@ public class RemoteControlConfiguration {
   public static final int MINUTES = 60;
   public static final int DEFAULT_TIMEOUT_IN_SECONDS = 30 * MINUTES;
   public static final int DEFAULT_RETRY_TIMEOUT_IN_SECONDS = 10;
+  public static final String SOCKET_LISTENER = "socket";
+  public static final String NIO_LISTENER = "nio";
 
   private int port;
   private File profilesLocation;
@@ -55,6 +60,7 @@ public class RemoteControlConfiguration {
    */
   private int portDriversShouldContact;
   private boolean htmlSuite;
+  private int htmlSuiteBrowsers = 1;
   private boolean selfTest;
   private File selfTestDir;
   private boolean interactive;
@@ -80,8 +86,12 @@ public class RemoteControlConfiguration {
   private boolean browserSideLogEnabled;
   // TODO(simon): This is meant to be derived from SeleniumServer.
   private int jettyThreads = 512;
+  private String jettyListener = SOCKET_LISTENER;
   private SslCertificateGenerator sslCertGenerator;
   private boolean singleWindow;
+  private File sslCertificateCacheDir;
+  private List<String> sslPregenerateHosts = Collections.emptyList();
+  private final List<WarmBrowserPool> warmBrowserPools = new ArrayList<WarmBrowserPool>();
 
 
   public RemoteControlConfiguration() {
@@ -370,6 +380,63 @@ public void setJettyThreads(int jettyThreads) {
     this.jettyThreads = jettyThreads;
   }
 
+  public String getJettyListener() {
+    return jettyListener;
+  }
+
+  /**
+   * Selects how the embedded Jetty accepts connections: {@link #SOCKET_LISTENER} dedicates a thread
+   * to each open connection, while {@link #NIO_LISTENER} watches every connection from one selector
+   * thread and only takes a thread from the pool while a request is being handled, so that idle
+   * keep-alive connections from many browsers cost no threads.
+   */
+  public void setJettyListener(String jettyListener) {
+    if (!SOCKET_LISTENER.equals(jettyListener) && !NIO_LISTENER.equals(jettyListener)) {
+      throw new IllegalArgumentException(
+          "Jetty listener must be either " + SOCKET_LISTENER + " or " + NIO_LISTENER);
+    }
+    this.jettyListener = jettyListener;
+  }
+
+  /**
+   * The directory the proxy keeps its generated SSL certificates in. When null, certificates are
+   * kept in a temporary directory and generated afresh on every server start.
+   */
+  public File getSslCertificateCacheDir() {
+    return sslCertificateCacheDir;
+  }
+
+  public void setSslCertificateCacheDir(File sslCertificateCacheDir) {
+    this.sslCertificateCacheDir = sslCertificateCacheDir;
+  }
+
+  /**
+   * Hosts for which the proxy should generate SSL certificates in the background on startup.
+   */
+  public List<String> getSslPregenerateHosts() {
+    return sslPregenerateHosts;
+  }
+
+  public void setSslPregenerateHosts(List<String> sslPregenerateHosts) {
+    this.sslPregenerateHosts = sslPregenerateHosts;
+  }
+
+  public int getHtmlSuiteBrowsers() {
+    return htmlSuiteBrowsers;
+  }
+
+  public void setHtmlSuiteBrowsers(int htmlSuiteBrowsers) {
+    this.htmlSuiteBrowsers = htmlSuiteBrowsers;
+  }
+
+  public List<WarmBrowserPool> getWarmBrowserPools() {
+    return warmBrowserPools;
+  }
+
+  public void addWarmBrowserPool(WarmBrowserPool warmBrowserPool) {
+    warmBrowserPools.add(warmBrowserPool);
+  }
+
   public SslCertificateGenerator getSslCertificateGenerator() {
     return sslCertGenerator;
   }
@@ -476,6 +476,9 @@ public String doCommand(String cmd, Vector<String> values, String sessionId, Htt
       case retrieveLastRemoteControlLogs:
         results = new RetrieveLastRemoteControlLogsCommand().execute();
         break;
+      case getSessionStartTimes:
+        results = "OK," + getSessionStartTimes();
+        break;
       case captureEntirePageScreenshotToString:
         results =
             new CaptureEntirePageScreenshotToStringCommand(values.get(0), sessionId).execute();
@@ -487,7 +490,17 @@ public String doCommand(String cmd, Vector<String> values, String sessionId, Htt
         results = new CaptureScreenshotToStringCommand().execute();
         break;
       case captureNetworkTraffic:
-        results = new CaptureNetworkTrafficCommand(values.get(0)).execute();
+        if (res == null) {
+          results = new CaptureNetworkTrafficCommand(values.get(0)).execute();
+        } else {
+          // Stream straight to the browser rather than buffering what may be a lot of traffic
+          try {
+            new CaptureNetworkTrafficCommand(values.get(0)).execute(
+                new OutputStreamWriter(res.getOutputStream(), StringUtil.__UTF_8));
+          } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to send captured network traffic", e);
+          }
+        }
         break;
       case addCustomRequestHeader:
         results = new AddCustomRequestHeaderCommand(values.get(0), values.get(1)).execute();
@@ -608,6 +621,7 @@ public String doCommand(String cmd, Vector<String> values, String sessionId, Htt
       case open:
         warnIfApparentDomainChange(sessionId, values.get(0));
       case nonSpecial:
+        browserSessionFactory.commandReceived(sessionId);
         results = new SeleniumCoreCommand(cmd, values, sessionId).execute();
     }
 
@@ -627,6 +641,9 @@ protected String commandResultsLogMessage(String cmd, String sessionId, String r
     if (SeleniumCoreCommand.GET_HTML_SOURCE_ID.equals(cmd)) {
       return "Got result: [HTML source] on session " + sessionId;
     }
+    if (CaptureNetworkTrafficCommand.ID.equals(cmd)) {
+      return "Got result: [network traffic] on session " + sessionId;
+    }
     if (RetrieveLastRemoteControlLogsCommand.ID.equals(cmd)) {
       /* Trim logs to avoid Larsen effect (see remote control stability tests) */
       trucatedResults = results.length() > 30 ? results.substring(0, 30) : results;
@@ -876,6 +893,29 @@ public void deregisterBrowserSession(BrowserSessionInfo sessionInfo) {
     browserSessionFactory.deregisterExternalSession(sessionInfo);
   }
 
+  /**
+   * @return one line per browser string, with the time taken to hand out its sessions and for
+   *         their first command to come in.
+   */
+  protected String getSessionStartTimes() {
+    StringBuilder times = new StringBuilder();
+    for (Map.Entry<String, BrowserSessionFactory.SessionStartTimes> entry :
+        browserSessionFactory.getSessionStartTimes().entrySet()) {
+      times.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+    }
+    return times.toString();
+  }
+
+  /**
+   * Starts pre-launching the warm browser pools given in the server configuration.
+   */
+  public void startWarmBrowserPools() {
+    RemoteControlConfiguration configuration = remoteControl.getConfiguration();
+    for (WarmBrowserPool pool : configuration.getWarmBrowserPools()) {
+      browserSessionFactory.startWarmPool(pool, configuration);
+    }
+  }
+
   /**
    * Kills all running browsers
    */
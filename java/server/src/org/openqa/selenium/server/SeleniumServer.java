@@ -23,6 +23,7 @@
 import org.openqa.jetty.http.HttpContext;
 import org.openqa.jetty.http.SecurityConstraint;
 import org.openqa.jetty.http.SocketListener;
+import org.openqa.jetty.http.nio.SocketChannelListener;
 import org.openqa.jetty.http.handler.SecurityHandler;
 import org.openqa.jetty.jetty.Server;
 import org.openqa.jetty.jetty.servlet.ServletHandler;
@@ -311,14 +312,20 @@ public void boot() throws Exception {
   }
 
   protected void createJettyServer(boolean slowResources) {
-    final SocketListener socketListener;
-
     server = new Server();
-    socketListener = new SocketListener();
-    socketListener.setMaxIdleTimeMs(60000);
-    socketListener.setMaxThreads(jettyThreads);
-    socketListener.setPort(getPort());
-    server.addListener(socketListener);
+    if (RemoteControlConfiguration.NIO_LISTENER.equals(configuration.getJettyListener())) {
+      final SocketChannelListener channelListener = new SocketChannelListener();
+      channelListener.setMaxIdleTimeMs(60000);
+      channelListener.setMaxThreads(jettyThreads);
+      channelListener.setPort(getPort());
+      server.addListener(channelListener);
+    } else {
+      final SocketListener socketListener = new SocketListener();
+      socketListener.setMaxIdleTimeMs(60000);
+      socketListener.setMaxThreads(jettyThreads);
+      socketListener.setPort(getPort());
+      server.addListener(socketListener);
+    }
     assembleHandlers(slowResources, configuration);
   }
 
@@ -455,11 +462,18 @@ public void generateSSLCertsForLoggingHosts() {
   }
 
   protected ProxyHandler makeProxyHandler(RemoteControlConfiguration configuration) {
-    return new ProxyHandler(configuration.trustAllSSLCertificates(),
+    ProxyHandler handler = new ProxyHandler(configuration.trustAllSSLCertificates(),
         configuration.getDontInjectRegex(), configuration.getDebugURL(),
         configuration.getProxyInjectionModeArg(), false,
         configuration.getPort(),
         shutdownLock);
+
+    SslCertificateCache certificateCache = new SslCertificateCache(
+        configuration.getSslCertificateCacheDir(),
+        ProxyHandler.getCertificateRevocationListUrl(configuration.getPort()));
+    certificateCache.pregenerate(configuration.getSslPregenerateHosts());
+    handler.setSslCertificateCache(certificateCache);
+    return handler;
   }
 
   private static boolean slowResourceProperty() {
@@ -474,6 +488,18 @@ public void handleHTMLRunnerResults(HTMLResultsListener listener) {
     postResultsHandler.addListener(listener);
   }
 
+  /**
+   * Hands all HTML runner results posted from now on to the given listener, until
+   * {@link #stopHandlingHTMLRunnerResults(HTMLResultsListener)} is called.
+   */
+  public void handleAllHTMLRunnerResults(HTMLResultsListener listener) {
+    postResultsHandler.addPersistentListener(listener);
+  }
+
+  public void stopHandlingHTMLRunnerResults(HTMLResultsListener listener) {
+    postResultsHandler.removePersistentListener(listener);
+  }
+
   /**
    * Starts the Jetty server
    *
@@ -497,6 +523,8 @@ public void start() throws Exception {
     shutDownHook = new Thread(new ShutDownHook(this)); // Thread safety reviewed
     shutDownHook.setName("SeleniumServerShutDownHook");
     Runtime.getRuntime().addShutdownHook(shutDownHook);
+
+    driver.startWarmBrowserPools();
   }
 
   private class ShutDownHook implements Runnable {
@@ -639,7 +667,8 @@ protected void runHtmlSuite() {
       result =
           launcher.runHTMLSuite(getRequiredSystemProperty("htmlSuite.browserString"), startURL,
               suiteFile, resultFile,
-              configuration.getTimeoutInSeconds(), (!configuration.isSingleWindow()));
+              configuration.getTimeoutInSeconds(), (!configuration.isSingleWindow()),
+              configuration.getHtmlSuiteBrowsers());
 
       if (!"PASSED".equals(result)) {
         System.err.println("Tests failed, see result file for details: " +
@@ -42,6 +42,7 @@ public enum SpecialCommand {
   slowResources,
   open,
   getLog,
+  getSessionStartTimes,
   nonSpecial;
 
   public static SpecialCommand getValue(final String command) {
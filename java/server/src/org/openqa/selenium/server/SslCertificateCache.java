@@ -0,0 +1,291 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.server;
+
+import com.google.common.base.Throwables;
+
+import org.openqa.selenium.browserlaunchers.LauncherUtils;
+import org.openqa.selenium.io.TemporaryFilesystem;
+import org.openqa.selenium.security.CertificateGenerator;
+import org.openqa.selenium.security.KeyAndCert;
+import org.openqa.selenium.server.browserlaunchers.ResourceExtractor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands out keystores holding a Cybervillains-signed certificate for a given host, for use by the
+ * {@link ProxyHandler.SslRelay}s that man-in-the-middle HTTPS traffic.
+ * <p/>
+ * The CA is extracted once per cache rather than once per relay, every certificate shares a
+ * single RSA key pair, and each generated keystore is remembered both in memory and on disk. If
+ * the cache is given a directory that outlives the server, certificates generated by a previous
+ * run are picked up again, so the first request to a host no longer pays for certificate
+ * generation. Certificates are only valid for a year, so one that is about to expire is generated
+ * again rather than reused.
+ */
+public class SslCertificateCache {
+
+  private static final Logger log = Logger.getLogger(SslCertificateCache.class.getName());
+
+  static final String PASSWORD = "password";
+
+  // generated certificates are valid for 365 days, renew them well before browsers reject them.
+  static final long RENEW_BEFORE = TimeUnit.DAYS.toMillis(30);
+
+  private final ConcurrentMap<String, FutureTask<HostKeystore>> keystores =
+      new ConcurrentHashMap<String, FutureTask<HostKeystore>>();
+  private final boolean temporary;
+  private final String certificateRevocationList;
+  private File root;
+  private ExecutorService pregenerator;
+  private CertificateGenerator generator;
+  private KeyPair keyPair;
+  private volatile long renewBefore = RENEW_BEFORE;
+
+  /**
+   * @param root directory to keep the CA and generated keystores in, or null to use a temporary
+   *        directory that is deleted on {@link #shutdown()}.
+   * @param certificateRevocationList the CRL url embedded in every generated certificate.
+   */
+  public SslCertificateCache(File root, String certificateRevocationList) {
+    this.root = root;
+    this.temporary = root == null;
+    this.certificateRevocationList = certificateRevocationList;
+  }
+
+  /**
+   * Returns a JKS keystore holding a certificate and private key for the given host, generating
+   * it if no earlier request (or earlier server run) already did so. Concurrent requests for the
+   * same host wait for a single generation.
+   */
+  public File getKeystore(String hostname) {
+    FutureTask<HostKeystore> task = getTask(hostname);
+    HostKeystore keystore = await(hostname, task);
+    if (keystore.isExpiring()) {
+      // this server has been running for a while, generate it again.
+      keystores.remove(hostname, task);
+      keystore = await(hostname, getTask(hostname));
+    }
+    return keystore.file;
+  }
+
+  /**
+   * @param millis how long before their expiry certificates are generated again.
+   */
+  void setRenewBefore(long millis) {
+    renewBefore = millis;
+  }
+
+  private FutureTask<HostKeystore> getTask(final String hostname) {
+    FutureTask<HostKeystore> task = keystores.get(hostname);
+    if (task == null) {
+      FutureTask<HostKeystore> newTask = new FutureTask<HostKeystore>(
+          new Callable<HostKeystore>() {
+            public HostKeystore call() throws Exception {
+              return loadOrCreateKeystore(hostname);
+            }
+          });
+      task = keystores.putIfAbsent(hostname, newTask);
+      if (task == null) {
+        task = newTask;
+        task.run();
+      }
+    }
+    return task;
+  }
+
+  private HostKeystore await(String hostname, FutureTask<HostKeystore> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      keystores.remove(hostname, task);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Generates keystores for the given hosts on a background thread, so that they are ready before
+   * the browser first asks for them.
+   */
+  public synchronized void pregenerate(Collection<String> hostnames) {
+    if (pregenerator == null) {
+      pregenerator = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "SSL certificate pre-generation");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+
+    for (final String hostname : hostnames) {
+      pregenerator.execute(new Runnable() {
+        public void run() {
+          try {
+            getKeystore(hostname);
+          } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Unable to pre-generate SSL certificate for " + hostname, e);
+          }
+        }
+      });
+    }
+  }
+
+  public synchronized void shutdown() {
+    if (pregenerator != null) {
+      pregenerator.shutdownNow();
+      pregenerator = null;
+    }
+    keystores.clear();
+    generator = null;
+    if (temporary && root != null) {
+      LauncherUtils.recursivelyDeleteDir(root);
+      root = null;
+    }
+  }
+
+  private HostKeystore loadOrCreateKeystore(String hostname)
+      throws IOException, GeneralSecurityException {
+    // Certificates embed the CRL url, which contains the server port, so keep the ones generated
+    // for different urls apart.
+    File hostsDir = new File(getRoot(),
+        "hosts-" + Integer.toHexString(String.valueOf(certificateRevocationList).hashCode()));
+    File keystore = new File(hostsDir, hostname + ".jks");
+    if (keystore.exists()) {
+      HostKeystore existing = load(hostname, keystore);
+      if (existing != null && !existing.isExpiring()) {
+        log.fine("Reusing cached SSL certificate for " + hostname);
+        return existing;
+      }
+      log.info("Renewing the SSL certificate for " + hostname);
+    }
+
+    KeyAndCert keyAndCert = getGenerator().generateCertificate(
+        hostname, certificateRevocationList, getKeyPair());
+
+    KeyStore ks = KeyStore.getInstance("JKS");
+    ks.load(null, PASSWORD.toCharArray());
+    ks.setKeyEntry(hostname, keyAndCert.getPrivateKey(), PASSWORD.toCharArray(),
+        new Certificate[] {keyAndCert.getCertificate()});
+
+    // Write to a scratch file and rename, so that a concurrent server never sees half a keystore.
+    hostsDir.mkdirs();
+    File scratch = File.createTempFile("cert", ".tmp", hostsDir);
+    OutputStream out = new FileOutputStream(scratch);
+    try {
+      ks.store(out, PASSWORD.toCharArray());
+    } finally {
+      out.close();
+    }
+    // renaming onto an existing file fails on Windows.
+    keystore.delete();
+    if (!scratch.renameTo(keystore) && !keystore.exists()) {
+      scratch.delete();
+      throw new IOException("Unable to store SSL certificate for " + hostname + " in " + keystore);
+    }
+    scratch.delete();
+    return new HostKeystore(keystore, keyAndCert.getCertificate().getNotAfter().getTime());
+  }
+
+  /**
+   * @return the keystore written by an earlier request or server run, or null if it can't be read.
+   */
+  private HostKeystore load(String hostname, File keystore) {
+    try {
+      KeyStore ks = KeyStore.getInstance("JKS");
+      InputStream in = new FileInputStream(keystore);
+      try {
+        ks.load(in, PASSWORD.toCharArray());
+      } finally {
+        in.close();
+      }
+      X509Certificate certificate = (X509Certificate) ks.getCertificate(hostname);
+      if (certificate == null) {
+        return null;
+      }
+      return new HostKeystore(keystore, certificate.getNotAfter().getTime());
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Unable to read the cached SSL certificate for " + hostname, e);
+    } catch (GeneralSecurityException e) {
+      log.log(Level.WARNING, "Unable to read the cached SSL certificate for " + hostname, e);
+    }
+    return null;
+  }
+
+  private synchronized File getRoot() {
+    if (root == null) {
+      root = TemporaryFilesystem.getDefaultTmpFS().createTempDir("seleniumSslSupport", "cache");
+    }
+    return root;
+  }
+
+  private synchronized CertificateGenerator getGenerator() throws IOException {
+    if (generator == null) {
+      if (!new File(getRoot(), "cybervillainsCA.jks").exists()) {
+        ResourceExtractor.extractResourcePath(getClass(), "/sslSupport", getRoot());
+      }
+      generator = new CertificateGenerator(getRoot());
+      keyPair = generator.generateKeyPair();
+    }
+    return generator;
+  }
+
+  private synchronized KeyPair getKeyPair() throws IOException {
+    getGenerator();
+    return keyPair;
+  }
+
+  private class HostKeystore {
+    private final File file;
+    private final long notAfter;
+
+    HostKeystore(File file, long notAfter) {
+      this.file = file;
+      this.notAfter = notAfter;
+    }
+
+    boolean isExpiring() {
+      return System.currentTimeMillis() + renewBefore >= notAfter;
+    }
+  }
+}
@@ -27,8 +27,10 @@
 import org.openqa.jetty.util.Resource;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
 
 public class StaticContentHandler extends ResourceHandler {
@@ -36,6 +38,7 @@ public class StaticContentHandler extends ResourceHandler {
   private static boolean slowResources;
   private List<ResourceLocator> resourceLocators = new ArrayList<ResourceLocator>();
   public static final int SERVER_DELAY = 1000;
+  private static final int MIN_GZIP_LENGTH = 512;
   private final String debugURL;
   private final boolean proxyInjectionMode;
 
@@ -139,7 +142,12 @@ public void sendData(HttpRequest request,
       Resource resource,
       boolean writeHeaders) throws IOException {
     if (!proxyInjectionMode) {
-      super.sendData(request, response, pathInContext, resource, writeHeaders);
+      if (writeHeaders && resource instanceof ClassPathResource
+          && request.getField(HttpFields.__Range) == null) {
+        sendClassPathData(request, response, (ClassPathResource) resource);
+      } else {
+        super.sendData(request, response, pathInContext, resource, writeHeaders);
+      }
       return;
     }
     ResourceCache.ResourceMetaData metaData =
@@ -154,6 +162,82 @@ public void sendData(HttpRequest request,
     request.setHandled(true);
   }
 
+  /**
+   * Classpath resources never change while the server runs, so they are sent with a strong ETag.
+   * A browser revalidating one gets a 304 with no body. Text is sent gzipped when the browser
+   * accepts it, from bytes that are compressed only once, and with its own ETag.
+   */
+  private void sendClassPathData(HttpRequest request, HttpResponse response,
+      ClassPathResource resource) throws IOException {
+    ResourceCache.ResourceMetaData metaData =
+        (ResourceCache.ResourceMetaData) resource.getAssociate();
+    boolean compressible = resource.length() > MIN_GZIP_LENGTH && metaData != null
+        && isCompressible(metaData.getMimeType());
+    String accept = request.getField(HttpFields.__AcceptEncoding);
+    boolean gzip = compressible && accept != null && accept.indexOf("gzip") >= 0;
+
+    String etag = gzip ? resource.getGzippedETag() : resource.getETag();
+    response.setField(HttpFields.__ETag, etag);
+    if (compressible) {
+      response.setField(HttpFields.__Vary, HttpFields.__AcceptEncoding);
+    }
+    if (noneMatch(request, etag)) {
+      response.setStatus(HttpResponse.__304_Not_Modified);
+      request.setHandled(true);
+      return;
+    }
+
+    byte[] data = gzip ? resource.getGzippedBytes() : null;
+    if (data == null) {
+      writeHeaders(response, resource, resource.length());
+    } else {
+      writeHeaders(response, resource, data.length);
+      response.setField(HttpFields.__ContentEncoding, "gzip");
+    }
+    request.setHandled(true);
+    if (HttpRequest.__HEAD.equals(request.getMethod())) {
+      return;
+    }
+    OutputStream out = response.getOutputStream();
+    if (data == null) {
+      resource.writeTo(out, 0, resource.length());
+    } else {
+      out.write(data);
+    }
+  }
+
+  /**
+   * Whether the request's If-None-Match lists the given tag, or is "*". The header is a comma
+   * separated list, and may be repeated. A GET may be answered with a 304 on a weak comparison,
+   * so a "W/" prefix is ignored.
+   */
+  private static boolean noneMatch(HttpRequest request, String etag) {
+    Enumeration values = request.getFieldValues(HttpFields.__IfNoneMatch);
+    if (values == null) {
+      return false;
+    }
+    String tag = weak(etag);
+    while (values.hasMoreElements()) {
+      for (String candidate : ((String) values.nextElement()).split(",")) {
+        candidate = candidate.trim();
+        if ("*".equals(candidate) || tag.equals(weak(candidate))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static String weak(String etag) {
+    return etag.startsWith("W/") ? etag.substring(2) : etag;
+  }
+
+  private static boolean isCompressible(String mimeType) {
+    return mimeType != null
+        && (mimeType.startsWith("text/") || mimeType.contains("javascript")
+            || mimeType.contains("xml"));
+  }
+
   public static void setSlowResources(boolean slowResources) {
     StaticContentHandler.slowResources = slowResources;
   }
@@ -0,0 +1,56 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.server;
+
+/**
+ * Describes a number of browsers the server should keep launched and idle, ready to be handed
+ * out by {@link BrowserSessionFactory} as soon as a client asks for a session with the same browser
+ * string and start URL.
+ */
+public class WarmBrowserPool {
+
+  private final String browserString;
+  private final String startURL;
+  private final int size;
+
+  public WarmBrowserPool(String browserString, String startURL, int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Warm browser pool size must not be negative: " + size);
+    }
+    this.browserString = browserString;
+    this.startURL = startURL;
+    this.size = size;
+  }
+
+  public String getBrowserString() {
+    return browserString;
+  }
+
+  public String getStartURL() {
+    return startURL;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return size + " x " + browserString + " on " + startURL;
+  }
+}
@@ -20,9 +20,11 @@
 
 import org.openqa.selenium.server.InjectionHelper;
 import org.openqa.selenium.server.RemoteControlConfiguration;
+import org.openqa.selenium.server.WarmBrowserPool;
 
 import java.io.File;
 import java.io.PrintStream;
+import java.util.Arrays;
 
 /**
  * Parse Remote Control Launcher Options
@@ -62,6 +64,9 @@ public static void usage(String msg) {
         "-userExtensions <file>: indicates a JavaScript file that will be loaded into selenium");
     printWrappedLine(INDENT,
         "-browserSessionReuse: stops re-initialization and spawning of the browser between tests");
+    printWrappedLine(
+        INDENT,
+        "-warmBrowserPool <browser> <startURL> <size>: keeps the given number of browsers (e.g. \"*firefox\") launched on the specified URL in the background, so that new sessions asking for them don't wait for a browser to start. May be given more than once.");
     printWrappedLine(
         INDENT,
         "-avoidProxy: By default, we proxy every browser request; set this flag to make the browser use our proxy only for URLs containing '/selenium-server'");
@@ -79,11 +84,23 @@ public static void usage(String msg) {
     printWrappedLine(
         INDENT,
         "-trustAllSSLCertificates: Forces the Selenium proxy to trust all SSL certificates.  This doesn't work in browsers that don't use the Selenium proxy.");
+    printWrappedLine(
+        INDENT,
+        "-sslCertificateCacheDir <dir>: a directory in which to keep the SSL certificates generated by the Selenium proxy, so that they can be reused by later runs.");
+    printWrappedLine(
+        INDENT,
+        "-sslPregenerateHosts <host,host,...>: a comma separated list of hosts for which the Selenium proxy should generate SSL certificates in the background on startup.");
+    printWrappedLine(
+        INDENT,
+        "-jettyListener <socket|nio>: how the server accepts connections.  \"socket\" (the default) uses a thread for each open connection; \"nio\" only uses a thread while a request is being handled, so that many idle keep-alive connections can be held open.");
     printWrappedLine(INDENT,
         "-log <logFileName>: writes lots of debug information out to a log file");
     printWrappedLine(
         INDENT,
         "-htmlSuite <browser> <startURL> <suiteFile> <resultFile>: Run a single HTML Selenese (Selenium Core) suite and then exit immediately, using the specified browser (e.g. \"*firefox\") on the specified URL (e.g. \"http://www.google.com\").  You need to specify the absolute path to the HTML test suite as well as the path to the HTML results file we'll generate.");
+    printWrappedLine(
+        INDENT,
+        "-htmlSuiteBrowsers <n>: splits the tests of the -htmlSuite across the given number of browsers running at the same time, and merges their results into the one result file.");
     printWrappedLine(
         INDENT,
         "-proxyInjectionMode: puts you into proxy injection mode, a mode where the selenium server acts as a proxy server "
@@ -163,6 +180,9 @@ public static RemoteControlConfiguration parseLauncherOptions(String[] args) {
         configuration.setPortDriversShouldContact(Integer.parseInt(getArg(args, ++i)));
       } else if ("-noBrowserSessionReuse".equalsIgnoreCase(arg)) {
         configuration.setReuseBrowserSessions(false);
+      } else if ("-warmBrowserPool".equalsIgnoreCase(arg)) {
+        configuration.addWarmBrowserPool(new WarmBrowserPool(
+            getArg(args, ++i), getArg(args, ++i), Integer.parseInt(getArg(args, ++i))));
       } else if ("-browserSessionReuse".equalsIgnoreCase(arg)) {
         configuration.setReuseBrowserSessions(true);
       } else if ("-firefoxProfileTemplate".equalsIgnoreCase(arg)) {
@@ -189,8 +209,14 @@ public static RemoteControlConfiguration parseLauncherOptions(String[] args) {
 
         // Set the number of jetty threads before we construct the instance
         configuration.setJettyThreads(jettyThreadsCount);
+      } else if ("-jettyListener".equalsIgnoreCase(arg)) {
+        configuration.setJettyListener(getArg(args, ++i));
       } else if ("-trustAllSSLCertificates".equalsIgnoreCase(arg)) {
         configuration.setTrustAllSSLCertificates(true);
+      } else if ("-sslCertificateCacheDir".equalsIgnoreCase(arg)) {
+        configuration.setSslCertificateCacheDir(new File(getArg(args, ++i)));
+      } else if ("-sslPregenerateHosts".equalsIgnoreCase(arg)) {
+        configuration.setSslPregenerateHosts(Arrays.asList(getArg(args, ++i).split(",")));
       } else if ("-userJsInjection".equalsIgnoreCase(arg)) {
         configuration.setUserJSInjection(true);
         if (!InjectionHelper.addUserJsInjectionFile(getArg(args, ++i))) {
@@ -234,6 +260,8 @@ public static RemoteControlConfiguration parseLauncherOptions(String[] args) {
           System.exit(1);
         }
         configuration.setHTMLSuite(true);
+      } else if ("-htmlSuiteBrowsers".equalsIgnoreCase(arg)) {
+        configuration.setHtmlSuiteBrowsers(Integer.parseInt(getArg(args, ++i)));
       } else if ("-interactive".equalsIgnoreCase(arg)) {
         configuration.setTimeoutInSeconds(Integer.MAX_VALUE);
         configuration.setInteractive(true);
@@ -21,26 +21,85 @@
 import org.openqa.jetty.http.HttpRequest;
 import org.openqa.jetty.http.HttpResponse;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
+import java.util.TimeZone;
+import java.util.logging.Logger;
 
 public class CaptureNetworkTrafficCommand extends Command {
-  private static final List<Entry> entries = Collections.synchronizedList(new ArrayList<Entry>());
+  public static final String ID = "captureNetworkTraffic";
+
+  /**
+   * The number of entries kept by default before the oldest ones start being evicted. Can be
+   * overridden with the <code>selenium.networkTrafficCapacity</code> system property.
+   */
+  public static final int DEFAULT_CAPACITY = 10000;
+
+  private static final Logger log = Logger.getLogger(CaptureNetworkTrafficCommand.class.getName());
+
+  private static final Object lock = new Object();
+  private static ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+  private static int capacity =
+      Integer.getInteger("selenium.networkTrafficCapacity", DEFAULT_CAPACITY);
+  private static long evicted;
 
   public static void clear() {
-    entries.clear();
+    drain();
   }
 
   public static void capture(Entry entry) {
-    entries.add(entry);
+    synchronized (lock) {
+      while (!entries.isEmpty() && entries.size() >= capacity) {
+        entries.removeFirst();
+        evicted++;
+      }
+      if (capacity > 0) {
+        entries.addLast(entry);
+      } else {
+        evicted++;
+      }
+    }
+  }
+
+  /**
+   * Sets the maximum number of entries to keep between two captures. Once it is reached, the
+   * oldest entries are evicted to make room for new ones.
+   */
+  public static void setCapacity(int newCapacity) {
+    synchronized (lock) {
+      capacity = newCapacity;
+    }
+  }
+
+  /**
+   * Hands back everything captured so far and starts a new buffer, so that the proxy threads are
+   * only held up for as long as it takes to swap buffers, not for the duration of an export.
+   */
+  private static Collection<Entry> drain() {
+    ArrayDeque<Entry> captured;
+    long dropped;
+    synchronized (lock) {
+      captured = entries;
+      dropped = evicted;
+      entries = new ArrayDeque<Entry>();
+      evicted = 0;
+    }
+    if (dropped > 0) {
+      log.warning("Network traffic capture was full; dropped the " + dropped + " oldest entries");
+    }
+    return captured;
   }
 
-  private String type; // ie: XML, JSON, plain text, etc
+  private String type; // ie: XML, JSON, HAR, plain text, etc
 
   public CaptureNetworkTrafficCommand(String type) {
     this.type = type;
@@ -48,9 +107,26 @@ public CaptureNetworkTrafficCommand(String type) {
 
   @Override
   public String execute() {
-    StringBuilder sb = new StringBuilder();
+    StringWriter writer = new StringWriter();
+    try {
+      execute(writer);
+    } catch (IOException e) {
+      // Can't happen when writing to a string
+      throw new RuntimeException(e);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Writes the command result to the given writer, one entry at a time, rather than building the
+   * whole response in memory first.
+   */
+  public void execute(Writer out) throws IOException {
+    Collection<Entry> captured = drain();
     SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
 
+    out.write("OK,");
+
     if ("json".equalsIgnoreCase(type)) {
       /*
        * 
@@ -60,39 +136,105 @@ public String execute() {
        * 'Blah' }] },{ ... }]
        */
 
-      sb.append("[");
+      out.write("[");
 
-      synchronized (entries) {
-        for (final Iterator<Entry> iterator = entries.iterator(); iterator.hasNext();) {
-          final Entry entry = iterator.next();
-          sb.append("{\n");
+      for (final Iterator<Entry> iterator = captured.iterator(); iterator.hasNext();) {
+        final Entry entry = iterator.next();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
 
-          sb.append(jsonKey("statusCode")).append(entry.statusCode).append(",\n");
-          sb.append(jsonKey("method")).append(json(entry.method)).append(",\n");
-          sb.append(jsonKey("url")).append(json(entry.url)).append(",\n");
-          sb.append(jsonKey("bytes")).append(entry.bytes).append(",\n");
-          sb.append(jsonKey("start")).append(json(sdf.format(entry.start))).append(",\n");
-          sb.append(jsonKey("end")).append(json(sdf.format(entry.end))).append(",\n");
-          sb.append(jsonKey("timeInMillis")).append((entry.end.getTime() - entry.start.getTime()))
-              .append(",\n");
+        sb.append(jsonKey("statusCode")).append(entry.statusCode).append(",\n");
+        sb.append(jsonKey("method")).append(json(entry.method)).append(",\n");
+        sb.append(jsonKey("url")).append(json(entry.url)).append(",\n");
+        sb.append(jsonKey("bytes")).append(entry.bytes).append(",\n");
+        sb.append(jsonKey("start")).append(json(sdf.format(entry.start))).append(",\n");
+        sb.append(jsonKey("end")).append(json(sdf.format(entry.end))).append(",\n");
+        sb.append(jsonKey("timeInMillis")).append((entry.end.getTime() - entry.start.getTime()))
+            .append(",\n");
 
-          sb.append(jsonKey("requestHeaders")).append("[");
-          jsonHeaders(sb, entry.requestHeaders);
-          sb.append("],\n");
+        sb.append(jsonKey("requestHeaders")).append("[");
+        jsonHeaders(sb, entry.requestHeaders);
+        sb.append("],\n");
 
-          sb.append(jsonKey("responseHeaders")).append("[");
-          jsonHeaders(sb, entry.responseHeaders);
-          sb.append("]\n");
+        sb.append(jsonKey("responseHeaders")).append("[");
+        jsonHeaders(sb, entry.responseHeaders);
+        sb.append("]\n");
 
-          sb.append("}");
+        sb.append("}");
 
-          if (iterator.hasNext()) {
-            sb.append(",\n");
-          }
+        if (iterator.hasNext()) {
+          sb.append(",\n");
+        }
+        out.write(sb.toString());
+      }
+
+      out.write("]");
+    } else if ("har".equalsIgnoreCase(type)) {
+      /*
+       * A HTTP Archive (HAR 1.2) document, as read by most browser developer tools:
+       * 
+       * {"log": {"version": "1.2", "creator": {...}, "entries": [{ startedDateTime:
+       * '2009-03-15T21:23:00.000Z', time: 102, request: {...}, response: {...}, cache: {},
+       * timings: {...} },{ ... }]}}
+       */
+      SimpleDateFormat utc = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+      utc.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+      out.write("{\"log\": {\n");
+      out.write(jsonKey("version") + "\"1.2\",\n");
+      out.write(jsonKey("creator") + "{\"name\": \"Selenium RC\", \"version\": \"\"},\n");
+      out.write(jsonKey("entries") + "[");
+
+      for (final Iterator<Entry> iterator = captured.iterator(); iterator.hasNext();) {
+        final Entry entry = iterator.next();
+        long time = entry.end.getTime() - entry.start.getTime();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+
+        sb.append(jsonKey("startedDateTime")).append(quoted(utc.format(entry.start))).append(",\n");
+        sb.append(jsonKey("time")).append(time).append(",\n");
+
+        sb.append(jsonKey("request")).append("{\n");
+        sb.append(jsonKey("method")).append(quoted(entry.method)).append(",\n");
+        sb.append(jsonKey("url")).append(quoted(entry.url)).append(",\n");
+        sb.append(jsonKey("httpVersion")).append("\"HTTP/1.1\",\n");
+        sb.append(jsonKey("cookies")).append("[],\n");
+        sb.append(jsonKey("headers")).append("[");
+        harHeaders(sb, entry.requestHeaders);
+        sb.append("],\n");
+        sb.append(jsonKey("queryString")).append("[],\n");
+        sb.append(jsonKey("headersSize")).append("-1,\n");
+        sb.append(jsonKey("bodySize")).append("-1\n");
+        sb.append("},\n");
+
+        sb.append(jsonKey("response")).append("{\n");
+        sb.append(jsonKey("status")).append(entry.statusCode).append(",\n");
+        sb.append(jsonKey("statusText")).append("\"\",\n");
+        sb.append(jsonKey("httpVersion")).append("\"HTTP/1.1\",\n");
+        sb.append(jsonKey("cookies")).append("[],\n");
+        sb.append(jsonKey("headers")).append("[");
+        harHeaders(sb, entry.responseHeaders);
+        sb.append("],\n");
+        sb.append(jsonKey("content")).append("{\"size\": ").append(entry.bytes)
+            .append(", \"mimeType\": \"\"},\n");
+        sb.append(jsonKey("redirectURL")).append("\"\",\n");
+        sb.append(jsonKey("headersSize")).append("-1,\n");
+        sb.append(jsonKey("bodySize")).append(entry.bytes).append("\n");
+        sb.append("},\n");
+
+        sb.append(jsonKey("cache")).append("{},\n");
+        sb.append(jsonKey("timings")).append("{\"send\": 0, \"wait\": ").append(time)
+            .append(", \"receive\": 0}\n");
+
+        sb.append("}");
+
+        if (iterator.hasNext()) {
+          sb.append(",\n");
         }
+        out.write(sb.toString());
       }
 
-      sb.append("]");
+      out.write("]\n}}");
     } else if ("xml".equalsIgnoreCase(type)) {
       /*
        * <traffic> <entry statusCode="200" method="GET" url="http://foo.com/index.html"
@@ -100,34 +242,34 @@ public String execute() {
        * timeInMillis="102"> <requestHeaders> <header name=""></header> </requestHeaders>
        * <responseHeaders> <header name=""></header> </responseHeaders> </entry> </traffic>
        */
-      sb.append("<traffic>\n");
+      out.write("<traffic>\n");
 
-      synchronized (entries) {
-        for (final Entry entry : entries) {
-          sb.append("<entry ");
+      for (final Entry entry : captured) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<entry ");
 
-          sb.append("statusCode=\"").append(entry.statusCode).append("\" ");
-          sb.append("method=\"").append(xml(entry.method)).append("\" ");
-          sb.append("url=\"").append(xml(entry.url)).append("\" ");
-          sb.append("bytes=\"").append(entry.bytes).append("\" ");
-          sb.append("start=\"").append(sdf.format(entry.start)).append("\" ");
-          sb.append("end=\"").append(sdf.format(entry.end)).append("\" ");
-          sb.append("timeInMillis=\"").append((entry.end.getTime() - entry.start.getTime()))
-              .append("\">\n");
+        sb.append("statusCode=\"").append(entry.statusCode).append("\" ");
+        sb.append("method=\"").append(xml(entry.method)).append("\" ");
+        sb.append("url=\"").append(xml(entry.url)).append("\" ");
+        sb.append("bytes=\"").append(entry.bytes).append("\" ");
+        sb.append("start=\"").append(sdf.format(entry.start)).append("\" ");
+        sb.append("end=\"").append(sdf.format(entry.end)).append("\" ");
+        sb.append("timeInMillis=\"").append((entry.end.getTime() - entry.start.getTime()))
+            .append("\">\n");
 
-          sb.append("    <requestHeaders>\n");
-          xmlHeaders(sb, entry.requestHeaders);
-          sb.append("    </requestHeaders>\n");
+        sb.append("    <requestHeaders>\n");
+        xmlHeaders(sb, entry.requestHeaders);
+        sb.append("    </requestHeaders>\n");
 
-          sb.append("    <responseHeaders>\n");
-          xmlHeaders(sb, entry.responseHeaders);
-          sb.append("    </responseHeaders>\n");
+        sb.append("    <responseHeaders>\n");
+        xmlHeaders(sb, entry.responseHeaders);
+        sb.append("    </responseHeaders>\n");
 
 
-          sb.append("</entry>\n");
-        }
+        sb.append("</entry>\n");
+        out.write(sb.toString());
       }
-      sb.append("</traffic>\n");
+      out.write("</traffic>\n");
     } else {
       /*
        * 200 GET http://foo.com/index.html 12422 bytes 102ms (2009-03-15T14:23:00.000-0700 -
@@ -137,32 +279,30 @@ public String execute() {
        * ================================================================
        */
 
-      synchronized (entries) {
-        for (final Entry entry : entries) {
-          sb.append(entry.statusCode).append(" ").append(entry.method).append(" ")
-              .append(entry.url).append("\n");
-          sb.append(entry.bytes).append(" bytes\n");
-          sb.append(entry.end.getTime() - entry.start.getTime()).append("ms (")
-              .append(sdf.format(entry.start)).append(" - ").append(sdf.format(entry.end))
-              .append("\n");
-          sb.append("\n");
-          sb.append("Request Headers\n");
-          for (Header header : entry.requestHeaders) {
-            sb.append(" - ").append(header.name).append(" => ").append(header.value).append("\n");
-          }
-          sb.append("Response Headers\n");
-          for (Header header : entry.responseHeaders) {
-            sb.append(" - ").append(header.name).append(" => ").append(header.value).append("\n");
-          }
-          sb.append("================================================================\n");
-          sb.append("\n");
+      for (final Entry entry : captured) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(entry.statusCode).append(" ").append(entry.method).append(" ")
+            .append(entry.url).append("\n");
+        sb.append(entry.bytes).append(" bytes\n");
+        sb.append(entry.end.getTime() - entry.start.getTime()).append("ms (")
+            .append(sdf.format(entry.start)).append(" - ").append(sdf.format(entry.end))
+            .append("\n");
+        sb.append("\n");
+        sb.append("Request Headers\n");
+        for (Header header : entry.requestHeaders) {
+          sb.append(" - ").append(header.name).append(" => ").append(header.value).append("\n");
+        }
+        sb.append("Response Headers\n");
+        for (Header header : entry.responseHeaders) {
+          sb.append(" - ").append(header.name).append(" => ").append(header.value).append("\n");
         }
+        sb.append("================================================================\n");
+        sb.append("\n");
+        out.write(sb.toString());
       }
     }
 
-    clear();
-
-    return "OK," + sb.toString();
+    out.flush();
   }
 
   private void xmlHeaders(final StringBuilder sb, final List<Header> headers) {
@@ -189,6 +329,22 @@ private void jsonHeaders(final StringBuilder sb, final List<Header> headers) {
     }
   }
 
+  private void harHeaders(final StringBuilder sb, final List<Header> headers) {
+    for (final Iterator<Header> headItr = headers.iterator(); headItr.hasNext();) {
+      final Header header = headItr.next();
+
+      sb.append("{").append("\"name\": ").append(quoted(header.name))
+          .append(", \"value\": ").append(quoted(header.value)).append("}");
+      if (headItr.hasNext()) {
+        sb.append(", ");
+      }
+    }
+  }
+
+  private String quoted(String s) {
+    return s == null ? "null" : "\"" + escape(s) + "\"";
+  }
+
   private String xml(String s) {
     s = s.replaceAll("&", "&amp;");
     s = s.replaceAll("\"", "&quot;");
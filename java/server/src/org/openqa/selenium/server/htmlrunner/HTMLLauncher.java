@@ -114,15 +114,8 @@ protected void writeResults(File outputFile) throws IOException {
    */
   private String runHTMLSuite(String browser, String browserURL, String suiteURL, File outputFile,
       long timeoutInSeconds, boolean multiWindow, String defaultLogLevel) throws IOException {
-    outputFile.createNewFile();
-    if (!outputFile.canWrite()) {
-      throw new IOException("Can't write to outputFile: " + outputFile.getAbsolutePath());
-    }
-    long timeoutInMs = 1000l * timeoutInSeconds;
-    if (timeoutInMs < 0) {
-      log.warning("Looks like the timeout overflowed, so resetting it to the maximum.");
-      timeoutInMs = Long.MAX_VALUE;
-    }
+    checkOutputFile(outputFile);
+    long timeoutInMs = toTimeoutInMs(timeoutInSeconds);
 
     RemoteControlConfiguration configuration = remoteControl.getConfiguration();
     remoteControl.handleHTMLRunnerResults(this);
@@ -160,6 +153,22 @@ private String runHTMLSuite(String browser, String browserURL, String suiteURL,
     return results.getResult().toUpperCase();
   }
 
+  private void checkOutputFile(File outputFile) throws IOException {
+    outputFile.createNewFile();
+    if (!outputFile.canWrite()) {
+      throw new IOException("Can't write to outputFile: " + outputFile.getAbsolutePath());
+    }
+  }
+
+  private long toTimeoutInMs(long timeoutInSeconds) {
+    long timeoutInMs = 1000l * timeoutInSeconds;
+    if (timeoutInMs < 0) {
+      log.warning("Looks like the timeout overflowed, so resetting it to the maximum.");
+      timeoutInMs = Long.MAX_VALUE;
+    }
+    return timeoutInMs;
+  }
+
   /**
    * Launches a single HTML Selenium test suite.
    * 
@@ -174,6 +183,25 @@ private String runHTMLSuite(String browser, String browserURL, String suiteURL,
    */
   public String runHTMLSuite(String browser, String browserURL, File suiteFile, File outputFile,
       long timeoutInSeconds, boolean multiWindow) throws IOException {
+    return runHTMLSuite(browser, browserURL, suiteFile, outputFile, timeoutInSeconds, multiWindow, 1);
+  }
+
+  /**
+   * Launches a single HTML Selenium test suite, splitting its tests across several browsers that
+   * run at the same time. The results of all browsers are merged into a single report.
+   * 
+   * @param browser - the browserString ("*firefox", "*iexplore" or an executable path)
+   * @param browserURL - the start URL for the browser
+   * @param suiteFile - a file containing the HTML suite to run
+   * @param outputFile - The file to which we'll output the HTML results
+   * @param timeoutInSeconds - the amount of time (in seconds) to wait for each browser to finish
+   * @param multiWindow - whether to run the browser in multiWindow or else framed mode
+   * @param browsers - the number of browsers to run the suite's tests in
+   * @return PASSED or FAIL
+   * @throws IOException if we can't write the output file
+   */
+  public String runHTMLSuite(String browser, String browserURL, File suiteFile, File outputFile,
+      long timeoutInSeconds, boolean multiWindow, int browsers) throws IOException {
     if (browser == null) throw new IllegalArgumentException("browser may not be null");
     if (!suiteFile.exists()) {
       throw new IOException("Can't find HTML Suite file:" + suiteFile.getAbsolutePath());
@@ -183,8 +211,21 @@ public String runHTMLSuite(String browser, String browserURL, File suiteFile, Fi
     }
     remoteControl.addNewStaticContent(suiteFile.getParentFile());
 
+    if (browsers > 1) {
+      checkOutputFile(outputFile);
+      return new ParallelHTMLSuiteRunner(this, remoteControl, suiteFile, browsers)
+          .run(browser, browserURL, outputFile, toTimeoutInMs(timeoutInSeconds), multiWindow);
+    }
+
+    String suiteURL = getSuiteURL(browser, browserURL, suiteFile.getName());
+    return runHTMLSuite(browser, browserURL, suiteURL, outputFile, timeoutInSeconds, multiWindow,
+        "info");
+  }
+
+  String getSuiteURL(String browser, String browserURL, String suiteFileName)
+      throws IOException {
     // DGF this is a hack, but I can't find a better place to put it
-    String urlEncodedSuiteFilename = URLEncoder.encode(suiteFile.getName(), "UTF-8");
+    String urlEncodedSuiteFilename = URLEncoder.encode(suiteFileName, "UTF-8");
     String suiteURL;
     if (browser.startsWith("*chrome") || browser.startsWith("*firefox") ||
         browser.startsWith("*iehta") || browser.startsWith("*iexplore")) {
@@ -195,8 +236,7 @@ public String runHTMLSuite(String browser, String browserURL, File suiteFile, Fi
       suiteURL =
           Urls.toProtocolHostAndPort(browserURL) + "/selenium-server/tests/" + urlEncodedSuiteFilename;
     }
-    return runHTMLSuite(browser, browserURL, suiteURL, outputFile, timeoutInSeconds, multiWindow,
-        "info");
+    return suiteURL;
   }
 
 
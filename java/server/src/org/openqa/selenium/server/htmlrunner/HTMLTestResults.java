@@ -21,7 +21,6 @@
 import java.io.Writer;
 import java.net.URLDecoder;
 import java.text.MessageFormat;
-import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -158,7 +157,7 @@ public String getNumTestPasses() {
     return numTestPasses;
   }
 
-  public Collection getTestTables() {
+  public List<String> getTestTables() {
     return testTables;
   }
 
@@ -166,6 +165,22 @@ public String getTotalTime() {
     return totalTime;
   }
 
+  public String getSeleniumVersion() {
+    return seleniumVersion;
+  }
+
+  public String getSeleniumRevision() {
+    return seleniumRevision;
+  }
+
+  public String getLog() {
+    return log;
+  }
+
+  public HTMLSuiteResult getSuite() {
+    return suite;
+  }
+
   public int getNumTotalTests() {
     return Integer.parseInt(numTestPasses) + Integer.parseInt(numTestFailures);
   }
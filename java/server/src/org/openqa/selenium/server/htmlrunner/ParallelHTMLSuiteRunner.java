@@ -0,0 +1,411 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.server.htmlrunner;
+
+import com.google.common.io.Files;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.browserlaunchers.BrowserLauncher;
+import org.openqa.selenium.io.TemporaryFilesystem;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.server.BrowserSessionFactory.BrowserSessionInfo;
+import org.openqa.selenium.server.FrameGroupCommandQueueSet;
+import org.openqa.selenium.server.RemoteControlConfiguration;
+import org.openqa.selenium.server.SeleniumServer;
+import org.openqa.selenium.server.browserlaunchers.BrowserOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTML.Tag;
+import javax.swing.text.html.HTMLEditorKit;
+import javax.swing.text.html.HTMLEditorKit.ParserCallback;
+import javax.swing.text.html.parser.ParserDelegator;
+
+/**
+ * Runs the tests of a single HTML Selenium test suite in several browsers at once.
+ * <p/>
+ * The suite's tests are dealt out round robin into one smaller suite per browser. Each browser
+ * runs its share and posts its results as usual; the results are told apart by a marker in the
+ * title of each smaller suite, and merged back into one report listing the tests in their original
+ * order, along with the browser that ran them and how long that browser took.
+ */
+class ParallelHTMLSuiteRunner implements HTMLResultsListener {
+
+  private static final Logger log = Logger.getLogger(ParallelHTMLSuiteRunner.class.getName());
+
+  private final HTMLLauncher launcher;
+  private final SeleniumServer remoteControl;
+  private final String suiteName;
+  private final String runId;
+  private final String title;
+  private final List<SuiteTest> tests;
+  private final List<Shard> shards = new ArrayList<Shard>();
+
+  ParallelHTMLSuiteRunner(HTMLLauncher launcher, SeleniumServer remoteControl, File suiteFile,
+      int browsers) throws IOException {
+    this.launcher = launcher;
+    this.remoteControl = remoteControl;
+    this.suiteName = suiteFile.getName().replaceFirst("\\.[^.]*$", "");
+    this.runId = Long.toString(System.currentTimeMillis() % 1000000);
+
+    SuiteParser parser = new SuiteParser();
+    new ParserDelegator().parse(
+        new StringReader(Files.toString(suiteFile, Charset.forName("UTF-8"))), parser, true);
+    this.title = parser.title.toString().trim();
+    this.tests = parser.tests;
+
+    int count = Math.max(1, Math.min(browsers, tests.size()));
+    for (int i = 0; i < count; i++) {
+      shards.add(new Shard(i, count));
+    }
+    for (int i = 0; i < tests.size(); i++) {
+      shards.get(i % count).tests.add(tests.get(i));
+    }
+  }
+
+  /**
+   * Runs every share of the suite in its own browser, waits for all of them and writes the merged
+   * results to the output file.
+   *
+   * @return PASSED or FAILED
+   */
+  String run(String browser, String browserURL, File outputFile, long timeoutInMs,
+      boolean multiWindow) throws IOException {
+    File shardDir = TemporaryFilesystem.getDefaultTmpFS().createTempDir("htmlSuite", "shards");
+    remoteControl.addNewStaticContent(shardDir);
+    remoteControl.handleAllHTMLRunnerResults(this);
+
+    log.info("Running " + tests.size() + " tests of " + suiteName + " in " + shards.size()
+        + " browsers");
+    long start = System.currentTimeMillis();
+    ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+    try {
+      List<Future<?>> running = new ArrayList<Future<?>>();
+      for (Shard shard : shards) {
+        String fileName = suiteName + "-" + runId + "-" + (shard.index + 1) + ".html";
+        Files.write(shard.toHtml(), new File(shardDir, fileName), Charset.forName("UTF-8"));
+        String suiteURL = launcher.getSuiteURL(browser, browserURL, fileName);
+        running.add(executor.submit(
+            new ShardRun(shard, browser, browserURL, suiteURL, timeoutInMs, multiWindow)));
+      }
+      for (Future<?> future : running) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while running " + suiteName);
+    } catch (ExecutionException e) {
+      throw new IOException("Unable to run " + suiteName, e.getCause());
+    } finally {
+      executor.shutdownNow();
+      remoteControl.stopHandlingHTMLRunnerResults(this);
+      TemporaryFilesystem.getDefaultTmpFS().deleteTempDir(shardDir);
+    }
+
+    HTMLTestResults merged = merge(System.currentTimeMillis() - start);
+    launcher.setResults(merged);
+    launcher.writeResults(outputFile);
+    return merged.getResult().toUpperCase();
+  }
+
+  /** Hands posted results to the share of the suite they belong to. */
+  public void processResults(HTMLTestResults results) {
+    String postedSuite = results.getSuite().getUpdatedSuite();
+    for (Shard shard : shards) {
+      if (postedSuite.contains(shard.marker())) {
+        shard.setResults(results);
+        return;
+      }
+    }
+  }
+
+  List<Shard> getShards() {
+    return shards;
+  }
+
+  /**
+   * Merges the results of all shares into results for the whole suite. Tests of a browser that
+   * failed to report back are counted as failed.
+   */
+  HTMLTestResults merge(long elapsedMillis) {
+    boolean passed = true;
+    int testPasses = 0;
+    int testFailures = 0;
+    int commandPasses = 0;
+    int commandFailures = 0;
+    int commandErrors = 0;
+    String seleniumVersion = "";
+    String seleniumRevision = "";
+    StringBuilder mergedLog = new StringBuilder();
+
+    for (Shard shard : shards) {
+      HTMLTestResults results = shard.getResults();
+      mergedLog.append("Browser ").append(shard.index + 1).append(" (")
+          .append(shard.tests.size()).append(" tests, ").append(shard.getSeconds()).append("s):\n");
+      if (results == null) {
+        passed = false;
+        testFailures += shard.tests.size();
+        mergedLog.append(shard.getFailure()).append('\n');
+        continue;
+      }
+      passed &= "passed".equalsIgnoreCase(results.getResult());
+      testPasses += toInt(results.getNumTestPasses());
+      testFailures += toInt(results.getNumTestFailures());
+      commandPasses += toInt(results.getNumCommandPasses());
+      commandFailures += toInt(results.getNumCommandFailures());
+      commandErrors += toInt(results.getNumCommandErrors());
+      seleniumVersion = results.getSeleniumVersion();
+      seleniumRevision = results.getSeleniumRevision();
+      if (results.getLog() != null) {
+        mergedLog.append(results.getLog());
+      }
+    }
+
+    StringBuilder suite = new StringBuilder();
+    suite.append("<table id=\"suiteTable\" cellpadding=\"1\" cellspacing=\"1\" border=\"1\">")
+        .append("<tbody>\n<tr class=\"title ").append(passed ? "status_passed" : "status_failed")
+        .append("\"><td><b>").append(HTMLTestResults.quoteCharacters(title))
+        .append("</b></td><td>&nbsp;</td></tr>\n");
+    List<String> testTables = new ArrayList<String>();
+    for (int i = 0; i < tests.size(); i++) {
+      SuiteTest test = tests.get(i);
+      Shard shard = shards.get(i % shards.size());
+      String table = shard.getTestTable(i / shards.size());
+      testTables.add(table);
+      suite.append("<tr class=\"")
+          .append(table.contains("status_failed") ? "status_failed" : "status_passed")
+          .append("\"><td><a href=\"").append(HTMLTestResults.quoteCharacters(test.href))
+          .append("\">").append(HTMLTestResults.quoteCharacters(test.name))
+          .append("</a></td><td>browser ").append(shard.index + 1).append(", ")
+          .append(shard.getSeconds()).append("s</td></tr>\n");
+    }
+    suite.append("</tbody></table>");
+
+    return new HTMLTestResults(seleniumVersion, seleniumRevision,
+        passed ? "passed" : "failed", String.valueOf(elapsedMillis / 1000),
+        String.valueOf(tests.size()), String.valueOf(testPasses), String.valueOf(testFailures),
+        String.valueOf(commandPasses), String.valueOf(commandFailures),
+        String.valueOf(commandErrors), suite.toString(), testTables, mergedLog.toString());
+  }
+
+  private static int toInt(String value) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private class ShardRun implements Runnable {
+    private final Shard shard;
+    private final String browser;
+    private final String browserURL;
+    private final String suiteURL;
+    private final long timeoutInMs;
+    private final boolean multiWindow;
+
+    ShardRun(Shard shard, String browser, String browserURL, String suiteURL, long timeoutInMs,
+        boolean multiWindow) {
+      this.shard = shard;
+      this.browser = browser;
+      this.browserURL = browserURL;
+      this.suiteURL = suiteURL;
+      this.timeoutInMs = timeoutInMs;
+      this.multiWindow = multiWindow;
+    }
+
+    public void run() {
+      RemoteControlConfiguration configuration = remoteControl.getConfiguration();
+      String sessionId = runId + "-" + (shard.index + 1);
+      long start = System.currentTimeMillis();
+      try {
+        FrameGroupCommandQueueSet.makeQueueSet(
+            sessionId, configuration.getPortDriversShouldContact(), configuration);
+
+        Capabilities browserOptions =
+            configuration.copySettingsIntoBrowserOptions(new DesiredCapabilities());
+        browserOptions = BrowserOptions.setSingleWindow(browserOptions, !multiWindow);
+
+        BrowserLauncher browserLauncher =
+            launcher.getBrowserLauncher(browser, sessionId, configuration, browserOptions);
+        BrowserSessionInfo sessionInfo = new BrowserSessionInfo(sessionId,
+            browser, browserURL, browserLauncher, null);
+        remoteControl.registerBrowserSession(sessionInfo);
+        try {
+          browserLauncher.launchHTMLSuite(suiteURL, browserURL);
+          if (!shard.awaitResults(timeoutInMs)) {
+            shard.setFailure("Timed out after " + (timeoutInMs / 1000) + "s waiting for results");
+          }
+        } finally {
+          browserLauncher.close();
+          remoteControl.deregisterBrowserSession(sessionInfo);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        shard.setFailure("Interrupted while waiting for results");
+      } catch (RuntimeException e) {
+        log.log(Level.WARNING, "Browser " + (shard.index + 1) + " failed to run its tests", e);
+        shard.setFailure(e.toString());
+      } finally {
+        shard.setMillis(System.currentTimeMillis() - start);
+      }
+    }
+  }
+
+  /** The share of the suite run by a single browser. */
+  class Shard {
+    final int index;
+    final int count;
+    final List<SuiteTest> tests = new ArrayList<SuiteTest>();
+    private HTMLTestResults results;
+    private String failure = "No results were posted";
+    private long millis;
+
+    Shard(int index, int count) {
+      this.index = index;
+      this.count = count;
+    }
+
+    String marker() {
+      return "[browser " + (index + 1) + " of " + count + ", run " + runId + "]";
+    }
+
+    String toHtml() {
+      StringBuilder html = new StringBuilder();
+      html.append("<html>\n<head>\n")
+          .append("<meta content=\"text/html; charset=UTF-8\" http-equiv=\"content-type\" />\n")
+          .append("<title>").append(HTMLTestResults.quoteCharacters(title)).append("</title>\n")
+          .append("</head>\n<body>\n")
+          .append("<table id=\"suiteTable\" cellpadding=\"1\" cellspacing=\"1\" border=\"1\">")
+          .append("<tbody>\n<tr><td><b>").append(HTMLTestResults.quoteCharacters(title))
+          .append(' ').append(marker()).append("</b></td></tr>\n");
+      for (SuiteTest test : tests) {
+        html.append("<tr><td><a href=\"").append(HTMLTestResults.quoteCharacters(test.href))
+            .append("\">").append(HTMLTestResults.quoteCharacters(test.name))
+            .append("</a></td></tr>\n");
+      }
+      html.append("</tbody></table>\n</body>\n</html>\n");
+      return html.toString();
+    }
+
+    synchronized void setResults(HTMLTestResults results) {
+      this.results = results;
+      notifyAll();
+    }
+
+    synchronized HTMLTestResults getResults() {
+      return results;
+    }
+
+    synchronized boolean awaitResults(long timeoutInMs) throws InterruptedException {
+      long end = System.currentTimeMillis() + timeoutInMs;
+      while (results == null) {
+        long remaining = end - System.currentTimeMillis();
+        if (remaining <= 0) {
+          return false;
+        }
+        wait(remaining);
+      }
+      return true;
+    }
+
+    synchronized void setFailure(String failure) {
+      this.failure = failure;
+    }
+
+    synchronized String getFailure() {
+      return failure;
+    }
+
+    synchronized void setMillis(long millis) {
+      this.millis = millis;
+    }
+
+    synchronized long getSeconds() {
+      return millis / 1000;
+    }
+
+    /** Returns the results table of this share's n-th test. */
+    synchronized String getTestTable(int n) {
+      if (results != null && n < results.getTestTables().size()) {
+        return results.getTestTables().get(n);
+      }
+      return "<table><tr class=\"title status_failed\"><td>"
+          + HTMLTestResults.quoteCharacters(failure) + "</td></tr></table>";
+    }
+  }
+
+  static class SuiteTest {
+    final String href;
+    final String name;
+
+    SuiteTest(String href, String name) {
+      this.href = href;
+      this.name = name;
+    }
+  }
+
+  /** Picks the title and the linked tests out of a suite. */
+  private static class SuiteParser extends ParserCallback {
+    final StringBuilder title = new StringBuilder();
+    final List<SuiteTest> tests = new ArrayList<SuiteTest>();
+    private boolean inTable;
+    private String href;
+    private StringBuilder name;
+
+    @Override
+    public void handleStartTag(Tag tag, MutableAttributeSet attributes, int pos) {
+      if (Tag.TABLE.equals(tag)) {
+        inTable = true;
+      } else if (Tag.A.equals(tag) && inTable) {
+        href = ((String) attributes.getAttribute(HTML.Attribute.HREF)).replace('\\', '/');
+        name = new StringBuilder();
+      }
+    }
+
+    @Override
+    public void handleEndTag(Tag tag, int pos) {
+      if (Tag.A.equals(tag) && href != null) {
+        tests.add(new SuiteTest(href, name.toString().trim()));
+        href = null;
+      }
+    }
+
+    @Override
+    public void handleText(char[] data, int pos) {
+      if (href != null) {
+        name.append(data);
+      } else if (inTable && tests.isEmpty()) {
+        title.append(data);
+      }
+    }
+  }
+}
@@ -32,6 +32,7 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 
 /**
@@ -48,16 +49,33 @@ public class SeleniumHTMLRunnerResultsHandler implements HttpHandler {
 
   HttpContext context;
   List<HTMLResultsListener> listeners;
+  List<HTMLResultsListener> persistentListeners;
   boolean started = false;
 
   public SeleniumHTMLRunnerResultsHandler() {
     listeners = new Vector<HTMLResultsListener>();
+    persistentListeners = new CopyOnWriteArrayList<HTMLResultsListener>();
   }
 
+  /**
+   * Adds a listener that is handed the next results posted, and then forgotten.
+   */
   public void addListener(HTMLResultsListener listener) {
     listeners.add(listener);
   }
 
+  /**
+   * Adds a listener that is handed all results posted until it is removed again, for callers
+   * that run several suites at once and pick out their own results.
+   */
+  public void addPersistentListener(HTMLResultsListener listener) {
+    persistentListeners.add(listener);
+  }
+
+  public void removePersistentListener(HTMLResultsListener listener) {
+    persistentListeners.remove(listener);
+  }
+
   public void handle(String pathInContext, String pathParams, HttpRequest request, HttpResponse res)
       throws HttpException, IOException {
     if (!"/postResults".equals(pathInContext)) return;
@@ -95,6 +113,9 @@ public void handle(String pathInContext, String pathParams, HttpRequest request,
       listener.processResults(results);
       i.remove();
     }
+    for (HTMLResultsListener listener : persistentListeners) {
+      listener.processResults(results);
+    }
     processResults(results, res);
   }
 
@@ -169,4 +169,20 @@ public void ensurePre2_9HubCompatibility() {
     // This is the configuration value for < v2.9 hubs.
     Assert.assertEquals("http://example.com:5555", req.getConfigAsString("url"));
   }
+
+  @Test
+  public void hashIgnoresTheOrderOfTheKeys() {
+    RegistrationRequest req = RegistrationRequest.getNewInstance(
+        "{\"configuration\":{\"port\":5555,\"host\":\"node1\"},"
+        + "\"capabilities\":[{\"browserName\":\"firefox\",\"maxInstances\":5}]}");
+    RegistrationRequest same = RegistrationRequest.getNewInstance(
+        "{\"capabilities\":[{\"maxInstances\":5,\"browserName\":\"firefox\"}],"
+        + "\"configuration\":{\"host\":\"node1\",\"port\":5555}}");
+    RegistrationRequest other = RegistrationRequest.getNewInstance(
+        "{\"configuration\":{\"port\":5555,\"host\":\"node1\"},"
+        + "\"capabilities\":[{\"browserName\":\"firefox\",\"maxInstances\":4}]}");
+
+    Assert.assertEquals(req.getHash(), same.getHash());
+    Assert.assertFalse(req.getHash().equals(other.getHash()));
+  }
 }
@@ -95,12 +95,70 @@ public void testFindSessionByExternalKey() throws Exception {
                  activeTestSessions.findSessionByExternalKey(testSession.getExternalKey()));
   }
 
+  @Test
+  public void testFindSessionGivenItsExternalKeyAfterBeingAdded() throws Exception {
+    TestSession testSession = createTestSession();
+    testSession.setExternalKey(null);
+    activeTestSessions.add(testSession);
+    assertNull(activeTestSessions.findSessionByExternalKey(new ExternalSessionKey("w00t!")));
+
+    testSession.setExternalKey(new ExternalSessionKey("w00t!"));
+
+    assertEquals(testSession,
+                 activeTestSessions.findSessionByExternalKey(new ExternalSessionKey("w00t!")));
+    assertEquals(testSession,
+                 activeTestSessions.findSessionByExternalKey(new ExternalSessionKey("w00t!")));
+  }
+
+  @Test
+  public void testFindSessionByExternalKeyAfterRemove() throws Exception {
+    TestSession testSession = createTestSession();
+    activeTestSessions.add(testSession);
+    activeTestSessions.remove(testSession, SessionTerminationReason.CLIENT_STOPPED_SESSION);
+    assertNull(activeTestSessions.findSessionByExternalKey(testSession.getExternalKey()));
+    assertNull(activeTestSessions.findSessionByInternalKey(testSession.getInternalKey()));
+  }
+
+  @Test
+  public void testOnlyTheLastTerminatedSessionsAreRemembered() throws Exception {
+    TestSession first = createTestSession("first");
+    activeTestSessions.add(first);
+    activeTestSessions.remove(first, SessionTerminationReason.TIMEOUT);
+    for (int i = 0; i < ActiveTestSessions.MAX_TERMINATED_SESSIONS; i++) {
+      TestSession testSession = createTestSession("session" + i);
+      activeTestSessions.add(testSession);
+      activeTestSessions.remove(testSession, SessionTerminationReason.ORPHAN);
+    }
+
+    try {
+      activeTestSessions.getExistingSession(first.getExternalKey());
+      fail("should have forgotten the first session");
+    } catch (GridException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("not among the last"));
+    }
+    try {
+      activeTestSessions.getExistingSession(new ExternalSessionKey("session0"));
+      fail("should have thrown a session has been orphaned.");
+    } catch (GridException e) {
+      assertTrue(e.getMessage().contains(SessionTerminationReason.ORPHAN.toString()));
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSetOfSessionsCannotBeModified() throws Exception {
+    activeTestSessions.unmodifiableSet().add(createTestSession());
+  }
+
   private TestSession createTestSession() {
+    return createTestSession("w00t!");
+  }
+
+  private TestSession createTestSession(String externalKey) {
     final HashMap<String, Object> capabilities = new HashMap<String, Object>();
     final TestSessionTest.TestTimeSource timeSource = new TestSessionTest.TestTimeSource();
     // Luckily we can pass null for TestSlot
     TestSession testSession = new TestSession(null, capabilities, timeSource);
-    testSession.setExternalKey(new ExternalSessionKey("w00t!"));
+    testSession.setExternalKey(new ExternalSessionKey(externalKey));
     return testSession;
   }
 }
@@ -0,0 +1,180 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.openqa.grid.common.RegistrationRequest.APP;
+
+import com.google.common.base.Charsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.grid.internal.mock.GridHelper;
+import org.openqa.grid.internal.utils.Histogram;
+import org.openqa.grid.web.servlet.handler.RequestHandler;
+import org.openqa.grid.web.servlet.handler.WebDriverRequest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+public class CommandDeadlineTest {
+
+  private static Map<String, Object> ff = new HashMap<String, Object>();
+
+  static {
+    ff.put(APP, "FF");
+  }
+
+  private Registry registry;
+  private ServerSocket node;
+  private final List<String> received = new CopyOnWriteArrayList<String>();
+  private final CountDownLatch answer = new CountDownLatch(1);
+  private volatile long bodyDelay;
+
+  @Before
+  public void setup() throws IOException {
+    registry = Registry.newInstance();
+    node = new ServerSocket(0);
+    Thread nodeThread = new Thread(new Runnable() {
+      public void run() {
+        serve();
+      }
+    }, "node for " + getClass().getSimpleName());
+    nodeThread.setDaemon(true);
+    nodeThread.start();
+  }
+
+  @After
+  public void teardown() throws IOException {
+    answer.countDown();
+    node.close();
+    registry.stop();
+  }
+
+  @Test(timeout = 10000)
+  public void aCommandTheNodeDoesntAnswerIsAbortedAtItsDeadline() throws IOException {
+    TestSession session = newSession();
+    long start = System.nanoTime();
+
+    try {
+      session.forward(command("300"), mock(HttpServletResponse.class), false);
+      fail("the node never answers");
+    } catch (SocketTimeoutException expected) {
+    }
+
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("aborted after " + elapsed + " ms", elapsed >= 300 && elapsed < 3000);
+    assertTrue(received.contains(TestSession.COMMAND_TIMEOUT_HEADER + ": 300"));
+    assertFalse(session.isForwardingRequest());
+  }
+
+  @Test(timeout = 10000)
+  public void aCommandAnsweredInTimeIsForwarded() throws IOException {
+    TestSession session = newSession();
+    answer.countDown();
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenReturn(mock(ServletOutputStream.class));
+
+    session.forward(command("5000"), response, false);
+
+    assertEquals("GET /wd/hub/session/1234/url HTTP/1.1", received.get(0));
+  }
+
+  @Test(timeout = 10000)
+  public void aSlowBodyCountsAsNodeTime() throws IOException {
+    TestSession session = newSession();
+    bodyDelay = 300;
+    answer.countDown();
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenReturn(mock(ServletOutputStream.class));
+
+    session.forward(command("5000"), response, false);
+
+    Histogram.Snapshot nodeTime = registry.getGridMetrics().get(ff).getNodeTime().getSnapshot();
+    Histogram.Snapshot hubOverhead =
+        registry.getGridMetrics().get(ff).getHubOverhead().getSnapshot();
+    assertTrue("node time " + nodeTime.getMax() + " ms", nodeTime.getMax() >= 300);
+    assertTrue("hub overhead " + hubOverhead.getMax() + " ms", hubOverhead.getMax() < 300);
+  }
+
+  private TestSession newSession() {
+    String url = "http://localhost:" + node.getLocalPort();
+    registry.add(RemoteProxyFactory.getNewBasicRemoteProxy(ff, url, registry));
+    RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(registry, ff);
+    newSessionRequest.process();
+    return newSessionRequest.getSession();
+  }
+
+  private WebDriverRequest command(String timeout) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getMethod()).thenReturn("GET");
+    when(request.getServletPath()).thenReturn("");
+    when(request.getContextPath()).thenReturn("");
+    when(request.getRequestURI()).thenReturn("/session/1234/url");
+    when(request.getPathInfo()).thenReturn("/session/1234/url");
+    when(request.getHeaderNames()).thenReturn(
+        Collections.enumeration(Collections.singletonList(TestSession.COMMAND_TIMEOUT_HEADER)));
+    when(request.getHeader(TestSession.COMMAND_TIMEOUT_HEADER)).thenReturn(timeout);
+    return new WebDriverRequest(request, registry);
+  }
+
+  private void serve() {
+    try {
+      Socket socket = node.accept();
+      BufferedReader in =
+          new BufferedReader(new InputStreamReader(socket.getInputStream(), Charsets.UTF_8));
+      String line;
+      while ((line = in.readLine()) != null && !line.isEmpty()) {
+        received.add(line);
+      }
+      answer.await();
+      OutputStream out = socket.getOutputStream();
+      out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\n".getBytes(Charsets.UTF_8));
+      out.flush();
+      Thread.sleep(bodyDelay);
+      out.write("{}".getBytes(Charsets.UTF_8));
+      out.flush();
+      socket.close();
+    } catch (IOException ignored) {
+      // the test is over.
+    } catch (InterruptedException ignored) {
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.openqa.grid.common.RegistrationRequest.APP;
+import static org.openqa.grid.internal.GridEvent.Type.PROXY_ADDED;
+import static org.openqa.grid.internal.GridEvent.Type.PROXY_REMOVED;
+import static org.openqa.grid.internal.GridEvent.Type.REQUEST_MATCHED;
+import static org.openqa.grid.internal.GridEvent.Type.REQUEST_QUEUED;
+import static org.openqa.grid.internal.GridEvent.Type.REQUEST_TIMED_OUT;
+import static org.openqa.grid.internal.GridEvent.Type.SLOT_ACQUIRED;
+import static org.openqa.grid.internal.GridEvent.Type.SLOT_RELEASED;
+
+import com.google.common.base.Charsets;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.openqa.grid.internal.listeners.GridEventListener;
+import org.openqa.grid.internal.mock.GridHelper;
+import org.openqa.grid.internal.utils.GridHubConfiguration;
+import org.openqa.grid.web.Hub;
+import org.openqa.grid.web.servlet.handler.RequestHandler;
+import org.openqa.selenium.net.PortProber;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class GridEventsTest {
+
+  private static Map<String, Object> ff = new HashMap<String, Object>();
+
+  static {
+    ff.put(APP, "FF");
+  }
+
+  @Test
+  public void listenersFollowProxiesAndSessions() {
+    Registry registry = Registry.newInstance();
+    EventCollector events = new EventCollector();
+    registry.getGridEvents().addListener(events);
+    try {
+      RemoteProxy p1 =
+          RemoteProxyFactory.getNewBasicRemoteProxy(ff, "http://machine1:4444", registry);
+      registry.add(p1);
+
+      RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(registry, ff);
+      newSessionRequest.process();
+      TestSession session = newSessionRequest.getSession();
+      registry.terminateSynchronousFOR_TEST_ONLY(session);
+      registry.removeIfPresent(p1);
+
+      assertEquals(Arrays.asList(PROXY_ADDED, REQUEST_QUEUED, SLOT_ACQUIRED, REQUEST_MATCHED,
+                                 SLOT_RELEASED, PROXY_REMOVED), events.types());
+
+      GridEvent released = events.get(4);
+      assertEquals("http://machine1:4444", released.getData().get("proxy"));
+      assertEquals(session.getInternalKey(), released.getData().get("session"));
+      assertEquals("CLIENT_STOPPED_SESSION", released.getData().get("reason"));
+      assertTrue(events.get(0).getId() < released.getId());
+    } finally {
+      registry.stop();
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void listenersAreToldOfRequestsThatTimedOut() {
+    Registry registry = Registry.newInstance();
+    EventCollector events = new EventCollector();
+    try {
+      registry.add(RemoteProxyFactory.getNewBasicRemoteProxy(ff, "http://machine1:4444", registry));
+      registry.setNewSessionWaitTimeout(100);
+      GridHelper.createNewSessionHandler(registry, ff).process();
+      registry.getGridEvents().addListener(events);
+
+      try {
+        GridHelper.createNewSessionHandler(registry, ff).process();
+      } catch (RuntimeException expected) {
+      }
+
+      assertEquals(Arrays.asList(REQUEST_QUEUED, REQUEST_TIMED_OUT), events.types());
+      assertEquals(ff, events.get(1).getData().get("desiredCapabilities"));
+    } finally {
+      registry.stop();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void eventsAreStreamedFromTheHub() throws Exception {
+    GridHubConfiguration config = new GridHubConfiguration();
+    config.setPort(PortProber.findFreePort());
+    config.setHost("localhost");
+    Hub hub = new Hub(config);
+    hub.start();
+    try {
+      URL url = new URL("http://localhost:" + hub.getPort() + "/grid/api/events");
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      assertEquals(200, connection.getResponseCode());
+      assertTrue(connection.getContentType().startsWith("text/event-stream"));
+      BufferedReader in = new BufferedReader(
+          new InputStreamReader(connection.getInputStream(), Charsets.UTF_8));
+
+      List<String> status = readEvent(in);
+      assertEquals("event: status", status.get(1));
+      assertEquals(0, new JSONObject(status.get(2).substring("data: ".length())).getInt("total"));
+
+      Registry registry = hub.getRegistry();
+      registry.add(RemoteProxyFactory.getNewBasicRemoteProxy(ff, "http://machine1:4444", registry));
+
+      List<String> added = readEvent(in);
+      assertEquals("event: proxyAdded", added.get(1));
+      JSONObject data = new JSONObject(added.get(2).substring("data: ".length()));
+      assertEquals("http://machine1:4444", data.getString("proxy"));
+      assertEquals(1, data.getInt("slots"));
+      connection.disconnect();
+    } finally {
+      hub.stop();
+    }
+  }
+
+  private static List<String> readEvent(BufferedReader in) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    String line;
+    while ((line = in.readLine()) != null && !line.isEmpty()) {
+      lines.add(line);
+    }
+    return lines;
+  }
+
+  private static class EventCollector implements GridEventListener {
+    private final List<GridEvent> events = new CopyOnWriteArrayList<GridEvent>();
+
+    public void onEvent(GridEvent event) {
+      events.add(event);
+    }
+
+    GridEvent get(int index) {
+      return events.get(index);
+    }
+
+    List<GridEvent.Type> types() {
+      List<GridEvent.Type> types = new ArrayList<GridEvent.Type>();
+      for (GridEvent event : events) {
+        types.add(event.getType());
+      }
+      return types;
+    }
+  }
+}
@@ -23,6 +23,9 @@
 import org.openqa.grid.internal.listener.RegistrationListenerTest;
 import org.openqa.grid.internal.listener.SessionListenerTest;
 import org.openqa.grid.internal.utils.DefaultCapabilityMatcherTest;
+import org.openqa.grid.internal.utils.HistogramTest;
+import org.openqa.grid.internal.utils.FileRegistryStoreTest;
+import org.openqa.grid.internal.utils.TimerWheelTest;
 import org.openqa.grid.plugin.RemoteProxyInheritanceTest;
 
 @RunWith(Suite.class)
@@ -47,7 +50,19 @@
     StatusServletTests.class,
     Grid1ConfigurationLoaderTest.class,
     UserDefinedCapabilityMatcherTests.class,
-    GridShutdownTest.class
+    GridShutdownTest.class,
+    HubStatusTest.class,
+    GridEventsTest.class,
+    ProxySetTest.class,
+    LoadBalancingStrategyTest.class,
+    GridMetricsTest.class,
+    HistogramTest.class,
+    NodeRegistrationTest.class,
+    TimerWheelTest.class,
+    CommandDeadlineTest.class,
+    SharedRegistryTest.class,
+    FileRegistryStoreTest.class,
+    SeleniumBasedRequestTest.class
 })
 public class GridInternalTestSuite {
 // 186 sec
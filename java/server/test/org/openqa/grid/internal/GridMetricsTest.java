@@ -0,0 +1,189 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.openqa.grid.common.RegistrationRequest.APP;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.grid.internal.mock.GridHelper;
+import org.openqa.grid.internal.utils.GridHubConfiguration;
+import org.openqa.grid.internal.utils.Histogram;
+import org.openqa.grid.web.Hub;
+import org.openqa.grid.web.servlet.handler.RequestHandler;
+import org.openqa.selenium.net.PortProber;
+import org.openqa.selenium.remote.CapabilityType;
+
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+public class GridMetricsTest {
+
+  private Registry registry;
+  private Map<String, Object> ff = new HashMap<String, Object>();
+
+  @Before
+  public void setup() {
+    registry = Registry.newInstance();
+    ff.put(APP, "FF");
+    ff.put(CapabilityType.BROWSER_NAME, "firefox");
+  }
+
+  @After
+  public void teardown() {
+    registry.stop();
+  }
+
+  @Test
+  public void signatures() {
+    Map<String, Object> caps = new HashMap<String, Object>();
+    assertEquals("any:any:any", GridMetrics.getSignature(caps));
+
+    caps.put(CapabilityType.BROWSER_NAME, "chrome");
+    caps.put(CapabilityType.VERSION, "");
+    caps.put(CapabilityType.PLATFORM, "LINUX");
+    assertEquals("chrome:any:LINUX", GridMetrics.getSignature(caps));
+  }
+
+  @Test
+  public void queueTimesAndSessionDurationsAreRecorded() {
+    registry.add(RemoteProxyFactory.getNewBasicRemoteProxy(ff, "http://machine1:4444", registry));
+
+    RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(registry, ff);
+    newSessionRequest.process();
+    registry.terminateSynchronousFOR_TEST_ONLY(newSessionRequest.getSession());
+
+    GridMetrics.CapabilityMetrics metrics = registry.getGridMetrics().get(ff);
+    assertEquals(1, metrics.getQueueTime().getCount());
+    assertEquals(1, metrics.getSessionDuration().getCount());
+    assertEquals(0, metrics.getTimedOut());
+  }
+
+  @Test(timeout = 5000)
+  public void requestsThatTimedOutAreCounted() {
+    registry.add(RemoteProxyFactory.getNewBasicRemoteProxy(ff, "http://machine1:4444", registry));
+    registry.setNewSessionWaitTimeout(100);
+    GridHelper.createNewSessionHandler(registry, ff).process();
+
+    try {
+      GridHelper.createNewSessionHandler(registry, ff).process();
+    } catch (RuntimeException expected) {
+    }
+
+    GridMetrics.CapabilityMetrics metrics = registry.getGridMetrics().get(ff);
+    assertEquals(1, metrics.getTimedOut());
+    assertEquals(2, metrics.getQueueTime().getCount());
+    assertTrue(metrics.getQueueTime().getValueAtPercentile(100) >= 100000);
+  }
+
+  @Test
+  public void signaturesAreBounded() {
+    GridMetrics metrics = new GridMetrics();
+    for (int i = 0; i < GridMetrics.MAX_SIGNATURES * 2; i++) {
+      Map<String, Object> caps = new HashMap<String, Object>();
+      caps.put(CapabilityType.BROWSER_NAME, "browser" + i);
+      metrics.requestMatched(caps, 1000);
+    }
+
+    assertEquals(GridMetrics.MAX_SIGNATURES + 1, metrics.getAll().size());
+    Histogram other = metrics.getAll().get(GridMetrics.OTHER).getQueueTime();
+    assertEquals(GridMetrics.MAX_SIGNATURES, other.getCount());
+  }
+
+  @Test(timeout = 10000)
+  public void signaturesAreBoundedWhenAddedConcurrently() throws Exception {
+    final GridMetrics metrics = new GridMetrics();
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 8; t++) {
+      final int thread = t;
+      threads.add(new Thread(new Runnable() { // Thread safety reviewed
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < GridMetrics.MAX_SIGNATURES; i++) {
+            Map<String, Object> caps = new HashMap<String, Object>();
+            caps.put(CapabilityType.BROWSER_NAME, "browser" + thread + "-" + i);
+            metrics.requestMatched(caps, 1000);
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(GridMetrics.MAX_SIGNATURES + 1, metrics.getAll().size());
+  }
+
+  @Test(timeout = 10000)
+  public void metricsAreServedByTheHubAndOverJmx() throws Exception {
+    GridHubConfiguration config = new GridHubConfiguration();
+    config.setPort(PortProber.findFreePort());
+    config.setHost("localhost");
+    Hub hub = new Hub(config);
+    hub.start();
+    ObjectName name =
+        new ObjectName("org.openqa.grid:type=Hub,name=Metrics,port=" + hub.getPort());
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      hub.getRegistry().getGridMetrics().requestMatched(ff, 2000000);
+
+      URL url = new URL("http://localhost:" + hub.getPort() + "/grid/api/metrics");
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      assertEquals(200, connection.getResponseCode());
+      JSONObject json = new JSONObject(CharStreams.toString(
+          new InputStreamReader(connection.getInputStream(), Charsets.UTF_8)));
+      JSONObject queueTime = json.getJSONObject("metrics").getJSONObject("firefox:any:any")
+          .getJSONObject("queueTime");
+      assertEquals(1, queueTime.getInt("count"));
+      assertEquals(2.0, queueTime.getDouble("max"), 0.001);
+
+      TabularData queueTimes = (TabularData) server.getAttribute(name, "QueueTimes");
+      assertEquals(1, queueTimes.size());
+    } finally {
+      hub.stop();
+    }
+    assertTrue(!server.isRegistered(name));
+  }
+}
@@ -0,0 +1,165 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.grid.internal.mock.GridHelper;
+import org.openqa.grid.web.servlet.StatusPageCache;
+import org.openqa.grid.web.servlet.handler.RequestHandler;
+import org.openqa.selenium.remote.CapabilityType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class HubStatusTest {
+
+  private Registry registry;
+  private Map<String, Object> app1 = new HashMap<String, Object>();
+
+  @Before
+  public void setup() {
+    registry = Registry.newInstance();
+    app1.put(CapabilityType.BROWSER_NAME, "app1");
+  }
+
+  @After
+  public void teardown() {
+    registry.stop();
+  }
+
+  @Test
+  public void countsSlotsAsProxiesComeAndGo() {
+    HubStatus status = registry.getHubStatus();
+    RemoteProxy p1 = proxy("http://machine1:4444");
+    RemoteProxy p2 = proxy("http://machine2:4444");
+
+    registry.add(p1);
+    registry.add(p2);
+
+    assertEquals(2, status.getProxyCount());
+    assertEquals(2, status.getTotalSlots());
+    assertEquals(2, status.getFreeSlots());
+
+    registry.removeIfPresent(p1);
+
+    assertEquals(1, status.getProxyCount());
+    assertEquals(1, status.getTotalSlots());
+  }
+
+  @Test
+  public void countsSlotsAsSessionsStartAndStop() {
+    HubStatus status = registry.getHubStatus();
+    registry.add(proxy("http://machine1:4444"));
+    registry.add(proxy("http://machine2:4444"));
+
+    RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(registry, app1);
+    newSessionRequest.process();
+    TestSession session = newSessionRequest.getSession();
+
+    assertEquals(1, status.getUsedSlots());
+    assertEquals(1, status.getFreeSlots());
+
+    registry.terminateSynchronousFOR_TEST_ONLY(session);
+
+    assertEquals(0, status.getUsedSlots());
+    assertEquals(2, status.getFreeSlots());
+  }
+
+  @Test
+  public void releasingTheSessionsOfARemovedProxyLeavesNoSlotsUsed() {
+    HubStatus status = registry.getHubStatus();
+    RemoteProxy p1 = proxy("http://machine1:4444");
+    registry.add(p1);
+
+    RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(registry, app1);
+    newSessionRequest.process();
+    registry.removeIfPresent(p1);
+
+    assertEquals(0, status.getTotalSlots());
+    assertEquals(0, status.getUsedSlots());
+    assertEquals(0, status.getFreeSlots());
+  }
+
+  @Test
+  public void versionMovesOnWithEveryChange() {
+    HubStatus status = registry.getHubStatus();
+    long version = status.getVersion();
+
+    registry.add(proxy("http://machine1:4444"));
+    assertTrue(status.getVersion() > version);
+    version = status.getVersion();
+
+    RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(registry, app1);
+    newSessionRequest.process();
+    assertTrue(status.getVersion() > version);
+    version = status.getVersion();
+
+    registry.terminateSynchronousFOR_TEST_ONLY(newSessionRequest.getSession());
+    assertTrue(status.getVersion() > version);
+  }
+
+  @Test
+  public void cachedPagesAreKeptUntilTheVersionChanges() {
+    StatusPageCache cache = new StatusPageCache();
+    HubStatus status = registry.getHubStatus();
+    long version = status.getVersion();
+
+    StatusPageCache.Page page = cache.put("-1", version, "<html>0 nodes</html>");
+
+    assertSame(page, cache.get("-1", version));
+    assertNull(cache.get("5", version));
+
+    registry.add(proxy("http://machine1:4444"));
+
+    assertNull(cache.get("-1", status.getVersion()));
+  }
+
+  @Test
+  public void pagesWithTheSameContentHaveTheSameETag() {
+    StatusPageCache cache = new StatusPageCache();
+
+    StatusPageCache.Page first = cache.put("-1", 1, "<html>0 nodes</html>");
+    StatusPageCache.Page second = cache.put("-1", 2, "<html>0 nodes</html>");
+    StatusPageCache.Page third = cache.put("-1", 3, "<html>1 node</html>");
+
+    assertEquals(first.getETag(), second.getETag());
+    assertFalse(first.getETag().equals(third.getETag()));
+  }
+
+  @Test
+  public void oldPagesAreDropped() throws InterruptedException {
+    StatusPageCache cache = new StatusPageCache(10);
+
+    cache.put("-1", 1, "<html>0 nodes</html>");
+    Thread.sleep(50);
+
+    assertNull(cache.get("-1", 1));
+  }
+
+  private RemoteProxy proxy(String url) {
+    return RemoteProxyFactory.getNewBasicRemoteProxy(app1, url, registry);
+  }
+}
@@ -0,0 +1,248 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Iterables;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.grid.common.RegistrationRequest;
+import org.openqa.grid.internal.utils.ConsistentHashStrategy;
+import org.openqa.grid.internal.utils.GridHubConfiguration;
+import org.openqa.grid.internal.utils.LeastUsedStrategy;
+import org.openqa.grid.internal.utils.WeightedStrategy;
+import org.openqa.grid.web.Hub;
+import org.openqa.selenium.remote.CapabilityType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LoadBalancingStrategyTest {
+
+  private Registry registry;
+  private Map<String, Object> app1 = new HashMap<String, Object>();
+
+  @Before
+  public void setup() {
+    registry = Registry.newInstance();
+    app1.put(CapabilityType.BROWSER_NAME, "app1");
+  }
+
+  @After
+  public void teardown() {
+    registry.stop();
+  }
+
+  @Test
+  public void leastUsedAsksTheLeastBusyProxiesFirst() {
+    ProxySet set = new ProxySet(false, new LeastUsedStrategy());
+    RemoteProxy p1 = proxy("http://machine1:4444", 2, null);
+    RemoteProxy p2 = proxy("http://machine2:4444", 4, null);
+    set.add(p1);
+    set.add(p2);
+
+    List<RemoteProxy> used = new ArrayList<RemoteProxy>();
+    List<TestSession> sessions = new ArrayList<TestSession>();
+    for (int i = 0; i < 4; i++) {
+      TestSession session = set.getNewSession(app1);
+      sessions.add(session);
+      used.add(session.getSlot().getProxy());
+    }
+    // p1 is at 50% after the first session, p2 after the third one.
+    assertEquals(listOf(p1, p2, p2, p1), used);
+
+    // p1 is now free, but only moves ahead once the set is told about it.
+    sessions.get(0).getSlot().doFinishRelease();
+    sessions.get(3).getSlot().doFinishRelease();
+    assertSame(p2, Iterables.getFirst(set.getLoadBalancingStrategy().getProxies(app1), null));
+    set.loadChanged(p1);
+    assertSame(p1, set.getNewSession(app1).getSlot().getProxy());
+  }
+
+  @Test
+  public void removedProxiesAreNotAskedAnymore() {
+    ProxySet set = new ProxySet(false, new LeastUsedStrategy());
+    RemoteProxy p1 = proxy("http://machine1:4444", 2, null);
+    RemoteProxy p2 = proxy("http://machine2:4444", 2, null);
+    set.add(p1);
+    set.add(p2);
+
+    set.remove(p1);
+
+    assertEquals(listOf(p2), toList(set.getLoadBalancingStrategy().getProxies(app1)));
+    assertSame(p2, set.getNewSession(app1).getSlot().getProxy());
+  }
+
+  @Test
+  public void weightedSpreadsSessionsByWeight() {
+    ProxySet set = new ProxySet(false, new WeightedStrategy());
+    RemoteProxy light = proxy("http://machine1:4444", 4, 1);
+    RemoteProxy heavy = proxy("http://machine2:4444", 4, 3);
+    set.add(light);
+    set.add(heavy);
+
+    int onHeavy = 0;
+    for (int i = 0; i < 4; i++) {
+      if (set.getNewSession(app1).getSlot().getProxy() == heavy) {
+        onHeavy++;
+      }
+    }
+
+    assertEquals(3, onHeavy);
+  }
+
+  @Test
+  public void nodesWithoutWeightWeighTheirMaxSessions() {
+    ProxySet set = new ProxySet(false, new WeightedStrategy());
+    RemoteProxy small = proxy("http://machine1:4444", 1, null);
+    RemoteProxy big = proxy("http://machine2:4444", 3, null);
+    set.add(small);
+    set.add(big);
+
+    set.getNewSession(app1);
+
+    assertSame(big, set.getNewSession(app1).getSlot().getProxy());
+  }
+
+  @Test
+  public void nodesWithAMalformedWeightWeighTheirMaxSessions() {
+    ProxySet set = new ProxySet(false, new WeightedStrategy());
+    RemoteProxy small = proxy("http://machine1:4444", 1, "heavy");
+    RemoteProxy big = proxy("http://machine2:4444", 3, null);
+    set.add(small);
+    set.add(big);
+
+    set.getNewSession(app1);
+
+    assertSame(big, set.getNewSession(app1).getSlot().getProxy());
+  }
+
+  @Test
+  public void sameAffinityKeyGoesToTheSameProxy() {
+    ProxySet set = new ProxySet(false, new ConsistentHashStrategy());
+    List<RemoteProxy> proxies = new ArrayList<RemoteProxy>();
+    for (int i = 1; i <= 4; i++) {
+      RemoteProxy p = proxy("http://machine" + i + ":4444", 2, null);
+      proxies.add(p);
+      set.add(p);
+    }
+    Map<String, Object> request = new HashMap<String, Object>(app1);
+    request.put(ConsistentHashStrategy.AFFINITY_KEY, "build-42");
+
+    TestSession first = set.getNewSession(request);
+    RemoteProxy owner = first.getSlot().getProxy();
+    first.getSlot().doFinishRelease();
+    assertSame(owner, set.getNewSession(request).getSlot().getProxy());
+
+    // every proxy is asked once.
+    assertEquals(4, toList(set.getLoadBalancingStrategy().getProxies(request)).size());
+
+    // removing another proxy doesn't move the key.
+    for (RemoteProxy p : proxies) {
+      if (p != owner) {
+        set.remove(p);
+        break;
+      }
+    }
+    assertSame(owner, set.getNewSession(request).getSlot().getProxy());
+
+    // once the owner is full, the next proxy on the ring gets the session.
+    assertNotSame(owner, set.getNewSession(request).getSlot().getProxy());
+  }
+
+  @Test
+  public void loadSpread() {
+    ProxySet set = new ProxySet(false);
+    RemoteProxy p1 = proxy("http://machine1:4444", 2, null);
+    RemoteProxy p2 = proxy("http://machine2:4444", 2, null);
+    set.add(p1);
+    set.add(p2);
+    p1.getTestSlots().get(0).getNewSession(app1);
+
+    LoadSpread spread = set.getLoadSpread();
+
+    assertEquals(2, spread.getProxyCount());
+    assertEquals(0, spread.getMin(), 0.01);
+    assertEquals(50, spread.getMax(), 0.01);
+    assertEquals(25, spread.getMean(), 0.01);
+    assertEquals(25, spread.getStandardDeviation(), 0.01);
+  }
+
+  @Test
+  public void strategyIsConfiguredOnTheHub() {
+    GridHubConfiguration config = new GridHubConfiguration();
+    config.setLoadBalancingStrategy(WeightedStrategy.class.getName());
+    Registry r = Registry.newInstance((Hub) null, config);
+    Registry r2 = Registry.newInstance((Hub) null, config);
+    try {
+      assertTrue(r.getAllProxies().getLoadBalancingStrategy() instanceof WeightedStrategy);
+      // a strategy keeps the proxies it orders, the hubs don't share one.
+      assertNotSame(r.getAllProxies().getLoadBalancingStrategy(),
+                    r2.getAllProxies().getLoadBalancingStrategy());
+    } finally {
+      r.stop();
+      r2.stop();
+    }
+  }
+
+  @Test
+  public void nodesReportTheirWeight() {
+    RegistrationRequest req =
+        RegistrationRequest.build("-role", "webdriver", "-host", "localhost", "-weight", "2.5");
+
+    assertEquals(2.5, req.getConfiguration().get(RegistrationRequest.WEIGHT));
+  }
+
+  private RemoteProxy proxy(String url, int maxSession, Object weight) {
+    RegistrationRequest req = RegistrationRequest.build("-role", "webdriver", "-host", "localhost",
+                                                        "-" + RegistrationRequest.HUB_HOST,
+                                                        "localhost");
+    req.getCapabilities().clear();
+    Map<String, Object> cap = new HashMap<String, Object>(app1);
+    cap.put(RegistrationRequest.MAX_INSTANCES, maxSession);
+    req.addDesiredCapability(cap);
+    req.getConfiguration().put(RegistrationRequest.REMOTE_HOST, url);
+    req.getConfiguration().put(RegistrationRequest.MAX_SESSION, maxSession);
+    if (weight != null) {
+      req.getConfiguration().put(RegistrationRequest.WEIGHT, weight);
+    }
+    return new DetachedRemoteProxy(req, registry);
+  }
+
+  private static List<RemoteProxy> listOf(RemoteProxy... proxies) {
+    List<RemoteProxy> res = new ArrayList<RemoteProxy>();
+    for (RemoteProxy p : proxies) {
+      res.add(p);
+    }
+    return res;
+  }
+
+  private static List<RemoteProxy> toList(Iterable<RemoteProxy> proxies) {
+    List<RemoteProxy> res = new ArrayList<RemoteProxy>();
+    Iterables.addAll(res, proxies);
+    return res;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.openqa.grid.common.RegistrationRequest.APP;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.grid.common.RegistrationRequest;
+import org.openqa.grid.internal.mock.GridHelper;
+import org.openqa.grid.web.servlet.handler.RequestHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class NodeRegistrationTest {
+
+  private Registry registry;
+  private Map<String, Object> ff = new HashMap<String, Object>();
+
+  @Before
+  public void setup() {
+    registry = Registry.newInstance();
+    ff.put(APP, "FF");
+  }
+
+  @After
+  public void teardown() {
+    registry.stop();
+  }
+
+  @Test(timeout = 5000)
+  public void registeringAgainTheSameWayIsAHeartbeat() throws InterruptedException {
+    assertFalse(registry.register(request("http://machine1:4444", 1)));
+    RemoteProxy p1 = waitFor("http://machine1:4444");
+
+    assertTrue(registry.register(request("http://machine1:4444", 1)));
+
+    assertSame(p1, registry.getAllProxies().getProxyById("http://machine1:4444"));
+    assertEquals(1, registry.getAllProxies().size());
+  }
+
+  @Test(timeout = 5000)
+  public void registeringWithAnotherConfigurationReplacesTheProxy() throws InterruptedException {
+    registry.register(request("http://machine1:4444", 1));
+    RemoteProxy p1 = waitFor("http://machine1:4444");
+
+    assertFalse(registry.register(request("http://machine1:4444", 2)));
+
+    while (registry.getAllProxies().getProxyById("http://machine1:4444") == p1) {
+      Thread.sleep(10);
+    }
+    assertEquals(2, waitFor("http://machine1:4444").getTestSlots().size());
+  }
+
+  @Test(timeout = 5000)
+  public void aBusyNodeRegisteringAgainIsFreed() throws InterruptedException {
+    registry.register(request("http://machine1:4444", 1));
+    RemoteProxy p1 = waitFor("http://machine1:4444");
+    RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(registry, ff);
+    newSessionRequest.process();
+    assertNotNull(newSessionRequest.getSession());
+
+    assertFalse(registry.register(request("http://machine1:4444", 1)));
+
+    RemoteProxy p2;
+    while ((p2 = registry.getAllProxies().getProxyById("http://machine1:4444")) == p1
+           || p2 == null) {
+      Thread.sleep(10);
+    }
+    assertNotSame(p1, p2);
+    assertEquals(0, p1.getTotalUsed());
+    assertEquals(0, registry.getActiveSessions().size());
+  }
+
+  @Test(timeout = 10000)
+  public void manyNodesRegisteringAtOnceAreAllAdded() throws InterruptedException {
+    int nodes = Registry.MAX_REGISTRATION_BATCH * 2 + 1;
+    for (int i = 0; i < nodes; i++) {
+      registry.register(request("http://machine" + i + ":4444", 1));
+    }
+
+    while (registry.getAllProxies().size() != nodes) {
+      Thread.sleep(10);
+    }
+    assertEquals(nodes, registry.getHubStatus().getTotalSlots());
+  }
+
+  private RemoteProxy waitFor(String id) throws InterruptedException {
+    RemoteProxy proxy;
+    while ((proxy = registry.getAllProxies().getProxyById(id)) == null) {
+      Thread.sleep(10);
+    }
+    return proxy;
+  }
+
+  private RegistrationRequest request(String url, int instances) {
+    RegistrationRequest req = RegistrationRequest.build("-role", "webdriver", "-host", "localhost",
+                                                        "-" + RegistrationRequest.HUB_HOST,
+                                                        "localhost");
+    req.getCapabilities().clear();
+    Map<String, Object> cap = new HashMap<String, Object>(ff);
+    cap.put(RegistrationRequest.MAX_INSTANCES, instances);
+    req.addDesiredCapability(cap);
+    req.getConfiguration().put(RegistrationRequest.REMOTE_HOST, url);
+    req.getConfiguration().put(RegistrationRequest.MAX_SESSION, instances);
+    req.getConfiguration().put(RegistrationRequest.PROXY_CLASS,
+                               DetachedRemoteProxy.class.getName());
+    return req;
+  }
+}
@@ -19,8 +19,11 @@
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.openqa.selenium.remote.CapabilityType;
 
+import java.net.URL;
 import java.util.HashMap;
+import java.util.Map;
 
 public class ProxySetTest {
 
@@ -50,4 +53,60 @@ public void removeIfPresent() {
       registry.stop();
     }
   }
+
+  @Test
+  public void findsProxiesByIdAndRemoteHost() throws Exception {
+    Registry registry = Registry.newInstance();
+    try {
+      ProxySet set = registry.getAllProxies();
+      RemoteProxy p1 =
+          RemoteProxyFactory.getNewBasicRemoteProxy("app1", "http://machine1:4444/", registry);
+      RemoteProxy p2 =
+          RemoteProxyFactory.getNewBasicRemoteProxy("app1", "http://machine2:4444/", registry);
+      set.add(p1);
+      set.add(p2);
+      set.add(RemoteProxyFactory.getNewBasicRemoteProxy("app1", "http://machine1:4444/", registry));
+
+      Assert.assertEquals(2, set.size());
+      Assert.assertSame(p1, set.getProxyById("http://machine1:4444/"));
+      Assert.assertSame(p2, set.getProxyByRemoteHost(new URL("http://machine2:4444/")));
+      Assert.assertNull(set.getProxyById("http://machine3:4444/"));
+
+      Assert.assertSame(p1, set.remove(
+          RemoteProxyFactory.getNewBasicRemoteProxy("app1", "http://machine1:4444/", registry)));
+
+      Assert.assertNull(set.getProxyById("http://machine1:4444/"));
+      Assert.assertNull(set.getProxyByRemoteHost(new URL("http://machine1:4444/")));
+      Assert.assertFalse(set.contains(p1));
+      Assert.assertTrue(set.contains(p2));
+    } finally {
+      registry.stop();
+    }
+  }
+
+  @Test
+  public void newSessionsGoToTheLeastBusyProxy() {
+    Registry registry = Registry.newInstance();
+    try {
+      ProxySet set = registry.getAllProxies();
+      RemoteProxy p1 =
+          RemoteProxyFactory.getNewBasicRemoteProxy("app1", "http://machine1:4444/", registry);
+      RemoteProxy p2 =
+          RemoteProxyFactory.getNewBasicRemoteProxy("app1", "http://machine2:4444/", registry);
+      set.add(p1);
+      set.add(p2);
+      Map<String, Object> app1 = new HashMap<String, Object>();
+      app1.put(CapabilityType.BROWSER_NAME, "app1");
+
+      TestSession first = set.getNewSession(app1);
+      Assert.assertSame(p1, first.getSlot().getProxy());
+      Assert.assertSame(p2, set.getNewSession(app1).getSlot().getProxy());
+
+      registry.forceRelease(first.getSlot(), SessionTerminationReason.TIMEOUT);
+
+      Assert.assertSame(p1, set.getNewSession(app1).getSlot().getProxy());
+    } finally {
+      registry.stop();
+    }
+  }
 }
@@ -0,0 +1,128 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+
+import org.junit.Test;
+import org.openqa.grid.web.servlet.handler.RequestType;
+import org.openqa.grid.web.servlet.handler.SeleniumBasedRequest;
+import org.openqa.grid.web.servlet.handler.WebDriverRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+public class SeleniumBasedRequestTest {
+
+  @Test
+  public void commandBodiesAreStreamedToTheNodeWithoutBeingRead() throws IOException {
+    CountingInputStream in = new CountingInputStream("{\"text\":\"cheese\"}");
+    HttpServletRequest raw = request("POST", "/session/1234/element/5/value", in);
+
+    SeleniumBasedRequest request = new WebDriverRequest(raw, null);
+
+    assertEquals(RequestType.REGULAR, request.getRequestType());
+    assertEquals(new ExternalSessionKey("1234"), request.extractSession());
+    assertEquals(0, in.read);
+    assertSame(in, request.getInputStream());
+    assertEquals(in.length, request.getContentLength());
+    assertNull(request.getBody());
+  }
+
+  @Test
+  public void newSessionBodiesAreReadOnTheHub() throws IOException {
+    String json = "{\"desiredCapabilities\":{\"browserName\":\"firefox\"}}";
+    CountingInputStream in = new CountingInputStream(json);
+    HttpServletRequest raw = request("POST", "/session", in);
+
+    SeleniumBasedRequest request = new WebDriverRequest(raw, null);
+
+    assertEquals(RequestType.START_SESSION, request.getRequestType());
+    assertEquals("firefox", request.getDesiredCapabilities().get("browserName"));
+    assertEquals(json, request.getBody());
+    assertEquals(json, new String(ByteStreams.toByteArray(request.getInputStream()),
+                                  Charsets.UTF_8));
+    assertEquals(json.length(), request.getContentLength());
+  }
+
+  @Test
+  public void bodiesAreReadWhenAskedForBeforeBeingStreamed() throws IOException {
+    CountingInputStream in = new CountingInputStream("{\"script\":\"return 1\"}");
+    HttpServletRequest raw = request("POST", "/session/1234/execute", in);
+
+    SeleniumBasedRequest request = new WebDriverRequest(raw, null);
+
+    assertEquals("{\"script\":\"return 1\"}", request.getBody());
+    assertEquals("{\"script\":\"return 1\"}",
+                 new String(ByteStreams.toByteArray(request.getInputStream()), Charsets.UTF_8));
+  }
+
+  @Test
+  public void printingARequestDoesNotReadItsBody() throws IOException {
+    CountingInputStream in = new CountingInputStream("{\"text\":\"cheese\"}");
+    HttpServletRequest raw = request("POST", "/session/1234/element/5/value", in);
+
+    SeleniumBasedRequest request = new WebDriverRequest(raw, null);
+    request.toString();
+
+    assertEquals(0, in.read);
+    assertSame(in, request.getInputStream());
+  }
+
+  private HttpServletRequest request(String method, String path, ServletInputStream in)
+      throws IOException {
+    HttpServletRequest raw = mock(HttpServletRequest.class);
+    when(raw.getMethod()).thenReturn(method);
+    when(raw.getPathInfo()).thenReturn(path);
+    when(raw.getServletPath()).thenReturn("/wd/hub");
+    when(raw.getInputStream()).thenReturn(in);
+    when(raw.getContentLength()).thenReturn(((CountingInputStream) in).length);
+    return raw;
+  }
+
+  private static class CountingInputStream extends ServletInputStream {
+    private final ByteArrayInputStream in;
+    private final int length;
+    private int read;
+
+    CountingInputStream(String content) {
+      byte[] bytes = content.getBytes(Charsets.UTF_8);
+      in = new ByteArrayInputStream(bytes);
+      length = bytes.length;
+    }
+
+    @Override
+    public int read() {
+      int b = in.read();
+      if (b >= 0) {
+        read++;
+      }
+      return b;
+    }
+  }
+}
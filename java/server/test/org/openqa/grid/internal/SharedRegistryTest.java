@@ -0,0 +1,314 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.openqa.grid.common.RegistrationRequest.APP;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.grid.common.RegistrationRequest;
+import org.openqa.grid.internal.mock.GridHelper;
+import org.openqa.grid.internal.utils.GridHubConfiguration;
+import org.openqa.grid.internal.utils.InMemoryRegistryStore;
+import org.openqa.grid.internal.utils.SessionRoute;
+import org.openqa.grid.web.servlet.handler.RequestHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class SharedRegistryTest {
+
+  private static final String NODE = "http://machine1:4444";
+  private static final String SLOT = NODE + "#" + DetachedRemoteProxy.class.getName() + "#0";
+
+  private Map<String, Object> ff = new HashMap<String, Object>();
+  private FlakyStore store = new FlakyStore();
+  private Registry hub1;
+  private Registry hub2;
+
+  @Before
+  public void setup() {
+    ff.put(APP, "FF");
+    hub1 = Registry.newInstance(null, config());
+    hub2 = Registry.newInstance(null, config());
+  }
+
+  @After
+  public void teardown() {
+    hub1.stop();
+    hub2.stop();
+  }
+
+  @Test
+  public void nodesRegisteredThroughOneHubAreKnownByTheOthers() {
+    hub1.add(BaseRemoteProxy.getNewInstance(request(), hub1));
+    assertNotNull(store.getRegistration(NODE));
+
+    hub2.syncWithStore();
+
+    RemoteProxy proxy = hub2.getProxyById(NODE);
+    assertNotNull(proxy);
+    assertSame(hub2, proxy.getRegistry());
+    assertEquals(1, proxy.getTestSlots().size());
+  }
+
+  @Test(timeout = 5000)
+  public void aSlotUsedThroughOneHubIsNotGivenByAnother() {
+    hub1.add(BaseRemoteProxy.getNewInstance(request(), hub1));
+    hub2.syncWithStore();
+
+    RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(hub1, ff);
+    newSessionRequest.process();
+    TestSession session = newSessionRequest.getSession();
+
+    hub2.setNewSessionWaitTimeout(200);
+    try {
+      GridHelper.createNewSessionHandler(hub2, ff).process();
+      fail("the only slot is used through hub1");
+    } catch (RuntimeException expected) {
+    }
+
+    hub1.terminateSynchronousFOR_TEST_ONLY(session);
+    hub1.applyStoreReleases();
+
+    RequestHandler newSessionRequest2 = GridHelper.createNewSessionHandler(hub2, ff);
+    newSessionRequest2.process();
+    assertNotNull(newSessionRequest2.getSession());
+  }
+
+  @Test
+  public void sessionsStartedThroughOneHubCanBeServedByAnother() {
+    hub1.add(BaseRemoteProxy.getNewInstance(request(), hub1));
+
+    RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(hub1, ff);
+    newSessionRequest.process();
+    TestSession session = newSessionRequest.getSession();
+    ExternalSessionKey key = new ExternalSessionKey("1234");
+    session.setExternalKey(key);
+    hub1.sessionStarted(session);
+
+    // hub2 hasn't picked the node up yet, the route is enough.
+    TestSession served = hub2.getExistingSession(key);
+
+    assertEquals(session.getInternalKey(), served.getInternalKey());
+    assertEquals(NODE, served.getSlot().getProxy().getId());
+    assertSame(served, hub2.getSession(key));
+    assertTrue(hub1.isServedByAnotherHub(session));
+    assertFalse(hub2.isServedByAnotherHub(served));
+
+    // back to hub1, once it checks again which hub serves the session.
+    assertSame(session, hub1.getSession(key));
+    session.setRouteCheckedAt(System.currentTimeMillis() - Registry.STORE_SYNC_CYCLE);
+    assertSame(session, hub1.getSession(key));
+    assertTrue(hub2.isServedByAnotherHub(served));
+  }
+
+  @Test
+  public void theHubServingASessionReleasesIt() {
+    hub1.add(BaseRemoteProxy.getNewInstance(request(), hub1));
+    RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(hub1, ff);
+    newSessionRequest.process();
+    TestSession session = newSessionRequest.getSession();
+    ExternalSessionKey key = new ExternalSessionKey("1234");
+    session.setExternalKey(key);
+    hub1.sessionStarted(session);
+    TestSession served = hub2.getExistingSession(key);
+
+    // hub1 forgets about it, without freeing the slot hub2 now serves.
+    hub1.forceRelease(session.getSlot(), SessionTerminationReason.SERVED_BY_ANOTHER_HUB);
+    assertEquals(session.getInternalKey(), store.getSlotOwner(SLOT));
+
+    hub1.applyStoreReleases();
+    assertEquals(session.getInternalKey(), store.getSlotOwner(SLOT));
+
+    hub2.terminateSynchronousFOR_TEST_ONLY(served);
+    hub2.applyStoreReleases();
+    assertNull(store.getSlotOwner(SLOT));
+    assertNull(store.getRoute("1234"));
+  }
+
+  @Test
+  public void aNodeRegisteringAgainKeepsTheSlotsUsedThroughOtherHubs() {
+    store.claimSlot(SLOT, "session of hub2", "hub2");
+
+    hub1.add(BaseRemoteProxy.getNewInstance(request(), hub1));
+
+    assertEquals("session of hub2", store.getSlotOwner(SLOT));
+  }
+
+  @Test
+  public void theSlotsOfAHubThatStoppedRenewingItsLeaseAreFreed() {
+    hub1.add(BaseRemoteProxy.getNewInstance(request(), hub1));
+    RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(hub1, ff);
+    newSessionRequest.process();
+    TestSession session = newSessionRequest.getSession();
+    session.setExternalKey(new ExternalSessionKey("1234"));
+    hub1.sessionStarted(session);
+    store.claimSlot("http://machine2:4444#0", "a session being started", "a hub that died");
+
+    long now = System.currentTimeMillis();
+    hub2.renewLease(now);
+    assertEquals(session.getInternalKey(), store.getSlotOwner(SLOT));
+    assertNotNull(store.getRoute("1234"));
+    assertNull(store.getSlotOwner("http://machine2:4444#0"));
+
+    hub2.renewLease(now + Registry.STORE_LEASE + 1);
+    assertNull(store.getSlotOwner(SLOT));
+    assertNull(store.getRoute("1234"));
+  }
+
+  @Test(timeout = 5000)
+  public void aRequestForASlotUsedThroughAnotherHubGoesBackToTheQueue() throws Exception {
+    hub1.add(BaseRemoteProxy.getNewInstance(request(), hub1));
+    store.claimSlot(SLOT, "session of hub2", "hub2");
+    TestSlot slot = hub1.getProxyById(NODE).getTestSlots().get(0);
+
+    RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(hub1, ff);
+    Thread client = process(newSessionRequest);
+    while (!slot.isUsedThroughAnotherHub()) {
+      Thread.sleep(10);
+    }
+    assertNull(slot.getSession());
+    assertTrue(client.isAlive());
+
+    store.releaseSlot(SLOT, "session of hub2");
+    hub1.syncWithStore();
+    client.join();
+
+    assertNotNull(newSessionRequest.getSession());
+    assertEquals(newSessionRequest.getSession().getInternalKey(), store.getSlotOwner(SLOT));
+    assertFalse(slot.isUsedThroughAnotherHub());
+  }
+
+  @Test(timeout = 5000)
+  public void aRequestGetsTheSlotOfAHubWhoseLeaseExpired() throws Exception {
+    hub1.add(BaseRemoteProxy.getNewInstance(request(), hub1));
+    long now = System.currentTimeMillis();
+    store.renewLease("hub2", now + Registry.STORE_LEASE);
+    store.claimSlot(SLOT, "session of hub2", "hub2");
+    TestSlot slot = hub1.getProxyById(NODE).getTestSlots().get(0);
+
+    RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(hub1, ff);
+    Thread client = process(newSessionRequest);
+    while (!slot.isUsedThroughAnotherHub()) {
+      Thread.sleep(10);
+    }
+
+    hub1.renewLease(now + Registry.STORE_LEASE + 1);
+    hub1.syncWithStore();
+    client.join();
+
+    assertNotNull(newSessionRequest.getSession());
+    assertEquals(newSessionRequest.getSession().getInternalKey(), store.getSlotOwner(SLOT));
+  }
+
+  @Test(timeout = 5000)
+  public void theSlotOfANodeRegisteringAgainIsFreedInTheStoreBeforeItIsTakenAgain()
+      throws Exception {
+    hub1.add(BaseRemoteProxy.getNewInstance(request(), hub1));
+    RequestHandler first = GridHelper.createNewSessionHandler(hub1, ff);
+    first.process();
+    String firstKey = first.getSession().getInternalKey();
+
+    store.failReleases = true;
+    hub1.add(BaseRemoteProxy.getNewInstance(request(), hub1));
+    TestSlot slot = hub1.getProxyById(NODE).getTestSlots().get(0);
+    RequestHandler second = GridHelper.createNewSessionHandler(hub1, ff);
+    Thread client = process(second);
+    while (hub1.getNewSessionRequestCount() == 0) {
+      Thread.sleep(10);
+    }
+    // the last of these passes over the queue started once the request was in it, and is done.
+    int failed = store.releasesFailed;
+    while (store.releasesFailed < failed + 3) {
+      hub1.syncWithStore();
+      Thread.sleep(10);
+    }
+    assertEquals(firstKey, store.getSlotOwner(SLOT));
+    assertTrue(client.isAlive());
+    assertFalse(slot.isUsedThroughAnotherHub());
+
+    store.failReleases = false;
+    hub1.syncWithStore();
+    client.join();
+
+    assertNotNull(second.getSession());
+    assertEquals(second.getSession().getInternalKey(), store.getSlotOwner(SLOT));
+  }
+
+  @Test
+  public void routesAreKeptAsJson() {
+    SessionRoute route = new SessionRoute("internal", NODE, 2, "hub");
+
+    assertEquals(route, SessionRoute.fromJSON(route.toJSON().toString()));
+  }
+
+  private static Thread process(final RequestHandler request) {
+    Thread thread = new Thread(new Runnable() { // Thread safety reviewed
+      public void run() {
+        request.process();
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  private GridHubConfiguration config() {
+    GridHubConfiguration config = new GridHubConfiguration();
+    config.setRegistryStore(store);
+    return config;
+  }
+
+  private RegistrationRequest request() {
+    RegistrationRequest req = RegistrationRequest.build("-role", "webdriver", "-host", "localhost",
+                                                        "-" + RegistrationRequest.HUB_HOST,
+                                                        "localhost");
+    req.getCapabilities().clear();
+    req.addDesiredCapability(ff);
+    req.getConfiguration().put(RegistrationRequest.REMOTE_HOST, NODE);
+    req.getConfiguration().put(RegistrationRequest.MAX_SESSION, 1);
+    req.getConfiguration().put(RegistrationRequest.PROXY_CLASS,
+                               DetachedRemoteProxy.class.getName());
+    return req;
+  }
+
+  /**
+   * Fails to free slots while told to, as a store that can't be reached would.
+   */
+  private static class FlakyStore extends InMemoryRegistryStore {
+    volatile boolean failReleases;
+    volatile int releasesFailed;
+
+    @Override
+    public void releaseSlot(String slotKey, String internalKey) {
+      if (failReleases) {
+        releasesFailed++;
+        throw new IllegalStateException("cannot reach the store");
+      }
+      super.releaseSlot(slotKey, internalKey);
+    }
+  }
+}
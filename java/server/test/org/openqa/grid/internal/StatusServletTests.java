@@ -26,6 +26,7 @@
 import org.apache.http.entity.StringEntity;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
 import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.util.EntityUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -367,6 +368,23 @@ public void testHubGetSlotCounts() throws JSONException, IOException {
     assertEquals(5, slotCounts.getInt("total"));
   }
 
+  @Test
+  public void testHubStatusConditionalGet() throws IOException {
+    HttpClient client = httpClientFactory.getHttpClient();
+
+    HttpResponse response =
+        client.execute(host, new BasicHttpRequest("GET", hubApi.toExternalForm()));
+    assertEquals(200, response.getStatusLine().getStatusCode());
+    EntityUtils.consume(response.getEntity());
+    String etag = response.getFirstHeader("ETag").getValue();
+
+    BasicHttpRequest r = new BasicHttpRequest("GET", hubApi.toExternalForm());
+    r.addHeader("If-None-Match", etag);
+    response = client.execute(host, r);
+    assertEquals(304, response.getStatusLine().getStatusCode());
+    EntityUtils.consume(response.getEntity());
+  }
+
   @Test
   public void testSessionApiNeg() throws IOException, JSONException {
     String s = "non-existing session";
@@ -0,0 +1,122 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.io.FileHandler;
+
+import java.io.File;
+import java.util.Collections;
+
+public class FileRegistryStoreTest {
+
+  private File directory;
+  private RegistryStore hub1;
+  private RegistryStore hub2;
+
+  @Before
+  public void setup() {
+    directory = Files.createTempDir();
+    hub1 = new FileRegistryStore(directory);
+    hub2 = new FileRegistryStore(directory);
+  }
+
+  @After
+  public void teardown() {
+    FileHandler.delete(directory);
+  }
+
+  @Test
+  public void onlyOneSessionHoldsASlot() {
+    assertTrue(hub1.claimSlot("http://node1:5555#0", "a", "hub1"));
+    assertFalse(hub2.claimSlot("http://node1:5555#0", "b", "hub2"));
+    assertTrue(hub2.claimSlot("http://node1:5555#0", "a", "hub2"));
+    assertEquals("a", hub2.getSlotOwner("http://node1:5555#0"));
+
+    hub2.releaseSlot("http://node1:5555#0", "b");
+    assertEquals("a", hub1.getSlotOwner("http://node1:5555#0"));
+
+    hub2.releaseSlot("http://node1:5555#0", "a");
+    assertNull(hub1.getSlotOwner("http://node1:5555#0"));
+    assertTrue(hub1.claimSlot("http://node1:5555#0", "b", "hub1"));
+  }
+
+  @Test
+  public void theSlotsAndRoutesOfAnExpiredHubAreFreed() {
+    hub1.renewLease("hub1", 1000);
+    hub2.renewLease("hub2", 2000);
+    hub1.claimSlot("http://node1:5555#0", "a", "hub1");
+    hub2.claimSlot("http://node1:5555#1", "b", "hub2");
+    hub1.putRoute("a", new SessionRoute("a", "http://node1:5555", 0, "hub1"));
+
+    assertTrue(hub2.expireLeases(1000).isEmpty());
+    assertEquals("a", hub2.getSlotOwner("http://node1:5555#0"));
+
+    assertEquals(Collections.singleton("hub1"), hub2.expireLeases(1500));
+    assertNull(hub2.getSlotOwner("http://node1:5555#0"));
+    assertNull(hub2.getRoute("a"));
+    assertEquals("b", hub1.getSlotOwner("http://node1:5555#1"));
+  }
+
+  @Test
+  public void aSlotLeftWithoutOwnerIsFreedOnceTheOwnerCannotBeWrittenAnyMore() throws Exception {
+    hub1.renewLease("hub1", Long.MAX_VALUE);
+    File slot = new File(new File(directory, "slots"), "http%3A%2F%2Fnode1%3A5555%230");
+    assertTrue(slot.createNewFile());
+    assertFalse(hub1.claimSlot("http://node1:5555#0", "a", "hub1"));
+
+    hub2.expireLeases(slot.lastModified() + FileRegistryStore.EMPTY_CLAIM_MILLIS);
+    assertTrue(slot.exists());
+
+    hub2.expireLeases(slot.lastModified() + FileRegistryStore.EMPTY_CLAIM_MILLIS + 1);
+    assertTrue(hub1.claimSlot("http://node1:5555#0", "a", "hub1"));
+  }
+
+  @Test
+  public void registrationsAreSharedByProxyId() {
+    hub1.putRegistration("http://node1:5555", "{\"id\":1}");
+    hub1.putRegistration("http://node1:5555", "{\"id\":2}");
+
+    assertEquals(Collections.singletonMap("http://node1:5555", "{\"id\":2}"),
+                 hub2.getRegistrations());
+    assertEquals("{\"id\":2}", hub2.getRegistration("http://node1:5555"));
+
+    hub2.removeRegistration("http://node1:5555");
+    assertTrue(hub1.getRegistrations().isEmpty());
+  }
+
+  @Test
+  public void routesAreSharedByExternalKey() {
+    SessionRoute route = new SessionRoute("internal", "http://node1:5555", 1, "hub1");
+    hub1.putRoute("a/b c", route);
+
+    assertEquals(route, hub2.getRoute("a/b c"));
+
+    hub2.removeRoute("a/b c");
+    assertNull(hub1.getRoute("a/b c"));
+  }
+}
@@ -0,0 +1,81 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+  @Test
+  public void valuesFallInTheBucketTheyBelongTo() {
+    for (long value = 0; value < 100000; value++) {
+      int index = Histogram.index(value);
+      assertTrue(value <= Histogram.upperBound(index));
+      assertTrue(index == 0 || value > Histogram.upperBound(index - 1));
+    }
+    assertEquals(Histogram.MAX_VALUE, Histogram.upperBound(Histogram.index(Histogram.MAX_VALUE)));
+  }
+
+  @Test
+  public void percentilesAreWithinAnEighth() {
+    Histogram histogram = new Histogram();
+    for (long value = 1; value <= 100000; value++) {
+      histogram.record(value);
+    }
+
+    assertEquals(100000, histogram.getCount());
+    assertEquals(50000, histogram.getValueAtPercentile(50), 50000 / 8);
+    assertEquals(99000, histogram.getValueAtPercentile(99), 99000 / 8);
+    assertEquals(100000, histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void snapshotIsInMilliseconds() {
+    Histogram histogram = new Histogram();
+    histogram.record(2000);
+    histogram.record(4000);
+
+    Histogram.Snapshot snapshot = histogram.getSnapshot();
+
+    assertEquals(2, snapshot.getCount());
+    assertEquals(3.0, snapshot.getMean(), 0.001);
+    assertEquals(4.0, snapshot.getMax(), 0.001);
+    assertEquals(2.0, snapshot.getP50(), 0.25);
+  }
+
+  @Test
+  public void emptyHistogram() {
+    Histogram histogram = new Histogram();
+
+    assertEquals(0, histogram.getValueAtPercentile(99));
+    assertEquals(0, histogram.getSnapshot().getMean(), 0);
+  }
+
+  @Test
+  public void outOfRangeValuesAreClamped() {
+    Histogram histogram = new Histogram();
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+
+    assertEquals(0, histogram.getValueAtPercentile(50));
+    assertEquals(Histogram.MAX_VALUE, histogram.getValueAtPercentile(100));
+  }
+}
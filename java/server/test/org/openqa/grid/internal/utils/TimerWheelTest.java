@@ -0,0 +1,134 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TimerWheelTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final TimerWheel timer = new TimerWheel("test timer", 10, 8, executor);
+
+  @After
+  public void teardown() {
+    timer.stop();
+    executor.shutdownNow();
+  }
+
+  @Test(timeout = 5000)
+  public void tasksRunOnceTheirDelayIsOver() throws InterruptedException {
+    CountDownLatch ran = new CountDownLatch(1);
+    long start = System.nanoTime();
+
+    TimerWheel.Timeout timeout = timer.schedule(countDown(ran), 100, TimeUnit.MILLISECONDS);
+    ran.await();
+
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    assertTrue(timeout.isExpired());
+    assertFalse(timeout.cancel());
+  }
+
+  @Test(timeout = 5000)
+  public void delaysLongerThanTheWheelTakeSeveralRounds() throws InterruptedException {
+    // 8 buckets of 10ms : a 250ms delay is 3 rounds and a bit.
+    CountDownLatch ran = new CountDownLatch(1);
+    long start = System.nanoTime();
+
+    timer.schedule(countDown(ran), 250, TimeUnit.MILLISECONDS);
+    ran.await();
+
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+  }
+
+  @Test(timeout = 5000)
+  public void cancelledTasksDontRun() throws InterruptedException {
+    AtomicInteger runs = new AtomicInteger();
+    CountDownLatch ran = new CountDownLatch(1);
+
+    TimerWheel.Timeout timeout = timer.schedule(increment(runs), 50, TimeUnit.MILLISECONDS);
+    assertTrue(timeout.cancel());
+    timer.schedule(countDown(ran), 100, TimeUnit.MILLISECONDS);
+    ran.await();
+
+    assertEquals(0, runs.get());
+    assertTrue(timeout.isCancelled());
+    assertFalse(timeout.isExpired());
+  }
+
+  @Test(timeout = 5000)
+  public void tasksRunInTheOrderOfTheirDelay() throws InterruptedException {
+    final StringBuffer order = new StringBuffer();
+    CountDownLatch ran = new CountDownLatch(1);
+
+    timer.schedule(append(order, "c"), 120, TimeUnit.MILLISECONDS);
+    timer.schedule(append(order, "a"), 20, TimeUnit.MILLISECONDS);
+    timer.schedule(append(order, "b"), 70, TimeUnit.MILLISECONDS);
+    timer.schedule(countDown(ran), 200, TimeUnit.MILLISECONDS);
+    ran.await();
+
+    assertEquals("abc", order.toString());
+  }
+
+  @Test
+  public void nothingRunsOnceStopped() throws InterruptedException {
+    AtomicInteger runs = new AtomicInteger();
+    timer.schedule(increment(runs), 20, TimeUnit.MILLISECONDS);
+    timer.stop();
+    TimerWheel.Timeout late = timer.schedule(increment(runs), 0, TimeUnit.MILLISECONDS);
+
+    Thread.sleep(100);
+
+    assertEquals(0, runs.get());
+    assertTrue(late.isCancelled());
+  }
+
+  private static Runnable countDown(final CountDownLatch latch) {
+    return new Runnable() {
+      public void run() {
+        latch.countDown();
+      }
+    };
+  }
+
+  private static Runnable increment(final AtomicInteger counter) {
+    return new Runnable() {
+      public void run() {
+        counter.incrementAndGet();
+      }
+    };
+  }
+
+  private static Runnable append(final StringBuffer buffer, final String value) {
+    return new Runnable() {
+      public void run() {
+        buffer.append(value);
+      }
+    };
+  }
+}
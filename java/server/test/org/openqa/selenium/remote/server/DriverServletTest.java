@@ -172,6 +172,23 @@ public void doesNotRedirectForNewSessionsRequestedViaCrossDomainRpc()
     assertTrue(value.getBoolean(CapabilityType.VERSION));
   }
 
+  @Test
+  public void tellsClientsWhetherAnUploadIsAlreadyHere() throws IOException, ServletException,
+      JSONException {
+    FakeHttpServletResponse response = sendCommand("GET",
+        "/upload/da39a3ee5e6b4b0d3255bfef95601890afd80709", null);
+
+    assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    assertFalse(new JSONObject(response.getBody()).getBoolean("value"));
+  }
+
+  @Test
+  public void rejectsUploadsThatAreNotNamedByTheirHash() throws IOException, ServletException {
+    FakeHttpServletResponse response = sendCommand("GET", "/upload/cheese", null);
+
+    assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+  }
+
   private SessionId createSession() throws IOException, ServletException {
     FakeHttpServletResponse response = sendCommand("POST", "/session", null);
 
@@ -42,6 +42,8 @@
     ResultConfigTest.class,
     SessionCleanerTest.class,
     SessionLogsTest.class,
+    UploadedDirectoriesTest.class,
+    UploadedFilesTest.class,
     UploadFileTest.class,
     UrlMapperTest.class,
     UtilsTest.class
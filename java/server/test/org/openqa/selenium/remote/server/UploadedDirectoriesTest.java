@@ -0,0 +1,157 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.io.TemporaryFilesystem;
+import org.openqa.selenium.io.Zip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+public class UploadedDirectoriesTest {
+
+  private TemporaryFilesystem tempFs;
+  private UploadedDirectories uploads;
+  private byte[] zip;
+  private String hash;
+
+  @Before
+  public void setUp() throws IOException {
+    tempFs = TemporaryFilesystem.getTmpFsBasedOn(
+        TemporaryFilesystem.getDefaultTmpFS().createTempDir("uploaded", "directories"));
+    uploads = new UploadedDirectories(tempFs);
+
+    File profile = tempFs.createTempDir("profile", "upload");
+    Files.write("user_pref(\"cheese\", \"brie\");", new File(profile, "prefs.js"), Charsets.UTF_8);
+    new File(profile, "extensions").mkdir();
+    Files.write("gouda", new File(profile, "extensions/cheese.txt"), Charsets.UTF_8);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new Zip().zip(profile, bytes);
+    zip = bytes.toByteArray();
+    hash = Hashing.sha1().hashBytes(zip).toString();
+  }
+
+  @After
+  public void tearDown() {
+    uploads.clear();
+    tempFs.deleteTemporaryFiles();
+  }
+
+  @Test
+  public void unzipsAnUploadAsItIsRead() throws IOException {
+    assertFalse(uploads.contains(hash));
+
+    uploads.store(hash, new ByteArrayInputStream(zip));
+
+    assertTrue(uploads.contains(hash));
+    File dir = uploads.acquire(hash);
+    assertEquals("gouda", Files.toString(new File(dir, "extensions/cheese.txt"), Charsets.UTF_8));
+  }
+
+  @Test
+  public void rejectsAnUploadWhoseContentsDoNotMatchItsHash() {
+    String otherHash = Hashing.sha1().hashBytes(new byte[] {1}).toString();
+    try {
+      uploads.store(otherHash, new ByteArrayInputStream(zip));
+      fail("Should have rejected the upload");
+    } catch (IOException expected) {
+      assertFalse(uploads.contains(otherHash));
+    }
+  }
+
+  @Test
+  public void anUploadInUseIsOnlyEvictedOnceReleased() throws IOException {
+    UploadedDirectories unpinned = new UploadedDirectories(tempFs, 0);
+    unpinned.store(hash, new ByteArrayInputStream(zip));
+    File dir = unpinned.acquire(hash);
+
+    for (int i = 0; i < 20; i++) {
+      storeAnother(unpinned, i);
+    }
+    assertTrue(new File(dir, "prefs.js").exists());
+
+    unpinned.release(hash);
+    for (int i = 20; i < 40; i++) {
+      storeAnother(unpinned, i);
+    }
+    assertFalse(dir.exists());
+    assertFalse(unpinned.contains(hash));
+    unpinned.clear();
+  }
+
+  @Test
+  public void thereIsNoDirectoryForAnUnknownUpload() {
+    assertNull(uploads.acquire(hash));
+  }
+
+  @Test
+  public void anUploadAClientWasToldAboutIsNotEvictedBeforeItsSessionStarts() throws IOException {
+    uploads.store(hash, new ByteArrayInputStream(zip));
+    assertTrue(uploads.contains(hash));
+
+    for (int i = 0; i < 20; i++) {
+      storeAnother(uploads, i);
+    }
+
+    assertTrue(new File(uploads.acquire(hash), "prefs.js").exists());
+  }
+
+  @Test
+  public void theLeastRecentlyUsedUploadsAreEvictedOnceNoLongerPinned() throws IOException {
+    UploadedDirectories unpinned = new UploadedDirectories(tempFs, 0);
+    unpinned.store(hash, new ByteArrayInputStream(zip));
+
+    for (int i = 0; i < 20; i++) {
+      storeAnother(unpinned, i);
+    }
+
+    assertFalse(unpinned.contains(hash));
+    unpinned.clear();
+  }
+
+  @Test
+  public void onlyAcceptsSha1Hashes() {
+    assertTrue(UploadedDirectories.isValidHash(hash));
+    assertFalse(UploadedDirectories.isValidHash("../../etc/passwd"));
+    assertFalse(UploadedDirectories.isValidHash(null));
+  }
+
+  private void storeAnother(UploadedDirectories to, int i) throws IOException {
+    File dir = tempFs.createTempDir("another", "upload");
+    Files.write("upload " + i, new File(dir, "prefs.js"), Charsets.UTF_8);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new Zip().zip(dir, bytes);
+    to.store(Hashing.sha1().hashBytes(bytes.toByteArray()).toString(),
+             new ByteArrayInputStream(bytes.toByteArray()));
+  }
+}
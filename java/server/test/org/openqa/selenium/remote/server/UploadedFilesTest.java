@@ -0,0 +1,100 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.io.TemporaryFilesystem;
+
+import java.io.File;
+import java.io.IOException;
+
+public class UploadedFilesTest {
+
+  private TemporaryFilesystem tempFs;
+  private UploadedFiles uploads;
+  private File sessionDir;
+
+  @Before
+  public void setUp() {
+    tempFs = TemporaryFilesystem.getTmpFsBasedOn(
+        TemporaryFilesystem.getDefaultTmpFS().createTempDir("uploaded", "files"));
+    uploads = new UploadedFiles(tempFs, 10);
+    sessionDir = tempFs.createTempDir("session", "files");
+  }
+
+  @After
+  public void tearDown() {
+    uploads.clear();
+    tempFs.deleteTemporaryFiles();
+  }
+
+  @Test
+  public void copiesAKeptFileByItsHashAndName() throws IOException {
+    String hash = uploads.add(file("cheese.txt", "brie"));
+
+    File copy = uploads.copyTo(hash, "cheese.txt", sessionDir);
+
+    assertEquals(new File(sessionDir, "cheese.txt"), copy);
+    assertEquals("brie", Files.toString(copy, Charsets.UTF_8));
+    assertNull(uploads.copyTo(hash, "other.txt", sessionDir));
+  }
+
+  @Test
+  public void evictsTheLeastRecentlyUsedFilesOnceOverSize() throws IOException {
+    String brie = uploads.add(file("brie.txt", "brie"));
+    String feta = uploads.add(file("feta.txt", "feta"));
+    uploads.copyTo(brie, "brie.txt", sessionDir);
+
+    String edam = uploads.add(file("edam.txt", "edam"));
+
+    assertEquals(8, uploads.size());
+    assertNotNull(uploads.copyTo(brie, "brie.txt", sessionDir));
+    assertNull(uploads.copyTo(feta, "feta.txt", sessionDir));
+    assertNotNull(uploads.copyTo(edam, "edam.txt", sessionDir));
+  }
+
+  @Test
+  public void doesNotKeepFilesLargerThanTheLimit() throws IOException {
+    String hash = uploads.add(file("cheese.txt", "a very large cheese"));
+
+    assertEquals(0, uploads.size());
+    assertNull(uploads.copyTo(hash, "cheese.txt", sessionDir));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void refusesAHashThatIsNotSha1() throws IOException {
+    uploads.add(file("cheese.txt", "brie"));
+
+    uploads.copyTo("../../cheese", "cheese.txt", sessionDir);
+  }
+
+  private File file(String name, String contents) throws IOException {
+    File file = new File(tempFs.createTempDir("upload", "source"), name);
+    Files.write(contents, file, Charsets.UTF_8);
+    return file;
+  }
+}
@@ -17,11 +17,15 @@
 
 package org.openqa.selenium.remote.server.handler;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 
 import org.junit.After;
@@ -35,6 +39,7 @@
 import org.openqa.selenium.remote.server.DefaultSession;
 import org.openqa.selenium.remote.server.Session;
 import org.openqa.selenium.remote.server.StubDriverFactory;
+import org.openqa.selenium.remote.server.UploadedFiles;
 
 import java.io.File;
 import java.io.IOException;
@@ -57,6 +62,7 @@ public void setUp() {
 
   @After
   public void cleanUp() {
+    UploadedFiles.getDefault().clear();
     tempFs.deleteTemporaryFiles();
     tempDir.delete();
   }
@@ -98,6 +104,40 @@ public void shouldThrowAnExceptionIfMoreThanOneFileIsSent() throws Exception {
     }
   }
 
+  @Test
+  public void shouldCopyAFileItHasBeenSentBeforeWhenGivenItsHash() throws Exception {
+    Session session = DefaultSession.createSession(driverFactory, tempFs, sessionId, DesiredCapabilities.firefox());
+    File tempFile = touch(null, "foo");
+    String encoded = new Zip().zipFile(tempFile.getParentFile(), tempFile);
+    UploadFile uploadFile = new UploadFile(session);
+    uploadFile.setJsonParameters(ImmutableMap.of("file", (Object) encoded));
+    uploadFile.call();
+    String firstPath = (String) uploadFile.getResponse().getValue();
+
+    UploadFile byHash = new UploadFile(session);
+    byHash.setJsonParameters(ImmutableMap.<String, Object>of(
+        "hash", Files.hash(tempFile, Hashing.sha1()).toString(), "name", tempFile.getName()));
+    byHash.call();
+    String path = (String) byHash.getResponse().getValue();
+
+    assertFalse(firstPath.equals(path));
+    assertTrue(path.endsWith(tempFile.getName()));
+    assertEquals("I like cheese", Files.toString(new File(path), Charsets.UTF_8));
+  }
+
+  @Test
+  public void shouldAskForTheFileWhenItHasNotBeenSentBefore() throws Exception {
+    Session session = DefaultSession.createSession(driverFactory, tempFs, sessionId, DesiredCapabilities.firefox());
+    File tempFile = touch(null, "foo");
+
+    UploadFile byHash = new UploadFile(session);
+    byHash.setJsonParameters(ImmutableMap.<String, Object>of(
+        "hash", Files.hash(tempFile, Hashing.sha1()).toString(), "name", tempFile.getName()));
+    byHash.call();
+
+    assertNull(byHash.getResponse().getValue());
+  }
+
   private File touch(File baseDir, String stem) throws IOException {
     File tempFile = File.createTempFile(stem, ".txt", baseDir);
     tempFile.deleteOnExit();
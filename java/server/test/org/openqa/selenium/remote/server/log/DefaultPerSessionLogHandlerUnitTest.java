@@ -23,11 +23,14 @@
 import org.junit.Test;
 
 import org.openqa.selenium.logging.LogEntries;
+import org.openqa.selenium.logging.LogEntry;
 import org.openqa.selenium.logging.LogType;
 import org.openqa.selenium.logging.SessionLogs;
 import org.openqa.selenium.remote.SessionId;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -168,6 +171,88 @@ public void testShouldNotCopyThreadTempLogsToSessionLogsIfNoLogRecordForThreadPr
     assertNoMessageLoggedForSessionId(handler, sessionId);
   }
 
+  @Test
+  public void testRecordsWrittenToFileInSeveralBatchesAreAllReturnedInOrder()
+      throws IOException {
+    PerSessionLogHandler handler = createPerSessionLogHandler();
+    SessionId sessionId = new SessionId("session");
+
+    handler.attachToCurrentThread(sessionId);
+    for (int i = 1; i <= 5; i++) {
+      handler.publish(new LogRecord(Level.INFO, "Record " + i));
+    }
+
+    assertMessagesLoggedForSessionId(handler, sessionId,
+                                     "Record 1", "Record 2", "Record 3", "Record 4", "Record 5");
+  }
+
+  @Test
+  public void testSessionsLoggingFromSeveralThreadsKeepTheirOwnRecords() throws Exception {
+    final PerSessionLogHandler handler = createPerSessionLogHandler();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final SessionId sessionId = new SessionId("session-" + t);
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          handler.attachToCurrentThread(sessionId);
+          for (int i = 0; i < 100; i++) {
+            handler.publish(new LogRecord(Level.INFO, sessionId + " " + i));
+          }
+          handler.detachFromCurrentThread();
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    for (int t = 0; t < threads.length; t++) {
+      String[] expected = new String[100];
+      for (int i = 0; i < 100; i++) {
+        expected[i] = "session-" + t + " " + i;
+      }
+      assertMessagesLoggedForSessionId(handler, new SessionId("session-" + t), expected);
+    }
+  }
+
+  @Test
+  public void testReadingTheLogWhileItIsWrittenLosesNoRecordAndKeepsTheirOrder() throws Exception {
+    final PerSessionLogHandler handler = createPerSessionLogHandler();
+    final SessionId sessionId = new SessionId("session");
+    final int count = 2000;
+    Thread publisher = new Thread() {
+      @Override
+      public void run() {
+        handler.attachToCurrentThread(sessionId);
+        for (int i = 0; i < count; i++) {
+          handler.publish(new LogRecord(Level.INFO, String.valueOf(i)));
+        }
+        handler.detachFromCurrentThread();
+      }
+    };
+    publisher.start();
+
+    List<String> read = new ArrayList<String>();
+    while (publisher.isAlive()) {
+      addMessages(read, handler.getSessionLog(sessionId));
+    }
+    publisher.join();
+    addMessages(read, handler.getSessionLog(sessionId));
+
+    assertEquals(count, read.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(String.valueOf(i), read.get(i));
+    }
+  }
+
+  private void addMessages(List<String> messages, LogEntries entries) {
+    for (LogEntry entry : entries) {
+      messages.add(entry.getMessage());
+    }
+  }
+
   private void assertMessagesLoggedForSessionId(PerSessionLogHandler handler,
                                                 SessionId sessionId, String... expectedMessages)
       throws IOException {
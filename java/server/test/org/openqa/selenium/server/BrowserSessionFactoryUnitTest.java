@@ -259,6 +259,140 @@ public void removeIdleAvailableSessionsViaCleanup() {
     assertFalse(factory.hasAvailableSession(SESSION_ID_1));
   }
 
+  @Test
+  public void testWarmPoolHandsOutPreLaunchedSessionsWithoutSessionReuse() throws Exception {
+    RemoteControlConfiguration configuration = new RemoteControlConfiguration();
+    configuration.setTimeoutInSeconds(1);
+    BrowserSessionFactory factory = getWarmPoolSessionFactory();
+
+    factory.startWarmPool(new WarmBrowserPool(BROWSER_1, BASEURL1, 1), configuration);
+    waitForAvailableSessions(factory, 1);
+    String warmSessionId = ((BrowserSessionInfo) factory.availableSessions.toArray()[0]).sessionId;
+
+    BrowserSessionInfo info = factory.getNewBrowserSession(BROWSER_1, BASEURL1, "",
+        BrowserOptions.newBrowserOptions(), false, false, configuration);
+
+    assertEquals(warmSessionId, info.sessionId);
+    assertTrue(factory.activeSessions.contains(info));
+    assertEquals(1, factory.getSessionStartTimes().get(BROWSER_1).getFromPool());
+
+    // and the pool is refilled in the background.
+    waitForAvailableSessions(factory, 1);
+    factory.endAllBrowserSessions(configuration);
+  }
+
+  @Test
+  public void testWarmPoolIsNotUsedForSessionsWithBrowserOptions() throws Exception {
+    RemoteControlConfiguration configuration = new RemoteControlConfiguration();
+    configuration.setTimeoutInSeconds(1);
+    BrowserSessionFactory factory = getWarmPoolSessionFactory();
+
+    factory.startWarmPool(new WarmBrowserPool(BROWSER_1, BASEURL1, 1), configuration);
+    waitForAvailableSessions(factory, 1);
+
+    Capabilities options = BrowserOptions.newBrowserOptions();
+    options = BrowserOptions.setSingleWindow(options, true);
+    factory.getNewBrowserSession(BROWSER_1, BASEURL1, "", options, false, false, configuration);
+
+    assertEquals(1, factory.availableSessions.size());
+    assertEquals(1, factory.getSessionStartTimes().get(BROWSER_1).getLaunched());
+    factory.endAllBrowserSessions(configuration);
+  }
+
+  @Test
+  public void testBrowsersStillLaunchingWhenThePoolsStopAreClosed() throws Exception {
+    RemoteControlConfiguration configuration = new RemoteControlConfiguration();
+    configuration.setTimeoutInSeconds(1);
+    DummyLauncher launcher = mock(DummyLauncher.class);
+    BrowserSessionFactory factory = getWarmPoolSessionFactory(launcher);
+
+    factory.startWarmPool(new WarmBrowserPool(BROWSER_1, BASEURL1, 0), configuration);
+    factory.stopWarmPools();
+    factory.launchWarmSession(new WarmBrowserPool(BROWSER_1, BASEURL1, 1));
+
+    assertTrue(factory.availableSessions.isEmpty());
+    assertTrue(factory.activeSessions.isEmpty());
+    verify(launcher).close();
+  }
+
+  @Test
+  public void testTimeToFirstCommandIsRecordedOncePerSession() throws Exception {
+    RemoteControlConfiguration configuration = new RemoteControlConfiguration();
+    configuration.setTimeoutInSeconds(1);
+    BrowserSessionFactory factory = getWarmPoolSessionFactory();
+
+    BrowserSessionInfo info = factory.getNewBrowserSession(BROWSER_1, BASEURL1, "",
+        BrowserOptions.newBrowserOptions(), false, false, configuration);
+    factory.commandReceived(info.sessionId);
+    factory.commandReceived(info.sessionId);
+
+    assertEquals(1, factory.getSessionStartTimes().get(BROWSER_1).getFirstCommands());
+    factory.endAllBrowserSessions(configuration);
+  }
+
+  @Test
+  public void testASessionEndedBeforeItsFirstCommandIsForgotten() throws Exception {
+    RemoteControlConfiguration configuration = new RemoteControlConfiguration();
+    configuration.setTimeoutInSeconds(1);
+    BrowserSessionFactory factory = getWarmPoolSessionFactory();
+
+    BrowserSessionInfo info = factory.getNewBrowserSession(BROWSER_1, BASEURL1, "",
+        BrowserOptions.newBrowserOptions(), false, false, configuration);
+    factory.endBrowserSession(true, info.sessionId, configuration);
+    factory.commandReceived(info.sessionId);
+
+    assertEquals(0, factory.getSessionStartTimes().get(BROWSER_1).getFirstCommands());
+  }
+
+  @Test
+  public void testASessionWhoseBrowserIsClosedBeforeItsFirstCommandIsForgotten() throws Exception {
+    RemoteControlConfiguration configuration = new RemoteControlConfiguration();
+    configuration.setTimeoutInSeconds(1);
+    BrowserSessionFactory factory = getWarmPoolSessionFactory();
+
+    BrowserSessionInfo info = factory.getNewBrowserSession(BROWSER_1, BASEURL1, "",
+        BrowserOptions.newBrowserOptions(), false, false, configuration);
+    factory.shutdownBrowserAndClearSessionData(info);
+    factory.commandReceived(info.sessionId);
+
+    assertEquals(0, factory.getSessionStartTimes().get(BROWSER_1).getFirstCommands());
+    factory.endAllBrowserSessions(configuration);
+  }
+
+  private BrowserSessionFactory getWarmPoolSessionFactory() {
+    return getWarmPoolSessionFactory(mock(DummyLauncher.class));
+  }
+
+  private BrowserSessionFactory getWarmPoolSessionFactory(DummyLauncher launcher) {
+    BrowserLauncherFactory blf = mock(BrowserLauncherFactory.class);
+    when(blf.getBrowserLauncher(isA(String.class), isA(String.class),
+                                isA(RemoteControlConfiguration.class), isA(Capabilities.class)))
+        .thenReturn(launcher);
+
+    return new BrowserSessionFactory(blf, 0, 0, false) {
+      @Override
+      protected FrameGroupCommandQueueSet makeQueueSet(String sessionId,
+          int port, RemoteControlConfiguration configuration) {
+        return mock(FrameGroupCommandQueueSet.class);
+      }
+
+      @Override
+      protected FrameGroupCommandQueueSet getQueueSet(String sessionId) {
+        return mock(FrameGroupCommandQueueSet.class);
+      }
+    };
+  }
+
+  private void waitForAvailableSessions(BrowserSessionFactory factory, int count) {
+    long end = System.currentTimeMillis() + 5000;
+    while (factory.availableSessions.size() < count) {
+      if (System.currentTimeMillis() > end) {
+        fail("Warm pool was not filled in time");
+      }
+      FrameGroupCommandQueueSet.sleepForAtLeast(10);
+    }
+  }
+
   private Set<BrowserSessionInfo> getTestSessionSet() {
     Set<BrowserSessionInfo> infos = new HashSet<BrowserSessionInfo>();
     BrowserSessionInfo info1 = getTestSession1();
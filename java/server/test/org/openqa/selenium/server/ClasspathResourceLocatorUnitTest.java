@@ -18,17 +18,24 @@
 
 package org.openqa.selenium.server;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
 
 import org.junit.Ignore;
 import org.junit.Test;
 import org.openqa.jetty.http.HttpContext;
 import org.openqa.jetty.util.Resource;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.zip.GZIPInputStream;
 
 public class ClasspathResourceLocatorUnitTest {
 
@@ -55,6 +62,30 @@ public void testShouldStoreFileNameInMetaData() throws Exception {
         filename, resource.toString());
   }
 
+  @Test
+  public void testShouldReadEachResourceOffTheClasspathOnlyOnce() throws Exception {
+    ClasspathResourceLocator locator = new ClasspathResourceLocator();
+    HttpContext context = new HttpContext();
+
+    Resource first = locator.getResource(context, "ClassPathResource.class");
+    Resource second = locator.getResource(context, "ClassPathResource.class");
+
+    assertTrue(first.exists());
+    assertSame(first, second);
+  }
+
+  @Test
+  public void testShouldGiveResourcesAStrongETagAndKeepThemGzipped() throws Exception {
+    ClassPathResource resource = new ClassPathResource("ClassPathResource.class");
+
+    assertEquals(new ClassPathResource("ClassPathResource.class").getETag(), resource.getETag());
+    assertTrue(resource.getETag().startsWith("\""));
+    byte[] unzipped = ByteStreams.toByteArray(
+        new GZIPInputStream(new ByteArrayInputStream(resource.getGzippedBytes())));
+    assertArrayEquals(ByteStreams.toByteArray(resource.getInputStream()), unzipped);
+    assertSame(resource.getGzippedBytes(), resource.getGzippedBytes());
+  }
+
   private Resource getResourceFromClasspath(String path) throws IOException {
     ClasspathResourceLocator locator = new ClasspathResourceLocator();
     return locator.getResource(new HttpContext(), path);
@@ -0,0 +1,126 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+
+import org.junit.Test;
+import org.openqa.jetty.http.HttpFields;
+import org.openqa.jetty.util.LineInput;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+
+public class HttpFieldsUnitTest {
+
+  private static final String BROWSER_HEADERS =
+      "Host: localhost:4444\r\n"
+      + "Connection: keep-alive\r\n"
+      + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n"
+      + "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko)"
+      + " Chrome/30.0.1599.101 Safari/537.36\r\n"
+      + "Referer: http://localhost:4444/selenium-server/core/RemoteRunner.html\r\n"
+      + "Accept-Encoding: gzip,deflate,sdch\r\n"
+      + "Accept-Language: en-GB,en-US;q=0.8,en;q=0.6\r\n"
+      + "Cookie: JSESSIONID=1f2e3d4c5b6a; theme=dark\r\n"
+      + "X-Requested-With: XMLHttpRequest\r\n"
+      + "Content-Length: 42\r\n"
+      + "\r\n";
+
+  @Test
+  public void readsTypicalBrowserHeaders() throws IOException {
+    HttpFields fields = read(new HttpFields(), BROWSER_HEADERS);
+
+    assertEquals("localhost:4444", fields.get("Host"));
+    assertEquals("keep-alive", fields.get(HttpFields.__Connection));
+    assertEquals("JSESSIONID=1f2e3d4c5b6a; theme=dark", fields.get("cookie"));
+    assertEquals("XMLHttpRequest", fields.get("x-requested-with"));
+    assertEquals(42, fields.getIntField(HttpFields.__ContentLength));
+    assertFalse(fields.containsKey("Pragma"));
+  }
+
+  @Test
+  public void sharesWellKnownValues() throws IOException {
+    HttpFields fields = read(new HttpFields(), BROWSER_HEADERS);
+
+    assertSame(HttpFields.__KeepAlive, fields.get(HttpFields.__Connection));
+  }
+
+  @Test
+  public void reusesValuesThatAreTheSameOnTheNextRequest() throws IOException {
+    HttpFields fields = read(new HttpFields(), BROWSER_HEADERS);
+    String userAgent = fields.get(HttpFields.__UserAgent);
+
+    fields.clear();
+    read(fields, BROWSER_HEADERS.replace("Content-Length: 42", "Content-Length: 7"));
+
+    assertSame(userAgent, fields.get(HttpFields.__UserAgent));
+    assertEquals("7", fields.get(HttpFields.__ContentLength));
+  }
+
+  @Test
+  public void doesNotKeepFieldsFromThePreviousRequest() throws IOException {
+    HttpFields fields = read(new HttpFields(), BROWSER_HEADERS);
+
+    fields.clear();
+    read(fields, "Host: example.com\r\n\r\n");
+
+    assertEquals("example.com", fields.get("Host"));
+    assertNull(fields.get(HttpFields.__Cookie));
+  }
+
+  @Test
+  public void joinsContinuationLines() throws IOException {
+    HttpFields fields = read(new HttpFields(), "X-Long: one\r\n  two\r\nHost: h\r\n\r\n");
+
+    assertEquals("one two", fields.get("X-Long"));
+    assertEquals("h", fields.get("Host"));
+  }
+
+  @Test
+  public void readsRepeatedFieldsAsSeparateValues() throws IOException {
+    HttpFields fields = read(new HttpFields(), "Via: a\r\nVia: b\r\n\r\n");
+
+    Enumeration values = fields.getValues("via");
+    assertEquals("a", values.nextElement());
+    assertEquals("b", values.nextElement());
+    assertFalse(values.hasMoreElements());
+  }
+
+  @Test
+  public void writesValuesThatWereNeverRead() throws IOException {
+    HttpFields fields = read(new HttpFields(), "Host: h\r\nX-Custom: value\r\n\r\n");
+
+    String written = fields.toString();
+
+    assertTrue(written, written.contains("Host: h\r\n"));
+    assertTrue(written, written.contains("X-Custom: value\r\n"));
+  }
+
+  private static HttpFields read(HttpFields fields, String headers) throws IOException {
+    fields.read(new LineInput(new ByteArrayInputStream(headers.getBytes(Charsets.ISO_8859_1))));
+    return fields;
+  }
+}
@@ -0,0 +1,255 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openqa.jetty.http.HttpException;
+import org.openqa.jetty.http.HttpFields;
+import org.openqa.jetty.http.HttpListener;
+import org.openqa.jetty.http.HttpRequest;
+import org.openqa.jetty.http.HttpResponse;
+import org.openqa.jetty.http.HttpServer;
+import org.openqa.jetty.http.SocketListener;
+import org.openqa.jetty.http.handler.AbstractHttpHandler;
+import org.openqa.jetty.http.nio.SocketChannelListener;
+import org.openqa.jetty.util.ThreadPool;
+import org.openqa.selenium.net.PortProber;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Load tests comparing the blocking {@link SocketListener} with the selector based
+ * {@link SocketChannelListener}, in threads used and in requests handled per second, and
+ * comparing the {@link ThreadPool} backends. These are benchmarks rather than unit tests, and
+ * are not part of {@link RcServerUnitTests}; run them on their own.
+ */
+public class JettyListenerLoadTest {
+
+  private static final Logger log = Logger.getLogger(JettyListenerLoadTest.class.getName());
+
+  private static final int IDLE_CONNECTIONS = 200;
+  private static final int CLIENTS = 16;
+  private static final int REQUESTS_PER_CLIENT = 200;
+
+  private HttpServer server;
+  private final List<Socket> sockets = new ArrayList<Socket>();
+
+  @After
+  public void tearDown() throws Exception {
+    for (Socket socket : sockets) {
+      socket.close();
+    }
+    if (server != null) {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void idleKeepAliveConnectionsHoldNoThreadsWithTheNioListener() throws Exception {
+    int socketThreads = busyThreadsWithIdleConnections(new SocketListener());
+    tearDown();
+    sockets.clear();
+    int nioThreads = busyThreadsWithIdleConnections(new SocketChannelListener());
+
+    log.info(String.format("Busy threads with %d idle connections: socket %d, nio %d",
+        IDLE_CONNECTIONS, socketThreads, nioThreads));
+    assertTrue(String.valueOf(socketThreads), socketThreads >= IDLE_CONNECTIONS);
+    assertEquals(0, nioThreads);
+  }
+
+  @Test
+  public void throughputOfKeepAliveClients() throws Exception {
+    double socketRate = requestsPerSecond(new SocketListener());
+    server.stop();
+    double nioRate = requestsPerSecond(new SocketChannelListener());
+
+    log.info(String.format("Requests per second from %d clients: socket %.0f, nio %.0f",
+        CLIENTS, socketRate, nioRate));
+  }
+
+  @Test
+  public void throughputOfThreadPoolBackends() throws Exception {
+    double poolRate = requestsPerSecondOnNewConnections(new SocketListener());
+    server.stop();
+    SocketListener listener = new SocketListener();
+    listener.setUseExecutor(true);
+    double executorRate = requestsPerSecondOnNewConnections(listener);
+
+    log.info(String.format(
+        "Requests per second on new connections from %d clients: pool %.0f, executor %.0f",
+        CLIENTS, poolRate, executorRate));
+  }
+
+  private int busyThreadsWithIdleConnections(ThreadPool listener) throws Exception {
+    start(listener);
+    for (int i = 0; i < IDLE_CONNECTIONS; i++) {
+      Socket socket = connect();
+      socket.getOutputStream().write(request("/" + i).getBytes(Charsets.US_ASCII));
+      assertEquals("/" + i + " 0", readResponse(socket.getInputStream()));
+    }
+    // Give the last threads time to go back to waiting.
+    Thread.sleep(200);
+    return listener.getThreads() - listener.getIdleThreads();
+  }
+
+  private double requestsPerSecond(ThreadPool listener) throws Exception {
+    start(listener);
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    try {
+      List<Future<Void>> done = new ArrayList<Future<Void>>();
+      long start = System.nanoTime();
+      for (int i = 0; i < CLIENTS; i++) {
+        done.add(clients.submit(new Callable<Void>() {
+          public Void call() throws Exception {
+            Socket socket = new Socket("localhost", port());
+            try {
+              for (int j = 0; j < REQUESTS_PER_CLIENT; j++) {
+                socket.getOutputStream().write(request("/" + j).getBytes(Charsets.US_ASCII));
+                assertEquals("/" + j + " 0", readResponse(socket.getInputStream()));
+              }
+            } finally {
+              socket.close();
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : done) {
+        future.get();
+      }
+      long elapsed = System.nanoTime() - start;
+      return CLIENTS * REQUESTS_PER_CLIENT / (elapsed / 1e9);
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+
+  private double requestsPerSecondOnNewConnections(ThreadPool listener) throws Exception {
+    start(listener);
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    try {
+      List<Future<Void>> done = new ArrayList<Future<Void>>();
+      long start = System.nanoTime();
+      for (int i = 0; i < CLIENTS; i++) {
+        done.add(clients.submit(new Callable<Void>() {
+          public Void call() throws Exception {
+            for (int j = 0; j < REQUESTS_PER_CLIENT; j++) {
+              Socket socket = new Socket("localhost", port());
+              try {
+                socket.getOutputStream().write(("GET /" + j
+                    + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                    .getBytes(Charsets.US_ASCII));
+                assertEquals("/" + j + " 0", readResponse(socket.getInputStream()));
+              } finally {
+                socket.close();
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : done) {
+        future.get();
+      }
+      long elapsed = System.nanoTime() - start;
+      return CLIENTS * REQUESTS_PER_CLIENT / (elapsed / 1e9);
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+
+  private void start(ThreadPool pool) throws Exception {
+    HttpListener listener = (HttpListener) pool;
+    pool.setMaxThreads(IDLE_CONNECTIONS * 2);
+    listener.setPort(PortProber.findFreePort());
+    if (listener instanceof SocketListener) {
+      ((SocketListener) listener).setHttpHandler(new EchoHandler());
+    } else {
+      ((SocketChannelListener) listener).setHttpHandler(new EchoHandler());
+    }
+    server = new HttpServer();
+    server.addListener(listener);
+    server.start();
+  }
+
+  private int port() {
+    return server.getListeners()[0].getPort();
+  }
+
+  private Socket connect() throws IOException {
+    Socket socket = new Socket("localhost", port());
+    socket.setSoTimeout(10000);
+    sockets.add(socket);
+    return socket;
+  }
+
+  private static String request(String path) {
+    return "GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+  }
+
+  /**
+   * Reads one response, which always has a Content-Length, and returns its body.
+   */
+  private static String readResponse(InputStream in) throws IOException {
+    ByteArrayOutputStream headers = new ByteArrayOutputStream();
+    int matched = 0;
+    while (matched < 4) {
+      int b = in.read();
+      if (b < 0) {
+        throw new IOException("Connection closed after " + headers);
+      }
+      headers.write(b);
+      matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+    }
+    String head = new String(headers.toByteArray(), Charsets.US_ASCII);
+    int start = head.toLowerCase().indexOf("content-length:") + "content-length:".length();
+    int length = Integer.parseInt(head.substring(start, head.indexOf('\r', start)).trim());
+    byte[] body = new byte[length];
+    ByteStreams.readFully(in, body);
+    return new String(body, Charsets.US_ASCII);
+  }
+
+  private static class EchoHandler extends AbstractHttpHandler {
+    public void handle(String pathInContext, String pathParams, HttpRequest request,
+        HttpResponse response) throws HttpException, IOException {
+      long read = ByteStreams.copy(request.getInputStream(), ByteStreams.nullOutputStream());
+      byte[] body = (request.getPath() + " " + read).getBytes(Charsets.US_ASCII);
+      response.setField(HttpFields.__ContentType, "text/plain");
+      response.setContentLength(body.length);
+      response.getOutputStream().write(body);
+      request.setHandled(true);
+    }
+  }
+}
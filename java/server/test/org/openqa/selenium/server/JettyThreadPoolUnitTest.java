@@ -0,0 +1,221 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openqa.jetty.util.ThreadPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class JettyThreadPoolUnitTest {
+
+  private final List<Object> stopped = new ArrayList<Object>();
+  private final ThreadPool pool = new ThreadPool() {
+    @Override
+    protected void stopJob(Thread thread, Object job) {
+      synchronized (stopped) {
+        stopped.add(job);
+      }
+    }
+  };
+
+  @After
+  public void tearDown() throws InterruptedException {
+    if (pool.isStarted()) {
+      pool.stop();
+    }
+  }
+
+  @Test
+  public void runsJobsOnAnExecutorWhenAskedTo() throws Exception {
+    pool.setUseExecutor(true);
+    pool.start();
+    CountDownLatch done = new CountDownLatch(10);
+
+    for (int i = 0; i < 10; i++) {
+      pool.run(countDown(done));
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertTrue(pool.getExecutor() instanceof ThreadPoolExecutor);
+    waitForJobs(10);
+  }
+
+  @Test
+  public void queuesJobsBeyondTheMaxThreadsInsteadOfWaiting() throws Exception {
+    pool.setUseExecutor(true);
+    pool.setMaxThreads(1);
+    pool.start();
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(2);
+
+    pool.run(block(release, done));
+    pool.run(block(release, done));
+    Thread.sleep(100);
+
+    assertEquals(1, pool.getActiveJobs());
+    assertEquals(1, pool.getQueuedJobs());
+    release.countDown();
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(0, pool.getQueuedJobs());
+  }
+
+  @Test
+  public void waitsForRoomOnceTheQueueIsFullAndThenStopsTheJob() throws Exception {
+    pool.setUseExecutor(true);
+    pool.setMaxThreads(1);
+    pool.setMaxQueued(1);
+    pool.setMaxIdleTimeMs(200);
+    pool.start();
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(3);
+    pool.run(block(release, done));
+    pool.run(block(release, done));
+    Runnable rejected = block(release, done);
+
+    long start = System.nanoTime();
+    pool.run(rejected);
+    long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertTrue("waited " + waited + " ms", waited >= 150);
+    assertTrue(stopped.contains(rejected));
+    assertEquals(1, pool.getQueuedJobs());
+    release.countDown();
+  }
+
+  @Test
+  public void aFullQueueTakesTheJobOnceThereIsRoom() throws Exception {
+    pool.setUseExecutor(true);
+    pool.setMaxThreads(1);
+    pool.setMaxQueued(1);
+    pool.setMaxIdleTimeMs(5000);
+    pool.start();
+    final CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(3);
+    pool.run(block(release, done));
+    pool.run(block(release, done));
+
+    new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          return;
+        }
+        release.countDown();
+      }
+    }.start();
+    pool.run(countDown(done));
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertTrue(stopped.isEmpty());
+  }
+
+  @Test
+  public void leavesAGivenExecutorRunningWhenStopped() throws Exception {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      pool.setExecutor(executor);
+      pool.start();
+      CountDownLatch done = new CountDownLatch(1);
+
+      pool.run(countDown(done));
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      pool.stop();
+
+      assertFalse(executor.isShutdown());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void stopsRunningAndQueuedJobsWhenStopped() throws Exception {
+    pool.setUseExecutor(true);
+    pool.setMaxThreads(1);
+    pool.start();
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(2);
+    Runnable running = block(release, done);
+    Runnable queued = block(release, done);
+    pool.run(running);
+    pool.run(queued);
+    Thread.sleep(100);
+
+    pool.stop();
+
+    assertTrue(stopped.contains(running));
+    assertTrue(stopped.contains(queued));
+  }
+
+  @Test
+  public void recordsJobStatisticsForThePoolToo() throws Exception {
+    pool.start();
+    CountDownLatch done = new CountDownLatch(5);
+
+    for (int i = 0; i < 5; i++) {
+      pool.run(countDown(done));
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    waitForJobs(5);
+    assertEquals(0, pool.getActiveJobs());
+    assertTrue(pool.getAverageJobLatencyMs() >= 0);
+  }
+
+  private void waitForJobs(long jobs) throws InterruptedException {
+    long end = System.currentTimeMillis() + 5000;
+    while (pool.getJobs() < jobs && System.currentTimeMillis() < end) {
+      Thread.sleep(10);
+    }
+    assertEquals(jobs, pool.getJobs());
+  }
+
+  private static Runnable countDown(final CountDownLatch latch) {
+    return new Runnable() {
+      public void run() {
+        latch.countDown();
+      }
+    };
+  }
+
+  private static Runnable block(final CountDownLatch release, final CountDownLatch done) {
+    return new Runnable() {
+      public void run() {
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        done.countDown();
+      }
+    };
+  }
+}
@@ -0,0 +1,240 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.jetty.http.HttpContext;
+import org.openqa.jetty.http.HttpException;
+import org.openqa.jetty.http.HttpRequest;
+import org.openqa.jetty.http.HttpResponse;
+import org.openqa.jetty.http.HttpServer;
+import org.openqa.jetty.http.NCSARequestLog;
+import org.openqa.jetty.http.SocketListener;
+import org.openqa.jetty.http.handler.AbstractHttpHandler;
+import org.openqa.jetty.util.RingBuffer;
+import org.openqa.selenium.io.TemporaryFilesystem;
+import org.openqa.selenium.net.PortProber;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class NCSARequestLogUnitTest {
+
+  private static final int CLIENTS = 8;
+  private static final int REQUESTS_PER_CLIENT = 100;
+
+  private File dir;
+  private File logFile;
+  private HttpServer server;
+
+  @Before
+  public void setUp() {
+    dir = TemporaryFilesystem.getDefaultTmpFS().createTempDir("request", "log");
+    logFile = new File(dir, "request.log");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (server != null) {
+      server.stop();
+    }
+    TemporaryFilesystem.getDefaultTmpFS().deleteTempDir(dir);
+  }
+
+  @Test
+  public void asyncLogWritesEveryLineWhenBlockingOnAFullQueue() throws Exception {
+    NCSARequestLog requestLog = newLog();
+    requestLog.setAsync(true);
+    requestLog.setQueueSize(2);
+    requestLog.setBlockWhenFull(true);
+
+    sendRequests(requestLog);
+
+    assertEquals(CLIENTS * REQUESTS_PER_CLIENT, loggedLines());
+    assertEquals(0, requestLog.getDroppedLogs());
+  }
+
+  @Test
+  public void asyncLogCountsTheLinesItDrops() throws Exception {
+    NCSARequestLog requestLog = newLog();
+    requestLog.setAsync(true);
+    requestLog.setQueueSize(1);
+
+    sendRequests(requestLog);
+
+    assertEquals(CLIENTS * REQUESTS_PER_CLIENT, loggedLines() + requestLog.getDroppedLogs());
+  }
+
+  @Test
+  public void asyncLogWritesTheSameLinesAsTheSynchronousOne() throws Exception {
+    NCSARequestLog requestLog = newLog();
+    requestLog.setAsync(true);
+    start(requestLog);
+
+    get("/cheese");
+    server.stop();
+
+    String line = Files.readFirstLine(logFile, Charsets.UTF_8);
+    assertTrue(line, line.contains("\"GET /cheese HTTP/1.1\" 200 2 "));
+  }
+
+  @Test
+  public void ringBufferRefusesItemsWhenFull() {
+    assertEquals(2, new RingBuffer(1).getCapacity());
+    RingBuffer buffer = new RingBuffer(3);
+
+    assertEquals(4, buffer.getCapacity());
+    for (int i = 0; i < 4; i++) {
+      assertTrue(buffer.offer(i));
+    }
+    assertFalse(buffer.offer(4));
+    assertEquals(0, buffer.poll());
+    assertTrue(buffer.offer(4));
+
+    for (int i = 1; i <= 4; i++) {
+      assertEquals(i, buffer.poll());
+    }
+    assertNull(buffer.poll());
+    assertTrue(buffer.isEmpty());
+  }
+
+  @Test
+  public void ringBufferHandsEachItemToExactlyOneConsumer() throws Exception {
+    final RingBuffer buffer = new RingBuffer(16);
+    final int perProducer = 10000;
+    ExecutorService producers = Executors.newFixedThreadPool(4);
+    try {
+      for (int p = 0; p < 4; p++) {
+        final int base = p * perProducer;
+        producers.submit(new Callable<Void>() {
+          public Void call() {
+            for (int i = 0; i < perProducer; i++) {
+              while (!buffer.offer(base + i)) {
+                Thread.yield();
+              }
+            }
+            return null;
+          }
+        });
+      }
+
+      Set<Object> seen = new HashSet<Object>();
+      while (seen.size() < 4 * perProducer) {
+        Object item = buffer.poll();
+        if (item == null) {
+          Thread.yield();
+        } else {
+          assertTrue(String.valueOf(item), seen.add(item));
+        }
+      }
+    } finally {
+      producers.shutdownNow();
+    }
+  }
+
+  private NCSARequestLog newLog() throws IOException {
+    NCSARequestLog requestLog = new NCSARequestLog(logFile.getAbsolutePath());
+    requestLog.setAppend(false);
+    return requestLog;
+  }
+
+  private void start(NCSARequestLog requestLog) throws Exception {
+    SocketListener listener = new SocketListener();
+    listener.setPort(PortProber.findFreePort());
+    server = new HttpServer();
+    server.addListener(listener);
+    server.setRequestLog(requestLog);
+    HttpContext context = server.addContext("/");
+    context.addHandler(new OkHandler());
+    server.start();
+  }
+
+  /**
+   * Sends requests from several clients at once and stops the server once they are all answered.
+   */
+  private void sendRequests(NCSARequestLog requestLog) throws Exception {
+    start(requestLog);
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    try {
+      List<Future<Void>> done = new ArrayList<Future<Void>>();
+      for (int i = 0; i < CLIENTS; i++) {
+        done.add(clients.submit(new Callable<Void>() {
+          public Void call() throws Exception {
+            for (int j = 0; j < REQUESTS_PER_CLIENT; j++) {
+              get("/" + j);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : done) {
+        future.get();
+      }
+      server.stop();
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+
+  private void get(String path) throws IOException {
+    URL url = new URL("http://localhost:" + server.getListeners()[0].getPort() + path);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    assertEquals(200, connection.getResponseCode());
+    InputStream in = connection.getInputStream();
+    try {
+      ByteStreams.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  private long loggedLines() throws IOException {
+    return Files.readLines(logFile, Charsets.UTF_8).size();
+  }
+
+  private static class OkHandler extends AbstractHttpHandler {
+    public void handle(String pathInContext, String pathParams, HttpRequest request,
+        HttpResponse response) throws HttpException, IOException {
+      response.setContentLength(2);
+      response.getOutputStream().write("ok".getBytes(Charsets.US_ASCII));
+      request.setHandled(true);
+    }
+  }
+}
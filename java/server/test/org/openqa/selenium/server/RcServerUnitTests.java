@@ -26,6 +26,7 @@
 import org.openqa.selenium.server.browserlaunchers.FirefoxChromeLauncherUnitTest;
 import org.openqa.selenium.server.browserlaunchers.MakeProxyPacUnitTest;
 import org.openqa.selenium.server.htmlrunner.HTMLSuiteResultUnitTest;
+import org.openqa.selenium.server.htmlrunner.ParallelHTMLSuiteRunnerUnitTest;
 import org.openqa.selenium.remote.server.log.DefaultPerSessionLogHandlerUnitTest;
 import org.openqa.selenium.remote.server.log.LoggingManagerUnitTest;
 import org.openqa.selenium.remote.server.log.ShortTermMemoryHandlerUnitTest;
@@ -47,14 +48,21 @@
     FrameGroupCommandQueueUnitTest.class,
     FsResourceLocatorUnitTest.class,
     HTMLSuiteResultUnitTest.class,
+    HttpFieldsUnitTest.class,
+    JettyThreadPoolUnitTest.class,
+    ParallelHTMLSuiteRunnerUnitTest.class,
     LoggingTests.class,
     MakeProxyPacUnitTest.class,
     MockPIFrameUnitTest.class,
+    NCSARequestLogUnitTest.class,
     ProxyHandlerUnitTest.class,
     RemoteControlConfigurationUnitTest.class,
+    ResourceHandlerTransferUnitTest.class,
     SeleniumDriverResourceHandlerUnitTest.class,
     SeleniumServerUnitTest.class,
     SingleEntryAsyncQueueUnitTest.class,
+    SocketChannelListenerUnitTest.class,
+    SslCertificateCacheUnitTest.class,
     StaticContentHandlerUnitTest.class
 })
 public class RcServerUnitTests {}
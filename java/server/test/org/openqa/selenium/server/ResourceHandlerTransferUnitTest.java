@@ -0,0 +1,201 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeFalse;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.jetty.http.HttpContext;
+import org.openqa.jetty.http.HttpListener;
+import org.openqa.jetty.http.HttpServer;
+import org.openqa.jetty.http.SocketListener;
+import org.openqa.jetty.http.handler.ResourceHandler;
+import org.openqa.jetty.http.nio.SocketChannelListener;
+import org.openqa.jetty.util.MappedFileCache;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.io.TemporaryFilesystem;
+import org.openqa.selenium.net.PortProber;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ResourceHandlerTransferUnitTest {
+
+  private File dir;
+  private File large;
+  private byte[] content;
+  private MappedFileCache cache;
+  private HttpServer server;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = TemporaryFilesystem.getDefaultTmpFS().createTempDir("static", "content");
+    content = new byte[300 * 1024];
+    new Random(42).nextBytes(content);
+    large = new File(dir, "large.bin");
+    Files.write(content, large);
+    settle(large);
+    cache = new MappedFileCache();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (server != null) {
+      server.stop();
+    }
+    cache.clear();
+    TemporaryFilesystem.getDefaultTmpFS().deleteTempDir(dir);
+  }
+
+  @Test
+  public void servesLargeFilesOverTheBlockingListener() throws Exception {
+    start(new SocketListener());
+
+    assertArrayEquals(content, get("/large.bin", null));
+    assertArrayEquals(content, get("/large.bin", null));
+    assertEquals(content.length, cache.getCacheSize());
+  }
+
+  @Test
+  public void servesLargeFilesOverTheNioListener() throws Exception {
+    start(new SocketChannelListener());
+
+    assertArrayEquals(content, get("/large.bin", null));
+    assertArrayEquals(content, get("/large.bin", null));
+    assertEquals(content.length, cache.getCacheSize());
+  }
+
+  @Test
+  public void servesRangesOfMappedAndUnmappedFiles() throws Exception {
+    start(new SocketChannelListener());
+    byte[] expected = Arrays.copyOfRange(content, 1000, 200001);
+
+    assertArrayEquals(expected, get("/large.bin", "bytes=1000-200000"));
+    assertArrayEquals(expected, get("/large.bin", "bytes=1000-200000"));
+  }
+
+  @Test
+  public void servesFilesTooSmallToMap() throws Exception {
+    start(new SocketChannelListener());
+    byte[] small = "cheese".getBytes("UTF-8");
+    Files.write(small, new File(dir, "small.txt"));
+
+    assertArrayEquals(small, get("/small.txt", null));
+    assertEquals(0, cache.getCacheSize());
+  }
+
+  @Test
+  public void mapsAFileOnlyOnceItHasBeenAskedForTwice() throws IOException {
+    assertNull(cache.get(large));
+
+    ByteBuffer mapped = cache.get(large);
+
+    assertNotNull(mapped);
+    assertEquals(content.length, mapped.remaining());
+    assertEquals(content[1234], mapped.get(1234));
+  }
+
+  @Test
+  public void evictsTheLeastRecentlyUsedFilesToStayWithinItsSize() throws IOException {
+    File other = new File(dir, "other.bin");
+    Files.write(content, other);
+    settle(other);
+    cache.setMaxCacheSize(content.length + 1);
+    cache.get(large);
+    cache.get(large);
+
+    cache.get(other);
+    cache.get(other);
+
+    assertEquals(content.length, cache.getCacheSize());
+    assertNull(cache.get(large));
+  }
+
+  @Test
+  public void doesNotMapFilesThatWereJustModified() throws IOException {
+    File fresh = new File(dir, "fresh.bin");
+    Files.write(content, fresh);
+
+    assertNull(cache.get(fresh));
+    assertNull(cache.get(fresh));
+    assertEquals(0, cache.getCacheSize());
+  }
+
+  @Test
+  public void remapsFilesThatHaveChanged() throws IOException {
+    // a mapped file can't be rewritten on Windows until the mapping is collected.
+    assumeFalse(Platform.getCurrent().is(Platform.WINDOWS));
+    cache.get(large);
+    cache.get(large);
+
+    byte[] changed = new byte[content.length * 2];
+    Files.write(changed, large);
+    assertNull(cache.get(large));
+    settle(large);
+
+    ByteBuffer mapped = cache.get(large);
+    assertEquals(changed.length, mapped.remaining());
+    assertEquals(changed.length, cache.getCacheSize());
+  }
+
+  private static void settle(File file) {
+    file.setLastModified(System.currentTimeMillis() - 3600 * 1000);
+  }
+
+  private void start(HttpListener listener) throws Exception {
+    listener.setPort(PortProber.findFreePort());
+    server = new HttpServer();
+    server.addListener(listener);
+    HttpContext context = server.addContext("/");
+    context.setResourceBase(dir.getAbsolutePath());
+    ResourceHandler handler = new ResourceHandler();
+    handler.setMappedFileCache(cache);
+    context.addHandler(handler);
+    server.start();
+  }
+
+  private byte[] get(String path, String range) throws IOException {
+    URL url = new URL("http://localhost:" + server.getListeners()[0].getPort() + path);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    if (range != null) {
+      connection.setRequestProperty("Range", range);
+    }
+    assertEquals(range == null ? 200 : 206, connection.getResponseCode());
+    InputStream in = connection.getInputStream();
+    try {
+      return ByteStreams.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+}
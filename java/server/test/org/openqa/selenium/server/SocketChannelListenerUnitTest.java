@@ -0,0 +1,182 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package org.openqa.selenium.server;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openqa.jetty.http.HttpException;
+import org.openqa.jetty.http.HttpFields;
+import org.openqa.jetty.http.HttpRequest;
+import org.openqa.jetty.http.HttpResponse;
+import org.openqa.jetty.http.HttpServer;
+import org.openqa.jetty.http.handler.AbstractHttpHandler;
+import org.openqa.jetty.http.nio.SocketChannelListener;
+import org.openqa.selenium.net.PortProber;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SocketChannelListenerUnitTest {
+
+  private HttpServer server;
+  private SocketChannelListener listener;
+  private final List<Socket> sockets = new ArrayList<Socket>();
+
+  @After
+  public void tearDown() throws Exception {
+    for (Socket socket : sockets) {
+      socket.close();
+    }
+    if (server != null) {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void servesPipelinedRequests() throws Exception {
+    start();
+    Socket socket = connect();
+
+    OutputStream out = socket.getOutputStream();
+    out.write((request("/one") + request("/two")).getBytes(Charsets.US_ASCII));
+    out.flush();
+
+    assertEquals("/one 0", readResponse(socket.getInputStream()));
+    assertEquals("/two 0", readResponse(socket.getInputStream()));
+  }
+
+  @Test
+  public void readsBodiesLargerThanItsBuffers() throws Exception {
+    start();
+    Socket socket = connect();
+    byte[] body = new byte[listener.getBufferSize() * 5 + 7];
+
+    OutputStream out = socket.getOutputStream();
+    out.write(("POST /upload HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length
+        + "\r\n\r\n").getBytes(Charsets.US_ASCII));
+    out.write(body);
+    out.flush();
+
+    assertEquals("/upload " + body.length, readResponse(socket.getInputStream()));
+  }
+
+  @Test
+  public void idleKeepAliveConnectionsHoldNoBuffers() throws Exception {
+    start();
+    List<Socket> idle = new ArrayList<Socket>();
+    for (int i = 0; i < 8; i++) {
+      Socket socket = connect();
+      socket.getOutputStream().write(request("/" + i).getBytes(Charsets.US_ASCII));
+      assertEquals("/" + i + " 0", readResponse(socket.getInputStream()));
+      idle.add(socket);
+    }
+
+    // the response is sent before the thread is done with the connection.
+    long deadline = System.currentTimeMillis() + 5000;
+    while (listener.getBufferPool().getOutstanding() > 0
+           && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, listener.getBufferPool().getOutstanding());
+
+    // and they still work.
+    Socket socket = idle.get(3);
+    socket.getOutputStream().write(request("/again").getBytes(Charsets.US_ASCII));
+    assertEquals("/again 0", readResponse(socket.getInputStream()));
+  }
+
+  @Test
+  public void closesConnectionsIdleForTooLong() throws Exception {
+    listener = new SocketChannelListener();
+    listener.setMaxIdleTimeMs(200);
+    start();
+    Socket socket = connect();
+
+    socket.getOutputStream().write(request("/").getBytes(Charsets.US_ASCII));
+    assertEquals("/ 0", readResponse(socket.getInputStream()));
+
+    assertEquals(-1, socket.getInputStream().read());
+  }
+
+  private void start() throws Exception {
+    if (listener == null) {
+      listener = new SocketChannelListener();
+    }
+    listener.setPort(PortProber.findFreePort());
+    listener.setHttpHandler(new EchoHandler());
+    server = new HttpServer();
+    server.addListener(listener);
+    server.start();
+  }
+
+  private Socket connect() throws IOException {
+    Socket socket = new Socket("localhost", listener.getPort());
+    socket.setSoTimeout(10000);
+    sockets.add(socket);
+    return socket;
+  }
+
+  private static String request(String path) {
+    return "GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+  }
+
+  /**
+   * Reads one response, which always has a Content-Length, and returns its body.
+   */
+  private static String readResponse(InputStream in) throws IOException {
+    ByteArrayOutputStream headers = new ByteArrayOutputStream();
+    int matched = 0;
+    while (matched < 4) {
+      int b = in.read();
+      if (b < 0) {
+        throw new IOException("Connection closed after " + headers);
+      }
+      headers.write(b);
+      matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+    }
+    String head = new String(headers.toByteArray(), Charsets.US_ASCII);
+    int start = head.toLowerCase().indexOf("content-length:") + "content-length:".length();
+    int length = Integer.parseInt(head.substring(start, head.indexOf('\r', start)).trim());
+    byte[] body = new byte[length];
+    ByteStreams.readFully(in, body);
+    return new String(body, Charsets.US_ASCII);
+  }
+
+  private static class EchoHandler extends AbstractHttpHandler {
+    public void handle(String pathInContext, String pathParams, HttpRequest request,
+        HttpResponse response) throws HttpException, IOException {
+      long read = ByteStreams.copy(request.getInputStream(), ByteStreams.nullOutputStream());
+      byte[] body = (request.getPath() + " " + read).getBytes(Charsets.US_ASCII);
+      response.setField(HttpFields.__ContentType, "text/plain");
+      response.setContentLength(body.length);
+      response.getOutputStream().write(body);
+      request.setHandled(true);
+    }
+  }
+}
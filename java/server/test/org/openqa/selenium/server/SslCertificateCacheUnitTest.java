@@ -0,0 +1,149 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.io.TemporaryFilesystem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+public class SslCertificateCacheUnitTest {
+
+  private static final String CRL = ProxyHandler.getCertificateRevocationListUrl(4444);
+
+  private TemporaryFilesystem tempFs;
+  private File root;
+
+  @Before
+  public void setUp() {
+    tempFs = TemporaryFilesystem.getTmpFsBasedOn(
+        TemporaryFilesystem.getDefaultTmpFS().createTempDir("sslcache", "test"));
+    root = tempFs.createTempDir("ssl", "cache");
+  }
+
+  @After
+  public void tearDown() {
+    tempFs.deleteTemporaryFiles();
+  }
+
+  @Test
+  public void generatesAKeystoreHoldingACertificateForTheHost() throws Exception {
+    SslCertificateCache cache = new SslCertificateCache(root, CRL);
+
+    File keystore = cache.getKeystore("www.example.com");
+
+    KeyStore ks = load(keystore);
+    X509Certificate cert = (X509Certificate) ks.getCertificate("www.example.com");
+    assertTrue(cert.getSubjectX500Principal().getName().contains("CN=www.example.com"));
+    assertFalse("CA private key must not be handed to relays", ks.containsAlias("signingCertPrivKey"));
+  }
+
+  @Test
+  public void returnsTheSameKeystoreForRepeatedRequests() {
+    SslCertificateCache cache = new SslCertificateCache(root, CRL);
+
+    File first = cache.getKeystore("www.example.com");
+    long modified = first.lastModified();
+
+    assertEquals(first, cache.getKeystore("www.example.com"));
+    assertEquals(modified, first.lastModified());
+  }
+
+  @Test
+  public void reusesKeystoresWrittenByAnEarlierCache() {
+    File first = new SslCertificateCache(root, CRL).getKeystore("www.example.com");
+    long modified = first.lastModified();
+
+    File second = new SslCertificateCache(root, CRL).getKeystore("www.example.com");
+
+    assertEquals(first, second);
+    assertEquals(modified, second.lastModified());
+  }
+
+  @Test
+  public void renewsCertificatesWrittenByAnEarlierCacheThatAreAboutToExpire() throws Exception {
+    File first = new SslCertificateCache(root, CRL).getKeystore("www.example.com");
+    X509Certificate expiring = (X509Certificate) load(first).getCertificate("www.example.com");
+
+    SslCertificateCache cache = new SslCertificateCache(root, CRL);
+    cache.setRenewBefore(TimeUnit.DAYS.toMillis(400));
+    File second = cache.getKeystore("www.example.com");
+
+    X509Certificate renewed = (X509Certificate) load(second).getCertificate("www.example.com");
+    assertEquals(first, second);
+    assertFalse(expiring.getSerialNumber().equals(renewed.getSerialNumber()));
+  }
+
+  @Test
+  public void renewsCertificatesThatExpireWhileTheServerIsRunning() throws Exception {
+    SslCertificateCache cache = new SslCertificateCache(root, CRL);
+    File keystore = cache.getKeystore("www.example.com");
+    X509Certificate expiring = (X509Certificate) load(keystore).getCertificate("www.example.com");
+
+    cache.setRenewBefore(TimeUnit.DAYS.toMillis(400));
+    keystore = cache.getKeystore("www.example.com");
+
+    X509Certificate renewed = (X509Certificate) load(keystore).getCertificate("www.example.com");
+    assertFalse(expiring.getSerialNumber().equals(renewed.getSerialNumber()));
+  }
+
+  @Test
+  public void sharesOneKeyPairBetweenHosts() throws Exception {
+    SslCertificateCache cache = new SslCertificateCache(root, CRL);
+
+    X509Certificate a = (X509Certificate) load(cache.getKeystore("a.example.com"))
+        .getCertificate("a.example.com");
+    X509Certificate b = (X509Certificate) load(cache.getKeystore("b.example.com"))
+        .getCertificate("b.example.com");
+
+    assertEquals(a.getPublicKey(), b.getPublicKey());
+  }
+
+  @Test
+  public void temporaryCacheIsDeletedOnShutdown() {
+    SslCertificateCache cache = new SslCertificateCache(null, CRL);
+    File keystore = cache.getKeystore("www.example.com");
+    assertTrue(keystore.exists());
+
+    cache.shutdown();
+
+    assertFalse(keystore.exists());
+  }
+
+  private KeyStore load(File keystore) throws Exception {
+    KeyStore ks = KeyStore.getInstance("JKS");
+    InputStream in = new FileInputStream(keystore);
+    try {
+      ks.load(in, SslCertificateCache.PASSWORD.toCharArray());
+    } finally {
+      in.close();
+    }
+    return ks;
+  }
+}
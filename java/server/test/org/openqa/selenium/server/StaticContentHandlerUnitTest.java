@@ -20,6 +20,8 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
@@ -35,6 +37,7 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Date;
 
 public class StaticContentHandlerUnitTest {
@@ -59,6 +62,80 @@ public void testShouldMakePageNotCachedWhenHandle() throws Exception {
     assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", response.getField("Expires"));
   }
 
+  @Test
+  public void testShouldAnswerARevalidatedClasspathResourceWithNotModified() throws Exception {
+    ClassPathResource resource = new ClassPathResource("ClassPathResource.class");
+    HttpRequest request = new HttpRequest();
+    request.setField("If-None-Match", resource.getETag());
+    HttpResponse response = new HttpResponse();
+
+    handler.sendData(request, response, "ClassPathResource.class", resource, true);
+
+    assertEquals(HttpResponse.__304_Not_Modified, response.getStatus());
+    assertEquals(resource.getETag(), response.getField("ETag"));
+    assertTrue(request.isHandled());
+  }
+
+  @Test
+  public void testShouldMatchAnyTagListedInIfNoneMatchWeakly() throws Exception {
+    ClassPathResource resource = new ClassPathResource("ClassPathResource.class");
+    HttpRequest request = new HttpRequest();
+    request.setField("If-None-Match", "\"other\", W/" + resource.getETag());
+    HttpResponse response = new HttpResponse();
+
+    handler.sendData(request, response, "ClassPathResource.class", resource, true);
+
+    assertEquals(HttpResponse.__304_Not_Modified, response.getStatus());
+  }
+
+  @Test
+  public void testShouldMatchAnyTagWithAStar() throws Exception {
+    ClassPathResource resource = new ClassPathResource("ClassPathResource.class");
+    HttpRequest request = new HttpRequest();
+    request.setField("If-None-Match", "*");
+    HttpResponse response = new HttpResponse();
+
+    handler.sendData(request, response, "ClassPathResource.class", resource, true);
+
+    assertEquals(HttpResponse.__304_Not_Modified, response.getStatus());
+  }
+
+  @Test
+  public void testShouldGiveTheGzippedClasspathResourceItsOwnETag() throws Exception {
+    ClassPathResource resource = compressibleResource();
+    HttpRequest request = new HttpRequest();
+    request.setMethod(HttpRequest.__HEAD);
+    request.setField("Accept-Encoding", "gzip");
+    request.setField("If-None-Match", resource.getETag());
+    HttpResponse response = new HttpResponse();
+
+    StaticContentHandler handler = withoutWritingHeaders();
+
+    handler.sendData(request, response, "ClassPathResource.class", resource, true);
+
+    assertEquals(HttpResponse.__200_OK, response.getStatus());
+    assertEquals(resource.getGzippedETag(), response.getField("ETag"));
+    assertFalse(resource.getGzippedETag().equals(resource.getETag()));
+    assertEquals("gzip", response.getField("Content-Encoding"));
+    assertEquals("Accept-Encoding", response.getField("Vary"));
+  }
+
+  @Test
+  public void testShouldVaryOnAcceptEncodingWhenSendingTheIdentityBody() throws Exception {
+    ClassPathResource resource = compressibleResource();
+    HttpRequest request = new HttpRequest();
+    request.setMethod(HttpRequest.__HEAD);
+    HttpResponse response = new HttpResponse();
+
+    StaticContentHandler handler = withoutWritingHeaders();
+
+    handler.sendData(request, response, "ClassPathResource.class", resource, true);
+
+    assertEquals(resource.getETag(), response.getField("ETag"));
+    assertEquals(null, response.getField("Content-Encoding"));
+    assertEquals("Accept-Encoding", response.getField("Vary"));
+  }
+
   @Test
   public void testShouldDelayResourceLoadingIfSetToSlow() throws Exception {
     long start = new Date().getTime();
@@ -129,4 +206,22 @@ public void testHandleSetsNoResponseStatusCodeInCaseOfAvailableResource() throws
     assertEquals(HttpResponse.__200_OK, httpResponse.getStatus());
     verify(handler).callSuperHandle(pathInContext, pathParams, httpRequest, httpResponse);
   }
+
+  /**
+   * Writing the headers needs a connection, which these tests don't have.
+   */
+  private StaticContentHandler withoutWritingHeaders() throws IOException {
+    StaticContentHandler handler = spy(this.handler);
+    doNothing().when(handler)
+        .writeHeaders(any(HttpResponse.class), any(Resource.class), anyLong());
+    return handler;
+  }
+
+  private ClassPathResource compressibleResource() {
+    ClassPathResource resource = new ClassPathResource("ClassPathResource.class");
+    HttpContext context = new HttpContext();
+    context.setMimeMap(Collections.singletonMap("class", "text/plain"));
+    context.getResourceMetaData(resource);
+    return resource;
+  }
 }
@@ -35,6 +35,7 @@
 import java.util.TreeMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class CaptureNetworkTrafficCommandTest {
@@ -57,6 +58,53 @@ public void testPlain() throws ParseException, IOException {
     check("plain", "plain.txt");
   }
 
+  @Test
+  public void testHar() throws ParseException {
+    prepare();
+    String result = new CaptureNetworkTrafficCommand("har").execute();
+
+    assertTrue(result.startsWith("OK,{\"log\": {"));
+    assertTrue(result.contains("\"version\":\"1.2\""));
+    assertTrue(result.contains("\"startedDateTime\":\"2009-04-15T16:22:41.000Z\""));
+    assertTrue(result.contains("\"url\":\"http:\\/\\/example.com\\/index.html\""));
+    assertTrue(result.contains("{\"name\": \"foo\", \"value\": \"bar\"}"));
+    assertTrue(result.contains("\"status\":404"));
+  }
+
+  @Test
+  public void testOldestEntriesAreEvictedOnceCapacityIsReached() {
+    CaptureNetworkTrafficCommand.clear();
+    CaptureNetworkTrafficCommand.setCapacity(2);
+    try {
+      for (int i = 1; i <= 3; i++) {
+        CaptureNetworkTrafficCommand.Entry entry =
+            new CaptureNetworkTrafficCommand.Entry("GET", "http://example.com/" + i);
+        entry.finish(200, 0);
+        CaptureNetworkTrafficCommand.capture(entry);
+      }
+
+      String result = new CaptureNetworkTrafficCommand("plain").execute();
+
+      assertFalse(result.contains("http://example.com/1"));
+      assertTrue(result.contains("http://example.com/2"));
+      assertTrue(result.contains("http://example.com/3"));
+    } finally {
+      CaptureNetworkTrafficCommand.setCapacity(CaptureNetworkTrafficCommand.DEFAULT_CAPACITY);
+    }
+  }
+
+  @Test
+  public void testCapturedEntriesAreOnlyReturnedOnce() {
+    CaptureNetworkTrafficCommand.clear();
+    CaptureNetworkTrafficCommand.Entry entry =
+        new CaptureNetworkTrafficCommand.Entry("GET", "http://example.com/once");
+    entry.finish(200, 0);
+    CaptureNetworkTrafficCommand.capture(entry);
+
+    assertTrue(new CaptureNetworkTrafficCommand("plain").execute().contains("once"));
+    assertEquals("OK,", new CaptureNetworkTrafficCommand("plain").execute());
+  }
+
   private void check(String type, String file) throws IOException {
     CaptureNetworkTrafficCommand c = new CaptureNetworkTrafficCommand(type);
 
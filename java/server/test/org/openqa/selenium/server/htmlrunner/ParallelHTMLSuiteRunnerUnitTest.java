@@ -0,0 +1,163 @@
+/*
+Copyright 2013 Selenium committers
+Copyright 2013 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.server.htmlrunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.io.TemporaryFilesystem;
+import org.openqa.selenium.server.SeleniumServer;
+import org.openqa.selenium.server.htmlrunner.ParallelHTMLSuiteRunner.Shard;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+public class ParallelHTMLSuiteRunnerUnitTest {
+
+  private static final String SUITE = "<html><head><title>Test Suite</title></head><body>\n"
+      + "<table id=\"suiteTable\" cellpadding=\"1\" cellspacing=\"1\" border=\"1\"><tbody>\n"
+      + "<tr><td><b>Test Suite</b></td></tr>\n"
+      + "<tr><td><a href=\"./TestOne.html\">TestOne</a></td></tr>\n"
+      + "<tr><td><a href=\"./TestTwo.html\">TestTwo</a></td></tr>\n"
+      + "<tr><td><a href=\"./TestThree.html\">TestThree</a></td></tr>\n"
+      + "</tbody></table>\n</body></html>\n";
+
+  private TemporaryFilesystem tempFs;
+  private File suiteFile;
+  private ParallelHTMLSuiteRunner runner;
+
+  @Before
+  public void setUp() throws Exception {
+    tempFs = TemporaryFilesystem.getTmpFsBasedOn(
+        TemporaryFilesystem.getDefaultTmpFS().createTempDir("parallel", "suite"));
+    suiteFile = new File(tempFs.createTempDir("suite", "dir"), "TestSuite.html");
+    Files.write(SUITE, suiteFile, Charset.forName("UTF-8"));
+    SeleniumServer remoteControl = mock(SeleniumServer.class);
+    runner = new ParallelHTMLSuiteRunner(
+        new HTMLLauncher(remoteControl), remoteControl, suiteFile, 2);
+  }
+
+  @After
+  public void tearDown() {
+    tempFs.deleteTemporaryFiles();
+  }
+
+  @Test
+  public void dealsTestsOutRoundRobin() {
+    List<Shard> shards = runner.getShards();
+
+    assertEquals(2, shards.size());
+    assertEquals(2, shards.get(0).tests.size());
+    assertEquals("./TestOne.html", shards.get(0).tests.get(0).href);
+    assertEquals("./TestThree.html", shards.get(0).tests.get(1).href);
+    assertEquals(1, shards.get(1).tests.size());
+    assertEquals("TestTwo", shards.get(1).tests.get(0).name);
+  }
+
+  @Test
+  public void neverUsesMoreBrowsersThanThereAreTests() throws Exception {
+    SeleniumServer remoteControl = mock(SeleniumServer.class);
+    runner = new ParallelHTMLSuiteRunner(
+        new HTMLLauncher(remoteControl), remoteControl, suiteFile, 10);
+
+    assertEquals(3, runner.getShards().size());
+  }
+
+  @Test
+  public void shardSuitesAreMarkedSoTheirResultsCanBeToldApart() {
+    Shard shard = runner.getShards().get(1);
+
+    String html = shard.toHtml();
+
+    assertTrue(html.contains("Test Suite " + shard.marker()));
+    assertTrue(html.contains("<a href=\"./TestTwo.html\">TestTwo</a>"));
+    assertFalse(html.contains("TestOne"));
+  }
+
+  @Test
+  public void postedResultsAreHandedToTheirShard() {
+    Shard first = runner.getShards().get(0);
+    Shard second = runner.getShards().get(1);
+    HTMLTestResults results = results(second, "passed", "<table>two</table>");
+
+    runner.processResults(results);
+
+    assertNull(first.getResults());
+    assertSame(results, second.getResults());
+  }
+
+  @Test
+  public void mergesResultsInTheOriginalTestOrder() throws Exception {
+    Shard first = runner.getShards().get(0);
+    Shard second = runner.getShards().get(1);
+    runner.processResults(results(first, "passed", "<table>one</table>", "<table>three</table>"));
+    runner.processResults(results(second, "passed", "<table>two</table>"));
+
+    HTMLTestResults merged = runner.merge(3000);
+
+    assertEquals("passed", merged.getResult());
+    assertEquals("3", merged.getTotalTime());
+    assertEquals(3, merged.getNumTotalTests());
+    assertEquals(Arrays.asList("<table>one</table>", "<table>two</table>", "<table>three</table>"),
+        merged.getTestTables());
+    assertEquals(Arrays.asList("./TestOne.html", "./TestTwo.html", "./TestThree.html"),
+        merged.getSuite().getHrefs());
+    StringWriter report = new StringWriter();
+    merged.write(report);
+    assertTrue(report.toString().contains("browser 2, 0s"));
+  }
+
+  @Test
+  public void testsOfABrowserThatNeverReportedBackFail() {
+    Shard first = runner.getShards().get(0);
+    runner.processResults(results(first, "passed", "<table>one</table>", "<table>three</table>"));
+    runner.getShards().get(1).setFailure("Timed out");
+
+    HTMLTestResults merged = runner.merge(3000);
+
+    assertEquals("failed", merged.getResult());
+    assertEquals("2", merged.getNumTestPasses());
+    assertEquals("1", merged.getNumTestFailures());
+    assertTrue(merged.getTestTables().toString().contains("Timed out"));
+  }
+
+  private HTMLTestResults results(Shard shard, String result, String... tables) {
+    StringBuilder suite = new StringBuilder("<table><tbody><tr><td><b>Test Suite ")
+        .append(shard.marker()).append("</b></td></tr>");
+    for (ParallelHTMLSuiteRunner.SuiteTest test : shard.tests) {
+      suite.append("<tr><td><a href=\"").append(test.href).append("\">").append(test.name)
+          .append("</a></td></tr>");
+    }
+    suite.append("</tbody></table>");
+    String count = String.valueOf(tables.length);
+    return new HTMLTestResults("2.0", "1", result, "1", count, count, "0", count, "0", "0",
+        suite.toString(), Arrays.asList(tables), "");
+  }
+}